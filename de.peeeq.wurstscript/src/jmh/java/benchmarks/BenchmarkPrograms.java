@@ -0,0 +1,322 @@
+package benchmarks;
+
+import de.peeeq.wurstio.WurstCompilerJassImpl;
+import de.peeeq.wurstscript.RunArgs;
+import de.peeeq.wurstscript.ast.WurstModel;
+import de.peeeq.wurstscript.attributes.CompileError;
+import de.peeeq.wurstscript.gui.WurstGui;
+import de.peeeq.wurstscript.gui.WurstGuiLogger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates synthetic Wurst programs for the benchmarks.
+ *
+ * The programs only depend on common.j and are generated from a fixed seed,
+ * so every run of a benchmark compiles exactly the same code.
+ * Each package contains classes with dynamic dispatch, a generic class, a tuple,
+ * closures, loops over arrays and string operations, and calls into the previous package.
+ * The program for the interpreter benchmarks is fixed and has one function per workload.
+ */
+public class BenchmarkPrograms {
+    private static final long SEED = 42;
+
+    private static String commonJ;
+
+    /**
+     * generates a program with the given number of packages
+     *
+     * @return the source code of each package by file name
+     */
+    public static Map<String, String> generate(int packages) {
+        Random random = new Random(SEED);
+        Map<String, String> result = new LinkedHashMap<>();
+        for (int i = 0; i < packages; i++) {
+            result.put("Pkg" + i + ".wurst", generatePackage(i, random));
+        }
+        return result;
+    }
+
+    private static String generatePackage(int i, Random random) {
+        int factor = 1 + random.nextInt(9);
+        int sides = 2 + random.nextInt(5);
+        StringBuilder sb = new StringBuilder();
+        line(sb, "package Pkg" + i);
+        if (i > 0) {
+            line(sb, "import Pkg" + (i - 1));
+        }
+        line(sb, "");
+        line(sb, "public tuple vec" + i + "(real x, real y, int id)");
+        line(sb, "");
+        line(sb, "public interface Op" + i);
+        line(sb, "    function apply(int x) returns int");
+        line(sb, "");
+        line(sb, "public class Box" + i + "<T>");
+        line(sb, "    T elem");
+        line(sb, "    construct(T elem)");
+        line(sb, "        this.elem = elem");
+        line(sb, "    function get() returns T");
+        line(sb, "        return elem");
+        line(sb, "");
+        line(sb, "public abstract class Shape" + i);
+        line(sb, "    int id");
+        line(sb, "    construct(int id)");
+        line(sb, "        this.id = id");
+        line(sb, "    abstract function area() returns int");
+        line(sb, "");
+        line(sb, "public class Square" + i + " extends Shape" + i);
+        line(sb, "    int side");
+        line(sb, "    construct(int id, int side)");
+        line(sb, "        super(id)");
+        line(sb, "        this.side = side");
+        line(sb, "    override function area() returns int");
+        line(sb, "        return side * side");
+        line(sb, "");
+        line(sb, "public class Polygon" + i + " extends Shape" + i);
+        line(sb, "    int r");
+        line(sb, "    construct(int id, int r)");
+        line(sb, "        super(id)");
+        line(sb, "        this.r = r");
+        line(sb, "    override function area() returns int");
+        line(sb, "        return " + sides + " * r * r");
+        line(sb, "");
+        line(sb, "int array values" + i);
+        line(sb, "");
+        line(sb, "public function sum" + i + "(int n) returns int");
+        line(sb, "    var s = 0");
+        line(sb, "    for j = 0 to n");
+        line(sb, "        s += j * " + factor);
+        line(sb, "        values" + i + "[j] = s");
+        line(sb, "    return s + values" + i + "[n div 2]");
+        line(sb, "");
+        line(sb, "function area" + i + "(Shape" + i + " sh) returns int");
+        line(sb, "    let a = sh.area()");
+        line(sb, "    destroy sh");
+        line(sb, "    return a");
+        line(sb, "");
+        line(sb, "public function shapes" + i + "(int n) returns int");
+        line(sb, "    var total = 0");
+        line(sb, "    for j = 0 to n");
+        line(sb, "        if j mod 2 == 0");
+        line(sb, "            total += area" + i + "(new Square" + i + "(j, j + 1))");
+        line(sb, "        else");
+        line(sb, "            total += area" + i + "(new Polygon" + i + "(j, j))");
+        line(sb, "    return total");
+        line(sb, "");
+        line(sb, "public function apply" + i + "(Op" + i + " op, int x) returns int");
+        line(sb, "    return op.apply(x)");
+        line(sb, "");
+        line(sb, "public function closures" + i + "(int n) returns int");
+        line(sb, "    var total = 0");
+        line(sb, "    for j = 0 to n");
+        line(sb, "        Op" + i + " op = (int x) -> x * j + " + factor);
+        line(sb, "        total += apply" + i + "(op, n)");
+        line(sb, "        destroy op");
+        line(sb, "    return total");
+        line(sb, "");
+        line(sb, "public function generic" + i + "(int n) returns int");
+        line(sb, "    let b = new Box" + i + "<int>(n)");
+        line(sb, "    let r = b.get()");
+        line(sb, "    destroy b");
+        line(sb, "    return r");
+        line(sb, "");
+        line(sb, "public function strings" + i + "(int n) returns string");
+        line(sb, "    var s = \"\"");
+        line(sb, "    for j = 0 to n");
+        line(sb, "        s = s + I2S(j)");
+        line(sb, "    return s");
+        line(sb, "");
+        line(sb, "public function tuples" + i + "(int n) returns real");
+        line(sb, "    var v = vec" + i + "(0.0, 1.0, n)");
+        line(sb, "    for j = 0 to n");
+        line(sb, "        v = vec" + i + "(v.x + j, v.y * 1.5, v.id)");
+        line(sb, "    return v.x + v.y");
+        line(sb, "");
+        line(sb, "public function work" + i + "(int n) returns int");
+        String previous = i > 0 ? " + work" + (i - 1) + "(n)" : "";
+        line(sb, "    return sum" + i + "(n) + shapes" + i + "(n) + closures" + i + "(n) + generic" + i + "(n)"
+            + " + StringLength(strings" + i + "(n)) + R2I(tuples" + i + "(n))" + previous);
+        line(sb, "");
+        line(sb, "init");
+        line(sb, "    values" + i + "[0] = work" + i + "(" + (2 + random.nextInt(3)) + ")");
+        return sb.toString();
+    }
+
+    /**
+     * the workloads of {@link #interpreterProgram()},
+     * each workload is a function with one int parameter n, which determines the number of iterations
+     */
+    public static final String[] INTERPRETER_WORKLOADS = {
+        "arithmetic", "arrays", "allocation", "closures", "hashtables", "strings", "timers"
+    };
+
+    /**
+     * a program for the interpreter benchmarks with one function for each of the {@link #INTERPRETER_WORKLOADS}.
+     *
+     * The init block calls every workload once, so that the functions are not removed when translating to Jass.
+     * The timers workload only starts the timers, the caller has to complete them.
+     */
+    public static Map<String, String> interpreterProgram() {
+        StringBuilder sb = new StringBuilder();
+        line(sb, "package InterpreterBench");
+        line(sb, "");
+        line(sb, "interface IntFunc");
+        line(sb, "    function apply(int x) returns int");
+        line(sb, "");
+        line(sb, "class Node");
+        line(sb, "    int value");
+        line(sb, "    Node next");
+        line(sb, "    construct(int value, Node next)");
+        line(sb, "        this.value = value");
+        line(sb, "        this.next = next");
+        line(sb, "");
+        line(sb, "int array data");
+        line(sb, "int timerTicks = 0");
+        line(sb, "");
+        line(sb, "function arithmetic(int n) returns int");
+        line(sb, "    var s = 0");
+        line(sb, "    for i = 1 to n");
+        line(sb, "        s = (s + i * 7) mod 10007 - i div 3");
+        line(sb, "    return s");
+        line(sb, "");
+        line(sb, "function arrays(int n) returns int");
+        line(sb, "    for i = 0 to n - 1");
+        line(sb, "        data[i] = i * 2");
+        line(sb, "    var s = 0");
+        line(sb, "    for r = 1 to 10");
+        line(sb, "        for i = 0 to n - 1");
+        line(sb, "            s += data[i] - data[n - 1 - i] + r");
+        line(sb, "    return s");
+        line(sb, "");
+        line(sb, "function allocation(int n) returns int");
+        line(sb, "    Node list = null");
+        line(sb, "    for i = 1 to n");
+        line(sb, "        list = new Node(i, list)");
+        line(sb, "    var s = 0");
+        line(sb, "    while list != null");
+        line(sb, "        s += list.value");
+        line(sb, "        let next = list.next");
+        line(sb, "        destroy list");
+        line(sb, "        list = next");
+        line(sb, "    return s");
+        line(sb, "");
+        line(sb, "function closures(int n) returns int");
+        line(sb, "    let k = n mod 7");
+        line(sb, "    IntFunc f = (int x) -> x * 3 + k");
+        line(sb, "    var s = 0");
+        line(sb, "    for i = 1 to n");
+        line(sb, "        s += f.apply(i)");
+        line(sb, "    destroy f");
+        line(sb, "    return s");
+        line(sb, "");
+        line(sb, "function hashtables(int n) returns int");
+        line(sb, "    let ht = InitHashtable()");
+        line(sb, "    for i = 1 to n");
+        line(sb, "        SaveInteger(ht, i, i mod 16, i * 2)");
+        line(sb, "    var s = 0");
+        line(sb, "    for i = 1 to n");
+        line(sb, "        s += LoadInteger(ht, i, i mod 16)");
+        line(sb, "    FlushParentHashtable(ht)");
+        line(sb, "    return s");
+        line(sb, "");
+        line(sb, "function strings(int n) returns int");
+        line(sb, "    var total = 0");
+        line(sb, "    for i = 1 to n");
+        line(sb, "        let s = I2S(i) + \"abc\"");
+        line(sb, "        total += StringLength(SubString(s, 1, 3)) + S2I(I2S(i)) + StringLength(StringCase(s, true))");
+        line(sb, "    return total");
+        line(sb, "");
+        line(sb, "function onTimer()");
+        line(sb, "    timerTicks++");
+        line(sb, "    DestroyTimer(GetExpiredTimer())");
+        line(sb, "");
+        line(sb, "function timers(int n) returns int");
+        line(sb, "    timerTicks = 0");
+        line(sb, "    for i = 1 to n");
+        line(sb, "        TimerStart(CreateTimer(), I2R(i mod 10) * 0.1, false, function onTimer)");
+        line(sb, "    return n");
+        line(sb, "");
+        line(sb, "init");
+        StringBuilder calls = new StringBuilder();
+        for (String workload : INTERPRETER_WORKLOADS) {
+            if (calls.length() > 0) {
+                calls.append(" + ");
+            }
+            calls.append(workload).append("(2)");
+        }
+        line(sb, "    data[0] = " + calls);
+        Map<String, String> result = new LinkedHashMap<>();
+        result.put("InterpreterBench.wurst", sb.toString());
+        return result;
+    }
+
+    private static void line(StringBuilder sb, String line) {
+        sb.append(line).append('\n');
+    }
+
+    /**
+     * the contents of common.j from the compiler resources
+     */
+    public static synchronized String commonJ() {
+        if (commonJ == null) {
+            try (InputStream in = BenchmarkPrograms.class.getClassLoader().getResourceAsStream("common.j")) {
+                if (in == null) {
+                    throw new IllegalStateException("common.j not found on the classpath");
+                }
+                StringBuilder sb = new StringBuilder();
+                char[] buf = new char[8192];
+                InputStreamReader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+                int n;
+                while ((n = reader.read(buf)) > 0) {
+                    sb.append(buf, 0, n);
+                }
+                commonJ = sb.toString();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return commonJ;
+    }
+
+    /**
+     * creates a compiler with common.j and the given sources loaded
+     */
+    public static WurstCompilerJassImpl compiler(Map<String, String> sources, RunArgs runArgs) {
+        WurstGui gui = new WurstGuiLogger();
+        WurstCompilerJassImpl compiler = new WurstCompilerJassImpl(null, gui, null, runArgs);
+        compiler.loadReader("common.j", new StringReader(commonJ()));
+        for (Map.Entry<String, String> e : sources.entrySet()) {
+            compiler.loadReader(e.getKey(), new StringReader(e.getValue()));
+        }
+        return compiler;
+    }
+
+    /**
+     * parses and type checks the sources
+     */
+    public static WurstModel parseAndCheck(WurstCompilerJassImpl compiler) {
+        WurstModel model = compiler.parseFiles();
+        if (model == null) {
+            throw new IllegalStateException("could not parse benchmark program");
+        }
+        compiler.checkProg(model);
+        failOnErrors(compiler);
+        return model;
+    }
+
+    /**
+     * benchmark programs must compile without errors, otherwise the numbers would be meaningless
+     */
+    public static void failOnErrors(WurstCompilerJassImpl compiler) {
+        for (CompileError err : compiler.getErrorHandler().getErrors()) {
+            throw new IllegalStateException("benchmark program has errors: " + err);
+        }
+    }
+}
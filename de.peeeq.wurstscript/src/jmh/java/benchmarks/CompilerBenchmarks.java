@@ -0,0 +1,281 @@
+package benchmarks;
+
+import de.peeeq.wurstio.TimeTaker;
+import de.peeeq.wurstio.WurstCompilerJassImpl;
+import de.peeeq.wurstscript.RunArgs;
+import de.peeeq.wurstscript.ast.WurstModel;
+import de.peeeq.wurstscript.intermediatelang.optimizer.BranchMerger;
+import de.peeeq.wurstscript.intermediatelang.optimizer.ConstantAndCopyPropagation;
+import de.peeeq.wurstscript.intermediatelang.optimizer.LocalMerger;
+import de.peeeq.wurstscript.intermediatelang.optimizer.SimpleRewrites;
+import de.peeeq.wurstscript.intermediatelang.optimizer.TempMerger;
+import de.peeeq.wurstscript.jassAst.JassProg;
+import de.peeeq.wurstscript.jassIm.ImProg;
+import de.peeeq.wurstscript.jassprinter.JassPrinter;
+import de.peeeq.wurstscript.luaAst.LuaCompilationUnit;
+import de.peeeq.wurstscript.translation.imoptimizer.GlobalsInliner;
+import de.peeeq.wurstscript.translation.imoptimizer.ImOptimizer;
+import de.peeeq.wurstscript.translation.imoptimizer.OptimizerPass;
+import de.peeeq.wurstscript.translation.imoptimizer.UselessFunctionCallsRemover;
+import de.peeeq.wurstscript.translation.imtranslation.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the phases of the compiler, from parsing to printing the output.
+ *
+ * Each benchmark only measures one phase. The phases before it are run in the setup,
+ * because most phases change the program and can therefore not be repeated on the same input.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xss32m", "-Xmx2g"})
+public class CompilerBenchmarks {
+
+    @State(Scope.Benchmark)
+    public static class Sources {
+        /** number of generated packages */
+        @Param({"10", "100"})
+        public int packages;
+
+        Map<String, String> sources;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            sources = BenchmarkPrograms.generate(packages);
+        }
+
+        WurstCompilerJassImpl compiler(String... args) {
+            return BenchmarkPrograms.compiler(sources, new RunArgs(args));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Parsed {
+        WurstCompilerJassImpl compiler;
+        WurstModel model;
+
+        @Setup(Level.Invocation)
+        public void setup(Sources s) {
+            compiler = s.compiler();
+            model = compiler.parseFiles();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Checked {
+        WurstCompilerJassImpl compiler;
+        WurstModel model;
+
+        @Setup(Level.Invocation)
+        public void setup(Sources s) {
+            compiler = s.compiler();
+            model = BenchmarkPrograms.parseAndCheck(compiler);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Translated {
+        ImTranslator translator;
+        ImProg prog;
+
+        @Setup(Level.Invocation)
+        public void setup(Sources s) {
+            WurstCompilerJassImpl compiler = s.compiler();
+            compiler.translateProgToIm(BenchmarkPrograms.parseAndCheck(compiler));
+            translator = compiler.getImTranslator();
+            prog = compiler.getImProg();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class GenericsEliminated {
+        ImTranslator translator;
+        ImProg prog;
+
+        @Setup(Level.Invocation)
+        public void setup(Sources s) {
+            WurstCompilerJassImpl compiler = s.compiler();
+            compiler.translateProgToIm(BenchmarkPrograms.parseAndCheck(compiler));
+            translator = compiler.getImTranslator();
+            prog = compiler.getImProg();
+            new EliminateGenerics(translator, prog).transform();
+        }
+    }
+
+    /**
+     * the program at the point where the inliner runs
+     */
+    @State(Scope.Thread)
+    public static class BeforeInlining {
+        ImTranslator translator;
+
+        @Setup(Level.Invocation)
+        public void setup(Sources s) {
+            translator = beforeInlining(s);
+        }
+    }
+
+    /**
+     * the flattened program at the point where the local optimizations run
+     */
+    @State(Scope.Thread)
+    public static class Flat {
+        ImTranslator translator;
+
+        @Setup(Level.Invocation)
+        public void setup(Sources s) {
+            translator = flat(s);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class OptimizerPassInput {
+        @Param({"SimpleRewrites", "ConstantAndCopyPropagation", "UselessFunctionCallsRemover", "GlobalsInliner",
+            "BranchMerger", "TempMerger", "LocalMerger"})
+        public String pass;
+
+        ImTranslator translator;
+        OptimizerPass optimizerPass;
+
+        @Setup(Level.Invocation)
+        public void setup(Sources s) {
+            translator = flat(s);
+            optimizerPass = createPass(pass);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class JassOutput {
+        JassProg prog;
+
+        @Setup(Level.Trial)
+        public void setup(Sources s) {
+            WurstCompilerJassImpl compiler = s.compiler("-inline", "-localOptimizations");
+            compiler.translateProgToIm(BenchmarkPrograms.parseAndCheck(compiler));
+            prog = compiler.transformProgToJass();
+            BenchmarkPrograms.failOnErrors(compiler);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class LuaOutput {
+        LuaCompilationUnit cu;
+
+        @Setup(Level.Trial)
+        public void setup(Sources s) {
+            WurstCompilerJassImpl compiler = s.compiler("-lua", "-inline", "-localOptimizations");
+            compiler.translateProgToIm(BenchmarkPrograms.parseAndCheck(compiler));
+            cu = compiler.transformProgToLua();
+            BenchmarkPrograms.failOnErrors(compiler);
+        }
+    }
+
+    private static ImTranslator beforeInlining(Sources s) {
+        WurstCompilerJassImpl compiler = s.compiler();
+        compiler.translateProgToIm(BenchmarkPrograms.parseAndCheck(compiler));
+        ImTranslator tr = compiler.getImTranslator();
+        ImProg prog = compiler.getImProg();
+        new EliminateGenerics(tr, prog).transform();
+        new EliminateClasses(tr, prog, true).eliminateClasses();
+        new VarargEliminator(prog).run();
+        return tr;
+    }
+
+    /**
+     * the same steps as {@link WurstCompilerJassImpl#transformProgToJass()} until the local optimizations
+     */
+    private static ImTranslator flat(Sources s) {
+        ImTranslator tr = beforeInlining(s);
+        ImProg prog = tr.getImProg();
+        prog.flatten(tr);
+        EliminateTuples.eliminateTuplesProg(prog, tr);
+        new MultiArrayEliminator(prog, tr, false).run();
+        new FuncRefRemover(prog, tr).run();
+        new CyclicFunctionRemover(tr, prog).work();
+        prog.flatten(tr);
+        return tr;
+    }
+
+    private static OptimizerPass createPass(String name) {
+        switch (name) {
+            case "SimpleRewrites":
+                return new SimpleRewrites();
+            case "ConstantAndCopyPropagation":
+                return new ConstantAndCopyPropagation();
+            case "UselessFunctionCallsRemover":
+                return new UselessFunctionCallsRemover();
+            case "GlobalsInliner":
+                return new GlobalsInliner();
+            case "BranchMerger":
+                return new BranchMerger();
+            case "TempMerger":
+                return new TempMerger();
+            case "LocalMerger":
+                return new LocalMerger();
+            default:
+                throw new IllegalArgumentException("unknown pass " + name);
+        }
+    }
+
+    @Benchmark
+    public WurstModel parse(Sources s) {
+        return s.compiler().parseFiles();
+    }
+
+    @Benchmark
+    public WurstModel typecheck(Parsed p) {
+        p.compiler.checkProg(p.model);
+        return p.model;
+    }
+
+    @Benchmark
+    public ImProg translateToIm(Checked c) {
+        return c.compiler.translateProgToIm(c.model);
+    }
+
+    @Benchmark
+    public ImProg eliminateGenerics(Translated t) {
+        new EliminateGenerics(t.translator, t.prog).transform();
+        return t.prog;
+    }
+
+    @Benchmark
+    public ImProg eliminateClasses(GenericsEliminated g) {
+        new EliminateClasses(g.translator, g.prog, true).eliminateClasses();
+        return g.prog;
+    }
+
+    @Benchmark
+    public ImProg inlining(BeforeInlining b) {
+        new ImOptimizer(new TimeTaker.Default(), b.translator).doInlining();
+        return b.translator.getImProg();
+    }
+
+    @Benchmark
+    public int optimizerPass(OptimizerPassInput in) {
+        return in.optimizerPass.optimize(in.translator);
+    }
+
+    @Benchmark
+    public ImProg localOptimizations(Flat f) {
+        new ImOptimizer(new TimeTaker.Default(), f.translator).localOptimizations();
+        return f.translator.getImProg();
+    }
+
+    @Benchmark
+    public String printJass(JassOutput j) {
+        return new JassPrinter(true, j.prog).printProg();
+    }
+
+    @Benchmark
+    public String printLua(LuaOutput l) {
+        StringBuilder sb = new StringBuilder();
+        l.cu.print(sb, 0);
+        return sb.toString();
+    }
+}
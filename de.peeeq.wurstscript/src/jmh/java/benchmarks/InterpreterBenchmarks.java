@@ -0,0 +1,109 @@
+package benchmarks;
+
+import de.peeeq.wurstio.WurstCompilerJassImpl;
+import de.peeeq.wurstio.jassinterpreter.JassInterpreter;
+import de.peeeq.wurstio.jassinterpreter.ReflectionNativeProvider;
+import de.peeeq.wurstscript.RunArgs;
+import de.peeeq.wurstscript.gui.WurstGuiLogger;
+import de.peeeq.wurstscript.intermediatelang.ILconst;
+import de.peeeq.wurstscript.intermediatelang.ILconstInt;
+import de.peeeq.wurstscript.intermediatelang.interpreter.ILInterpreter;
+import de.peeeq.wurstscript.jassAst.JassFunction;
+import de.peeeq.wurstscript.jassAst.JassProg;
+import de.peeeq.wurstscript.jassIm.ImFunction;
+import de.peeeq.wurstscript.jassIm.ImProg;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the interpreters, which run tests and compiletime functions.
+ *
+ * Each workload of {@link BenchmarkPrograms#interpreterProgram()} is run with the interpreter
+ * for the intermediate language (tree walking and compiled) and with the Jass interpreter.
+ * The workloads cover arithmetic, arrays, class allocation, closures and the natives for hashtables,
+ * strings and timers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xss32m", "-Xmx2g"})
+public class InterpreterBenchmarks {
+
+    /** the argument n passed to each workload */
+    private static final int N = 1000;
+
+    @State(Scope.Thread)
+    public static class Im {
+        @Param({"arithmetic", "arrays", "allocation", "closures", "hashtables", "strings", "timers"})
+        public String workload;
+
+        /** use the compiled execution engine instead of the tree walking interpreter */
+        @Param({"false", "true"})
+        public boolean compiled;
+
+        ILInterpreter interpreter;
+        ImFunction function;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            WurstCompilerJassImpl compiler = BenchmarkPrograms.compiler(BenchmarkPrograms.interpreterProgram(), new RunArgs());
+            ImProg prog = compiler.translateProgToIm(BenchmarkPrograms.parseAndCheck(compiler));
+            BenchmarkPrograms.failOnErrors(compiler);
+            interpreter = new ILInterpreter(prog, new WurstGuiLogger(), Optional.empty(), false, false);
+            interpreter.addNativeProvider(new ReflectionNativeProvider(interpreter));
+            interpreter.setCompiledExecution(compiled);
+            // initialize the globals
+            interpreter.executeFunction("main", null);
+            interpreter.completeTimers();
+            function = prog.getFunctions().stream()
+                .filter(f -> f.getName().equals(workload))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("function " + workload + " not found"));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Jass {
+        @Param({"arithmetic", "arrays", "allocation", "closures", "hashtables", "strings", "timers"})
+        public String workload;
+
+        JassInterpreter interpreter;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            WurstCompilerJassImpl compiler = BenchmarkPrograms.compiler(BenchmarkPrograms.interpreterProgram(), new RunArgs());
+            compiler.translateProgToIm(BenchmarkPrograms.parseAndCheck(compiler));
+            JassProg prog = compiler.transformProgToJass();
+            BenchmarkPrograms.failOnErrors(compiler);
+            boolean found = false;
+            for (JassFunction f : prog.getFunctions()) {
+                found |= f.getName().equals(workload);
+            }
+            if (!found) {
+                throw new IllegalStateException("function " + workload + " not found");
+            }
+            interpreter = new JassInterpreter();
+            interpreter.loadProgram(prog);
+            // initialize the globals
+            interpreter.runProgram();
+        }
+    }
+
+    @Benchmark
+    public ILconst imInterpreter(Im s) {
+        ILconst result = ILInterpreter.runFunc(s.interpreter.getGlobalState(), s.function, null, ILconstInt.create(N))
+            .getReturnVal();
+        s.interpreter.completeTimers();
+        return result;
+    }
+
+    @Benchmark
+    public ILconst jassInterpreter(Jass s) {
+        ILconst result = s.interpreter.executeFunction(s.workload, ILconstInt.create(N));
+        s.interpreter.completeTimers();
+        return result;
+    }
+}
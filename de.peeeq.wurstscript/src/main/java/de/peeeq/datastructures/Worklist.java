@@ -47,6 +47,10 @@ public class Worklist<T> {
         return result;
     }
 
+    public boolean contains(T node) {
+        return set.contains(node);
+    }
+
     public int size() {
         return queue.size();
     }
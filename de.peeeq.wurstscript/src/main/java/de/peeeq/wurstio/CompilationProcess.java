@@ -9,6 +9,7 @@ import de.peeeq.wurstscript.WLogger;
 import de.peeeq.wurstscript.ast.WurstModel;
 import de.peeeq.wurstscript.attributes.CompileError;
 import de.peeeq.wurstscript.gui.WurstGui;
+import de.peeeq.wurstscript.intermediatelang.interpreter.ExecutionProfile;
 import de.peeeq.wurstscript.intermediatelang.interpreter.ILStackFrame;
 import de.peeeq.wurstscript.jassAst.JassProg;
 import de.peeeq.wurstscript.jassprinter.JassPrinter;
@@ -20,7 +21,6 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.Optional;
-import java.util.function.Supplier;
 
 /**
  *
@@ -34,18 +34,17 @@ public class CompilationProcess {
     public CompilationProcess(WurstGui gui, RunArgs runArgs) {
         this.gui = gui;
         this.runArgs = runArgs;
-        if (runArgs.isMeasureTimes()) {
-            this.timeTaker = new TimeTaker.Recording();
-        } else {
-            this.timeTaker = new TimeTaker.Default();
-        }
+        this.timeTaker = TimeTaker.create(runArgs);
     }
 
-    @Nullable CharSequence doCompilation(@Nullable MpqEditor mpqEditor, boolean isProd) throws IOException {
+    @Nullable File doCompilation(@Nullable MpqEditor mpqEditor, boolean isProd) throws IOException {
         return doCompilation(mpqEditor, null, isProd);
     }
 
-    @Nullable CharSequence doCompilation(@Nullable MpqEditor mpqEditor, @Nullable File projectFolder, boolean isProd) throws IOException {
+    /**
+     * @return the file containing the compiled map script or null, if there were errors
+     */
+    @Nullable File doCompilation(@Nullable MpqEditor mpqEditor, @Nullable File projectFolder, boolean isProd) throws IOException {
         WurstCompilerJassImpl compiler = new WurstCompilerJassImpl(timeTaker, projectFolder, gui, mpqEditor, runArgs);
         gui.sendProgress("Check input map");
         if (mpqEditor != null && !mpqEditor.canWrite()) {
@@ -80,13 +79,22 @@ public class CompilationProcess {
             return null;
         }
 
+        String recordProfileFile = runArgs.getRecordProfileFile();
+        ExecutionProfile profile = recordProfileFile == null ? null : new ExecutionProfile();
+        compiler.setRecordedProfile(profile);
+
         if (runArgs.isRunTests()) {
             timeTaker.measure("Run tests",
-                    () -> runTests(compiler.getImTranslator(), compiler, runArgs.getTestTimeout()));
+                    () -> runTests(compiler.getImTranslator(), compiler, runArgs.getTestTimeout(), profile));
         }
 
         timeTaker.measure("Run compiletime functions", () ->compiler.runCompiletime(new WurstProjectConfigData(), isProd, false));
 
+        if (profile != null) {
+            profile.write(new File(recordProfileFile));
+            WLogger.info("wrote profile " + recordProfileFile + ": " + profile);
+        }
+
         JassProg jassProg = timeTaker.measure("Transform program to Jass",
             compiler::transformProgToJass);
 
@@ -100,43 +108,21 @@ public class CompilationProcess {
         gui.sendProgress("Printing Jass");
 
         JassPrinter printer = new JassPrinter(withSpace, jassProg);
-        CharSequence mapScript = timeTaker.measure("Print Jass",
-            (Supplier<String>) printer::printProg);
 
-        // output to file
+        // print directly to the output file
         File outputMapscript = timeTaker.measure("Print Jass",
-                () -> writeMapscript(mapScript));
+                () -> writeMapscript(printer));
 
         if (!runArgs.isDisablePjass()) {
             boolean pjassError = timeTaker.measure("Run PJass",
-                    () -> runPjass(outputMapscript));
+                    () -> !Pjass.checkMapScript(outputMapscript, gui));
             if (pjassError) return null;
         }
         timeTaker.printReport();
-        return mapScript;
-    }
-
-    private boolean runPjass(File outputMapscript) {
-        File commonJ = new File(outputMapscript.getParent(), "common.j");
-        File blizzJ = new File(outputMapscript.getParent(), "blizzard.j");
-
-        Pjass.Result pJassResult;
-        if (commonJ.exists() && blizzJ.exists()) {
-            pJassResult = Pjass.runPjass(outputMapscript, commonJ.getAbsolutePath(), blizzJ.getAbsolutePath());
-        } else {
-            pJassResult = Pjass.runPjass(outputMapscript);
-        }
-        WLogger.info(pJassResult.getMessage());
-        if (!pJassResult.isOk()) {
-            for (CompileError err : pJassResult.getErrors()) {
-                gui.sendError(err);
-            }
-            return true;
-        }
-        return false;
+        return outputMapscript;
     }
 
-    private File writeMapscript(CharSequence mapScript) {
+    private File writeMapscript(JassPrinter printer) {
         gui.sendProgress("Writing output file");
         File outputMapscript;
         if (runArgs.getOutFile() != null) {
@@ -146,14 +132,14 @@ public class CompilationProcess {
         }
         outputMapscript.getParentFile().mkdirs();
         try {
-            FileUtils.write(mapScript, outputMapscript);
+            FileUtils.writeStreaming(outputMapscript, false, printer::printProg);
             return outputMapscript;
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private void runTests(ImTranslator translator, WurstCompilerJassImpl compiler, int testTimeout) {
+    private void runTests(ImTranslator translator, WurstCompilerJassImpl compiler, int testTimeout, @Nullable ExecutionProfile profile) {
         PrintStream out = System.out;
         // tests
         gui.sendProgress("Running tests");
@@ -164,6 +150,8 @@ public class CompilationProcess {
                 out.print(message);
             }
         };
+        runTests.setCompiledExecution(runArgs.isCompiledInterpreter());
+        runTests.setProfile(profile);
         runTests.runTests(translator, compiler.getImProg(), Optional.empty(), Optional.empty());
 
         for (RunTests.TestFailure e : runTests.getFailTests()) {
@@ -17,9 +17,11 @@ import de.peeeq.wurstscript.attributes.CompileError;
 import de.peeeq.wurstscript.attributes.ErrorHandler;
 import de.peeeq.wurstscript.gui.WurstGui;
 import de.peeeq.wurstscript.intermediatelang.*;
+import de.peeeq.wurstscript.intermediatelang.interpreter.ExecutionProfile;
 import de.peeeq.wurstscript.intermediatelang.interpreter.ILInterpreter;
 import de.peeeq.wurstscript.intermediatelang.interpreter.ILStackFrame;
 import de.peeeq.wurstscript.intermediatelang.interpreter.LocalState;
+import de.peeeq.wurstscript.intermediatelang.interpreter.NativeCallCache;
 import de.peeeq.wurstscript.intermediatelang.interpreter.ProgramState;
 import de.peeeq.wurstscript.intermediatelang.optimizer.FunctionSplitter;
 import de.peeeq.wurstscript.jassIm.*;
@@ -113,6 +115,10 @@ public class CompiletimeFunctionRunner {
 
             partitionCompiletimeStateInitFunction();
 
+            NativeCallCache nativeCallCache = globalState.getNativeCallCache();
+            if (nativeCallCache != null) {
+                WLogger.info("compiletime native call cache: " + nativeCallCache);
+            }
         } catch (InterpreterException e) {
             Element origin = e.getTrace();
             sendErrors(origin, e.getMessage(), e);
@@ -520,6 +526,21 @@ public class CompiletimeFunctionRunner {
     }
 
 
+    /**
+     * selects the execution engine of the interpreter, see {@link ILInterpreter#setCompiledExecution(boolean)}
+     */
+    public void setCompiledExecution(boolean compiledExecution) {
+        interpreter.setCompiledExecution(compiledExecution);
+    }
+
+
+    /**
+     * records function calls and loop iterations into the given profile
+     */
+    public void setProfile(@Nullable ExecutionProfile profile) {
+        globalState.setProfile(profile);
+    }
+
     public void setOutputStream(PrintStream printStream) {
         interpreter.getGlobalState().setOutStream(printStream);
     }
@@ -1,7 +1,5 @@
 package de.peeeq.wurstio;
 
-import com.google.common.base.Charsets;
-import com.google.common.io.Files;
 import config.WurstProjectConfig;
 import config.WurstProjectConfigData;
 import de.peeeq.wurstio.compilationserver.WurstServer;
@@ -43,14 +41,28 @@ public class Main {
      * @param args
      */
     public static void main(String[] args) {
+        int exitCode = run(args);
+        if (exitCode != 0) {
+            System.exit(exitCode);
+        }
+    }
+
+    /**
+     * runs the compiler with the given arguments
+     *
+     * @return the exit code: 0 on success, 1 when there were compile errors and 2 on internal errors.
+     * In gui mode the result is always 0.
+     */
+    public static int run(String[] args) {
         if (args.length == 0) {
             // If no args are passed, display help
             new RunArgs("-help");
-            return;
+            return 0;
         }
 
         WurstGui gui = null;
         RunArgs runArgs = new RunArgs(args);
+        int exitCode = 0;
         try {
             if (runArgs.isLanguageServer()) {
                 WLogger.setLogger("languageServer");
@@ -58,40 +70,40 @@ public class Main {
             logStartup(args);
 
             if (runArgs.showHelp()) {
-                return;
+                return 0;
             }
 
             if (runArgs.isShowVersion()) {
                 System.out.println(CompileTimeInfo.version);
-                return;
+                return 0;
             }
 
             if (runArgs.showAbout()) {
                 new AboutDialog(null, false).setVisible(true);
-                return;
+                return 0;
             }
 
             if (runArgs.isStartServer()) {
                 WurstServer.startServer();
-                return;
+                return 0;
             }
 
             if (runArgs.isLanguageServer()) {
                 LanguageServerStarter.start();
-                return;
+                return 0;
             }
 
             WLogger.info("runArgs.isExtractImports() = " + runArgs.isExtractImports());
             if (runArgs.isExtractImports()) {
                 File mapFile = new File(runArgs.getMapFile());
                 ImportFile.extractImportsFromMap(mapFile, runArgs);
-                return;
+                return 0;
             }
 
             if (runArgs.createHotDoc()) {
                 HotdocGenerator hg = new HotdocGenerator(runArgs.getFiles());
                 hg.generateDoc();
-                return;
+                return 0;
             }
 
             if (runArgs.isGui()) {
@@ -104,7 +116,7 @@ public class Main {
 
             if (runArgs.showLastErrors()) {
                 JOptionPane.showMessageDialog(null, "not implemented");
-                return;
+                return 0;
             }
 
             try {
@@ -138,7 +150,7 @@ public class Main {
                     compileArgs = new RunArgs(argList);
                 }
                 CompilationProcess compilationProcess = new CompilationProcess(gui, compileArgs);
-                @Nullable CharSequence compiledScript;
+                @Nullable File compiledScript;
 
                 if (mapFilePath != null && workspaceroot != null) {
                     try (MpqEditor mpqEditor = MpqEditorFactory.getEditor(Optional.of(new File(mapFilePath)))) {
@@ -147,8 +159,7 @@ public class Main {
                         if (compiledScript != null) {
                             gui.sendProgress("Writing to map");
                             mpqEditor.deleteFile("war3map.j");
-                            byte[] war3map = compiledScript.toString().getBytes(Charsets.UTF_8);
-                            mpqEditor.insertFile("war3map.j", war3map);
+                            mpqEditor.insertFile("war3map.j", compiledScript);
                         }
                         ImportFile.importFilesFromImports(projectFolder, mpqEditor);
                     }
@@ -158,7 +169,7 @@ public class Main {
 
                 if (compiledScript != null) {
                     File scriptFile = new File("compiled.j.txt");
-                    Files.write(compiledScript.toString().getBytes(Charsets.UTF_8), scriptFile);
+                    java.nio.file.Files.copy(compiledScript.toPath(), scriptFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
 
                     if (projectConfig != null && target.isPresent()) {
                         ProjectConfigBuilder.apply(projectConfig, target.get().toFile(), scriptFile, buildDir.toFile(),
@@ -178,10 +189,10 @@ public class Main {
             // TODO add additional information to source
             ErrorReporting.instance.handleSevere(t, source);
             if (!runArgs.isGui()) {
-                System.exit(2);
+                exitCode = 2;
             }
         } finally {
-            if (gui != null) {
+            if (gui != null && exitCode == 0) {
                 gui.sendFinished();
                 if (!runArgs.isGui()) {
                     if (gui.getErrorCount() > 0) {
@@ -190,15 +201,17 @@ public class Main {
                             System.out.println(err);
                         }
                         // signal that there was an error when compiling
-                        System.exit(1);
-                    }
-                    // print warnings:
-                    for (CompileError err : gui.getWarningList()) {
-                        System.out.println(err);
+                        exitCode = 1;
+                    } else {
+                        // print warnings:
+                        for (CompileError err : gui.getWarningList()) {
+                            System.out.println(err);
+                        }
                     }
                 }
             }
         }
+        return exitCode;
     }
 
     private static void logStartup(String[] args) {
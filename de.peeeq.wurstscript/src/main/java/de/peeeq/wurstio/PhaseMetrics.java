@@ -0,0 +1,185 @@
+package de.peeeq.wurstio;
+
+import com.google.gson.GsonBuilder;
+import de.peeeq.wurstscript.jassIm.ImFunction;
+import de.peeeq.wurstscript.jassIm.ImProg;
+import de.peeeq.wurstscript.jassIm.ImStmts;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The metrics recorded by {@link TimeTaker.Recording} for one phase or measured step of the compiler.
+ *
+ * If a phase runs several times, the times and counters are summed up.
+ * The size of the intermediate program is taken before the first and after the last run.
+ * It is only measured for phases and top level steps and only when the metrics are written.
+ */
+public class PhaseMetrics {
+    private final String name;
+    private final int nesting;
+    private int runs;
+    private long wallTimeNanos;
+    private long cpuTimeNanos;
+    private long allocatedBytes;
+    private @Nullable ImSize imBefore;
+    private @Nullable ImSize imAfter;
+    private final Map<String, Long> counters = new LinkedHashMap<>();
+
+    public PhaseMetrics(String name, int nesting) {
+        this.name = name;
+        this.nesting = nesting;
+    }
+
+    /**
+     * the size of an intermediate program
+     */
+    public static class ImSize {
+        private final int functions;
+        private final int globals;
+        private final int statements;
+
+        private ImSize(int functions, int globals, int statements) {
+            this.functions = functions;
+            this.globals = globals;
+            this.statements = statements;
+        }
+
+        public static ImSize of(ImProg prog) {
+            int[] functions = {0};
+            int[] statements = {0};
+            prog.accept(new ImProg.DefaultVisitor() {
+                @Override
+                public void visit(ImFunction f) {
+                    super.visit(f);
+                    functions[0]++;
+                }
+
+                @Override
+                public void visit(ImStmts stmts) {
+                    super.visit(stmts);
+                    statements[0] += stmts.size();
+                }
+            });
+            return new ImSize(functions[0], prog.getGlobals().size(), statements[0]);
+        }
+
+        public int getFunctions() {
+            return functions;
+        }
+
+        public int getGlobals() {
+            return globals;
+        }
+
+        public int getStatements() {
+            return statements;
+        }
+    }
+
+    void addRun(long wallTimeNanos, long cpuTimeNanos, long allocatedBytes,
+                @Nullable ImSize imBefore, @Nullable ImSize imAfter) {
+        this.runs++;
+        this.wallTimeNanos += wallTimeNanos;
+        this.cpuTimeNanos += cpuTimeNanos;
+        this.allocatedBytes += allocatedBytes;
+        if (this.imBefore == null) {
+            this.imBefore = imBefore;
+        }
+        this.imAfter = imAfter;
+    }
+
+    void addCount(String counter, long count) {
+        counters.merge(counter, count, Long::sum);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getNesting() {
+        return nesting;
+    }
+
+    public int getRuns() {
+        return runs;
+    }
+
+    public long getWallTimeNanos() {
+        return wallTimeNanos;
+    }
+
+    public long getCpuTimeNanos() {
+        return cpuTimeNanos;
+    }
+
+    /**
+     * the bytes allocated by the compiler thread, or 0 if the JVM does not support measuring allocations
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public @Nullable ImSize getImBefore() {
+        return imBefore;
+    }
+
+    public @Nullable ImSize getImAfter() {
+        return imAfter;
+    }
+
+    /**
+     * counters reported while the phase was running, for example the number of rewrites of each optimization pass
+     */
+    public Map<String, Long> getCounters() {
+        return counters;
+    }
+
+    public static String toJson(List<PhaseMetrics> metrics) {
+        return new GsonBuilder().setPrettyPrinting().create().toJson(metrics);
+    }
+
+    /**
+     * one line per phase, the counters are written as a list of name=count pairs separated by semicolons
+     */
+    public static String toCsv(List<PhaseMetrics> metrics) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("name,nesting,runs,wallTimeNanos,cpuTimeNanos,allocatedBytes,"
+            + "functionsBefore,globalsBefore,statementsBefore,functionsAfter,globalsAfter,statementsAfter,counters\n");
+        for (PhaseMetrics m : metrics) {
+            sb.append(csvString(m.name)).append(',')
+                .append(m.nesting).append(',')
+                .append(m.runs).append(',')
+                .append(m.wallTimeNanos).append(',')
+                .append(m.cpuTimeNanos).append(',')
+                .append(m.allocatedBytes).append(',');
+            appendSize(sb, m.imBefore);
+            appendSize(sb, m.imAfter);
+            StringBuilder counters = new StringBuilder();
+            for (Map.Entry<String, Long> e : m.counters.entrySet()) {
+                if (counters.length() > 0) {
+                    counters.append(';');
+                }
+                counters.append(e.getKey()).append('=').append(e.getValue());
+            }
+            sb.append(csvString(counters.toString())).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void appendSize(StringBuilder sb, @Nullable ImSize size) {
+        if (size == null) {
+            sb.append(",,,");
+        } else {
+            sb.append(size.functions).append(',')
+                .append(size.globals).append(',')
+                .append(size.statements).append(',');
+        }
+    }
+
+    private static String csvString(String s) {
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+}
@@ -5,6 +5,7 @@ import com.google.common.collect.Lists;
 import com.google.common.io.Files;
 import de.peeeq.wurstscript.WLogger;
 import de.peeeq.wurstscript.attributes.CompileError;
+import de.peeeq.wurstscript.gui.WurstGui;
 import de.peeeq.wurstscript.parser.WPos;
 import de.peeeq.wurstscript.utils.LineOffsets;
 import de.peeeq.wurstscript.utils.Utils;
@@ -87,6 +88,31 @@ public class Pjass {
 
     }
 
+    /**
+     * Runs pjass on the given map script and reports the errors to the gui.
+     * Uses the common.j and blizzard.j next to the map script, if they exist.
+     *
+     * @return true, if pjass found no errors
+     */
+    public static boolean checkMapScript(File mapScript, WurstGui gui) {
+        File commonJ = new File(mapScript.getAbsoluteFile().getParentFile(), "common.j");
+        File blizzJ = new File(mapScript.getAbsoluteFile().getParentFile(), "blizzard.j");
+        Result pJassResult;
+        if (commonJ.exists() && blizzJ.exists()) {
+            pJassResult = runPjass(mapScript, commonJ.getAbsolutePath(), blizzJ.getAbsolutePath());
+        } else {
+            pJassResult = runPjass(mapScript);
+        }
+        WLogger.info(pJassResult.getMessage());
+        if (!pJassResult.isOk()) {
+            for (CompileError err : pJassResult.getErrors()) {
+                gui.sendError(err);
+            }
+            return false;
+        }
+        return true;
+    }
+
     public static Result runPjass(File outputFile) {
         return runPjass(outputFile, Utils.getResourceFile("common.j"), Utils.getResourceFile("blizzard.j"));
     }
@@ -1,9 +1,18 @@
 package de.peeeq.wurstio;
 
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import de.peeeq.wurstscript.RunArgs;
+import de.peeeq.wurstscript.WLogger;
+import de.peeeq.wurstscript.jassIm.ImProg;
 import de.peeeq.wurstscript.utils.Utils;
+import org.eclipse.jdt.annotation.Nullable;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
 import java.util.function.Supplier;
 
 /**
@@ -25,6 +34,30 @@ public interface TimeTaker {
 
     void printReport();
 
+    /**
+     * adds a count (for example the number of rewrites of an optimization pass) to the currently running phase
+     */
+    default void recordCount(String name, long count) {
+    }
+
+    /**
+     * sets the program, which is used to measure the size of the intermediate language before and after each phase
+     * and top level step, when metrics are written
+     */
+    default void setImProg(Supplier<@Nullable ImProg> imProg) {
+    }
+
+    /**
+     * creates a recording time taker, when times should be printed or metrics should be written
+     */
+    static TimeTaker create(RunArgs runArgs) {
+        String metricsFile = runArgs.getMetricsFile();
+        if (runArgs.isMeasureTimes() || metricsFile != null) {
+            return new Recording(runArgs.isMeasureTimes(), metricsFile == null ? null : new File(metricsFile));
+        }
+        return new Default();
+    }
+
 
     class Default implements TimeTaker {
 
@@ -48,63 +81,204 @@ public interface TimeTaker {
     }
 
     class Recording implements TimeTaker {
-        private int nesting = 0;
-        private String currentPhaseDescription;
-        private long currentPhaseStart;
-        private Map<String, Long> accumulatedTimes = new LinkedHashMap<>();
+        private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        private final boolean printTimes;
+        private final @Nullable File metricsFile;
+        private Supplier<@Nullable ImProg> imProg = () -> null;
+        /** the phases and measurements which are currently running, innermost first */
+        private final Deque<Run> running = new ArrayDeque<>();
+        private final Map<String, PhaseMetrics> metrics = new LinkedHashMap<>();
+        // the time spent measuring the size of the program, which is not included in the measured runs
+        private long overheadWallTime;
+        private long overheadCpuTime;
+        private long overheadAllocatedBytes;
+
+        private class Run {
+            final PhaseMetrics metrics;
+            final boolean isPhase;
+            final boolean measureSize;
+            final @Nullable PhaseMetrics.ImSize imBefore;
+            final long wallTime;
+            final long cpuTime;
+            final long allocatedBytes;
+
+            Run(PhaseMetrics metrics, boolean isPhase, boolean measureSize, PhaseMetrics.@Nullable ImSize imBefore) {
+                this.metrics = metrics;
+                this.isPhase = isPhase;
+                this.measureSize = measureSize;
+                this.imBefore = imBefore;
+                // take the timestamps last, so that measuring the program size is not included
+                this.wallTime = System.nanoTime() - overheadWallTime;
+                this.cpuTime = cpuTime() - overheadCpuTime;
+                this.allocatedBytes = allocatedBytes() - overheadAllocatedBytes;
+            }
+        }
+
+        public Recording() {
+            this(true, null);
+        }
+
+        /**
+         * @param printTimes  print the run times in {@link #printReport()}
+         * @param metricsFile write the metrics to this file in {@link #printReport()}
+         */
+        public Recording(boolean printTimes, @Nullable File metricsFile) {
+            this.printTimes = printTimes;
+            this.metricsFile = metricsFile;
+        }
 
         public <T> T measure(String name, Supplier<T> f) {
-            name = withNesting(name);
-            nesting++;
-            accumulatedTimes.putIfAbsent(name, 0L);
-            long time = System.currentTimeMillis();
-            T result = f.get();
-            long duration = System.currentTimeMillis() - time;
-            reportDuration(name, duration);
-            nesting--;
-            return result;
-        }
-
-        private String withNesting(String name) {
+            Run run = start(name, false);
+            try {
+                return f.get();
+            } finally {
+                // also stops phases which were started inside of f and not ended
+                while (!running.isEmpty()) {
+                    Run r = running.pop();
+                    stop(r);
+                    if (r == run) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        private Run start(String name, boolean isPhase) {
+            return start(name, isPhase, null);
+        }
+
+        /**
+         * @param imBefore the size of the program, if it was just measured, or null
+         */
+        private Run start(String name, boolean isPhase, PhaseMetrics.@Nullable ImSize imBefore) {
+            int nesting = running.size();
+            PhaseMetrics m = metrics.computeIfAbsent(withNesting(name, nesting), n -> new PhaseMetrics(name, nesting));
+            // measuring the size walks the whole program, so it is only done for phases and top level steps
+            boolean measureSize = isPhase || nesting == 0;
+            if (measureSize && imBefore == null) {
+                imBefore = imSize();
+            }
+            Run run = new Run(m, isPhase, measureSize, measureSize ? imBefore : null);
+            running.push(run);
+            return run;
+        }
+
+        /**
+         * @return the size of the program after the run, if it was measured
+         */
+        private PhaseMetrics.@Nullable ImSize stop(Run run) {
+            // only the time spent measuring the program size is excluded, nested runs stay included
+            long wallTime = System.nanoTime() - overheadWallTime - run.wallTime;
+            long cpuTime = cpuTime() - overheadCpuTime - run.cpuTime;
+            long allocatedBytes = allocatedBytes() - overheadAllocatedBytes - run.allocatedBytes;
+            PhaseMetrics.ImSize imAfter = run.measureSize ? imSize() : null;
+            run.metrics.addRun(wallTime, cpuTime, allocatedBytes, run.imBefore, imAfter);
+            return imAfter;
+        }
+
+        private String withNesting(String name, int nesting) {
             return Utils.repeat(' ', nesting) + name;
         }
 
-        private void reportDuration(String name, long duration) {
-            accumulatedTimes.put(name, accumulatedTimes.getOrDefault(name, 0L) + duration);
+        /**
+         * measures the size of the program, if metrics are written
+         */
+        private PhaseMetrics.@Nullable ImSize imSize() {
+            ImProg prog = imProg.get();
+            if (prog == null || metricsFile == null) {
+                return null;
+            }
+            long wallTime = System.nanoTime();
+            long cpuTime = cpuTime();
+            long allocatedBytes = allocatedBytes();
+            PhaseMetrics.ImSize size = PhaseMetrics.ImSize.of(prog);
+            overheadWallTime += System.nanoTime() - wallTime;
+            overheadCpuTime += cpuTime() - cpuTime;
+            overheadAllocatedBytes += allocatedBytes() - allocatedBytes;
+            return size;
+        }
+
+        private static long cpuTime() {
+            return threadMXBean.isCurrentThreadCpuTimeSupported() ? threadMXBean.getCurrentThreadCpuTime() : 0;
         }
 
+        private static long allocatedBytes() {
+            if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadMXBean;
+                if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+                    return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+                }
+            }
+            return 0;
+        }
 
         @Override
         public void beginPhase(String description) {
-            if (currentPhaseDescription != null) {
-                endPhase();
-            }
-            description = withNesting(description);
-            nesting++;
-            accumulatedTimes.putIfAbsent(description, 0L);
-            currentPhaseDescription = description;
-            currentPhaseStart = System.currentTimeMillis();
+            // the size after the previous phase is the size before the next one
+            start(description, true, stopPhase());
         }
 
         @Override
         public void endPhase() {
-            if (currentPhaseDescription == null) {
-                return;
+            stopPhase();
+        }
+
+        private PhaseMetrics.@Nullable ImSize stopPhase() {
+            Run run = running.peek();
+            if (run != null && run.isPhase) {
+                return stop(running.pop());
             }
-            long duration = System.currentTimeMillis() - currentPhaseStart;
-            reportDuration(currentPhaseDescription, duration);
-            nesting--;
-            currentPhaseDescription = null;
+            return null;
+        }
+
+        @Override
+        public void recordCount(String name, long count) {
+            Run run = running.peek();
+            if (run != null) {
+                run.metrics.addCount(name, count);
+            }
+        }
+
+        @Override
+        public void setImProg(Supplier<@Nullable ImProg> imProg) {
+            this.imProg = imProg;
+        }
+
+        /**
+         * the metrics of all phases in the order in which they were first started
+         */
+        public List<PhaseMetrics> getMetrics() {
+            return new ArrayList<>(metrics.values());
         }
 
         @Override
         public void printReport() {
-            System.out.println("#############################");
-            System.out.println("Run times:");
-            for (Map.Entry<String, Long> e : accumulatedTimes.entrySet()) {
-                System.out.println(e.getKey() + ": " + e.getValue() + "ms");
+            if (printTimes) {
+                System.out.println("#############################");
+                System.out.println("Run times:");
+                for (Map.Entry<String, PhaseMetrics> e : metrics.entrySet()) {
+                    System.out.println(e.getKey() + ": " + e.getValue().getWallTimeNanos() / 1_000_000 + "ms");
+                }
+            }
+            File file = metricsFile;
+            if (file != null) {
+                try {
+                    writeMetrics(file);
+                } catch (IOException e) {
+                    WLogger.severe(e);
+                }
             }
         }
 
+        /**
+         * writes the metrics as CSV, if the file name ends with .csv, and as JSON otherwise
+         */
+        public void writeMetrics(File file) throws IOException {
+            String content = file.getName().endsWith(".csv")
+                ? PhaseMetrics.toCsv(getMetrics())
+                : PhaseMetrics.toJson(getMetrics());
+            Files.asCharSink(file, Charsets.UTF_8).write(content);
+        }
+
     }
 }
@@ -3,11 +3,13 @@ package de.peeeq.wurstio;
 import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.*;
+import com.google.common.io.CharStreams;
 import com.google.common.io.Files;
 import config.WurstProjectConfigData;
 import de.peeeq.wurstio.languageserver.requests.RequestFailedException;
 import de.peeeq.wurstio.map.importer.ImportFile;
 import de.peeeq.wurstio.mpq.MpqEditor;
+import de.peeeq.wurstio.parsecache.ParseCache;
 import de.peeeq.wurstio.utils.FileReading;
 import de.peeeq.wurstio.utils.FileUtils;
 import de.peeeq.wurstscript.*;
@@ -17,10 +19,14 @@ import de.peeeq.wurstscript.attributes.CompilationUnitInfo;
 import de.peeeq.wurstscript.attributes.CompileError;
 import de.peeeq.wurstscript.attributes.ErrorHandler;
 import de.peeeq.wurstscript.gui.WurstGui;
+import de.peeeq.wurstscript.gui.WurstGuiLogger;
+import de.peeeq.wurstscript.intermediatelang.interpreter.ExecutionProfile;
 import de.peeeq.wurstscript.jassAst.JassProg;
 import de.peeeq.wurstscript.jassIm.*;
 import de.peeeq.wurstscript.jassprinter.JassPrinter;
 import de.peeeq.wurstscript.luaAst.LuaCompilationUnit;
+import de.peeeq.wurstscript.parser.IncrementalParser;
+import de.peeeq.wurstscript.parser.RopeCharStream;
 import de.peeeq.wurstscript.parser.WPos;
 import de.peeeq.wurstscript.translation.imoptimizer.ImOptimizer;
 import de.peeeq.wurstscript.translation.imtojass.ImAttrType;
@@ -29,6 +35,7 @@ import de.peeeq.wurstscript.translation.imtranslation.*;
 import de.peeeq.wurstscript.translation.lua.translation.LuaTranslator;
 import de.peeeq.wurstscript.types.TypesHelper;
 import de.peeeq.wurstscript.utils.*;
+import org.antlr.v4.runtime.CharStream;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.lsp4j.MessageType;
 import org.jetbrains.annotations.NotNull;
@@ -38,7 +45,11 @@ import java.lang.ref.WeakReference;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 import static de.peeeq.wurstio.CompiletimeFunctionRunner.FunctionFlagToRun.CompiletimeFunctions;
 
@@ -62,6 +73,8 @@ public class WurstCompilerJassImpl implements WurstCompiler {
     private List<File> dependencies = Lists.newArrayList();
     private final @Nullable MpqEditor mapFileMpq;
     private TimeTaker timeTaker;
+    private @Nullable ExecutionProfile recordedProfile;
+    private @Nullable TranslationCache translationCache;
 
     public WurstCompilerJassImpl(@Nullable File projectFolder, WurstGui gui, @Nullable MpqEditor mapFileMpq, RunArgs runArgs) {
         this(new TimeTaker.Default(), projectFolder, gui, mapFileMpq, runArgs);
@@ -76,6 +89,7 @@ public class WurstCompilerJassImpl implements WurstCompiler {
         this.parser = new WurstParser(errorHandler, gui);
         this.checker = new WurstChecker(gui, errorHandler);
         this.mapFileMpq = mapFileMpq;
+        timeTaker.setImProg(() -> imProg);
     }
 
     @Override
@@ -98,6 +112,38 @@ public class WurstCompilerJassImpl implements WurstCompiler {
         }
     }
 
+    /**
+     * sets the profile which records function calls while running compiletime functions
+     */
+    public void setRecordedProfile(@Nullable ExecutionProfile recordedProfile) {
+        this.recordedProfile = recordedProfile;
+    }
+
+    /**
+     * sets the cache from which unchanged packages are restored instead of translating them again
+     */
+    public void setTranslationCache(@Nullable TranslationCache translationCache) {
+        this.translationCache = translationCache;
+    }
+
+    /**
+     * loads the profile given with -profile, or returns null if there is none
+     */
+    private @Nullable ExecutionProfile loadProfile() {
+        String profileFile = runArgs.getProfileFile();
+        if (profileFile == null) {
+            return null;
+        }
+        try {
+            ExecutionProfile profile = ExecutionProfile.read(new File(profileFile));
+            WLogger.info("using profile " + profileFile + ": " + profile);
+            return profile;
+        } catch (IOException e) {
+            WLogger.warning("Could not read profile " + profileFile + ", inlining without profile.", e);
+            return null;
+        }
+    }
+
     @Override
     public void runCompiletime(WurstProjectConfigData projectConfigData, boolean isProd, boolean cache) {
         if (runArgs.runCompiletimeFunctions()) {
@@ -107,6 +153,8 @@ public class WurstCompilerJassImpl implements WurstCompiler {
             CompiletimeFunctionRunner ctr = new CompiletimeFunctionRunner(imTranslator, getImProg(), getMapFile(), getMapfileMpqEditor(), gui,
                     CompiletimeFunctions, projectConfigData, isProd, cache);
             ctr.setInjectObjects(runArgs.isInjectObjects());
+            ctr.setCompiledExecution(runArgs.isCompiledInterpreter());
+            ctr.setProfile(recordedProfile);
             ctr.setOutputStream(new PrintStream(System.err));
             ctr.run();
         }
@@ -232,13 +280,33 @@ public class WurstCompilerJassImpl implements WurstCompiler {
         }
 
         gui.sendProgress("Parsing Files");
-        // parse all the files:
-        List<CompilationUnit> compilationUnits = new NotNullList<>();
-
+        // start parsing all the files in parallel:
+        List<@Nullable PendingParse> pendingFiles = new ArrayList<>();
+        boolean commonJSeen = hasCommonJ;
         for (File file : files) {
+            if (file.isDirectory() || file.getName().endsWith(".w3x") || file.getName().endsWith(".w3m")) {
+                // directories are ignored and maps are processed sequentially below
+                pendingFiles.add(null);
+            } else {
+                if (file.getName().endsWith("common.j")) {
+                    commonJSeen = true;
+                }
+                pendingFiles.add(startParseFile(file, commonJSeen));
+            }
+        }
+        List<PendingParse> pendingInputs = new ArrayList<>();
+        for (Entry<String, Reader> in : otherInputs.entrySet()) {
+            pendingInputs.add(startParse(in.getKey(), in.getValue(), commonJSeen));
+        }
+
+        // collect the results in the original order:
+        List<CompilationUnit> compilationUnits = new NotNullList<>();
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            PendingParse pending = pendingFiles.get(i);
             if (file.isDirectory()) {
                 // ignore dirs
-            } else if (file.getName().endsWith(".w3x") || file.getName().endsWith(".w3m")) {
+            } else if (pending == null) {
                 CompilationUnit r = processMap(file);
                 if (r != null) {
                     compilationUnits.add(r);
@@ -247,11 +315,11 @@ public class WurstCompilerJassImpl implements WurstCompiler {
                 if (file.getName().endsWith("common.j")) {
                     hasCommonJ = true;
                 }
-                compilationUnits.add(parseFile(file));
+                compilationUnits.add(pending.get());
             }
         }
-        for (Entry<String, Reader> in : otherInputs.entrySet()) {
-            compilationUnits.add(parse(in.getKey(), in.getValue()));
+        for (PendingParse pending : pendingInputs) {
+            compilationUnits.add(pending.get());
         }
 
         try {
@@ -292,14 +360,62 @@ public class WurstCompilerJassImpl implements WurstCompiler {
     }
 
     private void addImportedLibs(List<CompilationUnit> compilationUnits) {
+        Map<File, PendingParse> prefetched = prefetchImportedLibs(compilationUnits);
         addImportedLibs(compilationUnits, file -> {
-            CompilationUnit lib = parseFile(file);
+            PendingParse pending = prefetched.remove(file);
+            CompilationUnit lib = pending != null ? pending.get() : parseFile(file);
             lib.getCuInfo().setFile(file.getAbsolutePath());
             compilationUnits.add(lib);
             return lib;
         });
     }
 
+    /**
+     * Starts parsing the lib-packages which are (transitively) imported by the given compilation units.
+     * The imports are resolved level by level and all packages of one level are parsed in parallel.
+     * <p>
+     * The results are only used by the sequential import resolution, which decides which
+     * packages are actually added to the model and in which order their errors are reported.
+     */
+    private Map<File, PendingParse> prefetchImportedLibs(List<CompilationUnit> compilationUnits) {
+        Map<File, PendingParse> result = new HashMap<>();
+        Set<String> knownPackages = new HashSet<>();
+        List<WImport> imports = new ArrayList<>();
+        for (CompilationUnit c : compilationUnits) {
+            for (WPackage p : c.getPackages()) {
+                knownPackages.add(p.getName());
+                imports.addAll(p.getImports());
+            }
+        }
+        while (!imports.isEmpty()) {
+            List<PendingParse> level = new ArrayList<>();
+            for (WImport imp : imports) {
+                if (knownPackages.contains(imp.getPackagename())) {
+                    continue;
+                }
+                File file = getLibs().get(imp.getPackagename());
+                if (file == null || result.containsKey(file)) {
+                    continue;
+                }
+                PendingParse pending = startParseFile(file, hasCommonJ);
+                result.put(file, pending);
+                level.add(pending);
+            }
+            imports = new ArrayList<>();
+            for (PendingParse pending : level) {
+                CompilationUnit lib = pending.peek();
+                if (lib == null) {
+                    continue;
+                }
+                for (WPackage p : lib.getPackages()) {
+                    knownPackages.add(p.getName());
+                    imports.addAll(p.getImports());
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * this method scans for unsatisfied imports and tries to find them in the lib-path
      */
@@ -449,6 +565,7 @@ public class WurstCompilerJassImpl implements WurstCompiler {
         // inliner
         if (runArgs.isInline()) {
             beginPhase(5, "inlining");
+            optimizer.setProfile(loadProfile());
             optimizer.doInlining();
             imTranslator2.assertProperties();
 
@@ -594,8 +711,12 @@ public class WurstCompilerJassImpl implements WurstCompiler {
     public @Nullable ImProg translateProgToIm(WurstModel root) {
         beginPhase(1, "to intermediate lang");
         // translate wurst to intermediate lang:
-        imTranslator = new ImTranslator(root, errorHandler.isUnitTestMode(), runArgs);
-        imProg = getImTranslator().translateProg();
+        ImTranslator translator = new ImTranslator(root, errorHandler.isUnitTestMode(), runArgs);
+        if (translationCache != null) {
+            translator.setTranslationCache(translationCache);
+        }
+        imTranslator = translator;
+        imProg = translator.translateProg();
         int stage = 1;
         printDebugImProg("./test-output/im " + stage++ + ".im");
         timeTaker.endPhase();
@@ -700,50 +821,122 @@ public class WurstCompilerJassImpl implements WurstCompiler {
     }
 
     // a cache for compilation units, only used for unit tests to avoid parsing standard library too many times
-    private static final Map<File, WeakReference<CompilationUnit>> fileCompilationUnitCache = new HashMap<>();
+    private static final Map<File, WeakReference<CompilationUnit>> fileCompilationUnitCache = Collections.synchronizedMap(new HashMap<>());
 
     private CompilationUnit parseFile(File file) {
+        gui.sendProgress("Parsing File " + file.getName());
+        parsedFiles.add(file);
+        return parseFile(file, parser, gui, hasCommonJ);
+    }
+
+    private CompilationUnit parseFile(File file, WurstParser parser, WurstGui gui, boolean hasCommonJ) {
         if (errorHandler.isUnitTestMode()) {
             // in unit test mode, we use a cache
             WeakReference<CompilationUnit> wr = fileCompilationUnitCache.get(file);
             CompilationUnit res = wr == null ? null : wr.get();
             if (res == null) {
-                res = parseFile2(file);
+                res = parseFile2(file, parser, gui, hasCommonJ);
                 fileCompilationUnitCache.put(file, new WeakReference<>(res));
             } else {
                 res = res.copy();
             }
             return res;
         } else {
-            return parseFile2(file);
+            return parseFile2(file, parser, gui, hasCommonJ);
         }
     }
 
-    private CompilationUnit parseFile2(File file) {
+    private CompilationUnit parseFile2(File file, WurstParser parser, WurstGui gui, boolean hasCommonJ) {
         if (file.isDirectory()) {
             throw new Error("Is a directory: " + file);
         }
-        parsedFiles.add(file);
-
-        gui.sendProgress("Parsing File " + file.getName());
         String source = file.getAbsolutePath();
         try (Reader reader = FileReading.getFileReader(file)) {
+            ParseCache cache = isDependencyFile(file) ? ParseCache.forProject(projectFolder) : null;
+            if (cache != null) {
+                return parseCached(cache, source, CharStreams.toString(reader), parser, gui, hasCommonJ);
+            }
             // scanning
-            return parse(source, reader);
+            return parse(source, reader, parser, hasCommonJ);
 
         } catch (CompileError e) {
             gui.sendError(e);
-            return emptyCompilationUnit();
+            return parser.emptyCompilationUnit();
         } catch (FileNotFoundException e) {
             gui.sendError(new CompileError(new WPos(source, LineOffsets.dummy, 0, 0), "File not found."));
-            return emptyCompilationUnit();
+            return parser.emptyCompilationUnit();
         } catch (IOException e) {
             gui.sendError(new CompileError(new WPos(source, LineOffsets.dummy, 0, 0), "Could not read file."));
-            return emptyCompilationUnit();
+            return parser.emptyCompilationUnit();
         }
     }
 
     public CompilationUnit parse(String fileName, Reader reader) {
+        return parse(fileName, reader, parser, hasCommonJ);
+    }
+
+    /**
+     * parses the given contents, a {@link Rope} is read directly without copying it
+     */
+    public CompilationUnit parse(String fileName, CharSequence contents) {
+        if (!(contents instanceof Rope)) {
+            return parse(fileName, new StringReader(contents.toString()));
+        }
+        CharStream input = new RopeCharStream((Rope) contents, fileName);
+        if (fileName.endsWith(".j")) {
+            return parser.parseJass(input, fileName, hasCommonJ);
+        }
+        if (fileName.endsWith(".jurst")) {
+            return parser.parseJurst(input, fileName, hasCommonJ);
+        }
+        return parser.parse(input, fileName, hasCommonJ);
+    }
+
+    /**
+     * updates a compilation unit, which was parsed from oldContents without errors,
+     * by parsing only the changed part of newContents
+     *
+     * @return true, if the compilation unit was updated, false if newContents must be parsed completely
+     */
+    public boolean reparse(CompilationUnit cu, Rope oldContents, Rope newContents) {
+        return new IncrementalParser(parser).reparse(cu, oldContents, newContents);
+    }
+
+    /**
+     * parses the given file contents and uses the persistent parse cache of the project, if available
+     */
+    public CompilationUnit parseWithCache(String fileName, String contents) {
+        ParseCache cache = ParseCache.forProject(projectFolder);
+        if (cache == null) {
+            return parse(fileName, new StringReader(contents));
+        }
+        return parseCached(cache, fileName, contents, parser, gui, hasCommonJ);
+    }
+
+    private CompilationUnit parseCached(ParseCache cache, String fileName, String contents, WurstParser parser, WurstGui gui, boolean hasCommonJ) {
+        CompilationUnit cu = cache.load(fileName, contents, hasCommonJ, errorHandler);
+        if (cu != null) {
+            return cu;
+        }
+        int errorCount = gui.getErrorsAndWarnings().size();
+        cu = parse(fileName, new StringReader(contents), parser, hasCommonJ);
+        if (gui.getErrorsAndWarnings().size() == errorCount) {
+            // only cache files without errors, since errors are not stored in the cache
+            cache.store(fileName, contents, hasCommonJ, cu);
+        }
+        return cu;
+    }
+
+    /**
+     * checks whether the file belongs to one of the library folders
+     */
+    private boolean isDependencyFile(File file) {
+        java.nio.file.Path path = file.getAbsoluteFile().toPath();
+        return Stream.concat(dependencies.stream(), runArgs.getAdditionalLibDirs().stream())
+                .anyMatch(dir -> path.startsWith(dir.getAbsoluteFile().toPath()));
+    }
+
+    private static CompilationUnit parse(String fileName, Reader reader, WurstParser parser, boolean hasCommonJ) {
         if (fileName.endsWith(".j")) {
             return parser.parseJass(reader, fileName, hasCommonJ);
         }
@@ -753,8 +946,70 @@ public class WurstCompilerJassImpl implements WurstCompiler {
         return parser.parse(reader, fileName, hasCommonJ);
     }
 
-    private CompilationUnit emptyCompilationUnit() {
-        return parser.emptyCompilationUnit();
+    private PendingParse startParseFile(File file, boolean hasCommonJ) {
+        return new PendingParse(file, (p, g) -> parseFile(file, p, g, hasCommonJ));
+    }
+
+    private PendingParse startParse(String fileName, Reader reader, boolean hasCommonJ) {
+        return new PendingParse(null, (p, g) -> parse(fileName, reader, p, hasCommonJ));
+    }
+
+    /**
+     * A compilation unit which is parsed in the background.
+     * <p>
+     * Each task uses its own parser and buffers its errors.
+     * The errors are only reported to the real gui when the result is requested with {@link #get()},
+     * so the order of the reported errors does not depend on the order in which the tasks finish.
+     */
+    private class PendingParse {
+        private final @Nullable File file;
+        private final WurstGui localGui = new WurstGuiLogger();
+        private final ErrorHandler localErrorHandler = new ErrorHandler(localGui);
+        private final ForkJoinTask<CompilationUnit> task;
+
+        PendingParse(@Nullable File file, BiFunction<WurstParser, WurstGui, CompilationUnit> parseFunction) {
+            this.file = file;
+            if (errorHandler.isUnitTestMode()) {
+                localErrorHandler.enableUnitTestMode();
+            }
+            WurstParser localParser = new WurstParser(localErrorHandler, localGui);
+            this.task = ForkJoinPool.commonPool().submit(() -> parseFunction.apply(localParser, localGui));
+        }
+
+        /**
+         * waits for the result without reporting any errors
+         *
+         * @return the parsed compilation unit or null if parsing failed with an exception
+         */
+        @Nullable CompilationUnit peek() {
+            task.quietlyJoin();
+            return task.isCompletedNormally() ? task.getRawResult() : null;
+        }
+
+        /**
+         * waits for the result and reports the buffered errors
+         */
+        CompilationUnit get() {
+            File f = file;
+            if (f != null) {
+                gui.sendProgress("Parsing File " + f.getName());
+                parsedFiles.add(f);
+            }
+            CompilationUnit cu = task.join();
+            for (CompileError err : localGui.getErrorsAndWarnings()) {
+                if (containsIdentical(localErrorHandler.getErrors(), err) || containsIdentical(localErrorHandler.getWarnings(), err)) {
+                    errorHandler.sendError(err);
+                } else {
+                    gui.sendError(err);
+                }
+            }
+            cu.getCuInfo().setCuErrorHandler(errorHandler);
+            return cu;
+        }
+
+        private boolean containsIdentical(List<CompileError> errors, CompileError err) {
+            return errors.stream().anyMatch(e -> e == err);
+        }
     }
 
     public @Nullable JassProg getProg() {
@@ -851,6 +1106,7 @@ public class WurstCompilerJassImpl implements WurstCompiler {
         stage = 5;
         if (runArgs.isInline()) {
             beginPhase(5, "inlining");
+            optimizer.setProfile(loadProfile());
             optimizer.doInlining();
             imTranslator2.assertProperties();
 
@@ -0,0 +1,364 @@
+package de.peeeq.wurstio.compilationserver;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import config.WurstProjectConfig;
+import config.WurstProjectConfigData;
+import de.peeeq.wurstio.Pjass;
+import de.peeeq.wurstio.TimeTaker;
+import de.peeeq.wurstio.UtilsIO;
+import de.peeeq.wurstio.WurstCompilerJassImpl;
+import de.peeeq.wurstio.languageserver.BufferManager;
+import de.peeeq.wurstio.languageserver.ModelManager;
+import de.peeeq.wurstio.languageserver.ModelManager.Changes;
+import de.peeeq.wurstio.languageserver.ModelManagerImpl;
+import de.peeeq.wurstio.languageserver.WFile;
+import de.peeeq.wurstio.map.importer.ImportFile;
+import de.peeeq.wurstio.mpq.MpqEditor;
+import de.peeeq.wurstio.mpq.MpqEditorFactory;
+import de.peeeq.wurstscript.RunArgs;
+import de.peeeq.wurstscript.WLogger;
+import de.peeeq.wurstscript.ast.CompilationUnit;
+import de.peeeq.wurstscript.ast.WurstModel;
+import de.peeeq.wurstscript.attributes.CompileError;
+import de.peeeq.wurstscript.gui.WurstGui;
+import de.peeeq.wurstscript.gui.WurstGuiLogger;
+import de.peeeq.wurstscript.jassAst.JassProg;
+import de.peeeq.wurstscript.jassprinter.JassPrinter;
+import de.peeeq.wurstscript.utils.Utils;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static de.peeeq.wurstio.languageserver.ProjectConfigBuilder.FILE_NAME;
+
+/**
+ * A project which stays loaded in the compilation server between requests.
+ *
+ * The parsed and type checked model is kept in a {@link ModelManagerImpl}.
+ * Before each compilation only the files which changed on disk since the
+ * previous request are parsed again and only the compilation units affected
+ * by these changes are type checked again. The checked model is then translated
+ * directly, without checking it again.
+ * When a dependency changes (wurst.dependencies or a file in a dependency folder),
+ * the project is built again completely.
+ * When nothing changed since the last successful compilation, the previous
+ * result is written again without translating the program.
+ */
+class CompileSession {
+
+    private final File projectRoot;
+    private final ModelManagerImpl modelManager;
+    private final BufferManager bufferManager = new BufferManager();
+    private final Map<File, FileStamp> fileStamps = new HashMap<>();
+    private final Map<File, FileStamp> dependencyStamps = new HashMap<>();
+    private boolean built = false;
+    // result of the last successful compilation, valid as long as no file changes
+    private @Nullable CompiledScript lastResult;
+
+    CompileSession(File projectRoot) {
+        this.projectRoot = projectRoot;
+        this.modelManager = new ModelManagerImpl(projectRoot, bufferManager);
+    }
+
+    /**
+     * brings the model up to date and compiles it
+     *
+     * @return true, when the compilation was successful
+     */
+    synchronized boolean compile(List<String> args, WurstGui gui) throws Exception {
+        RunArgs runArgs = new RunArgs(args);
+        update(gui);
+
+        if (modelManager.hasErrors()) {
+            for (CompileError err : modelManager.getErrors()) {
+                gui.sendError(err);
+            }
+            return false;
+        }
+
+        CompiledScript previous = lastResult;
+        if (previous != null && previous.canBeReusedFor(args, runArgs)) {
+            gui.sendProgress("No changes, reusing previous translation");
+            writeOutput(runArgs, previous.script, gui);
+            return true;
+        }
+        lastResult = null;
+
+        removeUnimportedFiles();
+        // the model manager keeps the model type checked, so it is translated without checking it again
+        WurstModel model = modelManager.getModel();
+
+        TimeTaker timeTaker = TimeTaker.create(runArgs);
+        Optional<File> mapFile = Optional.ofNullable(runArgs.getMapFile()).map(File::new);
+        try (@Nullable MpqEditor mpqEditor = MpqEditorFactory.getEditor(mapFile)) {
+            WurstCompilerJassImpl compiler = new WurstCompilerJassImpl(timeTaker, projectRoot, gui, mpqEditor, runArgs);
+            compiler.setMapFile(mapFile);
+
+            // errors found while translating are reported to this request
+            for (CompilationUnit cu : model) {
+                cu.getCuInfo().setCuErrorHandler(compiler.getErrorHandler());
+            }
+
+            gui.sendProgress("Translate program");
+            timeTaker.measure("Translate program to Im", () -> compiler.translateProgToIm(model));
+            if (gui.getErrorCount() > 0) {
+                return false;
+            }
+
+            timeTaker.measure("Run compiletime functions",
+                () -> compiler.runCompiletime(loadProjectConfig(), true, runArgs.isCompiletimeCache()));
+
+            JassProg jassProg = timeTaker.measure("Transform program to Jass", compiler::transformProgToJass);
+            if (jassProg == null || gui.getErrorCount() > 0) {
+                return false;
+            }
+
+            gui.sendProgress("Printing Jass");
+            JassPrinter printer = new JassPrinter(!runArgs.isOptimize(), jassProg);
+            String mapScript = timeTaker.measure("Print Jass", (Supplier<String>) printer::printProg);
+            File outFile = getOutputFile(runArgs);
+            Files.write(mapScript.getBytes(Charsets.UTF_8), outFile);
+
+            if (!runArgs.isDisablePjass()) {
+                gui.sendProgress("Running PJass");
+                boolean ok = timeTaker.measure("Run PJass", () -> Pjass.checkMapScript(outFile, gui));
+                if (!ok) {
+                    return false;
+                }
+            }
+
+            if (mpqEditor != null) {
+                writeToMap(mpqEditor, mapScript, gui);
+            }
+            gui.showInfoMessage("Output written to " + outFile.getAbsolutePath());
+            timeTaker.printReport();
+            lastResult = new CompiledScript(args, mapScript);
+            return true;
+        }
+    }
+
+    /**
+     * writes a script which was already checked by a previous compilation
+     */
+    private void writeOutput(RunArgs runArgs, String mapScript, WurstGui gui) throws Exception {
+        File outFile = getOutputFile(runArgs);
+        Files.write(mapScript.getBytes(Charsets.UTF_8), outFile);
+        Optional<File> mapFile = Optional.ofNullable(runArgs.getMapFile()).map(File::new);
+        try (@Nullable MpqEditor mpqEditor = MpqEditorFactory.getEditor(mapFile)) {
+            if (mpqEditor != null) {
+                writeToMap(mpqEditor, mapScript, gui);
+            }
+        }
+        gui.showInfoMessage("Output written to " + outFile.getAbsolutePath());
+    }
+
+    private void writeToMap(MpqEditor mpqEditor, String mapScript, WurstGui gui) throws Exception {
+        gui.sendProgress("Writing to map");
+        mpqEditor.deleteFile("war3map.j");
+        mpqEditor.insertFile("war3map.j", mapScript.getBytes(Charsets.UTF_8));
+        ImportFile.importFilesFromImports(projectRoot, mpqEditor);
+    }
+
+    /**
+     * drops the loaded model, so that the next request starts with a full build
+     */
+    synchronized void clean() {
+        modelManager.clean();
+        fileStamps.clear();
+        dependencyStamps.clear();
+        built = false;
+        lastResult = null;
+    }
+
+    /**
+     * re-reads all files which changed since the last request
+     */
+    private void update(WurstGui gui) throws IOException {
+        Map<File, FileStamp> current = new HashMap<>();
+        scanWurstFiles(getWurstFolder(), current);
+        Map<File, FileStamp> dependencies = scanDependencies();
+
+        if (!built || !dependencies.equals(dependencyStamps)) {
+            lastResult = null;
+            gui.sendProgress("Building project");
+            modelManager.clean();
+            modelManager.buildProject();
+        } else {
+            Changes changes = Changes.empty();
+            int changedFiles = 0;
+            for (Map.Entry<File, FileStamp> e : current.entrySet()) {
+                if (!e.getValue().equals(fileStamps.get(e.getKey()))) {
+                    WFile wFile = WFile.create(e.getKey());
+                    String contents = Files.toString(e.getKey(), Charsets.UTF_8);
+                    bufferManager.updateFile(wFile, contents);
+                    changes = changes.mergeWith(modelManager.syncCompilationUnitContent(wFile, contents));
+                    changedFiles++;
+                }
+            }
+            for (File f : fileStamps.keySet()) {
+                if (!current.containsKey(f)) {
+                    changes = changes.mergeWith(modelManager.removeCompilationUnit(WFile.create(f)));
+                    changedFiles++;
+                }
+            }
+            if (!changes.isEmpty()) {
+                lastResult = null;
+                gui.sendProgress("Checking " + changedFiles + " changed files");
+                modelManager.reconcile(changes);
+            }
+            WLogger.info("compilation server: " + changedFiles + " files changed in " + projectRoot);
+        }
+        fileStamps.clear();
+        fileStamps.putAll(current);
+        dependencyStamps.clear();
+        dependencyStamps.putAll(dependencies);
+        built = true;
+    }
+
+    /**
+     * the stamps of wurst.dependencies and of the wurst files in all dependency folders,
+     * including the ones in _build/dependencies
+     */
+    private Map<File, FileStamp> scanDependencies() {
+        Map<File, FileStamp> result = new HashMap<>();
+        File depFile = new File(projectRoot, "wurst.dependencies");
+        result.put(depFile, FileStamp.of(depFile));
+        List<File> folders = new ArrayList<>();
+        if (depFile.exists()) {
+            folders.addAll(WurstCompilerJassImpl.checkDependencyFile(depFile, new WurstGuiLogger()));
+        }
+        WurstCompilerJassImpl.addDependenciesFromFolder(projectRoot, folders);
+        for (File folder : folders) {
+            scanWurstFiles(folder, result);
+        }
+        return result;
+    }
+
+    /**
+     * removes the library compilation units which are no longer imported by a file in the project,
+     * so that they are not translated
+     */
+    private void removeUnimportedFiles() {
+        WurstModel model = modelManager.getModel();
+        Set<CompilationUnit> imported = ModelManager.importedCompilationUnits(model, this::isProjectFile);
+        Changes changes = Changes.empty();
+        for (CompilationUnit cu : new ArrayList<>(model)) {
+            if (!imported.contains(cu)) {
+                changes = changes.mergeWith(modelManager.removeCompilationUnit(WFile.create(cu.getCuInfo().getFile())));
+            }
+        }
+        if (!changes.isEmpty()) {
+            modelManager.reconcile(changes);
+        }
+    }
+
+    private boolean isProjectFile(CompilationUnit cu) {
+        String file = cu.getCuInfo().getFile();
+        return (file.startsWith(getWurstFolder().getAbsolutePath()) && Utils.isWurstFile(file)) || file.endsWith(".j");
+    }
+
+    /**
+     * the project configuration from wurst.build, which is used by compiletime functions
+     */
+    private WurstProjectConfigData loadProjectConfig() {
+        WurstProjectConfigData config = WurstProjectConfig.INSTANCE.loadProject(projectRoot.toPath().resolve(FILE_NAME));
+        if (config == null) {
+            // same as the command line compiler
+            return new WurstProjectConfigData();
+        }
+        return config;
+    }
+
+    private File getWurstFolder() {
+        File wurstFolder = new File(projectRoot, "wurst");
+        if (!wurstFolder.exists()) {
+            // same fallback as ModelManagerImpl.buildProject
+            return projectRoot;
+        }
+        return wurstFolder;
+    }
+
+    private void scanWurstFiles(File dir, Map<File, FileStamp> result) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            if (f.isDirectory()) {
+                scanWurstFiles(f, result);
+            } else if (f.getName().endsWith(".wurst") || f.getName().endsWith(".jurst") || f.getName().endsWith(".j")) {
+                result.put(f, FileStamp.of(f));
+            }
+        }
+    }
+
+    private File getOutputFile(RunArgs runArgs) {
+        String outFile = runArgs.getOutFile();
+        if (outFile != null) {
+            File f = new File(outFile);
+            File parent = f.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists()) {
+                UtilsIO.mkdirs(parent);
+            }
+            return f;
+        }
+        File buildDir = new File(projectRoot, "_build");
+        if (!buildDir.exists()) {
+            UtilsIO.mkdirs(buildDir);
+        }
+        return new File(buildDir, "compiled.j.txt");
+    }
+
+    private static final class CompiledScript {
+        private final List<String> args;
+        private final String script;
+
+        private CompiledScript(List<String> args, String script) {
+            this.args = new ArrayList<>(args);
+            this.script = script;
+        }
+
+        boolean canBeReusedFor(List<String> args, RunArgs runArgs) {
+            // compiletime functions can change the objects in the map,
+            // so they have to run again for every map
+            return this.args.equals(args) && !runArgs.isInjectObjects();
+        }
+    }
+
+    private static final class FileStamp {
+        private final long lastModified;
+        private final long length;
+
+        private FileStamp(long lastModified, long length) {
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        static FileStamp of(File f) {
+            return new FileStamp(f.lastModified(), f.length());
+        }
+
+        @Override
+        public boolean equals(@Nullable Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            FileStamp that = (FileStamp) o;
+            return lastModified == that.lastModified && length == that.length;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(lastModified, length);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package de.peeeq.wurstio.compilationserver;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import de.peeeq.wurstscript.attributes.CompileError;
+import de.peeeq.wurstscript.gui.WurstGui;
+import de.peeeq.wurstscript.parser.WPos;
+
+import java.io.PrintWriter;
+
+/**
+ * gui which streams progress and errors back to the client of the compilation server
+ *
+ * Every message is a JSON object on a single line, with the id of the request it belongs to
+ * and a "type" (progress, error, warning, info or done).
+ */
+class ServerGui extends WurstGui {
+
+    private final PrintWriter out;
+    private final JsonElement requestId;
+
+    ServerGui(PrintWriter out, JsonElement requestId) {
+        this.out = out;
+        this.requestId = requestId;
+    }
+
+    ServerGui(PrintWriter out) {
+        this(out, JsonNull.INSTANCE);
+    }
+
+    @Override
+    public void sendError(CompileError err) {
+        super.sendError(err);
+        JsonObject msg = message(err.getErrorType() == CompileError.ErrorType.ERROR ? "error" : "warning", err.getMessage());
+        WPos source = err.getSource();
+        msg.addProperty("file", source.getFile());
+        msg.addProperty("line", source.getLine());
+        msg.addProperty("column", source.getStartColumn());
+        send(msg);
+    }
+
+    @Override
+    public void sendProgress(String msg) {
+        send(message("progress", msg));
+    }
+
+    @Override
+    public void sendFinished() {
+        send(message("info", "compilation finished (errors: " + getErrorCount() + ", warnings: " + getWarningList().size() + ")"));
+    }
+
+    @Override
+    public void showInfoMessage(String message) {
+        send(message("info", message));
+    }
+
+    /**
+     * sends the final message for the request
+     */
+    void sendDone(boolean success, long timeMs) {
+        JsonObject msg = message("done", success ? "ok" : "failed");
+        msg.addProperty("success", success);
+        msg.addProperty("timeMs", timeMs);
+        send(msg);
+    }
+
+    private JsonObject message(String type, String message) {
+        JsonObject msg = new JsonObject();
+        msg.add("id", requestId);
+        msg.addProperty("type", type);
+        msg.addProperty("message", message);
+        return msg;
+    }
+
+    private void send(JsonObject msg) {
+        synchronized (out) {
+            out.println(msg.toString());
+        }
+    }
+}
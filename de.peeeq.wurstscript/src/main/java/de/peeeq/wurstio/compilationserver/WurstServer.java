@@ -1,44 +1,80 @@
 package de.peeeq.wurstio.compilationserver;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import de.peeeq.wurstio.Main;
+import de.peeeq.wurstio.languageserver.WFile;
 import de.peeeq.wurstscript.WLogger;
 import org.eclipse.jdt.annotation.Nullable;
 
 import javax.swing.*;
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 
+import static de.peeeq.wurstio.languageserver.WurstCommands.getCompileArgs;
+
+/**
+ * A resident compilation server.
+ *
+ * Clients send requests as JSON objects, one per line, and can send several requests over one connection:
+ * <pre>
+ * {"id": 1, "command": "compile", "workspaceRoot": "/path/to/project", "args": ["-opt", "-inline"]}
+ * </pre>
+ * Commands are "compile", "clean", "status" and "stop".
+ * While working, the server answers with progress, error and warning messages (see {@link ServerGui})
+ * and finishes each request with a message of type "done".
+ *
+ * Compile requests with a "workspaceRoot" use a {@link CompileSession}, which keeps the project
+ * loaded between requests, so that only changed files have to be parsed and checked again.
+ * Requests without a workspace root run the normal command line compiler with the given args.
+ * Connections are handled concurrently; requests for the same project are processed one at a time.
+ */
 public class WurstServer {
     private static final int portNumber = 27425;
 
     private volatile boolean stopped;
+    private final ExecutorService requestExecutor = Executors.newCachedThreadPool();
+    private final Map<File, CompileSession> sessions = new ConcurrentHashMap<>();
+    // Main uses global state (e.g. the logger), so requests without a session are run one at a time
+    private final Object mainLock = new Object();
     private Consumer<String> printer = System.out::println;
     private @Nullable ServerSocket serverSocket;
 
     public void start() {
-        try (ServerSocket serverSocket = new ServerSocket(portNumber, 1, InetAddress.getLoopbackAddress())) {
+        try (ServerSocket serverSocket = new ServerSocket(portNumber, 50, InetAddress.getLoopbackAddress())) {
             this.serverSocket = serverSocket;
             println("Server started.");
             while (!stopped) {
-                handleRequest(serverSocket);
-                // clean up after request
-                System.gc();
+                Socket s = serverSocket.accept();
+                requestExecutor.execute(() -> handleConnection(s));
             }
-            println("Server stopped.");
         } catch (IOException e) {
-            println("Server had a problem: " + e.getMessage());
-            WLogger.severe(e);
+            if (!stopped) {
+                println("Server had a problem: " + e.getMessage());
+                WLogger.severe(e);
+            }
         } finally {
-            System.out.println("end start #################");
+            requestExecutor.shutdown();
+            println("Server stopped.");
         }
     }
 
@@ -62,30 +98,19 @@ public class WurstServer {
         }
     }
 
-    private void handleRequest(ServerSocket sock) {
-        try (Socket s = sock.accept();
-             PrintWriter out = new PrintWriter(s.getOutputStream(), true);
+    private void handleConnection(Socket socket) {
+        try (Socket s = socket;
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8), true);
              BufferedReader in = new BufferedReader(new InputStreamReader(
-                     s.getInputStream()))) {
-            println("Server accepted compilation request");
+                     s.getInputStream(), StandardCharsets.UTF_8))) {
+            println("Server accepted connection");
             String inputLine;
-            final List<String> args = new ArrayList<>();
-            while ((inputLine = in.readLine()) != null) {
-                if (inputLine.equals("<<<<")) {
-                    break;
+            while (!stopped && (inputLine = in.readLine()) != null) {
+                if (inputLine.trim().isEmpty()) {
+                    continue;
                 }
-                args.add(inputLine);
-            }
-            println(args.toString());
-            long time = System.currentTimeMillis();
-            if (args.contains("-stopServer")) {
-                stop();
-                return;
+                handleRequest(inputLine, out);
             }
-            wurstMain(args);
-            println("Server finished compilation in " + (System.currentTimeMillis() - time) + "ms");
-
-            out.println("ok");
         } catch (SocketTimeoutException e) {
             // expected exception
         } catch (IOException e) {
@@ -94,9 +119,102 @@ public class WurstServer {
         }
     }
 
-    private void wurstMain(final List<String> args) {
+    /**
+     * handles a single request and writes the answers to out
+     */
+    public void handleRequest(String line, PrintWriter out) {
+        long time = System.currentTimeMillis();
+        JsonObject request;
+        try {
+            request = new JsonParser().parse(line).getAsJsonObject();
+        } catch (JsonParseException | IllegalStateException e) {
+            ServerGui gui = new ServerGui(out);
+            gui.showInfoMessage("Invalid request: " + e.getMessage());
+            gui.sendDone(false, 0);
+            return;
+        }
+        ServerGui gui = new ServerGui(out, request.has("id") ? request.get("id") : JsonNull.INSTANCE);
+        boolean ok;
+        try {
+            String command = request.has("command") ? request.get("command").getAsString() : "compile";
+            println("Server request: " + command);
+            switch (command) {
+                case "compile":
+                    ok = compile(request, gui);
+                    break;
+                case "clean":
+                    ok = clean(request);
+                    break;
+                case "status":
+                    gui.showInfoMessage("Loaded projects: " + sessions.keySet());
+                    ok = true;
+                    break;
+                case "stop":
+                    stop();
+                    ok = true;
+                    break;
+                default:
+                    gui.showInfoMessage("Unknown command: " + command);
+                    ok = false;
+            }
+        } catch (Throwable t) {
+            WLogger.severe(t);
+            gui.showInfoMessage("Error in server: " + t);
+            ok = false;
+        }
+        long duration = System.currentTimeMillis() - time;
+        println("Server finished request in " + duration + "ms");
+        gui.sendDone(ok, duration);
+    }
+
+    private boolean compile(JsonObject request, ServerGui gui) throws Exception {
+        List<String> args = new ArrayList<>();
+        if (request.has("args")) {
+            for (JsonElement arg : request.getAsJsonArray("args")) {
+                args.add(arg.getAsString());
+            }
+        }
+        @Nullable File root = workspaceRoot(request);
+        if (root == null) {
+            // no project to keep loaded, use the normal command line compiler
+            synchronized (mainLock) {
+                return wurstMain(args) == 0;
+            }
+        }
+        List<String> argList = new ArrayList<>(args);
+        argList.addAll(getCompileArgs(WFile.create(root)));
+        CompileSession session = sessions.computeIfAbsent(root, CompileSession::new);
+        boolean ok = session.compile(argList, gui);
+        gui.sendFinished();
+        return ok && gui.getErrorCount() == 0;
+    }
+
+    private boolean clean(JsonObject request) throws IOException {
+        @Nullable File root = workspaceRoot(request);
+        if (root == null) {
+            sessions.clear();
+        } else {
+            CompileSession session = sessions.remove(root);
+            if (session != null) {
+                session.clean();
+            }
+        }
+        return true;
+    }
+
+    private @Nullable File workspaceRoot(JsonObject request) throws IOException {
+        if (!request.has("workspaceRoot")) {
+            return null;
+        }
+        return new File(request.get("workspaceRoot").getAsString()).getAbsoluteFile().getCanonicalFile();
+    }
+
+    /**
+     * @return the exit code of the compiler
+     */
+    private int wurstMain(final List<String> args) {
         String[] array = args.toArray(new String[0]);
-        Main.main(array);
+        return Main.run(array);
     }
 
 
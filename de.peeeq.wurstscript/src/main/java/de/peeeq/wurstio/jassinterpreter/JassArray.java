@@ -1,19 +1,18 @@
 package de.peeeq.wurstio.jassinterpreter;
 
-import com.google.common.collect.Maps;
+import de.peeeq.wurstscript.intermediatelang.ArrayStorage;
 import de.peeeq.wurstscript.intermediatelang.ILconst;
 import de.peeeq.wurstscript.intermediatelang.ILconstAbstract;
 import de.peeeq.wurstscript.types.WurstType;
 
-import java.util.Map;
-
 public class JassArray extends ILconstAbstract {
 
     private String type;
-    private Map<Integer, ILconst> values = Maps.newLinkedHashMap();
+    private ArrayStorage values;
 
     public JassArray(String type) {
         this.type = type;
+        this.values = ArrayStorage.create(() -> JassInterpreter.getDefaultValue(type));
     }
 
     public WurstType getType() {
@@ -24,43 +23,38 @@ public class JassArray extends ILconstAbstract {
     @Override
     public String print() {
         StringBuilder res = new StringBuilder();
-        int i = 0;
-        while (true) {
-            ILconst v = values.get(i);
-            if (v == null) {
-                break;
-            }
-            if (res.length() > 0) {
-                res.append(", ");
+        // first the elements 0, 1, 2, ... without their index
+        int[] prefix = {0};
+        values.forEach((k, v) -> {
+            if (k == prefix[0] && v != null) {
+                if (res.length() > 0) {
+                    res.append(", ");
+                }
+                res.append(v);
+                prefix[0]++;
             }
-            res.append(v);
-            i++;
-        }
+        });
 
-        int finalI = i;
-        values.keySet().stream().sorted().filter(x -> x < 0 || x >= finalI).forEach(k -> {
-            ILconst v = values.get(k);
-            if (res.length() > 0) {
-                res.append(", ");
+        values.forEach((k, v) -> {
+            if (k < 0 || k >= prefix[0]) {
+                if (res.length() > 0) {
+                    res.append(", ");
+                }
+                res.append(k);
+                res.append(" -> ");
+                res.append(v);
             }
-            res.append(k);
-            res.append(" -> ");
-            res.append(v);
         });
 
         return "[" + res + "]";
     }
 
     public void set(int key, ILconst value) {
-        values.put(key, value);
+        values = values.set(key, value);
     }
 
     public ILconst get(int key) {
-        if (values.containsKey(key)) {
-            return values.get(key);
-        } else {
-            return JassInterpreter.getDefaultValue(type);
-        }
+        return values.get(key);
     }
 
     @Override
@@ -26,6 +26,7 @@ public class JassInterpreter implements AbstractInterpreter {
     private boolean trace = false;
     private Map<String, ExecutableJassFunction> functionCache = new HashMap<>();
     private final TimerMockHandler timerMockHandler = new TimerMockHandler();
+    private @Nullable ReflectionNativeProvider nativeProvider;
 
     public void loadProgram(JassProg prog) {
         this.prog = prog;
@@ -48,7 +49,7 @@ public class JassInterpreter implements AbstractInterpreter {
     public static ILconst getDefaultValue(String type) {
         switch (type) {
             case "integer":
-                return new ILconstInt(0);
+                return ILconstInt.create(0);
             case "boolean":
                 return ILconstBool.FALSE;
             case "real":
@@ -461,7 +462,11 @@ public class JassInterpreter implements AbstractInterpreter {
         if (name.equals("ExecuteFunc")) {
             return executeFuncNative();
         }
-        ReflectionNativeProvider nf = new ReflectionNativeProvider(this);
+        ReflectionNativeProvider nf = nativeProvider;
+        if (nf == null) {
+            nf = new ReflectionNativeProvider(this);
+            nativeProvider = nf;
+        }
         ExecutableJassFunction functionPair = nf.getFunctionPair(name);
         return functionPair != null ? functionPair : new UnknownJassFunction(name);
     }
@@ -0,0 +1,126 @@
+package de.peeeq.wurstio.jassinterpreter;
+
+import de.peeeq.wurstscript.intermediatelang.ILconst;
+import de.peeeq.wurstscript.intermediatelang.ILconstNull;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Calls a Java method implementing a native function.
+ *
+ * Instead of using reflection for every call, the method is converted to a method handle
+ * taking the provider and an argument array. Method handles are created on first use and
+ * shared between all providers of the same class.
+ */
+public class NativeInvoker {
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+    private static final Map<Method, MethodHandle> handles = new ConcurrentHashMap<>();
+
+    private final Object provider;
+    private final Method method;
+    private final Class<?>[] parameterTypes;
+    private MethodHandle handle;
+
+    public NativeInvoker(Object provider, Method method) {
+        this.provider = provider;
+        this.method = method;
+        this.parameterTypes = method.getParameterTypes();
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public Object getProvider() {
+        return provider;
+    }
+
+    public int getParameterCount() {
+        return parameterTypes.length;
+    }
+
+    /**
+     * checks whether the arguments have the types expected by the method
+     */
+    public boolean accepts(ILconst[] args) {
+        if (args.length != parameterTypes.length) {
+            return false;
+        }
+        for (int i = 0; i < args.length; i++) {
+            if (!parameterTypes[i].isInstance(args[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * checks the types of the arguments and passes null values as Java null to the method
+     *
+     * @return the adapted arguments, a copy if some argument had to be changed
+     */
+    public Object[] adaptArguments(String funcname, ILconst[] args) {
+        if (args.length != parameterTypes.length) {
+            throw new Error("The native <" + funcname + "> expects " + parameterTypes.length + " parameters, but got " + args.length + ".");
+        }
+        Object[] res = args;
+        for (int i = 0; i < args.length; i++) {
+            if (!parameterTypes[i].isInstance(args[i])) {
+                if (args[i] instanceof ILconstNull) {
+                    // handle null as a special case and pass it to the native as a Java null
+                    if (res == args) {
+                        res = args.clone();
+                    }
+                    res[i] = null;
+                    continue;
+                }
+                throw new Error("The native <" + funcname + "> expects different parameter " + i + "!" +
+                    "\n\tExpected: " + parameterTypes[i].getSimpleName() + " Actual: " + args[i]);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * calls the method with arguments of the correct types
+     */
+    public ILconst invoke(Object[] args) {
+        MethodHandle h = handle;
+        if (h == null) {
+            h = handles.computeIfAbsent(method, NativeInvoker::createHandle);
+            handle = h;
+        }
+        try {
+            return (ILconst) (Object) h.invokeExact(provider, args);
+        } catch (Error | InterpreterException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new Error(e);
+        }
+    }
+
+    private static MethodHandle createHandle(Method method) {
+        MethodHandle h;
+        try {
+            h = MethodHandles.publicLookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            method.setAccessible(true);
+            try {
+                h = MethodHandles.lookup().unreflect(method);
+            } catch (IllegalAccessException e2) {
+                throw new Error(e2);
+            }
+        }
+        if (Modifier.isStatic(method.getModifiers())) {
+            h = MethodHandles.dropArguments(h, 0, Object.class);
+        }
+        return h.asSpreader(Object[].class, method.getParameterCount())
+            .asType(INVOKER_TYPE);
+    }
+}
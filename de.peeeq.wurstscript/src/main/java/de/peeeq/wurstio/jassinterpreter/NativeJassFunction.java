@@ -1,48 +1,35 @@
 package de.peeeq.wurstio.jassinterpreter;
 
 import de.peeeq.wurstscript.intermediatelang.ILconst;
-import de.peeeq.wurstscript.intermediatelang.ILconstNull;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
 public class NativeJassFunction implements ExecutableJassFunction {
 
-    private Method method;
-    private Object provider;
+    private final NativeInvoker invoker;
 
     public NativeJassFunction(Object provider, Method method) {
-        this.provider = provider;
-        this.method = method;
+        this.invoker = new NativeInvoker(provider, method);
     }
 
     @Override
     public ILconst execute(JassInterpreter jassInterpreter, ILconst[] arguments) {
         try {
-            for (int i = 0; i < arguments.length; i++) {
-                if (arguments[i] instanceof ILconstNull
-                        && !method.getParameterTypes()[i].isAssignableFrom(arguments[i].getClass())) {
-                    arguments[i] = null;
-                }
-            }
-            Object result = method.invoke(provider, (Object[]) arguments);
-            return (ILconst) result;
-        } catch (IllegalArgumentException | IllegalAccessException e) {
+            return invoker.invoke(invoker.adaptArguments(invoker.getMethod().getName(), arguments));
+        } catch (InterpreterException e) {
             throw new Error(e);
-        } catch (InvocationTargetException e) {
-            if (e.getCause() instanceof Error) {
-                throw (Error) e.getCause();
-            } else {
-                throw new Error(e.getCause());
-            }
         }
     }
 
+    public NativeInvoker getInvoker() {
+        return invoker;
+    }
+
     public Method getMethod() {
-        return method;
+        return invoker.getMethod();
     }
 
     public Object getProvider() {
-        return provider;
+        return invoker.getProvider();
     }
 }
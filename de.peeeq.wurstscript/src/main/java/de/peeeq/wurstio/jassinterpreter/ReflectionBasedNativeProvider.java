@@ -1,66 +1,66 @@
 package de.peeeq.wurstio.jassinterpreter;
 
-import de.peeeq.wurstscript.WLogger;
 import de.peeeq.wurstscript.intermediatelang.ILconst;
+import de.peeeq.wurstscript.intermediatelang.interpreter.NativeFunction;
 import de.peeeq.wurstscript.intermediatelang.interpreter.NativesProvider;
 import de.peeeq.wurstscript.intermediatelang.interpreter.NoSuchNativeException;
+import org.eclipse.jdt.annotation.Nullable;
 
 import java.io.PrintStream;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.Arrays;
+import java.util.*;
 import java.util.stream.Collectors;
 
 public abstract class ReflectionBasedNativeProvider implements NativesProvider {
 
     protected PrintStream outStream = System.err;
+    /** the public methods of this provider grouped by name, computed on first use */
+    private @Nullable Map<String, List<NativeInvoker>> methodsByName;
 
     @Override
     public ILconst invoke(String funcname, ILconst[] args) throws NoSuchNativeException {
-        Method candidate = null;
-        nextMethod:
-        for (Method method : this.getClass().getMethods()) {
-            if (method.getName().equals(funcname)) {
-                // this is a candidate as it has the correct name
-                candidate = method;
-                Object r;
-                try {
-                    if (args.length != method.getParameterTypes().length) {
-                        continue;
-                    }
-                    int i = 0;
-                    for (Class<?> paramType : method.getParameterTypes()) {
-                        if (!paramType.isAssignableFrom(args[i].getClass())) {
-                            continue nextMethod;
-                        }
-                        i++;
-                    }
-                    r = method.invoke(this, (Object[]) args);
-                } catch (IllegalAccessException | IllegalArgumentException e) {
-                    WLogger.severe(e);
-                    throw new Error(e);
-                } catch (InvocationTargetException e) {
-                    if (e.getCause() instanceof InterpreterException) {
-                        throw (InterpreterException) e.getCause();
-                    } if (e.getCause() instanceof Error) {
-                        throw (Error) e.getCause();
-                    }
-                    throw new Error(e.getCause());
-                }
-                return (ILconst) r;
+        return invoke(funcname, getMethodsByName().getOrDefault(funcname, Collections.emptyList()), args);
+    }
+
+    @Override
+    public @Nullable NativeFunction link(String funcname) {
+        List<NativeInvoker> candidates = getMethodsByName().get(funcname);
+        if (candidates == null) {
+            return null;
+        }
+        return args -> invoke(funcname, candidates, args);
+    }
+
+    private ILconst invoke(String funcname, List<NativeInvoker> candidates, ILconst[] args) throws NoSuchNativeException {
+        for (NativeInvoker invoker : candidates) {
+            if (invoker.accepts(args)) {
+                return invoker.invoke(args);
             }
         }
         String msg = "Calling method " + funcname + "(" +
                 Arrays.stream(args).map(Object::toString).collect(Collectors.joining(", ")) + ")";
         msg += "\nwith types " + funcname + "(" +
             Arrays.stream(args).map(o -> o.getClass().getSimpleName()).collect(Collectors.joining(", ")) + ")";
-        if (candidate != null) {
+        if (!candidates.isEmpty()) {
+            Method candidate = candidates.get(candidates.size() - 1).getMethod();
             msg += "\nDid you mean " + funcname + "(" +
                     Arrays.stream(candidate.getParameterTypes()).map(Class::getSimpleName).collect(Collectors.joining(", ")) + ")?";
         }
         throw new NoSuchNativeException(msg);
     }
 
+    private Map<String, List<NativeInvoker>> getMethodsByName() {
+        Map<String, List<NativeInvoker>> res = methodsByName;
+        if (res == null) {
+            res = new HashMap<>();
+            for (Method method : this.getClass().getMethods()) {
+                res.computeIfAbsent(method.getName(), n -> new ArrayList<>()).add(new NativeInvoker(this, method));
+            }
+            methodsByName = res;
+        }
+        return res;
+    }
+
     @Override
     public void setOutStream(PrintStream outStream) {
         this.outStream = outStream;
@@ -3,19 +3,30 @@ package de.peeeq.wurstio.jassinterpreter;
 import de.peeeq.wurstio.jassinterpreter.providers.*;
 import de.peeeq.wurstscript.WLogger;
 import de.peeeq.wurstscript.intermediatelang.ILconst;
-import de.peeeq.wurstscript.intermediatelang.ILconstNull;
 import de.peeeq.wurstscript.intermediatelang.interpreter.AbstractInterpreter;
+import de.peeeq.wurstscript.intermediatelang.interpreter.NativeFunction;
 import de.peeeq.wurstscript.intermediatelang.interpreter.NativesProvider;
 import de.peeeq.wurstscript.intermediatelang.interpreter.NoSuchNativeException;
 import de.peeeq.wurstscript.utils.Utils;
+import org.eclipse.jdt.annotation.Nullable;
 
 import java.io.PrintStream;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Provides the natives implemented by the classes in the providers package.
+ *
+ * The implementations are collected once when the provider is created. Each native gets an integer id,
+ * which can be resolved in advance with {@link #getNativeId(String)} to call the native without a name lookup.
+ */
 public class ReflectionNativeProvider implements NativesProvider {
-    private HashMap<String, NativeJassFunction> methodMap = new HashMap<>();
+    private final Map<String, Integer> nativeIds = new HashMap<>();
+    private final List<String> nativeNames = new ArrayList<>();
+    private final List<NativeJassFunction> natives = new ArrayList<>();
 
     public ReflectionNativeProvider(AbstractInterpreter interpreter) {
         addProvider(new GamecacheProvider(interpreter));
@@ -47,8 +58,17 @@ public class ReflectionNativeProvider implements NativesProvider {
         addProvider(new QuestItemProvider(interpreter));
     }
 
-    public NativeJassFunction getFunctionPair(String funcName) {
-        return methodMap.get(funcName);
+    public @Nullable NativeJassFunction getFunctionPair(String funcName) {
+        int id = getNativeId(funcName);
+        return id < 0 ? null : natives.get(id);
+    }
+
+    /**
+     * returns the id of the native with the given name or -1 if there is no such native
+     */
+    public int getNativeId(String funcName) {
+        Integer id = nativeIds.get(funcName);
+        return id == null ? -1 : id;
     }
 
     private void addProvider(Provider provider) {
@@ -57,53 +77,57 @@ public class ReflectionNativeProvider implements NativesProvider {
             if (annotation != null) {
                 String[] funcNames = annotation.funcNames();
                 for (String funcName : funcNames) {
-                    if (methodMap.containsKey(funcName)) {
+                    if (nativeIds.containsKey(funcName)) {
                         throw new Error("Trying to add multiple implementations of <" + funcName + ">");
                     }
-                    methodMap.put(funcName, new NativeJassFunction(provider, method));
+                    addNative(funcName, new NativeJassFunction(provider, method));
                 }
             } else {
-                methodMap.put(method.getName(), new NativeJassFunction(provider, method));
+                addNative(method.getName(), new NativeJassFunction(provider, method));
             }
         }
     }
 
+    private void addNative(String funcName, NativeJassFunction f) {
+        Integer id = nativeIds.get(funcName);
+        if (id == null) {
+            nativeIds.put(funcName, natives.size());
+            nativeNames.add(funcName);
+            natives.add(f);
+        } else {
+            natives.set(id, f);
+        }
+    }
+
     @Override
     public ILconst invoke(String funcname, ILconst[] args) throws NoSuchNativeException {
-        String msg = "Calling method " + funcname + "(" +
-            Utils.printSep(", ", args) + ")";
-        WLogger.trace(msg);
-
-        NativeJassFunction candidate = methodMap.get(funcname);
-        if (candidate == null) {
+        int id = getNativeId(funcname);
+        if (id < 0) {
             throw new NoSuchNativeException("");
         }
+        return invoke(id, args);
+    }
 
-        if (candidate.getMethod().getParameterCount() == args.length) {
-            String[] parameterTypes = new String[args.length];
-            for (int i = 0; i < args.length; i++) {
-                parameterTypes[i] = "" + args[i];
-                if (!candidate.getMethod().getParameterTypes()[i].isAssignableFrom(args[i].getClass())) {
-                    if (args[i] instanceof ILconstNull) {
-                        // handle null as a special case and pass it to the native as a Java null
-                        args[i] = null;
-                        continue;
-                    }
-                    throw new Error("The native <" + funcname + "> expects different parameter " + i + "!" +
-                            "\n\tExpected: " + candidate.getMethod().getParameterTypes()[i].getSimpleName() + " Actual: " + parameterTypes[i]);
-                }
-            }
+    @Override
+    public @Nullable NativeFunction link(String funcname) {
+        int id = getNativeId(funcname);
+        if (id < 0) {
+            return null;
         }
-        try {
-            return (ILconst) candidate.getMethod().invoke(candidate.getProvider(), (Object[]) args);
-        } catch (IllegalAccessException | InvocationTargetException e) {
-            if (e.getCause() instanceof Error) {
-                throw (Error) e.getCause();
-            } else if (e.getCause() instanceof InterpreterException) {
-                throw (InterpreterException) e.getCause();
-            }
-            throw new Error(e.getCause());
+        return args -> invoke(id, args);
+    }
+
+    /**
+     * calls the native with the given id, as returned by {@link #getNativeId(String)}
+     */
+    public ILconst invoke(int nativeId, ILconst[] args) {
+        String funcname = nativeNames.get(nativeId);
+        if (WLogger.isTraceEnabled()) {
+            WLogger.trace("Calling method " + funcname + "(" +
+                Utils.printSep(", ", args) + ")");
         }
+        NativeInvoker invoker = natives.get(nativeId).getInvoker();
+        return invoker.invoke(invoker.adaptArguments(funcname, args));
     }
 
     @Override
@@ -54,11 +54,11 @@ public class MathProvider extends Provider {
     }
 
     public ILconstInt GetRandomInt(ILconstInt a, ILconstInt b) {
-        return new ILconstInt(a.getVal() + r.nextInt(1 + b.getVal() - a.getVal()));
+        return ILconstInt.create(a.getVal() + r.nextInt(1 + b.getVal() - a.getVal()));
     }
 
     public ILconstInt ModuloInteger(ILconstInt a, ILconstInt b) {
-        return new ILconstInt(a.getVal() % b.getVal());
+        return ILconstInt.create(a.getVal() % b.getVal());
     }
 
     public ILconstReal ModuloReal(ILconstReal a, ILconstReal b) {
@@ -25,12 +25,12 @@ public class PlayerProvider extends Provider {
 
     public ILconstInt GetPlayerNeutralPassive() {
         // fake value
-        return new ILconstInt(31);
+        return ILconstInt.create(31);
     }
 
     public ILconstInt GetPlayerNeutralAggressive() {
         // fake value
-        return new ILconstInt(30);
+        return ILconstInt.create(30);
     }
 
 
@@ -39,11 +39,11 @@ public class PlayerProvider extends Provider {
     }
 
     public ILconstInt GetBJMaxPlayerSlots() {
-        return new ILconstInt(28);
+        return ILconstInt.create(28);
     }
 
     public ILconstInt GetBJMaxPlayers() {
-        return new ILconstInt(24);
+        return ILconstInt.create(24);
     }
 
     public void SetPlayerColor(IlConstHandle player, IlConstHandle playercolor) {
@@ -33,9 +33,9 @@ public class StringProvider extends Provider {
         Matcher matcher = pattern.matcher(str);
         if (matcher.matches()) {
             str = matcher.group(1);
-            return new ILconstInt(Integer.parseInt(str));
+            return ILconstInt.create(Integer.parseInt(str));
         } else {
-            return new ILconstInt(0);
+            return ILconstInt.create(0);
         }
     }
 
@@ -68,7 +68,7 @@ public class StringProvider extends Provider {
     }
 
     public ILconstInt R2I(ILconstReal i) {
-        return new ILconstInt((int) i.getVal());
+        return ILconstInt.create((int) i.getVal());
     }
 
     public ILconstReal I2R(ILconstInt i) {
@@ -78,18 +78,18 @@ public class StringProvider extends Provider {
 
     public ILconstInt StringHash(ILconstString s) {
         if (s == null) {
-            return new ILconstInt(0);
+            return ILconstInt.create(0);
         }
         try {
-            return new ILconstInt(StringHash.hash(s.getVal()));
+            return ILconstInt.create(StringHash.hash(s.getVal()));
         } catch (UnsupportedEncodingException e) {
             WLogger.severe(e);
         }
-        return new ILconstInt(0);
+        return ILconstInt.create(0);
     }
 
     public ILconstInt StringLength(ILconstString string) {
-        return new ILconstInt(string.getVal().length());
+        return ILconstInt.create(string.getVal().length());
     }
 
     public ILconstString SubString(ILconstString istr, ILconstInt start, ILconstInt end) {
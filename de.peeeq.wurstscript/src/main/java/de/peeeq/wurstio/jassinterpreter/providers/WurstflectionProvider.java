@@ -31,15 +31,15 @@ public class WurstflectionProvider extends Provider {
     }
 
     public ILconstInt maxTypeId() {
-        return new ILconstInt(calculateMaxTypeId(interpreter.getImProg()));
+        return ILconstInt.create(calculateMaxTypeId(interpreter.getImProg()));
     }
 
     public ILconstInt instanceCount(ILconstInt typeId) {
-        return new ILconstInt(interpreter.getInstanceCount(typeId.getVal()));
+        return ILconstInt.create(interpreter.getInstanceCount(typeId.getVal()));
     }
 
     public ILconstInt maxInstanceCount(ILconstInt typeId) {
-        return new ILconstInt(interpreter.getMaxInstanceCount(typeId.getVal()));
+        return ILconstInt.create(interpreter.getMaxInstanceCount(typeId.getVal()));
     }
 
 
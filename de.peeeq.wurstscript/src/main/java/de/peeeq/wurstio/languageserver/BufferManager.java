@@ -2,6 +2,7 @@ package de.peeeq.wurstio.languageserver;
 
 import com.google.common.io.Files;
 import de.peeeq.wurstscript.WLogger;
+import de.peeeq.wurstscript.utils.Rope;
 import org.eclipse.lsp4j.*;
 
 import java.io.File;
@@ -12,27 +13,34 @@ import java.util.HashMap;
 import java.util.Map;
 
 /**
+ * Keeps the contents of the documents opened in the editor.
  *
+ * The contents are stored as {@link Rope}s, so edits are applied in O(log n)
+ * and every version of a document is an immutable snapshot, which can be parsed without copying it.
  */
 public class BufferManager {
-    private Map<WFile, StringBuilder> currentBuffer = new HashMap<>();
+    private Map<WFile, Rope> currentBuffer = new HashMap<>();
     private Map<WFile, Integer> latestVersion = new HashMap<>();
 
-    public synchronized String getBuffer(TextDocumentIdentifier textDocument) {
+    public String getBuffer(TextDocumentIdentifier textDocument) {
         WFile uri = WFile.create(textDocument.getUri());
         return getBuffer(uri);
     }
 
     public String getBuffer(WFile uri) {
-        StringBuilder sb = currentBuffer.get(uri);
-        if (sb == null) {
-            return readFileFromDisk(uri);
-        }
-        return sb.toString();
+        // the string is cached in the snapshot, so it is only created once per version
+        return getSnapshot(uri).toString();
     }
 
-    private StringBuilder buffer(WFile uri) {
-        return currentBuffer.computeIfAbsent(uri, k -> new StringBuilder());
+    /**
+     * the current contents of the document, which will not change when the document is edited
+     */
+    public synchronized Rope getSnapshot(WFile uri) {
+        Rope r = currentBuffer.get(uri);
+        if (r == null) {
+            return readFileFromDisk(uri);
+        }
+        return r;
     }
 
     synchronized void handleFileChange(FileEvent fileEvent) {
@@ -47,19 +55,19 @@ public class BufferManager {
         }
     }
 
-    private String readFileFromDisk(WFile uri) {
+    private Rope readFileFromDisk(WFile uri) {
         try {
             File file;
             try {
                 file = uri.getFile();
             } catch (FileNotFoundException e) {
                 WLogger.info("URI " + uri + " cannot be opened by Wurst: " + e);
-                return "";
+                return Rope.EMPTY;
             }
             String str = Files.toString(file, StandardCharsets.UTF_8);
-            StringBuilder sb = buffer(uri);
-            sb.replace(0, sb.length(), str);
-            return sb.toString();
+            Rope r = Rope.of(str);
+            currentBuffer.put(uri, r);
+            return r;
         } catch (IOException e) {
             WLogger.severe("Could not read file " + uri);
             WLogger.severe(e);
@@ -67,6 +75,13 @@ public class BufferManager {
         }
     }
 
+    synchronized void handleOpen(DidOpenTextDocumentParams params) {
+        TextDocumentItem doc = params.getTextDocument();
+        WFile uri = WFile.create(doc.getUri());
+        latestVersion.put(uri, doc.getVersion());
+        currentBuffer.put(uri, Rope.of(doc.getText()));
+    }
+
     synchronized void handleChange(DidChangeTextDocumentParams params) {
         WFile uri = WFile.create(params.getTextDocument().getUri());
         int version = params.getTextDocument().getVersion();
@@ -76,38 +91,30 @@ public class BufferManager {
         }
         latestVersion.put(uri, version);
 
-        StringBuilder sb = buffer(uri);
+        Rope r = getSnapshot(uri);
         for (TextDocumentContentChangeEvent contentChange : params.getContentChanges()) {
-            if (contentChange.getRange() == null) {
+            Range range = contentChange.getRange();
+            if (range == null) {
                 // replace whole buffer
-                sb.replace(0, sb.length(), contentChange.getText());
+                r = Rope.of(contentChange.getText());
             } else {
-                int start = getOffset(sb, contentChange.getRange().getStart());
-                int end = getOffset(sb, contentChange.getRange().getEnd());
-                sb.replace(start, end - start, contentChange.getText());
+                int start = getOffset(r, range.getStart());
+                int end = getOffset(r, range.getEnd());
+                r = r.replace(start, Math.max(start, end), contentChange.getText());
             }
         }
+        currentBuffer.put(uri, r);
     }
 
     public synchronized int getTextDocumentVersion(WFile uri) {
         return latestVersion.getOrDefault(uri, -1);
     }
 
-    private int getOffset(StringBuilder sb, Position position) {
-        int pos = 0;
-        int line = 1;
-        while (pos < sb.length() && line < position.getLine()) {
-            if (sb.charAt(pos) == '\n') {
-                line++;
-            }
-            pos++;
-        }
-        pos += position.getCharacter();
-        return Math.min(pos, sb.length() - 1);
+    private int getOffset(Rope r, Position position) {
+        return r.getOffset(position.getLine(), position.getCharacter());
     }
 
     synchronized public void updateFile(WFile wFile, String contents) {
-        StringBuilder sb = buffer(wFile);
-        sb.replace(0, sb.length(), contents);
+        currentBuffer.put(wFile, Rope.of(contents));
     }
 }
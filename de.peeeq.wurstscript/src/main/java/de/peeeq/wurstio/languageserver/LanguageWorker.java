@@ -4,13 +4,18 @@ import de.peeeq.wurstio.languageserver.requests.HoverInfo;
 import de.peeeq.wurstio.languageserver.requests.UserRequest;
 import de.peeeq.wurstscript.WLogger;
 import de.peeeq.wurstscript.utils.Utils;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.lsp4j.*;
 import org.eclipse.lsp4j.services.LanguageClient;
 
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
 
 /**
  *
@@ -20,10 +25,17 @@ public class LanguageWorker implements Runnable {
     private static class Workitem {
         private String description;
         private Runnable runnable;
+        // read-only work does its own locking, all other work changes the model and needs the write lock
+        private boolean readOnly;
 
         public Workitem(String description, Runnable runnable) {
+            this(description, runnable, false);
+        }
+
+        public Workitem(String description, Runnable runnable, boolean readOnly) {
             this.description = description;
             this.runnable = runnable;
+            this.readOnly = readOnly;
         }
 
         void run() {
@@ -38,7 +50,7 @@ public class LanguageWorker implements Runnable {
 
     private final Map<WFile, PendingChange> changes = new LinkedHashMap<>();
     private final AtomicLong currentTime = new AtomicLong();
-    private final Queue<UserRequest<?>> userRequests = new LinkedList<>();
+    private final Deque<UserRequest<?>> userRequests = new LinkedList<>();
     private final Thread thread;
     public final Duration reconcileWaitTime;
 
@@ -58,6 +70,19 @@ public class LanguageWorker implements Runnable {
         }
     });
     private final BufferManager bufferManager = new BufferManager();
+
+    // Read-only requests run on this executor, while all changes to the model are done by the worker thread.
+    // The model is only changed while holding the write lock, read-only requests hold the read lock.
+    // Attributes are cached in the AST without synchronization, so read-only requests are run one at a time.
+    // When the worker thread needs the write lock, the running read-only request is preempted and run again later,
+    // so that changes to the model do not wait for slow requests.
+    private final StampedLock modelLock = new StampedLock();
+    private final ExecutorService readOnlyExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "read-only request");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile @Nullable UserRequest<?> runningReadOnly;
     private LanguageClient languageClient;
 
     public LanguageWorker() {
@@ -126,14 +151,14 @@ public class LanguageWorker implements Runnable {
 
     class FileReconcile extends PendingChange {
 
-        private String contents;
+        private CharSequence contents;
 
-        public FileReconcile(WFile filename, String contents) {
+        public FileReconcile(WFile filename, CharSequence contents) {
             super(filename);
             this.contents = contents;
         }
 
-        public String getContents() {
+        public CharSequence getContents() {
             return contents;
         }
 
@@ -159,7 +184,16 @@ public class LanguageWorker implements Runnable {
                     // actual work is not synchronized, so that requests can
                     // come in while the work is done
                     try {
-                        work.run();
+                        if (work.readOnly) {
+                            work.run();
+                        } else {
+                            long stamp = writeLock();
+                            try {
+                                work.run();
+                            } finally {
+                                modelLock.unlockWrite(stamp);
+                            }
+                        }
                     } catch (Throwable e) {
                         languageClient.showMessage(new MessageParams(MessageType.Error, "Request '" + work + "' could not be processed (see log for details): " + e.toString()));
                         WLogger.severe(e);
@@ -184,32 +218,15 @@ public class LanguageWorker implements Runnable {
             }
         } else if (!userRequests.isEmpty()) {
             UserRequest<?> req = userRequests.remove();
+            if (req.isReadOnly()) {
+                return new Workitem(req.toString(), () -> startReadOnly(req), true);
+            }
             return new Workitem(req.toString(), () -> req.run(modelManager));
         } else if (!changes.isEmpty()) {
-            // TODO this can be done more efficiently than doing one at a time
-            PendingChange change = removeFirst(changes);
-            return new Workitem(change.toString(), () -> {
-                ModelManager.Changes affected = null;
-                if (isWurstDependencyFile(change)) {
-                    if (!(change instanceof FileReconcile)) {
-                        modelManager.clean();
-                    }
-                } else if (change instanceof FileDeleted) {
-                    affected = modelManager.removeCompilationUnit(change.getFilename());
-                } else if (change instanceof FileUpdated) {
-                    affected = modelManager.syncCompilationUnit(change.getFilename());
-                } else if (change instanceof FileReconcile) {
-                    FileReconcile fr = (FileReconcile) change;
-                    affected = modelManager.syncCompilationUnitContent(fr.getFilename(), fr.getContents());
-                } else {
-                    WLogger.info("unhandled change request: " + change);
-                }
-
-                if (affected != null) {
-                    changesToReconcile = changesToReconcile.mergeWith(affected);
-                    packagesToReconcileTimer.start(reconcileWaitTime);
-                }
-            });
+            // all pending changes are handled together, so that affected packages are only checked once
+            List<PendingChange> pending = new ArrayList<>(changes.values());
+            changes.clear();
+            return new Workitem("sync " + pending, () -> syncChanges(pending));
         } else if (!changesToReconcile.isEmpty() && packagesToReconcileTimer.isReady()) {
             packagesToReconcileTimer.stop();
             ModelManager.Changes changes = changesToReconcile;
@@ -222,15 +239,96 @@ public class LanguageWorker implements Runnable {
         return null;
     }
 
+    /**
+     * acquires the write lock and preempts the running read-only request, if it holds the read lock
+     */
+    private long writeLock() {
+        long stamp = modelLock.tryWriteLock();
+        if (stamp == 0) {
+            UserRequest<?> req = runningReadOnly;
+            if (req != null) {
+                req.preempt();
+            }
+            stamp = modelLock.writeLock();
+        }
+        return stamp;
+    }
+
+    private boolean isSynced(UserRequest<?> req) {
+        return req.getBuffers().entrySet().stream()
+            .allMatch(e -> modelManager.isSynced(e.getKey(), e.getValue()));
+    }
+
+    /**
+     * syncs the buffers of a read-only request with the model and starts executing it on the read-only executor
+     */
+    private void startReadOnly(UserRequest<?> req) {
+        if (!isSynced(req)) {
+            long stamp = writeLock();
+            try {
+                req.getBuffers().forEach((file, buffer) -> modelManager.replaceCompilationUnitContent(file, buffer, false));
+            } finally {
+                modelLock.unlockWrite(stamp);
+            }
+        }
+        readOnlyExecutor.execute(() -> runReadOnly(req));
+    }
+
+    /**
+     * runs a read-only request on the read-only executor.
+     * When the request was preempted or its buffers were changed after syncing them,
+     * it is put back in front of the queue, so that the worker thread syncs it again.
+     */
+    private void runReadOnly(UserRequest<?> req) {
+        // set before acquiring the lock, so that a waiting writer can preempt the request
+        runningReadOnly = req;
+        long stamp = modelLock.readLock();
+        boolean done;
+        try {
+            done = isSynced(req) && req.runInterruptible(modelManager);
+        } finally {
+            runningReadOnly = null;
+            modelLock.unlockRead(stamp);
+        }
+        if (!done) {
+            synchronized (lock) {
+                userRequests.addFirst(req);
+                lock.notifyAll();
+            }
+        }
+    }
+
     private boolean isWurstDependencyFile(PendingChange change) {
         return change.getFilename().getUriString().endsWith("wurst.dependencies");
     }
 
-    private PendingChange removeFirst(Map<WFile, PendingChange> changes) {
-        Iterator<Map.Entry<WFile, PendingChange>> it = changes.entrySet().iterator();
-        Map.Entry<WFile, PendingChange> e = it.next();
-        it.remove();
-        return e.getValue();
+    private void syncChanges(List<PendingChange> pending) {
+        List<WFile> deleted = new ArrayList<>();
+        List<WFile> updated = new ArrayList<>();
+        Map<WFile, CharSequence> reconciled = new LinkedHashMap<>();
+        for (PendingChange change : pending) {
+            if (isWurstDependencyFile(change)) {
+                if (!(change instanceof FileReconcile)) {
+                    modelManager.clean();
+                }
+            } else if (change instanceof FileDeleted) {
+                deleted.add(change.getFilename());
+            } else if (change instanceof FileUpdated) {
+                updated.add(change.getFilename());
+            } else if (change instanceof FileReconcile) {
+                FileReconcile fr = (FileReconcile) change;
+                reconciled.put(fr.getFilename(), fr.getContents());
+            } else {
+                WLogger.info("unhandled change request: " + change);
+            }
+        }
+        if (deleted.isEmpty() && updated.isEmpty() && reconciled.isEmpty()) {
+            return;
+        }
+
+        ModelManager.Changes affected = modelManager.syncCompilationUnits(deleted, updated, reconciled);
+        changesToReconcile = changesToReconcile.mergeWith(affected);
+        packagesToReconcileTimer.start(reconcileWaitTime);
     }
 
     private void doInit(WFile rootPath) {
@@ -274,12 +372,22 @@ public class LanguageWorker implements Runnable {
         }
     }
 
+    public void handleOpen(DidOpenTextDocumentParams params) {
+        synchronized (lock) {
+            bufferManager.handleOpen(params);
+            WFile file = WFile.create(params.getTextDocument().getUri());
+
+            changes.put(file, new FileReconcile(file, bufferManager.getSnapshot(file)));
+            lock.notifyAll();
+        }
+    }
+
     public void handleChange(DidChangeTextDocumentParams params) {
         synchronized (lock) {
             bufferManager.handleChange(params);
             WFile file = WFile.create(params.getTextDocument().getUri());
 
-            changes.put(file, new FileReconcile(file, bufferManager.getBuffer(params.getTextDocument())));
+            changes.put(file, new FileReconcile(file, bufferManager.getSnapshot(file)));
             lock.notifyAll();
         }
     }
@@ -301,7 +409,9 @@ public class LanguageWorker implements Runnable {
             CompletableFuture<Res> fut = request.getFuture();
             CompletableFuture<Res> resFut = new CompletableFuture<>();
             fut.whenComplete((res, err) -> {
-                if (err != null) {
+                if (err instanceof CancellationException) {
+                    resFut.cancel(false);
+                } else if (err != null) {
                     request.handleException(languageClient, err, resFut);
                 } else if (res == null) {
                     System.err.println("Request returned null: " + request);
@@ -314,6 +424,12 @@ public class LanguageWorker implements Runnable {
                 }
 
             });
+            resFut.whenComplete((res, err) -> {
+                if (resFut.isCancelled()) {
+                    // cancelled by the client, stop the request if it is still running
+                    request.cancel();
+                }
+            });
             return resFut;
         }
     }
@@ -3,6 +3,8 @@ package de.peeeq.wurstio.languageserver;
 import com.google.common.collect.ImmutableSet;
 import de.peeeq.wurstscript.ast.CompilationUnit;
 import de.peeeq.wurstscript.ast.ModuleInstanciations;
+import de.peeeq.wurstscript.ast.WImport;
+import de.peeeq.wurstscript.ast.WPackage;
 import de.peeeq.wurstscript.ast.WurstModel;
 import de.peeeq.wurstscript.attributes.CompileError;
 import io.vavr.collection.HashSet;
@@ -13,8 +15,12 @@ import java.io.File;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public interface ModelManager {
@@ -28,15 +34,40 @@ public interface ModelManager {
 
     List<CompileError> getParseErrors();
 
+    /**
+     * all errors currently known for the project, including type errors
+     */
+    List<CompileError> getErrors();
+
     void onCompilationResult(Consumer<PublishDiagnosticsParams> f);
 
     void buildProject();
 
     Changes syncCompilationUnit(WFile changedFilePath);
 
-    Changes syncCompilationUnitContent(WFile filename, String contents);
+    Changes syncCompilationUnitContent(WFile filename, CharSequence contents);
+
+    /**
+     * applies several changes at once: removes the deleted files, reads the updated files from disk
+     * and replaces the reconciled files with the given buffer contents.
+     * The files are parsed in parallel and the affected compilation units are only calculated once.
+     *
+     * @return the files and packages affected by the changes
+     */
+    Changes syncCompilationUnits(Collection<WFile> deleted, Collection<WFile> updated, Map<WFile, CharSequence> reconciled);
 
-    CompilationUnit replaceCompilationUnitContent(WFile filename, String buffer, boolean reportErrors);
+    CompilationUnit replaceCompilationUnitContent(WFile filename, CharSequence buffer, boolean reportErrors);
+
+    /**
+     * true, if the model already contains the given contents for the file,
+     * so that replaceCompilationUnitContent does not change the model
+     */
+    boolean isSynced(WFile filename, CharSequence contents);
+
+    /**
+     * the index of definitions and references in the model, used to find usages without searching the whole model
+     */
+    SymbolIndex getSymbolIndex();
 
     /**
      * get all wurst files in dependency folders
@@ -62,6 +93,39 @@ public interface ModelManager {
         return m;
     }
 
+    /**
+     * removes all compilation units from the model, which are neither project files
+     * nor directly or indirectly imported by a project file
+     */
+    static void purgeUnimportedFiles(WurstModel model, Predicate<CompilationUnit> isProjectFile) {
+        Set<CompilationUnit> imported = importedCompilationUnits(model, isProjectFile);
+        model.removeIf(cu -> !imported.contains(cu));
+    }
+
+    /**
+     * the project files in the model and all compilation units imported by them, directly or indirectly
+     */
+    static Set<CompilationUnit> importedCompilationUnits(WurstModel model, Predicate<CompilationUnit> isProjectFile) {
+        Set<CompilationUnit> result = model.stream()
+            .filter(isProjectFile)
+            .collect(Collectors.toSet());
+        Set<CompilationUnit> toAdd = result;
+        // terminates, as there are only finitely many compilation units
+        while (!toAdd.isEmpty()) {
+            Set<CompilationUnit> imported = toAdd.stream()
+                .flatMap((CompilationUnit cu) -> cu.getPackages().stream())
+                .flatMap((WPackage p) -> p.getImports().stream())
+                .map(WImport::attrImportedPackage)
+                .filter(Objects::nonNull)
+                .map(WPackage::attrCompilationUnit)
+                .collect(Collectors.toSet());
+            imported.removeAll(result);
+            result.addAll(imported);
+            toAdd = imported;
+        }
+        return result;
+    }
+
     File getProjectPath();
 
     String getFirstErrorDescription();
@@ -12,6 +12,7 @@ import de.peeeq.wurstscript.ast.*;
 import de.peeeq.wurstscript.attributes.CompileError;
 import de.peeeq.wurstscript.gui.WurstGui;
 import de.peeeq.wurstscript.gui.WurstGuiLogger;
+import de.peeeq.wurstscript.utils.Rope;
 import de.peeeq.wurstscript.utils.Utils;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.lsp4j.PublishDiagnosticsParams;
@@ -20,6 +21,8 @@ import java.io.*;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -46,8 +49,14 @@ public class ModelManagerImpl implements ModelManager {
     // hashcode for each compilation unit content as string
     private Map<WFile, Integer> fileHashcodes = new HashMap<>();
 
+    // contents of the editor buffers, which were parsed without errors
+    private Map<WFile, Rope> parsedBuffers = new HashMap<>();
+
     // file for each compilation unit
-    private WeakHashMap<CompilationUnit, WFile> compilationunitFile = new WeakHashMap<>();
+    // synchronized, because it is also updated by read-only requests running concurrently
+    private final Map<CompilationUnit, WFile> compilationunitFile = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final SymbolIndex symbolIndex = new SymbolIndex();
 
     public ModelManagerImpl(File projectPath, BufferManager bufferManager) {
         this.projectPath = projectPath;
@@ -87,6 +96,7 @@ public class ModelManagerImpl implements ModelManager {
     @Override
     public Changes removeCompilationUnit(WFile resource) {
         parseErrors.remove(resource);
+        parsedBuffers.remove(resource);
         WurstModel model2 = model;
         if (model2 == null) {
             return Changes.empty();
@@ -108,6 +118,8 @@ public class ModelManagerImpl implements ModelManager {
     public void clean() {
         fileHashcodes.clear();
         parseErrors.clear();
+        parsedBuffers.clear();
+        symbolIndex.clear();
         model = null;
         dependencies.clear();
         WLogger.info("Clean done.");
@@ -290,6 +302,7 @@ public class ModelManagerImpl implements ModelManager {
         } catch (CompileError e) {
             gui.sendError(e);
         }
+        symbolIndex.update(model2);
         WLogger.info("finished typechecking in " + (System.currentTimeMillis() - time) + "ms");
         reportErrorsForProject("build project, doTypecheck, end", gui);
     }
@@ -298,7 +311,7 @@ public class ModelManagerImpl implements ModelManager {
         WFile wFile = WFile.create(file);
         try {
             String contents = new String(java.nio.file.Files.readAllBytes(file.toPath()), UTF_8);
-            return replaceCompilationUnit(wFile, contents, true);
+            return replaceCompilationUnit(wFile, contents, true, true);
         } catch (IOException e) {
             WLogger.severe(e);
             return null;
@@ -370,8 +383,10 @@ public class ModelManagerImpl implements ModelManager {
                     Set<CompilationUnit> mustUpdate = calculateCUsToUpdate(Collections.singletonList(cu), oldPackages, model2);
 
                     clearCompilationUnits(mustUpdate);
-                    // replace old compilationunit with new one:
-                    it.set(cu);
+                    if (c != cu) {
+                        // replace old compilationunit with new one:
+                        it.set(cu);
+                    }
                     updated = true;
                     break;
                 }
@@ -383,6 +398,30 @@ public class ModelManagerImpl implements ModelManager {
         //doTypeCheckPartial(gui, false, ImmutableList.of(cu.getFile()));
     }
 
+    /**
+     * adds the compilation unit to the model or replaces the old version of the same file,
+     * without clearing the compilation units affected by the change
+     */
+    private void putInModel(CompilationUnit cu, WurstGui gui) {
+        parseErrors.put(wFile(cu), new ArrayList<>(gui.getErrorsAndWarnings()));
+        WurstModel model2 = model;
+        if (model2 == null) {
+            model = newModel(cu, gui);
+            return;
+        }
+        ListIterator<CompilationUnit> it = model2.listIterator();
+        while (it.hasNext()) {
+            CompilationUnit c = it.next();
+            if (wFile(c).equals(wFile(cu))) {
+                if (c != cu) {
+                    it.set(cu);
+                }
+                return;
+            }
+        }
+        model2.add(cu);
+    }
+
     private Set<String> providedPackages(CompilationUnit c) {
         return c.getPackages()
             .stream()
@@ -413,11 +452,10 @@ public class ModelManagerImpl implements ModelManager {
 
         WurstCompilerJassImpl comp = getCompiler(gui);
 
-        try (InputStreamReader reader = new FileReader(sourceFile)) {
-            CompilationUnit cu = comp.parse(sourceFile.getAbsolutePath(), reader);
-            cu.getCuInfo().setFile(getCanonicalPath(sourceFile));
-            return cu;
-        }
+        String contents = Files.toString(sourceFile, Charsets.UTF_8);
+        CompilationUnit cu = comp.parseWithCache(sourceFile.getAbsolutePath(), contents);
+        cu.getCuInfo().setFile(getCanonicalPath(sourceFile));
+        return cu;
     }
 
     private File getBuildDir() {
@@ -439,22 +477,35 @@ public class ModelManagerImpl implements ModelManager {
     }
 
     private void replaceCompilationUnit(WFile filename) {
+        String contents = readChangedFile(filename);
+        if (contents == null) {
+            removeCompilationUnit(filename);
+            return;
+        }
+        replaceCompilationUnit(filename, contents, true);
+        WLogger.info("replaceCompilationUnit 3 " + filename);
+    }
+
+    /**
+     * reads a file, which was changed on disk, and updates its buffer
+     *
+     * @return the new contents or null, if the file does not exist
+     */
+    private @Nullable String readChangedFile(WFile filename) {
         File f;
         try {
             f = filename.getFile();
         } catch (FileNotFoundException e) {
             WLogger.info("Cannot replaceCompilationUnit for " + filename + "\n" + e);
-            return;
+            return null;
         }
         if (!f.exists()) {
-            removeCompilationUnit(filename);
-            return;
+            return null;
         }
         try {
             String contents = Files.toString(f, Charsets.UTF_8);
             bufferManager.updateFile(WFile.create(f), contents);
-            replaceCompilationUnit(filename, contents, true);
-            WLogger.info("replaceCompilationUnit 3 " + f);
+            return contents;
         } catch (IOException e) {
             WLogger.severe(e);
             throw new ModelManagerException(e);
@@ -463,7 +514,7 @@ public class ModelManagerImpl implements ModelManager {
 
 
     @Override
-    public Changes syncCompilationUnitContent(WFile filename, String contents) {
+    public Changes syncCompilationUnitContent(WFile filename, CharSequence contents) {
         WLogger.info("sync contents for " + filename);
         Set<String> oldPackages = declaredPackages(filename);
         replaceCompilationUnit(filename, contents, false);
@@ -487,10 +538,24 @@ public class ModelManagerImpl implements ModelManager {
     }
 
     @Override
-    public CompilationUnit replaceCompilationUnitContent(WFile filename, String contents, boolean reportErrors) {
+    public CompilationUnit replaceCompilationUnitContent(WFile filename, CharSequence contents, boolean reportErrors) {
         return replaceCompilationUnit(filename, contents, reportErrors);
     }
 
+    @Override
+    public SymbolIndex getSymbolIndex() {
+        return symbolIndex;
+    }
+
+    @Override
+    public boolean isSynced(WFile filename, CharSequence contents) {
+        if (!isInWurstFolder(filename)) {
+            return true;
+        }
+        Integer hash = fileHashcodes.get(filename);
+        return hash != null && hash == contentHash(contents);
+    }
+
 
     @Override
     public Changes syncCompilationUnit(WFile f) {
@@ -503,42 +568,213 @@ public class ModelManagerImpl implements ModelManager {
         return new Changes(io.vavr.collection.HashSet.of(f), oldPackages);
     }
 
-    private CompilationUnit replaceCompilationUnit(WFile filename, String contents, boolean reportErrors) {
-        if (!isInWurstFolder(filename)) {
-            return null;
+    @Override
+    public Changes syncCompilationUnits(Collection<WFile> deleted, Collection<WFile> updated, Map<WFile, CharSequence> reconciled) {
+        WLogger.info("sync files, deleted: " + deleted + ", updated: " + updated + ", reconciled: " + reconciled.keySet());
+        Changes result = Changes.empty();
+        for (WFile f : deleted) {
+            result = result.mergeWith(removeCompilationUnit(f));
         }
-        if (fileHashcodes.containsKey(filename)) {
-            int oldHash = fileHashcodes.get(filename);
-            if (oldHash == contents.hashCode()) {
-                // no change
-                WLogger.trace("CU " + filename + " was unchanged.");
-                return getCompilationUnit(filename);
+        Map<WFile, CharSequence> contents = new LinkedHashMap<>();
+        List<WFile> updatedFiles = new ArrayList<>();
+        for (WFile f : updated) {
+            String text = readChangedFile(f);
+            if (text == null) {
+                result = result.mergeWith(removeCompilationUnit(f));
             } else {
-                WLogger.info("CU changed. oldHash = " + oldHash + " == " + contents.hashCode());
+                contents.put(f, text);
+                updatedFiles.add(f);
             }
         }
+        contents.putAll(reconciled);
+
+        Set<String> oldPackages = new HashSet<>();
+        for (WFile f : contents.keySet()) {
+            oldPackages.addAll(declaredPackages(f));
+        }
+        replaceCompilationUnits(contents, updatedFiles, oldPackages);
+        if (!updatedFiles.isEmpty()) {
+            WurstGui gui = new WurstGuiLogger();
+            doTypeCheckPartial(gui, updatedFiles, oldPackages);
+        }
+        return result.mergeWith(new Changes(contents.keySet(), oldPackages));
+    }
+
+    /**
+     * updates the compilation unit of an editor buffer by parsing only the changed part,
+     * which is possible when the previous version of the buffer was parsed without errors
+     *
+     * @return the updated compilation unit or null, if the file must be parsed completely
+     */
+    private @Nullable CompilationUnit reparseChangedPart(WurstCompilerJassImpl c, WFile filename, CharSequence contents) {
+        Rope oldContents = parsedBuffers.get(filename);
+        if (oldContents == null
+            || !(contents instanceof Rope)
+            || !parseErrors.getOrDefault(filename, Collections.emptyList()).isEmpty()) {
+            return null;
+        }
+        CompilationUnit cu = getCompilationUnit(filename);
+        if (cu == null) {
+            return null;
+        }
+        // remove module instantiations before changing the tree, they are added again by the type checker
+        clearCompilationUnit(cu);
+        if (!c.reparse(cu, oldContents, (Rope) contents)) {
+            return null;
+        }
+        symbolIndex.invalidate(cu);
+        WLogger.trace("reparsed changed part of " + filename);
+        return cu;
+    }
+
+    /**
+     * the hash code of the text, which is the same for a String and a Rope with the same content
+     */
+    private static int contentHash(CharSequence contents) {
+        if (contents instanceof String || contents instanceof Rope) {
+            return contents.hashCode();
+        }
+        return contents.toString().hashCode();
+    }
+
+    private CompilationUnit replaceCompilationUnit(WFile filename, CharSequence contents, boolean reportErrors) {
+        return replaceCompilationUnit(filename, contents, reportErrors, false);
+    }
+
+    private CompilationUnit replaceCompilationUnit(WFile filename, CharSequence contents, boolean reportErrors, boolean useParseCache) {
+        if (!isInWurstFolder(filename)) {
+            return null;
+        }
+        int hash = contentHash(contents);
+        if (isUnchanged(filename, hash)) {
+            return getCompilationUnit(filename);
+        }
 
         WLogger.trace("replace CU " + filename);
         WurstGui gui = new WurstGuiLogger();
         WurstCompilerJassImpl c = getCompiler(gui);
-        CompilationUnit cu = c.parse(filename.toString(), new StringReader(contents));
+        CompilationUnit cu = useParseCache ? null : reparseChangedPart(c, filename, contents);
+        if (cu == null) {
+            cu = useParseCache
+                ? c.parseWithCache(filename.toString(), contents.toString())
+                : c.parse(filename.toString(), contents);
+        }
         cu.getCuInfo().setFile(filename.toString());
         updateModel(cu, gui);
-        fileHashcodes.put(filename, contents.hashCode());
+        rememberParsedContents(filename, contents, hash, gui);
         if (reportErrors) {
-            if (gui.getErrorCount() > 0) {
-                WLogger.info("found " + gui.getErrorCount() + " errors in file " + filename);
+            reportParseErrors(filename, gui);
+        }
+        return cu;
+    }
+
+    /**
+     * replaces the compilation units of several files at once.
+     * Changed parts of editor buffers are reparsed directly, all other files are parsed in parallel.
+     * The compilation units affected by the changes are calculated and cleared only once for all files.
+     *
+     * @param reportErrorsFor files for which the parse errors are reported
+     * @param oldPackages packages which were provided by the files before the change
+     */
+    private void replaceCompilationUnits(Map<WFile, CharSequence> contents, Collection<WFile> reportErrorsFor, Set<String> oldPackages) {
+        List<ParsedFile> parsedFiles = new ArrayList<>();
+        for (Map.Entry<WFile, CharSequence> e : contents.entrySet()) {
+            WFile filename = e.getKey();
+            int hash = contentHash(e.getValue());
+            if (isInWurstFolder(filename) && !isUnchanged(filename, hash)) {
+                WLogger.trace("replace CU " + filename);
+                parsedFiles.add(new ParsedFile(filename, e.getValue(), hash));
             }
-            ImmutableList.Builder<CompileError> errors = ImmutableList.<CompileError>builder()
-                .addAll(gui.getErrorsAndWarnings());
+        }
 
-            if (otherErrors.containsKey(filename)) {
-                errors.addAll(otherErrors.get(filename));
+        List<CompilationUnit> changed = new ArrayList<>();
+        for (ParsedFile p : parsedFiles) {
+            CompilationUnit cu = p.join();
+            cu.getCuInfo().setFile(p.filename.toString());
+            putInModel(cu, p.gui);
+            rememberParsedContents(p.filename, p.contents, p.hash, p.gui);
+            changed.add(cu);
+        }
+        WurstModel model2 = model;
+        if (model2 != null && !changed.isEmpty()) {
+            clearCompilationUnits(calculateCUsToUpdate(changed, oldPackages, model2));
+        }
+        for (ParsedFile p : parsedFiles) {
+            if (reportErrorsFor.contains(p.filename)) {
+                reportParseErrors(p.filename, p.gui);
             }
+        }
+    }
 
-            reportErrors("sync cu " + filename, filename, errors.build());
+    /**
+     * a changed file, which is either reparsed incrementally or parsed completely in the background
+     */
+    private class ParsedFile {
+        private final WFile filename;
+        private final CharSequence contents;
+        private final int hash;
+        private final WurstGui gui = new WurstGuiLogger();
+        private final @Nullable CompilationUnit reparsed;
+        private final @Nullable ForkJoinTask<CompilationUnit> task;
+
+        ParsedFile(WFile filename, CharSequence contents, int hash) {
+            this.filename = filename;
+            this.contents = contents;
+            this.hash = hash;
+            WurstCompilerJassImpl c = getCompiler(gui);
+            // the incremental parser changes the existing compilation unit, so it is not run in the background
+            this.reparsed = reparseChangedPart(c, filename, contents);
+            this.task = reparsed != null ? null
+                : ForkJoinPool.commonPool().submit(() -> c.parse(filename.toString(), contents));
         }
-        return cu;
+
+        CompilationUnit join() {
+            CompilationUnit cu = reparsed;
+            if (cu != null) {
+                return cu;
+            }
+            return Objects.requireNonNull(task).join();
+        }
+    }
+
+    private boolean isUnchanged(WFile filename, int hash) {
+        Integer oldHash = fileHashcodes.get(filename);
+        if (oldHash == null) {
+            return false;
+        } else if (oldHash == hash) {
+            // no change
+            WLogger.trace("CU " + filename + " was unchanged.");
+            return true;
+        }
+        WLogger.info("CU changed. oldHash = " + oldHash + " == " + hash);
+        return false;
+    }
+
+    /**
+     * remembers the contents of a parsed file, so that it is not parsed again when it did not change
+     * and so that later edits can be parsed incrementally when there were no errors
+     */
+    private void rememberParsedContents(WFile filename, CharSequence contents, int hash, WurstGui gui) {
+        fileHashcodes.put(filename, hash);
+        if (contents instanceof Rope && gui.getErrorsAndWarnings().isEmpty()) {
+            parsedBuffers.put(filename, (Rope) contents);
+        } else {
+            parsedBuffers.remove(filename);
+        }
+    }
+
+    private void reportParseErrors(WFile filename, WurstGui gui) {
+        if (gui.getErrorCount() > 0) {
+            WLogger.info("found " + gui.getErrorCount() + " errors in file " + filename);
+        }
+        ImmutableList.Builder<CompileError> errors = ImmutableList.<CompileError>builder()
+            .addAll(gui.getErrorsAndWarnings());
+
+        if (otherErrors.containsKey(filename)) {
+            errors.addAll(otherErrors.get(filename));
+        }
+
+        reportErrors("sync cu " + filename, filename, errors.build());
     }
 
     @Override
@@ -574,6 +810,11 @@ public class ModelManagerImpl implements ModelManager {
         return parseErrorStream().collect(Collectors.toList());
     }
 
+    @Override
+    public List<CompileError> getErrors() {
+        return errorStream().collect(Collectors.toList());
+    }
+
     private Stream<CompileError> parseErrorStream() {
         return parseErrors.values().stream()
                 .flatMap(Collection::stream)
@@ -613,9 +854,16 @@ public class ModelManagerImpl implements ModelManager {
 
     @Override
     public void reconcile(Changes changes) {
+        reconcileAndGetUpdated(changes);
+    }
+
+    /**
+     * like {@link #reconcile(Changes)}, but returns the compilation units which were type checked again
+     */
+    public Collection<CompilationUnit> reconcileAndGetUpdated(Changes changes) {
         WurstModel model2 = model;
         if (model2 == null) {
-            return;
+            return Collections.emptyList();
         }
         Collection<CompilationUnit> toCheck1 = model2.stream()
             .filter(cu -> changes.getAffectedFiles().contains(WFile.create(cu.getCuInfo().getFile())))
@@ -625,6 +873,7 @@ public class ModelManagerImpl implements ModelManager {
         WurstGui gui = new WurstGuiLogger();
         WurstCompilerJassImpl comp = getCompiler(gui);
         partialTypecheck(model2, toCheckRec, gui, comp);
+        return toCheckRec;
     }
 
     private void partialTypecheck(WurstModel model2, Collection<CompilationUnit> toCheckRec, WurstGui gui, WurstCompilerJassImpl comp) {
@@ -640,6 +889,7 @@ public class ModelManagerImpl implements ModelManager {
         }
         List<WFile> fileNames = getfileNames(toCheckRec);
         reportErrorsForFiles(fileNames, gui);
+        symbolIndex.update(model2);
     }
 
 
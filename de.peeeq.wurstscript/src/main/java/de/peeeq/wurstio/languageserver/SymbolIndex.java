@@ -0,0 +1,183 @@
+package de.peeeq.wurstio.languageserver;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import de.peeeq.wurstscript.ast.*;
+import de.peeeq.wurstscript.types.WurstType;
+import de.peeeq.wurstscript.types.WurstTypeNamedScope;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.lsp4j.SymbolInformation;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * An index of the names defined and referenced in each compilation unit of a model.
+ * <p>
+ * The entry of a compilation unit only depends on its syntax, so a change in one file never invalidates
+ * the entries of other files. References are not resolved when indexing. Instead, a query returns all
+ * definitions and references with a given name, which are then resolved by the caller.
+ * This way only a few elements have to be resolved, instead of every element in the model.
+ * <p>
+ * Module instantiations are not indexed, because the type checker creates them again after every change.
+ * They are searched when the index is queried.
+ */
+public class SymbolIndex {
+
+    private static class Entry {
+        // definitions and references by name
+        private final ListMultimap<String, Element> names = ArrayListMultimap.create();
+        // classes, which contain module instantiations
+        private final List<ClassDef> classesUsingModules = new ArrayList<>();
+        private @Nullable List<SymbolInformation> symbols;
+    }
+
+    // by identity, because compilation units are changed in place by the incremental parser
+    private final Map<CompilationUnit, Entry> entries = new IdentityHashMap<>();
+
+    /**
+     * indexes all compilation units of the model, which are not indexed yet,
+     * and removes the entries of compilation units, which are no longer part of the model
+     */
+    public synchronized void update(WurstModel model) {
+        Set<CompilationUnit> cus = Collections.newSetFromMap(new IdentityHashMap<>());
+        cus.addAll(model);
+        entries.keySet().retainAll(cus);
+        for (CompilationUnit cu : model) {
+            entry(cu);
+        }
+    }
+
+    /**
+     * removes the entry of a compilation unit, which was changed
+     */
+    public synchronized void invalidate(CompilationUnit cu) {
+        entries.remove(cu);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * all definitions and references in the given compilation units, which might refer to a definition with the given name
+     */
+    public synchronized List<Element> getCandidates(Iterable<CompilationUnit> cus, String name) {
+        List<Element> result = new ArrayList<>();
+        for (CompilationUnit cu : cus) {
+            Entry entry = entry(cu);
+            result.addAll(entry.names.get(name));
+            for (ClassDef c : entry.classesUsingModules) {
+                addModuleCandidates(c.getP_moduleInstanciations(), name, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * the workspace symbols of a compilation unit, which are only computed again after it changed
+     */
+    public synchronized List<SymbolInformation> getSymbols(CompilationUnit cu, Function<CompilationUnit, List<SymbolInformation>> computeSymbols) {
+        Entry entry = entry(cu);
+        List<SymbolInformation> symbols = entry.symbols;
+        if (symbols == null) {
+            symbols = computeSymbols.apply(cu);
+            entry.symbols = symbols;
+        }
+        return symbols;
+    }
+
+    private Entry entry(CompilationUnit cu) {
+        Entry entry = entries.get(cu);
+        if (entry == null) {
+            entry = new Entry();
+            index(cu, entry);
+            entries.put(cu, entry);
+        }
+        return entry;
+    }
+
+    private static void index(Element e, Entry entry) {
+        if (e instanceof ModuleInstanciations) {
+            return;
+        }
+        if (e instanceof ClassDef && !((ClassDef) e).getModuleUses().isEmpty()) {
+            entry.classesUsingModules.add((ClassDef) e);
+        }
+        String name = name(e);
+        if (name != null) {
+            entry.names.put(name, e);
+        }
+        for (int i = 0; i < e.size(); i++) {
+            index(e.get(i), entry);
+        }
+    }
+
+    private static void addModuleCandidates(Element e, String name, List<Element> result) {
+        if (name.equals(name(e))) {
+            result.add(e);
+        }
+        for (int i = 0; i < e.size(); i++) {
+            addModuleCandidates(e.get(i), name, result);
+        }
+    }
+
+    /**
+     * the definition an element refers to.
+     * Unlike {@link Element#tryGetNameDef()} this also resolves thistype to the class or module it stands for.
+     */
+    public static @Nullable NameDef resolve(Element e) {
+        if (e instanceof TypeExprThis) {
+            WurstType t = ((TypeExprThis) e).attrTyp();
+            if (t instanceof WurstTypeNamedScope) {
+                return ((WurstTypeNamedScope) t).getDef();
+            }
+            return null;
+        }
+        return e.tryGetNameDef();
+    }
+
+    /**
+     * the name of a definition or the name used by a reference
+     *
+     * @return the name, or null if the element is no definition or reference
+     */
+    private static @Nullable String name(Element e) {
+        if (e instanceof NameDef) {
+            return ((NameDef) e).getName();
+        } else if (e instanceof NameRef) {
+            return ((NameRef) e).getVarName();
+        } else if (e instanceof FuncRef) {
+            return ((FuncRef) e).getFuncName();
+        } else if (e instanceof TypeExprSimple) {
+            return ((TypeExprSimple) e).getTypeName();
+        } else if (e instanceof ExprNewObject) {
+            return ((ExprNewObject) e).getTypeName();
+        } else if (e instanceof TypeExprThis) {
+            return thistypeName((TypeExprThis) e);
+        }
+        return null;
+    }
+
+    /**
+     * the name of the class or module a thistype refers to, found without resolving it
+     */
+    private static @Nullable String thistypeName(TypeExprThis e) {
+        OptTypeExpr scopeType = e.getScopeType();
+        if (scopeType instanceof TypeExprSimple) {
+            // A.thistype
+            return ((TypeExprSimple) scopeType).getTypeName();
+        }
+        Element parent = e.getParent();
+        while (parent != null) {
+            if (parent instanceof WPackage) {
+                return null;
+            } else if (parent instanceof NamedScope && !(parent instanceof ModuleInstanciation)) {
+                // in a module instantiation, thistype refers to the class using the module
+                return ((NamedScope) parent).getName();
+            }
+            parent = parent.getParent();
+        }
+        return null;
+    }
+}
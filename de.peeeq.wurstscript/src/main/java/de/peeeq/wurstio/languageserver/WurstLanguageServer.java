@@ -53,7 +53,7 @@ public class WurstLanguageServer implements org.eclipse.lsp4j.services.LanguageS
         capabilities.setRenameProvider(true);
 
 
-        capabilities.setTextDocumentSync(Either.forLeft(TextDocumentSyncKind.Full));
+        capabilities.setTextDocumentSync(Either.forLeft(TextDocumentSyncKind.Incremental));
         capabilities.setCodeActionProvider(true);
         capabilities.setDocumentSymbolProvider(true);
         capabilities.setWorkspaceSymbolProvider(true);
@@ -119,7 +119,7 @@ public class WurstTextDocumentService implements TextDocumentService {
     @Override
     public void didOpen(DidOpenTextDocumentParams params) {
         WLogger.info("didOpen");
-
+        worker.handleOpen(params);
     }
 
     @Override
@@ -25,6 +25,7 @@ import org.eclipse.lsp4j.jsonrpc.messages.Either;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -50,6 +51,16 @@ public class CodeActionRequest extends UserRequest<List<Either<Command, CodeActi
         this.column = params.getRange().getStart().getCharacter() + 1;
     }
 
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public Map<WFile, String> getBuffers() {
+        return Collections.singletonMap(filename, buffer);
+    }
+
     @Override
     public List<Either<Command, CodeAction>> execute(ModelManager modelManager) {
         if (params.getContext().getDiagnostics().isEmpty()) {
@@ -18,6 +18,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  *
@@ -25,17 +26,27 @@ import java.util.List;
 public class CodeLensRequest {
     public static class GetCodeLens extends UserRequest<List<? extends CodeLens>> {
         private final CodeLensParams params;
-        private final BufferManager bufferManager;
+        private final WFile wFile;
+        private final String buffer;
 
         public GetCodeLens(CodeLensParams params, BufferManager bufferManager) {
             this.params = params;
-            this.bufferManager = bufferManager;
+            this.wFile = WFile.create(params.getTextDocument());
+            this.buffer = bufferManager.getBuffer(wFile);
+        }
+
+        @Override
+        public boolean isReadOnly() {
+            return true;
+        }
+
+        @Override
+        public Map<WFile, String> getBuffers() {
+            return Collections.singletonMap(wFile, buffer);
         }
 
         @Override
         public List<CodeLens> execute(ModelManager modelManager) {
-            WFile wFile = WFile.create(params.getTextDocument());
-            String buffer = bufferManager.getBuffer(wFile);
             CompilationUnit cu = modelManager.replaceCompilationUnitContent(wFile, buffer, false);
             if (cu == null) {
                 return Collections.emptyList();
@@ -67,6 +78,11 @@ public class CodeLensRequest {
             this.unresolved = unresolved;
         }
 
+        @Override
+        public boolean isReadOnly() {
+            return true;
+        }
+
         @Override
         public CodeLens execute(ModelManager modelManager) throws IOException {
             Object data = unresolved.getData();
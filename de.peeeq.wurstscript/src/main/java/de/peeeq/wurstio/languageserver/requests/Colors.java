@@ -32,6 +32,11 @@ public class Colors {
         }
 
 
+        @Override
+        public boolean isReadOnly() {
+            return true;
+        }
+
         @Override
         public List<ColorInformation> execute(ModelManager modelManager) throws IOException {
             Optional<CompilationUnit> cu = Optional.ofNullable(
@@ -99,6 +104,11 @@ public class Colors {
             textDocument = params.getTextDocument();
         }
 
+        @Override
+        public boolean isReadOnly() {
+            return true;
+        }
+
         @Override
         public List<ColorPresentation> execute(ModelManager modelManager) {
             Optional<CompilationUnit> cu = Optional.ofNullable(
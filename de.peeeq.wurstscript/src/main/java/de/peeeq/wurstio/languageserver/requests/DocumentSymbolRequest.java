@@ -26,6 +26,11 @@ public class DocumentSymbolRequest extends UserRequest<List<Either<SymbolInforma
     }
 
 
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
     @Override
     public List<Either<SymbolInformation, DocumentSymbol>> execute(ModelManager modelManager) {
         CompilationUnit cu = modelManager.getCompilationUnit(WFile.create(textDocument.getUri()));
@@ -65,6 +65,16 @@ public class GetCompletions extends UserRequest<CompletionList> {
         return lines[line - 1];
     }
 
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public Map<WFile, String> getBuffers() {
+        return Collections.singletonMap(filename, buffer);
+    }
+
     @Override
     public CompletionList execute(ModelManager modelManager) {
         this.modelManager = modelManager;
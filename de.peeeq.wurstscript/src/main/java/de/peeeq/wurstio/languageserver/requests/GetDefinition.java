@@ -15,6 +15,7 @@ import org.eclipse.lsp4j.jsonrpc.messages.Either;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public class GetDefinition extends UserRequest<Either<List<? extends Location>, List<? extends LocationLink>>> {
 
@@ -32,6 +33,16 @@ public class GetDefinition extends UserRequest<Either<List<? extends Location>,
     }
 
 
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public Map<WFile, String> getBuffers() {
+        return Collections.singletonMap(filename, buffer);
+    }
+
     @Override
     public Either<List<? extends Location>, List<? extends LocationLink>> execute(ModelManager modelManager) {
         return Either.forLeft(execute2(modelManager));
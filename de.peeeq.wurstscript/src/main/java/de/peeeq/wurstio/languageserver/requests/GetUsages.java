@@ -3,6 +3,7 @@ package de.peeeq.wurstio.languageserver.requests;
 import de.peeeq.wurstio.languageserver.ModelManager;
 import de.peeeq.wurstio.languageserver.BufferManager;
 import de.peeeq.wurstio.languageserver.Convert;
+import de.peeeq.wurstio.languageserver.SymbolIndex;
 import de.peeeq.wurstio.languageserver.WFile;
 import de.peeeq.wurstscript.ast.CompilationUnit;
 import de.peeeq.wurstscript.ast.Element;
@@ -31,6 +32,16 @@ public class GetUsages extends UserRequest<List<GetUsages.UsagesData>> {
     }
 
 
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public Map<WFile, String> getBuffers() {
+        return Collections.singletonMap(wFile, buffer);
+    }
+
     @Override
     public List<UsagesData> execute(ModelManager modelManager) {
         CompilationUnit cu = modelManager.replaceCompilationUnitContent(wFile, buffer, false);
@@ -38,7 +49,7 @@ public class GetUsages extends UserRequest<List<GetUsages.UsagesData>> {
             return Collections.emptyList();
         }
         Optional<Element> astElem = Utils.getAstElementAtPos(cu, line, column, false);
-        Optional<NameDef> nameDef = astElem.flatMap(elem -> Optional.ofNullable(elem.tryGetNameDef()));
+        Optional<NameDef> nameDef = astElem.flatMap(elem -> Optional.ofNullable(SymbolIndex.resolve(elem)));
         List<UsagesData> usages = new ArrayList<>();
         if (nameDef.isPresent()) {
 
@@ -47,19 +58,12 @@ public class GetUsages extends UserRequest<List<GetUsages.UsagesData>> {
                 usages.add(
                     new UsagesData(Convert.posToLocation(nameDef.get().attrErrorPos()), DocumentHighlightKind.Write));
             }
-            Deque<Element> todo = new ArrayDeque<>();
-            if (global) {
-                todo.push(modelManager.getModel());
-            } else {
-                todo.push(cu);
-            }
-            while (!todo.isEmpty()) {
-                Element e = todo.pop();
-                // visit children:
-                for (int i = 0; i < e.size(); i++) {
-                    todo.push(e.get(i));
-                }
-                NameDef e_def = e.tryGetNameDef();
+            Iterable<CompilationUnit> cus = global ? modelManager.getModel() : Collections.singletonList(cu);
+            // only the elements with the same name can refer to the definition:
+            List<Element> candidates = modelManager.getSymbolIndex().getCandidates(cus, nameDef.get().getName());
+            for (Element e : candidates) {
+                Utils.checkInterrupted();
+                NameDef e_def = SymbolIndex.resolve(e);
                 if (e_def == nameDef.get()) {
                     UsagesData usagesData = new UsagesData(Convert.posToLocation(e.attrErrorPos()), DocumentHighlightKind.Read);
                     usages.add(usagesData);
@@ -18,6 +18,7 @@ import org.eclipse.lsp4j.jsonrpc.messages.Either;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Created by peter on 24.04.16.
@@ -37,6 +38,16 @@ public class HoverInfo extends UserRequest<Hover> {
         this.column = position.getPosition().getCharacter() + 1;
     }
 
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public Map<WFile, String> getBuffers() {
+        return Collections.singletonMap(filename, buffer);
+    }
+
     @Override
     public Hover execute(ModelManager modelManager) {
         CompilationUnit cu = modelManager.replaceCompilationUnitContent(filename, buffer, false);
@@ -1,6 +1,6 @@
 package de.peeeq.wurstio.languageserver.requests;
 
-import com.google.common.base.Charsets;
+import com.google.common.hash.HashCode;
 import com.google.common.io.Files;
 import config.WurstProjectConfigData;
 import de.peeeq.wurstio.Pjass;
@@ -12,12 +12,11 @@ import de.peeeq.wurstio.languageserver.ModelManager;
 import de.peeeq.wurstio.languageserver.WFile;
 import de.peeeq.wurstio.mpq.MpqEditor;
 import de.peeeq.wurstio.mpq.MpqEditorFactory;
+import de.peeeq.wurstio.utils.FileUtils;
 import de.peeeq.wurstio.utils.W3InstallationData;
 import de.peeeq.wurstscript.RunArgs;
 import de.peeeq.wurstscript.WLogger;
 import de.peeeq.wurstscript.ast.CompilationUnit;
-import de.peeeq.wurstscript.ast.WImport;
-import de.peeeq.wurstscript.ast.WPackage;
 import de.peeeq.wurstscript.ast.WurstModel;
 import de.peeeq.wurstscript.attributes.CompileError;
 import de.peeeq.wurstscript.gui.WurstGui;
@@ -29,6 +28,7 @@ import de.peeeq.wurstscript.jassprinter.JassPrinter;
 import de.peeeq.wurstscript.luaAst.LuaCompilationUnit;
 import de.peeeq.wurstscript.parser.WPos;
 import de.peeeq.wurstscript.translation.imoptimizer.ImOptimizer;
+import de.peeeq.wurstscript.translation.lua.printing.LuaPrinter;
 import de.peeeq.wurstscript.utils.LineOffsets;
 import de.peeeq.wurstscript.utils.Utils;
 import net.moonlightflower.wc3libs.port.Orient;
@@ -47,7 +47,6 @@ import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
 
 public abstract class MapRequest extends UserRequest<Object> {
     protected final ConfigProvider configProvider;
@@ -78,11 +77,7 @@ public abstract class MapRequest extends UserRequest<Object> {
         this.runArgs = new RunArgs(compileArgs);
         this.wc3Path = wc3Path;
         this.w3data = getBestW3InstallationData();
-        if (runArgs.isMeasureTimes()) {
-            this.timeTaker = new TimeTaker.Recording();
-        } else {
-            this.timeTaker = new TimeTaker.Default();
-        }
+        this.timeTaker = TimeTaker.create(runArgs);
     }
 
     @Override
@@ -160,7 +155,8 @@ public abstract class MapRequest extends UserRequest<Object> {
             }
             WurstCompilerJassImpl compiler = new WurstCompilerJassImpl(timeTaker, projectFolder, gui, mpqEditor, runArgs);
             compiler.setMapFile(mapCopy);
-            purgeUnimportedFiles(model);
+            ModelManager.purgeUnimportedFiles(model,
+                cu -> isInWurstFolder(cu.getCuInfo().getFile()) || cu.getCuInfo().getFile().endsWith(".j"));
 
             gui.sendProgress("Check program");
             compiler.checkProg(model);
@@ -187,13 +183,9 @@ public abstract class MapRequest extends UserRequest<Object> {
                     throw new RuntimeException("Could not compile project (error in LUA translation)");
                 }
 
-                StringBuilder sb = new StringBuilder();
-                luaCode.get().print(sb, 0);
-
-                String compiledMapScript = sb.toString();
                 File buildDir = getBuildDir();
                 File outFile = new File(buildDir, "compiled.lua");
-                Files.write(compiledMapScript.getBytes(Charsets.UTF_8), outFile);
+                writeMapScript(outFile, out -> LuaPrinter.print(luaCode.get(), out));
                 timeTaker.printReport();
                 return outFile;
 
@@ -209,10 +201,9 @@ public abstract class MapRequest extends UserRequest<Object> {
 
                 gui.sendProgress("Printing program");
                 JassPrinter printer = new JassPrinter(!runArgs.isOptimize(), jassProg.get());
-                String compiledMapScript = printer.printProg();
                 File buildDir = getBuildDir();
                 File outFile = new File(buildDir, "compiled.j.txt");
-                Files.write(compiledMapScript.getBytes(Charsets.UTF_8), outFile);
+                writeMapScript(outFile, printer::printProg);
 
                 if (!runArgs.isDisablePjass()) {
                     gui.sendProgress("Running PJass");
@@ -240,6 +231,14 @@ public abstract class MapRequest extends UserRequest<Object> {
         }
     }
 
+    /**
+     * prints the map script directly to the file, so that it is never completely in memory
+     */
+    private void writeMapScript(File outFile, FileUtils.Printer printer) throws IOException {
+        Optional<HashCode> hash = FileUtils.writeStreaming(outFile, true, printer);
+        hash.ifPresent(h -> WLogger.info("Wrote " + outFile + " (sha256 " + h + ")"));
+    }
+
     private File runJassHotCodeReload(File mapScript) throws IOException, InterruptedException {
         File buildDir = getBuildDir();
         File commonJ = new File(buildDir, "common.j");
@@ -259,21 +258,6 @@ public abstract class MapRequest extends UserRequest<Object> {
         return new File(buildDir, "jhcr_war3map.j");
     }
 
-    /**
-     * removes everything compilation unit which is neither
-     * - inside a wurst folder
-     * - a jass file
-     * - imported by a file in a wurst folder
-     */
-    private void purgeUnimportedFiles(WurstModel model) {
-
-        Set<CompilationUnit> imported = model.stream()
-            .filter(cu -> isInWurstFolder(cu.getCuInfo().getFile()) || cu.getCuInfo().getFile().endsWith(".j")).collect(Collectors.toSet());
-        addImports(imported, imported);
-
-        model.removeIf(cu -> !imported.contains(cu));
-    }
-
     private boolean isInWurstFolder(String file) {
         Path p = Paths.get(file);
         Path w;
@@ -300,22 +284,6 @@ public abstract class MapRequest extends UserRequest<Object> {
         return buildDir;
     }
 
-    private void addImports(Set<CompilationUnit> result, Set<CompilationUnit> toAdd) {
-        Set<CompilationUnit> imported =
-            toAdd.stream()
-                .flatMap((CompilationUnit cu) -> cu.getPackages().stream())
-                .flatMap((WPackage p) -> p.getImports().stream())
-                .map(WImport::attrImportedPackage)
-                .filter(Objects::nonNull)
-                .map(WPackage::attrCompilationUnit)
-                .collect(Collectors.toSet());
-        boolean changed = result.addAll(imported);
-        if (changed) {
-            // recursive call terminates, as there are only finitely many compilation units
-            addImports(result, imported);
-        }
-    }
-
     protected void print(String s) {
         WLogger.info(s);
     }
@@ -2,6 +2,7 @@ package de.peeeq.wurstio.languageserver.requests;
 
 import de.peeeq.wurstio.languageserver.BufferManager;
 import de.peeeq.wurstio.languageserver.ModelManager;
+import de.peeeq.wurstio.languageserver.WFile;
 import org.eclipse.lsp4j.*;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
 
@@ -15,17 +16,26 @@ import java.util.stream.Collectors;
  */
 public class RenameRequest extends UserRequest<WorkspaceEdit> {
     private final RenameParams params;
-    private final BufferManager bufferManager;
+    private final GetUsages getUsages;
 
     public RenameRequest(RenameParams params, BufferManager bufferManager) {
         this.params = params;
-        this.bufferManager = bufferManager;
+        TextDocumentPositionParams pos = new TextDocumentPositionParams(params.getTextDocument(), params.getPosition());
+        this.getUsages = new GetUsages(pos, bufferManager, true);
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public Map<WFile, String> getBuffers() {
+        return getUsages.getBuffers();
     }
 
     @Override
     public WorkspaceEdit execute(ModelManager modelManager) {
-        TextDocumentPositionParams pos = new TextDocumentPositionParams(params.getTextDocument(), params.getPosition());
-        GetUsages getUsages = new GetUsages(pos, bufferManager, true);
         List<GetUsages.UsagesData> usages = getUsages.execute(modelManager);
 
 
@@ -13,6 +13,7 @@ import de.peeeq.wurstscript.WLogger;
 import de.peeeq.wurstscript.ast.*;
 import de.peeeq.wurstscript.attributes.CompileError;
 import de.peeeq.wurstscript.gui.WurstGui;
+import de.peeeq.wurstscript.intermediatelang.interpreter.ExecutionProfile;
 import de.peeeq.wurstscript.intermediatelang.interpreter.ILInterpreter;
 import de.peeeq.wurstscript.intermediatelang.interpreter.ProgramState;
 import de.peeeq.wurstscript.intermediatelang.interpreter.ProgramState.StackTrace;
@@ -43,6 +44,8 @@ public class RunTests extends UserRequest<Object> {
     private final int column;
     private final Optional<String> testName;
     private final int timeoutSeconds;
+    private boolean compiledExecution = false;
+    private @Nullable ExecutionProfile profile;
 
     private List<ImFunction> successTests = Lists.newArrayList();
     private List<TestFailure> failTests = Lists.newArrayList();
@@ -124,6 +127,20 @@ public class RunTests extends UserRequest<Object> {
         return "ok";
     }
 
+    /**
+     * when enabled, tests are run with the compiled execution engine of the interpreter
+     */
+    public void setCompiledExecution(boolean compiledExecution) {
+        this.compiledExecution = compiledExecution;
+    }
+
+    /**
+     * records function calls and loop iterations of the tests and compiletime functions into the given profile
+     */
+    public void setProfile(@Nullable ExecutionProfile profile) {
+        this.profile = profile;
+    }
+
     public static class TestResult {
 
         private final int passedTests;
@@ -158,11 +175,15 @@ public class RunTests extends UserRequest<Object> {
             interpreter = new ILInterpreter(imProg, gui, Optional.empty(), globalState, false);
             interpreter.addNativeProvider(new ReflectionNativeProvider(interpreter));
         }
+        interpreter.setCompiledExecution(compiledExecution);
+        globalState.setProfile(profile);
 
         redirectInterpreterOutput(globalState);
 
         // first run compiletime functions
         cfr.run();
+        // compiletime expressions have been replaced in the program, so compile the functions again
+        globalState.clearCompiledFunctions();
 
         if (gui.getErrorCount() > 0) {
             for (CompileError compileError : gui.getErrorList()) {
@@ -2,6 +2,7 @@ package de.peeeq.wurstio.languageserver.requests;
 
 import de.peeeq.wurstio.languageserver.Convert;
 import de.peeeq.wurstio.languageserver.ModelManager;
+import de.peeeq.wurstio.languageserver.SymbolIndex;
 import de.peeeq.wurstscript.ast.*;
 import org.eclipse.lsp4j.SymbolInformation;
 import org.eclipse.lsp4j.SymbolKind;
@@ -23,14 +24,19 @@ public class SymbolInformationRequest extends UserRequest<List<? extends SymbolI
         query = params.getQuery().toLowerCase();
     }
 
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
     @Override
     public List<SymbolInformation> execute(ModelManager modelManager) {
-        return symbolsFromModel(modelManager.getModel());
+        return symbolsFromModel(modelManager.getModel(), modelManager.getSymbolIndex());
     }
 
-    private List<SymbolInformation> symbolsFromModel(WurstModel model) {
+    private List<SymbolInformation> symbolsFromModel(WurstModel model, SymbolIndex symbolIndex) {
         return model.stream()
-                .flatMap(cu -> symbolsFromCu(cu).stream())
+                .flatMap(cu -> symbolIndex.getSymbols(cu, this::symbolsFromCu).stream())
                 .filter(si -> (si.getContainerName() + "." + si.getName()).toLowerCase().contains(query))
                 .collect(Collectors.toList());
     }
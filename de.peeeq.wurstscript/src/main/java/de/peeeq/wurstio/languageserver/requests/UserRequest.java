@@ -1,16 +1,25 @@
 package de.peeeq.wurstio.languageserver.requests;
 
 import de.peeeq.wurstio.languageserver.ModelManager;
+import de.peeeq.wurstio.languageserver.WFile;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.lsp4j.MessageParams;
 import org.eclipse.lsp4j.MessageType;
 import org.eclipse.lsp4j.services.LanguageClient;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 
 public abstract class UserRequest<Res> {
 
     private CompletableFuture<Res> fut = new CompletableFuture<>();
+    // the thread executing an interruptible request
+    private @Nullable Thread thread;
+    // set, when the request was stopped to let the model be changed, so that it has to be run again
+    private boolean preempted;
 
     public abstract Res execute(ModelManager modelManager) throws IOException;
 
@@ -18,8 +27,46 @@ public abstract class UserRequest<Res> {
         return false;
     }
 
+    /**
+     * Read-only requests do not change the model, so they can run concurrently with other read-only requests.
+     * The buffers returned by {@link #getBuffers()} are synced with the model before the request is executed,
+     * so that updating them in execute does not change the model.
+     */
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    /**
+     * the contents of the editor buffers this request works on
+     */
+    public Map<WFile, String> getBuffers() {
+        return Collections.emptyMap();
+    }
+
     public void cancel() {
         fut.cancel(true);
+        synchronized (this) {
+            Thread t = thread;
+            if (t != null) {
+                t.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Stops the request without cancelling it, so that the model can be changed.
+     * The request has to be run again afterwards (see {@link #runInterruptible(ModelManager)}).
+     */
+    public synchronized void preempt() {
+        preempted = true;
+        Thread t = thread;
+        if (t != null) {
+            t.interrupt();
+        }
+    }
+
+    public boolean isCancelled() {
+        return fut.isCancelled();
     }
 
     public CompletableFuture<Res> getFuture() {
@@ -35,6 +82,46 @@ public abstract class UserRequest<Res> {
         }
     }
 
+    /**
+     * runs the request on the current thread, which is interrupted when the request is cancelled or preempted.
+     * The request only stops at points where it calls {@link de.peeeq.wurstscript.utils.Utils#checkInterrupted()}.
+     * The interrupt flag is cleared afterwards, so that the thread can be reused for other requests.
+     *
+     * @return false, if the request was preempted and has to be run again
+     */
+    public boolean runInterruptible(ModelManager modelManager) {
+        synchronized (this) {
+            if (fut.isDone()) {
+                // cancelled before it was started
+                return true;
+            }
+            if (preempted) {
+                preempted = false;
+                return false;
+            }
+            thread = Thread.currentThread();
+        }
+        try {
+            fut.complete(execute(modelManager));
+        } catch (CancellationException e) {
+            synchronized (this) {
+                if (preempted && !fut.isDone()) {
+                    preempted = false;
+                    return false;
+                }
+            }
+            fut.cancel(true);
+        } catch (Exception e) {
+            fut.completeExceptionally(e);
+        } finally {
+            synchronized (this) {
+                thread = null;
+            }
+            Thread.interrupted();
+        }
+        return true;
+    }
+
     public void handleException(LanguageClient languageClient, Throwable err, CompletableFuture<Res> resFut) {
         languageClient.showMessage(new MessageParams(MessageType.Error, err.getMessage()));
         resFut.completeExceptionally(err);
@@ -0,0 +1,226 @@
+package de.peeeq.wurstio.parsecache;
+
+import com.google.common.hash.Hashing;
+import de.peeeq.wurstscript.WLogger;
+import de.peeeq.wurstscript.ast.Ast;
+import de.peeeq.wurstscript.ast.Element;
+import de.peeeq.wurstscript.utils.Utils;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The structure of the Wurst AST as described by the ast specification (parserspec/wurstscript.parseq).
+ * <p>
+ * The specification is included in the jar, so that compilation units can be serialized
+ * generically by using the getters and factory methods generated by abstractsyntaxgen.
+ */
+class AstSchema {
+    private static final String SPEC_RESOURCE = "/parserspec/wurstscript.parseq";
+    private static final Pattern CONSTRUCTOR = Pattern.compile("(\\w+)\\s*\\(([^()]*)\\)");
+    private static final Pattern LIST = Pattern.compile("^\\s*(\\w+)\\s*\\*\\s*(\\w+)", Pattern.MULTILINE);
+
+    private static @Nullable AstSchema instance;
+    private static boolean loaded = false;
+
+    private final List<NodeType> types = new ArrayList<>();
+    private final Map<String, NodeType> typesByName = new HashMap<>();
+    private final Map<Class<?>, NodeType> typesByClass = new ConcurrentHashMap<>();
+    private final String hash;
+
+    /**
+     * a concrete element type of the AST, either a list or a constructor with parameters
+     */
+    static class NodeType {
+        final int id;
+        final String name;
+        final @Nullable Class<?> listElementType;
+        final List<Param> params;
+        final Method factory;
+
+        NodeType(int id, String name, @Nullable Class<?> listElementType, List<Param> params, Method factory) {
+            this.id = id;
+            this.name = name;
+            this.listElementType = listElementType;
+            this.params = params;
+            this.factory = factory;
+        }
+
+        boolean isList() {
+            return listElementType != null;
+        }
+    }
+
+    static class Param {
+        final String name;
+        final Class<?> type;
+        final Method getter;
+
+        Param(String name, Class<?> type, Method getter) {
+            this.name = name;
+            this.type = type;
+            this.getter = getter;
+        }
+
+        boolean isElement() {
+            return Element.class.isAssignableFrom(type);
+        }
+    }
+
+    /**
+     * @return the schema or null, if the ast specification is not available
+     */
+    static synchronized @Nullable AstSchema instance() {
+        if (!loaded) {
+            loaded = true;
+            try (InputStream in = AstSchema.class.getResourceAsStream(SPEC_RESOURCE)) {
+                if (in == null) {
+                    WLogger.info("Ast specification " + SPEC_RESOURCE + " not found, parse cache is disabled.");
+                } else {
+                    instance = new AstSchema(Utils.readWholeStream(in));
+                }
+            } catch (IOException | ReflectiveOperationException | RuntimeException e) {
+                WLogger.warning("Could not load ast specification, parse cache is disabled.", e);
+            }
+        }
+        return instance;
+    }
+
+    private AstSchema(String spec) throws ReflectiveOperationException {
+        this.hash = Hashing.sha256().hashString(spec, StandardCharsets.UTF_8).toString();
+        String syntax = spec;
+        int attributesStart = syntax.indexOf("\nattributes:");
+        if (attributesStart >= 0) {
+            syntax = syntax.substring(0, attributesStart);
+        }
+        // remove comments:
+        syntax = syntax.replaceAll("//[^\n]*", "");
+
+        SortedMap<String, String> lists = new TreeMap<>();
+        Matcher listMatcher = LIST.matcher(syntax);
+        while (listMatcher.find()) {
+            lists.put(listMatcher.group(1), listMatcher.group(2));
+        }
+        SortedMap<String, String> constructors = new TreeMap<>();
+        Matcher constructorMatcher = CONSTRUCTOR.matcher(syntax);
+        while (constructorMatcher.find()) {
+            constructors.put(constructorMatcher.group(1), constructorMatcher.group(2));
+        }
+
+        for (Map.Entry<String, String> e : lists.entrySet()) {
+            addType(new NodeType(types.size(), e.getKey(), resolveType(e.getValue()),
+                    Collections.emptyList(), listFactory(e.getKey())));
+        }
+        for (Map.Entry<String, String> e : constructors.entrySet()) {
+            String name = e.getKey();
+            List<Param> params = parseParams(name, e.getValue());
+            Class<?>[] paramTypes = params.stream().map(p -> p.type).toArray(Class<?>[]::new);
+            addType(new NodeType(types.size(), name, null, params, Ast.class.getMethod(name, paramTypes)));
+        }
+    }
+
+    private void addType(NodeType t) {
+        types.add(t);
+        typesByName.put(t.name, t);
+    }
+
+    private List<Param> parseParams(String typeName, String paramsText) throws ReflectiveOperationException {
+        List<Param> result = new ArrayList<>();
+        Class<?> elementClass = resolveType(typeName);
+        for (String paramText : paramsText.split(",")) {
+            paramText = paramText.replaceAll("@\\w+", "").trim();
+            if (paramText.isEmpty()) {
+                continue;
+            }
+            String[] parts = paramText.split("\\s+");
+            if (parts.length != 2) {
+                // e.g. 'ref' parameters, which are not part of the tree
+                throw new IllegalArgumentException("Unsupported parameter '" + paramText + "' in " + typeName);
+            }
+            String name = parts[1];
+            result.add(new Param(name, resolveType(parts[0]), elementClass.getMethod("get" + Utils.toFirstUpper(name))));
+        }
+        return result;
+    }
+
+    private static Class<?> resolveType(String name) throws ClassNotFoundException {
+        switch (name) {
+            case "boolean":
+                return boolean.class;
+            case "int":
+                return int.class;
+            case "double":
+                return double.class;
+            case "String":
+                return String.class;
+        }
+        if (name.contains(".")) {
+            return Class.forName(name);
+        }
+        return Class.forName(Ast.class.getPackage().getName() + "." + name);
+    }
+
+    /**
+     * finds the factory method for an empty list
+     */
+    private static Method listFactory(String name) throws NoSuchMethodException {
+        for (Method m : Ast.class.getMethods()) {
+            if (m.getName().equals(name)
+                    && Modifier.isStatic(m.getModifiers())
+                    && m.getParameterCount() == 1
+                    && (m.getParameterTypes()[0].isArray() || m.getParameterTypes()[0].isAssignableFrom(List.class))) {
+                return m;
+            }
+        }
+        throw new NoSuchMethodException("Ast." + name);
+    }
+
+    /**
+     * creates a new empty list of the given type
+     */
+    @SuppressWarnings("unchecked")
+    List<Element> newList(NodeType t) throws ReflectiveOperationException {
+        Class<?> paramType = t.factory.getParameterTypes()[0];
+        Object arg = paramType.isArray()
+                ? Array.newInstance(paramType.getComponentType(), 0)
+                : Collections.emptyList();
+        return (List<Element>) t.factory.invoke(null, arg);
+    }
+
+    NodeType typeOf(Element e) {
+        return typesByClass.computeIfAbsent(e.getClass(), c -> {
+            String name = c.getSimpleName();
+            if (name.endsWith("Impl")) {
+                name = name.substring(0, name.length() - "Impl".length());
+            }
+            NodeType t = typesByName.get(name);
+            if (t == null) {
+                throw new UnsupportedOperationException("Element type " + c + " is not part of the ast specification.");
+            }
+            return t;
+        });
+    }
+
+    NodeType typeById(int id) {
+        if (id < 0 || id >= types.size()) {
+            throw new IllegalArgumentException("Invalid element type id " + id);
+        }
+        return types.get(id);
+    }
+
+    /**
+     * a hash of the specification, changes whenever the structure of the AST changes
+     */
+    String getHash() {
+        return hash;
+    }
+}
@@ -0,0 +1,256 @@
+package de.peeeq.wurstio.parsecache;
+
+import de.peeeq.wurstio.parsecache.AstSchema.NodeType;
+import de.peeeq.wurstio.parsecache.AstSchema.Param;
+import de.peeeq.wurstscript.WurstOperator;
+import de.peeeq.wurstscript.ast.CompilationUnit;
+import de.peeeq.wurstscript.ast.Element;
+import de.peeeq.wurstscript.attributes.CompilationUnitInfo;
+import de.peeeq.wurstscript.attributes.CompilationUnitInfo.IndentationMode;
+import de.peeeq.wurstscript.attributes.ErrorHandler;
+import de.peeeq.wurstscript.parser.WPos;
+import de.peeeq.wurstscript.utils.LineOffsets;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Binary serialization of parsed compilation units.
+ * <p>
+ * Strings and line offsets are shared via back references, so that the
+ * positions of all elements in a file only store their start and end offset.
+ * The file name of the compilation unit itself is not stored, it is
+ * replaced with the name of the file which is loaded.
+ */
+class AstSerializer {
+    private static final int NULL_REF = -1;
+    private static final int NEW_REF = -2;
+    private static final int SOURCE_FILE_REF = -3;
+
+    private final AstSchema schema;
+
+    AstSerializer(AstSchema schema) {
+        this.schema = schema;
+    }
+
+    void write(DataOutputStream out, String sourceFile, CompilationUnit cu) throws IOException {
+        new Writer(out, sourceFile).writeElement(cu);
+    }
+
+    CompilationUnit read(DataInputStream in, String sourceFile, ErrorHandler errorHandler) throws IOException {
+        Element e = new Reader(in, sourceFile, errorHandler).readElement();
+        if (!(e instanceof CompilationUnit)) {
+            throw new IOException("Expected compilation unit, but found " + e.getClass());
+        }
+        return (CompilationUnit) e;
+    }
+
+    private class Writer {
+        private final DataOutputStream out;
+        private final String sourceFile;
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final Map<LineOffsets, Integer> lineOffsets = new IdentityHashMap<>();
+
+        Writer(DataOutputStream out, String sourceFile) {
+            this.out = out;
+            this.sourceFile = sourceFile;
+        }
+
+        void writeElement(Element e) throws IOException {
+            NodeType t = schema.typeOf(e);
+            out.writeShort(t.id);
+            if (t.isList()) {
+                out.writeInt(e.size());
+                for (int i = 0; i < e.size(); i++) {
+                    writeElement(e.get(i));
+                }
+            } else {
+                for (Param p : t.params) {
+                    writeValue(p.type, get(e, p));
+                }
+            }
+        }
+
+        private Object get(Element e, Param p) throws IOException {
+            try {
+                return p.getter.invoke(e);
+            } catch (IllegalAccessException | InvocationTargetException ex) {
+                throw new IOException("Could not read " + p.name + " of " + e.getClass(), ex);
+            }
+        }
+
+        private void writeValue(Class<?> type, Object value) throws IOException {
+            if (Element.class.isAssignableFrom(type)) {
+                writeElement((Element) value);
+            } else if (type == WPos.class) {
+                writePos((WPos) value);
+            } else if (type == String.class) {
+                writeString((String) value);
+            } else if (type == boolean.class) {
+                out.writeBoolean((Boolean) value);
+            } else if (type == int.class) {
+                out.writeInt((Integer) value);
+            } else if (type == double.class) {
+                out.writeDouble((Double) value);
+            } else if (type == WurstOperator.class) {
+                out.writeByte(((WurstOperator) value).ordinal());
+            } else if (type == CompilationUnitInfo.class) {
+                CompilationUnitInfo info = (CompilationUnitInfo) value;
+                writeString(info.getIndentationMode().getIndent());
+            } else {
+                throw new UnsupportedOperationException("Cannot serialize value of type " + type);
+            }
+        }
+
+        private void writePos(WPos pos) throws IOException {
+            writeString(pos.getFile());
+            LineOffsets lo = pos.getLineOffsets();
+            if (lo == null) {
+                out.writeInt(NULL_REF);
+            } else {
+                Integer ref = lineOffsets.get(lo);
+                if (ref == null) {
+                    lineOffsets.put(lo, lineOffsets.size());
+                    out.writeInt(NEW_REF);
+                    int[] offsets = lo.toArray();
+                    out.writeInt(offsets.length);
+                    for (int offset : offsets) {
+                        out.writeInt(offset);
+                    }
+                } else {
+                    out.writeInt(ref);
+                }
+            }
+            out.writeInt(pos.getLeftPos());
+            out.writeInt(pos.getRightPos());
+        }
+
+        private void writeString(@Nullable String s) throws IOException {
+            if (s == null) {
+                out.writeInt(NULL_REF);
+            } else if (s.equals(sourceFile)) {
+                out.writeInt(SOURCE_FILE_REF);
+            } else {
+                Integer ref = strings.get(s);
+                if (ref == null) {
+                    strings.put(s, strings.size());
+                    out.writeInt(NEW_REF);
+                    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                } else {
+                    out.writeInt(ref);
+                }
+            }
+        }
+    }
+
+    private class Reader {
+        private final DataInputStream in;
+        private final String sourceFile;
+        private final ErrorHandler errorHandler;
+        private final List<String> strings = new ArrayList<>();
+        private final List<LineOffsets> lineOffsets = new ArrayList<>();
+
+        Reader(DataInputStream in, String sourceFile, ErrorHandler errorHandler) {
+            this.in = in;
+            this.sourceFile = sourceFile;
+            this.errorHandler = errorHandler;
+        }
+
+        Element readElement() throws IOException {
+            NodeType t = schema.typeById(in.readShort());
+            try {
+                if (t.isList()) {
+                    List<Element> list = schema.newList(t);
+                    int size = in.readInt();
+                    for (int i = 0; i < size; i++) {
+                        list.add(readElement());
+                    }
+                    return (Element) list;
+                } else {
+                    Object[] args = new Object[t.params.size()];
+                    for (int i = 0; i < args.length; i++) {
+                        args[i] = readValue(t.params.get(i).type);
+                    }
+                    return (Element) t.factory.invoke(null, args);
+                }
+            } catch (ReflectiveOperationException e) {
+                throw new IOException("Could not create element of type " + t.name, e);
+            }
+        }
+
+        private Object readValue(Class<?> type) throws IOException {
+            if (Element.class.isAssignableFrom(type)) {
+                return readElement();
+            } else if (type == WPos.class) {
+                return readPos();
+            } else if (type == String.class) {
+                return readString();
+            } else if (type == boolean.class) {
+                return in.readBoolean();
+            } else if (type == int.class) {
+                return in.readInt();
+            } else if (type == double.class) {
+                return in.readDouble();
+            } else if (type == WurstOperator.class) {
+                return WurstOperator.values()[in.readByte()];
+            } else if (type == CompilationUnitInfo.class) {
+                CompilationUnitInfo info = new CompilationUnitInfo(errorHandler);
+                String indent = readString();
+                if ("\t".equals(indent)) {
+                    info.setIndentationMode(IndentationMode.tabs());
+                } else if (indent != null) {
+                    info.setIndentationMode(IndentationMode.spaces(indent.length()));
+                }
+                return info;
+            } else {
+                throw new IOException("Cannot deserialize value of type " + type);
+            }
+        }
+
+        private WPos readPos() throws IOException {
+            String file = readString();
+            LineOffsets lo;
+            int ref = in.readInt();
+            if (ref == NULL_REF) {
+                lo = null;
+            } else if (ref == NEW_REF) {
+                int[] offsets = new int[in.readInt()];
+                for (int i = 0; i < offsets.length; i++) {
+                    offsets[i] = in.readInt();
+                }
+                lo = LineOffsets.fromArray(offsets);
+                lineOffsets.add(lo);
+            } else {
+                lo = lineOffsets.get(ref);
+            }
+            int left = in.readInt();
+            int right = in.readInt();
+            return new WPos(file == null ? sourceFile : file, lo, left, right);
+        }
+
+        private @Nullable String readString() throws IOException {
+            int ref = in.readInt();
+            switch (ref) {
+                case NULL_REF:
+                    return null;
+                case SOURCE_FILE_REF:
+                    return sourceFile;
+                case NEW_REF:
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    String s = new String(bytes, StandardCharsets.UTF_8);
+                    strings.add(s);
+                    return s;
+                default:
+                    return strings.get(ref);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package de.peeeq.wurstio.parsecache;
+
+import com.google.common.hash.Hashing;
+import de.peeeq.wurstscript.CompileTimeInfo;
+import de.peeeq.wurstscript.WLogger;
+import de.peeeq.wurstscript.ast.CompilationUnit;
+import de.peeeq.wurstscript.attributes.ErrorHandler;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A persistent cache for parsed compilation units, stored in the _build folder of a project.
+ * <p>
+ * There is one cache entry per source file. An entry is only used when the content hash of the
+ * file, the compiler revision and the ast specification are the same as when the entry was written.
+ * Only files which were parsed without errors or warnings should be stored,
+ * because the errors are not part of the cache.
+ */
+public class ParseCache {
+    private static final int MAGIC = 0x57505243; // "WPRC"
+    private static final int FORMAT_VERSION = 1;
+
+    private final File cacheDir;
+    private final AstSchema schema;
+    private final AstSerializer serializer;
+
+    private ParseCache(File cacheDir, AstSchema schema) {
+        this.cacheDir = cacheDir;
+        this.schema = schema;
+        this.serializer = new AstSerializer(schema);
+    }
+
+    /**
+     * @return the parse cache for the given project or null, if caching is not possible
+     */
+    public static @Nullable ParseCache forProject(@Nullable File projectFolder) {
+        if (projectFolder == null) {
+            return null;
+        }
+        AstSchema schema = AstSchema.instance();
+        if (schema == null) {
+            return null;
+        }
+        return new ParseCache(new File(new File(projectFolder, "_build"), "parsecache"), schema);
+    }
+
+    /**
+     * loads the compilation unit for the given file from the cache
+     *
+     * @return the cached compilation unit or null, if there is no up to date entry
+     */
+    public @Nullable CompilationUnit load(String sourceFile, String contents, boolean hasCommonJ, ErrorHandler errorHandler) {
+        File entry = entryFile(sourceFile);
+        if (!entry.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(entry)))) {
+            if (in.readInt() != MAGIC
+                    || in.readInt() != FORMAT_VERSION
+                    || !in.readUTF().equals(key(contents, hasCommonJ))) {
+                return null;
+            }
+            return serializer.read(in, sourceFile, errorHandler);
+        } catch (IOException | RuntimeException e) {
+            WLogger.info("Could not read parse cache entry for " + sourceFile + ": " + e);
+            //noinspection ResultOfMethodCallIgnored
+            entry.delete();
+            return null;
+        }
+    }
+
+    /**
+     * stores a freshly parsed compilation unit in the cache
+     */
+    public void store(String sourceFile, String contents, boolean hasCommonJ, CompilationUnit cu) {
+        File entry = entryFile(sourceFile);
+        File temp = null;
+        try {
+            //noinspection ResultOfMethodCallIgnored
+            cacheDir.mkdirs();
+            temp = File.createTempFile(entry.getName(), ".tmp", cacheDir);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(key(contents, hasCommonJ));
+                serializer.write(out, sourceFile, cu);
+            }
+            try {
+                Files.move(temp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            WLogger.info("Could not write parse cache entry for " + sourceFile + ": " + e);
+            if (temp != null) {
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+            }
+        }
+    }
+
+    private File entryFile(String sourceFile) {
+        String name = Hashing.sha256().hashString(sourceFile, StandardCharsets.UTF_8).toString();
+        return new File(cacheDir, name + ".ast");
+    }
+
+    private String key(String contents, boolean hasCommonJ) {
+        return Hashing.sha256().hashString(contents, StandardCharsets.UTF_8)
+                + ":" + hasCommonJ
+                + ":" + CompileTimeInfo.revisionLong
+                + ":" + schema.getHash();
+    }
+}
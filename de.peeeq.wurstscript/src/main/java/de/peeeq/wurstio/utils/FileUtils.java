@@ -1,13 +1,15 @@
 package de.peeeq.wurstio.utils;
 
 import com.google.common.base.Charsets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
 import com.google.common.io.Files;
 import de.peeeq.wurstio.languageserver.WFile;
 import de.peeeq.wurstscript.parser.WPos;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.IOException;
+import java.io.*;
+import java.util.Optional;
 
 /**
  *
@@ -19,6 +21,26 @@ public class FileUtils {
         Files.asCharSink(outFile, Charsets.UTF_8).write(data);
     }
 
+    public interface Printer {
+        void print(Writer out) throws IOException;
+    }
+
+    /**
+     * writes the output of the printer to the file as UTF-8, without keeping the whole text in memory
+     *
+     * @param computeHash also calculate the SHA-256 hash of the written bytes
+     * @return the hash, if computeHash is set
+     */
+    public static Optional<HashCode> writeStreaming(File outFile, boolean computeHash, Printer printer) throws IOException {
+        try (OutputStream fileOut = new FileOutputStream(outFile)) {
+            HashingOutputStream hashingOut = computeHash ? new HashingOutputStream(Hashing.sha256(), fileOut) : null;
+            Writer out = new BufferedWriter(new OutputStreamWriter(hashingOut != null ? hashingOut : fileOut, Charsets.UTF_8), 1 << 16);
+            printer.print(out);
+            out.flush();
+            return hashingOut == null ? Optional.empty() : Optional.of(hashingOut.hash());
+        }
+    }
+
     public static boolean sameFile(File f1, File f2) {
         try {
             return java.nio.file.Files.isSameFile(f1.toPath(), f2.toPath());
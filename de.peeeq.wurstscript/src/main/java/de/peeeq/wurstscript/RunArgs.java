@@ -16,9 +16,13 @@ public class RunArgs {
     private final String[] args;
     private final RunOption optionLua;
     private final RunOption optionCompiletimeCache;
+    private final RunOption optionCompiledInterpreter;
     private List<String> files = Lists.newArrayList();
     private @Nullable String mapFile = null;
     private @Nullable String outFile = null;
+    private @Nullable String recordProfileFile = null;
+    private @Nullable String profileFile = null;
+    private @Nullable String metricsFile = null;
     private @Nullable String workspaceroot = null;
     private @Nullable String inputmap = null;
     private @Nullable int testTimeout = 20;
@@ -101,6 +105,8 @@ public class RunArgs {
                 + "some programming errors like null-pointer-dereferences or accessing of destroyed objects can no longer be detected. "
                 + "It is strongly recommended to not use this option, but it can give some performance benefits.");
         optionMeasureTimes = addOption("measure", "Measure how long each step of the translation process takes.");
+        addOptionWithArg("metrics", "Writes time, CPU time, allocated memory, program size and optimization counts for each step of the translation process "
+                + "to the given file (CSV if the file name ends with .csv, JSON otherwise).", arg -> metricsFile = arg);
         // tools
         optionAbout = addOption("-about", "Show the 'about' window.");
         optionFixInstall = addOption("-fixInstallation", "Checks your wc3 installation and applies compatibility fixes");
@@ -130,9 +136,14 @@ public class RunArgs {
         addOptionWithArg("inputmap", "The next argument should be the input map.", arg -> inputmap = arg);
         optionLua = addOption("lua", "Choose Lua as the compilation target.");
         optionCompiletimeCache = addOption("compiletimeCache", "(Experimental) Cache results of compiletime invocations without side effects");
+        optionCompiledInterpreter = addOption("compiledInterpreter", "(Experimental) Compile functions to register based bytecode before running compiletime functions and tests, instead of interpreting the intermediate language directly.");
 
         addOptionWithArg("functionSplitLimit", "The maximum number of operations in a function before it is split by the function splitter (used for compiletime functions)",
             s -> functionSplitLimit = Integer.parseInt(s, 10));
+        addOptionWithArg("recordProfile", "(Experimental) Counts function calls and loop iterations while running tests and compiletime functions and writes them to the given file.",
+            arg -> recordProfileFile = arg);
+        addOptionWithArg("profile", "(Experimental) Uses a profile written with -recordProfile to inline hot functions more aggressively and cold functions less.",
+            arg -> profileFile = arg);
 
         nextArg:
         for (int i = 0; i < args.length; i++) {
@@ -360,9 +371,25 @@ public class RunArgs {
         return optionCompiletimeCache.isSet;
     }
 
+    public boolean isCompiledInterpreter() {
+        return optionCompiledInterpreter.isSet;
+    }
+
 
     public int getFunctionSplitLimit() {
         return functionSplitLimit;
     }
 
+    public @Nullable String getRecordProfileFile() {
+        return recordProfileFile;
+    }
+
+    public @Nullable String getProfileFile() {
+        return profileFile;
+    }
+
+    public @Nullable String getMetricsFile() {
+        return metricsFile;
+    }
+
 }
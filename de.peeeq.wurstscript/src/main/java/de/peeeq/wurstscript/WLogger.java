@@ -28,6 +28,10 @@ public abstract class WLogger {
         instance.trace(msg);
     }
 
+    public static boolean isTraceEnabled() {
+        return instance.isTraceEnabled();
+    }
+
     public static void info(String msg) {
         instance.info(msg);
     }
@@ -22,6 +22,11 @@ public class WLoggerDefault implements WLoggerI {
         logger.trace(msg);
     }
 
+    @Override
+    public boolean isTraceEnabled() {
+        return logger.isTraceEnabled();
+    }
+
     /**
      * (non-Javadoc)
      *
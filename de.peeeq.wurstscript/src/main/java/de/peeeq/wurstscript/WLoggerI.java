@@ -7,6 +7,8 @@ public interface WLoggerI {
 
     void trace(String msg);
 
+    boolean isTraceEnabled();
+
     void info(String msg);
 
     void warning(String msg);
@@ -5,7 +5,6 @@ import de.peeeq.wurstscript.ast.CompilationUnit;
 import de.peeeq.wurstscript.ast.WurstModel;
 import de.peeeq.wurstscript.attributes.ErrorHandler;
 import de.peeeq.wurstscript.gui.WurstGui;
-import de.peeeq.wurstscript.validation.TRVEHelper;
 import de.peeeq.wurstscript.validation.WurstValidator;
 
 import java.util.Collection;
@@ -27,7 +26,6 @@ public class WurstChecker {
         if (root.isEmpty()) {
             return;
         }
-        TRVEHelper.protectedVariables.clear();
         gui.sendProgress("Checking Files");
 
         if (errorHandler.getErrorCount() > 0) return;
@@ -125,6 +125,13 @@ public enum WurstOperator {
         throw new Error("cannot translate " + this);
     }
 
+    /**
+     * true for the operators which only evaluate their right operand when needed (and, or)
+     */
+    public boolean isShortCircuit() {
+        return this == AND || this == OR;
+    }
+
     public ILconst evaluateBinaryOperator(ILconst left,
                                           Supplier<ILconst> right) {
         switch (this) {
@@ -132,32 +139,53 @@ public enum WurstOperator {
                 return ILconstBool.instance(((ILconstBool) left).getVal() && ((ILconstBool) right.get()).getVal());
             case OR:
                 return ILconstBool.instance(((ILconstBool) left).getVal() || ((ILconstBool) right.get()).getVal());
+            default:
+                return evaluateBinaryOperator(left, right.get());
+        }
+    }
+
+    /**
+     * evaluates a binary operator with both operands already evaluated,
+     * use {@link #evaluateBinaryOperator(ILconst, Supplier)} to keep the short-circuit semantics of and/or
+     */
+    public ILconst evaluateBinaryOperator(ILconst left, ILconst right) {
+        if (left instanceof ILconstInt && right instanceof ILconstInt) {
+            ILconst r = evaluateIntOperator(((ILconstInt) left).getVal(), ((ILconstInt) right).getVal());
+            if (r != null) {
+                return r;
+            }
+        }
+        switch (this) {
+            case AND:
+                return ILconstBool.instance(((ILconstBool) left).getVal() && ((ILconstBool) right).getVal());
+            case OR:
+                return ILconstBool.instance(((ILconstBool) left).getVal() || ((ILconstBool) right).getVal());
             case DIV_INT:
-                return new ILconstInt(((ILconstInt) left).getVal() / ((ILconstInt) right.get()).getVal());
+                return ILconstInt.create(((ILconstInt) left).getVal() / ((ILconstInt) right).getVal());
             case DIV_REAL:
-                return new ILconstReal(getReal(left) / getReal(right.get()));
+                return new ILconstReal(getReal(left) / getReal(right));
             case EQ:
-                return ILconstBool.instance(left.equals(right.get()));
+                return ILconstBool.instance(left.equals(right));
             case GREATER:
-                return ((ILconstNum) left).greater((ILconstNum) right.get());
+                return ((ILconstNum) left).greater((ILconstNum) right);
             case GREATER_EQ:
-                return ((ILconstNum) left).greaterEq((ILconstNum) right.get());
+                return ((ILconstNum) left).greaterEq((ILconstNum) right);
             case LESS:
-                return ((ILconstNum) left).less((ILconstNum) right.get());
+                return ((ILconstNum) left).less((ILconstNum) right);
             case LESS_EQ:
-                return ((ILconstNum) left).lessEq((ILconstNum) right.get());
+                return ((ILconstNum) left).lessEq((ILconstNum) right);
             case MINUS:
-                return ((ILconstNum) left).sub((ILconstNum) right.get());
+                return ((ILconstNum) left).sub((ILconstNum) right);
             case MOD_INT: {
-                int right2 = ((ILconstInt) right.get()).getVal();
+                int right2 = ((ILconstInt) right).getVal();
                 int r = ((ILconstInt) left).getVal() % right2;
                 if (r < 0) {
                     r += right2;
                 }
-                return new ILconstInt(r);
+                return ILconstInt.create(r);
             }
             case MOD_REAL: {
-                float right2 = getReal(right.get());
+                float right2 = getReal(right);
                 float r = getReal(left) % right2;
                 if (r < 0) {
                     r += right2;
@@ -165,11 +193,11 @@ public enum WurstOperator {
                 return new ILconstReal(r);
             }
             case MULT:
-                return ((ILconstNum) left).mul((ILconstNum) right.get());
+                return ((ILconstNum) left).mul((ILconstNum) right);
             case NOTEQ:
-                return ILconstBool.instance(!left.equals(right.get()));
+                return ILconstBool.instance(!left.equals(right));
             case PLUS:
-                return ((ILconstAddable) left).add((ILconstAddable) right.get());
+                return ((ILconstAddable) left).add((ILconstAddable) right);
             case NOT:
             case UNARY_MINUS:
                 break;
@@ -178,6 +206,44 @@ public enum WurstOperator {
 
     }
 
+    /**
+     * evaluates the operator on two integers without going through the generic number interfaces,
+     * returns null for operators which are not defined on integers
+     */
+    private @Nullable ILconst evaluateIntOperator(int left, int right) {
+        switch (this) {
+            case PLUS:
+                return ILconstInt.create(left + right);
+            case MINUS:
+                return ILconstInt.create(left - right);
+            case MULT:
+                return ILconstInt.create(left * right);
+            case DIV_INT:
+                return ILconstInt.create(left / right);
+            case MOD_INT: {
+                int r = left % right;
+                if (r < 0) {
+                    r += right;
+                }
+                return ILconstInt.create(r);
+            }
+            case EQ:
+                return ILconstBool.instance(left == right);
+            case NOTEQ:
+                return ILconstBool.instance(left != right);
+            case LESS:
+                return ILconstBool.instance(left < right);
+            case LESS_EQ:
+                return ILconstBool.instance(left <= right);
+            case GREATER:
+                return ILconstBool.instance(left > right);
+            case GREATER_EQ:
+                return ILconstBool.instance(left >= right);
+            default:
+                return null;
+        }
+    }
+
     private static float getReal(ILconst c) {
         if (c instanceof ILconstReal) {
             return ((ILconstReal) c).getVal();
@@ -3,8 +3,12 @@ package de.peeeq.wurstscript;
 import de.peeeq.wurstscript.antlr.JassParser;
 import de.peeeq.wurstscript.antlr.WurstLexer;
 import de.peeeq.wurstscript.antlr.WurstParser.CompilationUnitContext;
+import de.peeeq.wurstscript.antlr.WurstParser.EntityContext;
 import de.peeeq.wurstscript.ast.Ast;
 import de.peeeq.wurstscript.ast.CompilationUnit;
+import de.peeeq.wurstscript.ast.WEntities;
+import de.peeeq.wurstscript.ast.WEntity;
+import de.peeeq.wurstscript.ast.WPackages;
 import de.peeeq.wurstscript.attributes.CompilationUnitInfo;
 import de.peeeq.wurstscript.attributes.CompileError;
 import de.peeeq.wurstscript.attributes.ErrorHandler;
@@ -14,16 +18,22 @@ import de.peeeq.wurstscript.jass.ExtendedJassLexer;
 import de.peeeq.wurstscript.jurst.AntlrJurstParseTreeTransformer;
 import de.peeeq.wurstscript.jurst.ExtendedJurstLexer;
 import de.peeeq.wurstscript.jurst.antlr.JurstParser;
+import de.peeeq.wurstscript.parser.RopeCharStream;
 import de.peeeq.wurstscript.parser.WPos;
 import de.peeeq.wurstscript.parser.antlr.AntlrWurstParseTreeTransformer;
 import de.peeeq.wurstscript.parser.antlr.ExtendedWurstLexer;
 import de.peeeq.wurstscript.utils.LineOffsets;
+import de.peeeq.wurstscript.utils.Rope;
 import org.antlr.v4.runtime.*;
 import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.eclipse.jdt.annotation.Nullable;
 
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
 
 public class WurstParser {
     private static final int MAX_SYNTAX_ERRORS = 15;
@@ -36,13 +46,16 @@ public class WurstParser {
     }
 
     public CompilationUnit parse(Reader reader, String source, boolean hasCommonJ) {
-        return parseWithAntlr(reader, source, hasCommonJ);
+        return parseWithAntlr(readInput(reader), source, hasCommonJ);
+    }
+
+    public CompilationUnit parse(CharStream input, String source, boolean hasCommonJ) {
+        return parseWithAntlr(input, source, hasCommonJ);
     }
 
 
-    private CompilationUnit parseWithAntlr(Reader reader, final String source, boolean hasCommonJ) {
+    private CompilationUnit parseWithAntlr(CharStream input, final String source, boolean hasCommonJ) {
         try {
-            CharStream input = CharStreams.fromReader(reader);
             // create a lexer that feeds off of input CharStream
             final ExtendedWurstLexer lexer = new ExtendedWurstLexer(input);
             // create a buffer of tokens pulled from the lexer
@@ -115,9 +128,6 @@ public class WurstParser {
             root.getCuInfo().setIndentationMode(lexer.getIndentationMode());
             return root;
 
-        } catch (IOException e) {
-            WLogger.severe(e);
-            throw new Error(e);
         } catch (TooManyErrorsException e) {
             WLogger.info("Stopped parsing file " + source + ", too many errors");
             return emptyCompilationUnit();
@@ -126,12 +136,15 @@ public class WurstParser {
 
 
     public CompilationUnit parseJurst(Reader reader, String source, boolean hasCommonJ) {
-        return parseJurstWithAntlr(reader, source, hasCommonJ);
+        return parseJurstWithAntlr(readInput(reader), source, hasCommonJ);
+    }
+
+    public CompilationUnit parseJurst(CharStream input, String source, boolean hasCommonJ) {
+        return parseJurstWithAntlr(input, source, hasCommonJ);
     }
 
-    private CompilationUnit parseJurstWithAntlr(Reader reader, final String source, boolean hasCommonJ) {
+    private CompilationUnit parseJurstWithAntlr(CharStream input, final String source, boolean hasCommonJ) {
         try {
-            CharStream input = CharStreams.fromReader(reader);
             // create a lexer that feeds off of input CharStream
             final ExtendedJurstLexer lexer = new ExtendedJurstLexer(input);
             // create a buffer of tokens pulled from the lexer
@@ -184,9 +197,6 @@ public class WurstParser {
             removeSyntacticSugar(root, hasCommonJ);
             return root;
 
-        } catch (IOException e) {
-            WLogger.severe(e);
-            throw new Error(e);
         } catch (TooManyErrorsException e) {
             WLogger.info("Stopped parsing file " + source + ", too many errors");
             return emptyCompilationUnit();
@@ -194,12 +204,15 @@ public class WurstParser {
     }
 
     public CompilationUnit parseJass(Reader reader, String source, boolean hasCommonJ) {
-        return parseJassAntlr(reader, source, hasCommonJ);
+        return parseJassAntlr(readInput(reader), source, hasCommonJ);
+    }
+
+    public CompilationUnit parseJass(CharStream input, String source, boolean hasCommonJ) {
+        return parseJassAntlr(input, source, hasCommonJ);
     }
 
-    private CompilationUnit parseJassAntlr(Reader reader, final String source, boolean hasCommonJ) {
+    private CompilationUnit parseJassAntlr(CharStream input, final String source, boolean hasCommonJ) {
         try {
-            CharStream input = CharStreams.fromReader(reader);
             // create a lexer that feeds off of input CharStream
             final ExtendedJassLexer lexer = new ExtendedJassLexer(input);
             // create a buffer of tokens pulled from the lexer
@@ -252,9 +265,6 @@ public class WurstParser {
             removeSyntacticSugar(root, hasCommonJ);
             return root;
 
-        } catch (IOException e) {
-            WLogger.severe(e);
-            throw new Error(e);
         } catch (TooManyErrorsException e) {
             WLogger.info("Stopped parsing file " + source + ", too many errors");
             return emptyCompilationUnit();
@@ -262,6 +272,85 @@ public class WurstParser {
     }
 
 
+    /**
+     * parses the top level entities in a range of a Wurst file.
+     * The range must start at the beginning of a line inside of a package and
+     * it must not contain anything else but entities.
+     *
+     * @param lineOffsets       the line offsets of the whole text, used for the positions of the entities
+     * @param indentationMode   the indentation mode of the rest of the file
+     * @return the entities or null, if the range could not be parsed without errors or warnings
+     */
+    public @Nullable List<WEntity> parseEntities(Rope text, int start, int end, String source,
+                                                 LineOffsets lineOffsets, CompilationUnitInfo.IndentationMode indentationMode) {
+        ExtendedWurstLexer lexer = new ExtendedWurstLexer(new RopeCharStream(text, source, start, end));
+        lexer.startInPackage();
+        // when the range is followed by another entity, the blocks end before it and not at the end of the file
+        lexer.setEndsBeforeLine(end < text.length());
+        CommonTokenStream tokens = new CommonTokenStream(lexer);
+        de.peeeq.wurstscript.antlr.WurstParser parser = new de.peeeq.wurstscript.antlr.WurstParser(tokens);
+        // stop at the first error, the caller will parse the whole file instead
+        ANTLRErrorListener l = new BaseErrorListener() {
+            @Override
+            public void syntaxError(@SuppressWarnings("null") Recognizer<?, ?> recognizer, @SuppressWarnings("null") Object offendingSymbol, int line,
+                                    int charPositionInLine,
+                                    @SuppressWarnings("null") String msg, @SuppressWarnings("null") RecognitionException e) {
+                throw new ParseCancellationException(msg);
+            }
+        };
+        lexer.setErrorListener(l);
+        parser.removeErrorListeners();
+        parser.addErrorListener(l);
+        parser.setErrorHandler(new BailErrorStrategy());
+        try {
+            List<EntityContext> entities = new ArrayList<>();
+            while (true) {
+                Token t = tokens.LT(1);
+                if (t.getType() == Token.EOF) {
+                    break;
+                } else if (t.getType() == WurstLexer.NL) {
+                    tokens.consume();
+                } else if (t.getType() == WurstLexer.ENDPACKAGE) {
+                    if (t.getStartIndex() < end) {
+                        // an endpackage in the text and not the one added at the end of the file
+                        return null;
+                    }
+                    tokens.consume();
+                } else {
+                    entities.add(parser.entity());
+                }
+            }
+            if (lexer.getTabWarning() != null
+                    || lexer.hasIndentation() && !lexer.getIndentationMode().getIndent().equals(indentationMode.getIndent())) {
+                return null;
+            }
+            List<WEntity> result = new AntlrWurstParseTreeTransformer(source, errorHandler, lineOffsets).transformEntities(entities);
+            if (result == null) {
+                return null;
+            }
+            // syntactic sugar is removed per compilation unit, so put the entities into a temporary one
+            WPos pos = new WPos(source, lineOffsets, start, end);
+            WEntities elements = Ast.WEntities();
+            elements.addAll(result);
+            WPackages packages = Ast.WPackages();
+            packages.add(Ast.WPackage(pos, Ast.Modifiers(), Ast.Identifier(pos, ""), Ast.WImports(), elements));
+            CompilationUnit root = Ast.CompilationUnit(new CompilationUnitInfo(errorHandler), Ast.JassToplevelDeclarations(), packages);
+            removeSyntacticSugar(root, false);
+            return elements.removeAll();
+        } catch (ParseCancellationException | CompileError e) {
+            return null;
+        }
+    }
+
+    private static CharStream readInput(Reader reader) {
+        try {
+            return CharStreams.fromReader(reader);
+        } catch (IOException e) {
+            WLogger.severe(e);
+            throw new Error(e);
+        }
+    }
+
     public CompilationUnit emptyCompilationUnit() {
         return Ast.CompilationUnit(new CompilationUnitInfo(errorHandler), Ast.JassToplevelDeclarations(), Ast.WPackages());
     }
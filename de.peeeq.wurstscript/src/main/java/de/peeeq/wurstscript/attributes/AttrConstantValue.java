@@ -26,7 +26,7 @@ public class AttrConstantValue {
 
     public static ILconst calculate(ExprIntVal e) {
         // for an integer, just return the int
-        return new ILconstInt(e.getValI());
+        return ILconstInt.create(e.getValI());
     }
 
     public static ILconst calculate(ExprVarAccess e) {
@@ -0,0 +1,248 @@
+package de.peeeq.wurstscript.intermediatelang;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Storage for the elements of an array value.
+ *
+ * Elements with an index below {@link #DENSE_LIMIT} are stored in a growable array, which is specialized
+ * for integers, reals and booleans, so that reading and writing them does not need a map lookup.
+ * Elements with negative or very high indexes are stored in a sparse map.
+ *
+ * A specialized storage only accepts values of its component type. {@link #set(int, ILconst)} returns
+ * a storage for arbitrary values when some other value is stored, so callers must always continue with
+ * the returned storage.
+ */
+public abstract class ArrayStorage {
+    /** indexes below this limit are stored densely, this covers the 32768 elements of JASS arrays */
+    public static final int DENSE_LIMIT = 1 << 15;
+    private static final int MIN_CAPACITY = 16;
+
+    protected final Supplier<ILconst> defaultValue;
+    /** elements with an index outside of the dense range */
+    private @Nullable TreeMap<Integer, ILconst> sparse;
+    /** all dense elements with an index below this value have been used */
+    protected int length;
+
+    protected ArrayStorage(Supplier<ILconst> defaultValue) {
+        this.defaultValue = defaultValue;
+    }
+
+    /**
+     * creates the storage for an array, specialized for the type of the default value
+     */
+    public static ArrayStorage create(Supplier<ILconst> defaultValue) {
+        ILconst d = defaultValue.get();
+        if (d instanceof ILconstInt) {
+            return new Ints(defaultValue, ((ILconstInt) d).getVal());
+        } else if (d instanceof ILconstReal) {
+            return new Reals(defaultValue, ((ILconstReal) d).getVal());
+        } else if (d instanceof ILconstBool) {
+            return new Bools(defaultValue, ((ILconstBool) d).getVal());
+        }
+        return new Refs(defaultValue);
+    }
+
+    public final ILconst get(int index) {
+        if (index < 0 || index >= DENSE_LIMIT) {
+            return sparse().computeIfAbsent(index, i -> defaultValue.get());
+        }
+        return getDense(index);
+    }
+
+    /**
+     * stores a value
+     *
+     * @return the storage to use from now on
+     */
+    public final ArrayStorage set(int index, @Nullable ILconst value) {
+        if (index < 0 || index >= DENSE_LIMIT) {
+            sparse().put(index, value);
+            return this;
+        }
+        ArrayStorage target = accepts(value) ? this : toRefs();
+        target.setDense(index, value);
+        target.length = Math.max(target.length, index + 1);
+        return target;
+    }
+
+    /**
+     * calls the consumer for all used elements, ordered by index
+     */
+    public final void forEach(BiConsumer<Integer, ILconst> consumer) {
+        TreeMap<Integer, ILconst> sp = sparse;
+        if (sp != null) {
+            sp.headMap(0).forEach(consumer);
+        }
+        for (int i = 0; i < length; i++) {
+            consumer.accept(i, getDense(i));
+        }
+        if (sp != null) {
+            sp.tailMap(0).forEach(consumer);
+        }
+    }
+
+    protected abstract ILconst getDense(int index);
+
+    protected abstract void setDense(int index, @Nullable ILconst value);
+
+    protected abstract boolean accepts(@Nullable ILconst value);
+
+    private TreeMap<Integer, ILconst> sparse() {
+        TreeMap<Integer, ILconst> res = sparse;
+        if (res == null) {
+            res = new TreeMap<>();
+            sparse = res;
+        }
+        return res;
+    }
+
+    private Refs toRefs() {
+        Refs res = new Refs(defaultValue);
+        for (int i = 0; i < length; i++) {
+            res.setDense(i, getDense(i));
+        }
+        res.length = length;
+        res.sparse = sparse;
+        return res;
+    }
+
+    /**
+     * returns the new capacity of an array, so that the given index fits
+     */
+    protected static int grow(int capacity, int index) {
+        return Math.min(DENSE_LIMIT, Math.max(index + 1, Math.max(MIN_CAPACITY, capacity * 2)));
+    }
+
+    static final class Ints extends ArrayStorage {
+        private final int defaultInt;
+        private int[] values = new int[0];
+
+        Ints(Supplier<ILconst> defaultValue, int defaultInt) {
+            super(defaultValue);
+            this.defaultInt = defaultInt;
+        }
+
+        @Override
+        protected ILconst getDense(int index) {
+            return ILconstInt.create(index < values.length ? values[index] : defaultInt);
+        }
+
+        @Override
+        protected void setDense(int index, @Nullable ILconst value) {
+            if (index >= values.length) {
+                int oldLength = values.length;
+                values = Arrays.copyOf(values, grow(oldLength, index));
+                Arrays.fill(values, oldLength, values.length, defaultInt);
+            }
+            values[index] = ((ILconstInt) value).getVal();
+        }
+
+        @Override
+        protected boolean accepts(@Nullable ILconst value) {
+            return value instanceof ILconstInt;
+        }
+    }
+
+    static final class Reals extends ArrayStorage {
+        private final float defaultReal;
+        private float[] values = new float[0];
+
+        Reals(Supplier<ILconst> defaultValue, float defaultReal) {
+            super(defaultValue);
+            this.defaultReal = defaultReal;
+        }
+
+        @Override
+        protected ILconst getDense(int index) {
+            return new ILconstReal(index < values.length ? values[index] : defaultReal);
+        }
+
+        @Override
+        protected void setDense(int index, @Nullable ILconst value) {
+            if (index >= values.length) {
+                int oldLength = values.length;
+                values = Arrays.copyOf(values, grow(oldLength, index));
+                Arrays.fill(values, oldLength, values.length, defaultReal);
+            }
+            values[index] = ((ILconstReal) value).getVal();
+        }
+
+        @Override
+        protected boolean accepts(@Nullable ILconst value) {
+            return value instanceof ILconstReal;
+        }
+    }
+
+    static final class Bools extends ArrayStorage {
+        private final boolean defaultBool;
+        private boolean[] values = new boolean[0];
+
+        Bools(Supplier<ILconst> defaultValue, boolean defaultBool) {
+            super(defaultValue);
+            this.defaultBool = defaultBool;
+        }
+
+        @Override
+        protected ILconst getDense(int index) {
+            return ILconstBool.instance(index < values.length ? values[index] : defaultBool);
+        }
+
+        @Override
+        protected void setDense(int index, @Nullable ILconst value) {
+            if (index >= values.length) {
+                int oldLength = values.length;
+                values = Arrays.copyOf(values, grow(oldLength, index));
+                Arrays.fill(values, oldLength, values.length, defaultBool);
+            }
+            values[index] = ((ILconstBool) value).getVal();
+        }
+
+        @Override
+        protected boolean accepts(@Nullable ILconst value) {
+            return value instanceof ILconstBool;
+        }
+    }
+
+    /**
+     * storage for arbitrary values
+     *
+     * Default values are created on first access and stored, because they can be mutable (e.g. nested arrays).
+     */
+    static final class Refs extends ArrayStorage {
+        private @Nullable ILconst[] values = new ILconst[0];
+
+        Refs(Supplier<ILconst> defaultValue) {
+            super(defaultValue);
+        }
+
+        @Override
+        protected ILconst getDense(int index) {
+            ILconst r = index < values.length ? values[index] : null;
+            if (r == null) {
+                r = defaultValue.get();
+                setDense(index, r);
+                length = Math.max(length, index + 1);
+            }
+            return r;
+        }
+
+        @Override
+        protected void setDense(int index, @Nullable ILconst value) {
+            if (index >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length, index));
+            }
+            values[index] = value;
+        }
+
+        @Override
+        protected boolean accepts(@Nullable ILconst value) {
+            return true;
+        }
+    }
+}
@@ -2,33 +2,30 @@ package de.peeeq.wurstscript.intermediatelang;
 
 import de.peeeq.wurstio.jassinterpreter.InterpreterException;
 
-import java.util.Map;
-import java.util.TreeMap;
 import java.util.function.Supplier;
 
 public class ILconstArray extends ILconstAbstract {
 
-    private final Map<Integer, ILconst> values = new TreeMap<>(); // including the quotes
+    private ArrayStorage values;
     private final int size;
-    private final Supplier<ILconst> defaultValue;
 
     public ILconstArray(int size, Supplier<ILconst> defaultValue) {
         this.size = size;
-        this.defaultValue = defaultValue;
+        this.values = ArrayStorage.create(defaultValue);
     }
 
     @Override
     public String print() {
         StringBuilder s = new StringBuilder();
         s.append("[");
-        for (Map.Entry<Integer, ILconst> e : values.entrySet()) {
+        values.forEach((index, value) -> {
             if (s.length() > 1) {
                 s.append(", ");
             }
-            s.append(e.getKey());
+            s.append(index);
             s.append(": ");
-            s.append(e.getValue());
-        }
+            s.append(value);
+        });
         s.append("]");
         return s.toString();
     }
@@ -40,7 +37,7 @@ public class ILconstArray extends ILconstAbstract {
     }
 
     public void set(int index, ILconst value) {
-        values.put(index, value);
+        values = values.set(index, value);
     }
 
     public ILconst get(int index) {
@@ -49,7 +46,7 @@ public class ILconstArray extends ILconstAbstract {
         if (index >= size)
             throw new InterpreterException("Array index " + index + " must be smaller than array size " + size);
 
-        return values.computeIfAbsent(index, i -> defaultValue.get());
+        return values.get(index);
     }
 
 }
@@ -7,7 +7,17 @@ import java.util.Objects;
 
 public class ILconstInt extends ILconstAbstract implements ILconstNum {
 
-    private int val;
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1024;
+    private static final ILconstInt[] CACHE = new ILconstInt[CACHE_HIGH - CACHE_LOW];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new ILconstInt(i + CACHE_LOW);
+        }
+    }
+
+    private final int val;
 
     public ILconstInt(int intVal) {
         this.val = intVal;
@@ -28,7 +38,13 @@ public class ILconstInt extends ILconstAbstract implements ILconstNum {
         return create(-val);
     }
 
+    /**
+     * returns the constant for i, small values are shared instead of allocating a new object
+     */
     public static ILconstInt create(int i) {
+        if (i >= CACHE_LOW && i < CACHE_HIGH) {
+            return CACHE[i - CACHE_LOW];
+        }
         return new ILconstInt(i);
     }
 
@@ -1,6 +1,7 @@
 package de.peeeq.wurstscript.intermediatelang.interpreter;
 
 import de.peeeq.wurstscript.intermediatelang.ILconst;
+import org.eclipse.jdt.annotation.Nullable;
 
 import java.io.PrintStream;
 
@@ -15,6 +16,11 @@ public class BuiltinFuncs implements NativesProvider {
         throw new NoSuchNativeException("No builtin function " + funcname + " found.");
     }
 
+    @Override
+    public @Nullable NativeFunction link(String funcname) {
+        return null;
+    }
+
     @Override
     public void setOutStream(PrintStream outStream) {
     }
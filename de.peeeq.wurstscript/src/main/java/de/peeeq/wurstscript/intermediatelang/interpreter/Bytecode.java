@@ -0,0 +1,161 @@
+package de.peeeq.wurstscript.intermediatelang.interpreter;
+
+/**
+ * The instructions executed by {@link CompiledFunction}.
+ *
+ * An instruction is an opcode followed by its operands in a flat int array.
+ * Operands are register numbers (int registers hold integers and booleans as 0 and 1, real registers hold floats,
+ * object registers hold {@link de.peeeq.wurstscript.intermediatelang.ILconst} values),
+ * slots of the local or global state, indexes into the pool of the function or jump targets.
+ * The comment of each opcode lists its operands.
+ */
+final class Bytecode {
+
+    private Bytecode() {
+    }
+
+    // control flow
+
+    /** stmt: remember the pooled statement as the last executed statement */
+    static final int STMT = 0;
+    /** target */
+    static final int JUMP = 1;
+    /** int-register, target */
+    static final int JUMP_IF_FALSE = 2;
+    /** int-register, target */
+    static final int JUMP_IF_TRUE = 3;
+    /** counter: set the iteration counter of a loop to 0 */
+    static final int LOOP_START = 4;
+    /** counter: check for interruption and count an iteration */
+    static final int LOOP_HEAD = 5;
+    /** counter: record the iterations of a loop in the execution profile */
+    static final int LOOP_END = 6;
+    /** no operands: an exitwhen outside of a loop */
+    static final int THROW_EXIT = 7;
+    /** no operands */
+    static final int RETURN = 8;
+    /** int-register */
+    static final int RETURN_INT = 9;
+    /** real-register */
+    static final int RETURN_REAL = 10;
+    /** int-register */
+    static final int RETURN_BOOL = 11;
+    /** object-register */
+    static final int RETURN_OBJ = 12;
+    /** no operands: end of the function body */
+    static final int END = 13;
+
+    // constants and variables
+
+    /** int-register, value */
+    static final int ICONST = 14;
+    /** real-register, bits of the float value */
+    static final int RCONST = 15;
+    /** object-register, constant */
+    static final int OCONST = 16;
+    /** int-register, variable-register, assigned-flag or -1, var: read a local variable kept in an int register */
+    static final int ILOAD = 17;
+    /** variable-register, int-register, assigned-flag or -1 */
+    static final int ISTORE = 18;
+    /** real-register, variable-register, assigned-flag or -1, var */
+    static final int RLOAD = 19;
+    /** variable-register, real-register, assigned-flag or -1 */
+    static final int RSTORE = 20;
+    /** object-register, slot, var: read a local variable from the local state */
+    static final int OLOAD = 21;
+    /** slot, object-register */
+    static final int OSTORE = 22;
+    /** object-register, slot, var: read a global variable, evaluating its initializer on first access */
+    static final int GLOAD = 23;
+    /** slot, object-register */
+    static final int GSTORE = 24;
+    /** int-register: the value of the magic compiletime constant */
+    static final int COMPILETIME = 25;
+
+    // conversions
+
+    /** real-register, int-register */
+    static final int I2R = 26;
+    /** object-register, int-register */
+    static final int IBOX = 27;
+    /** object-register, real-register */
+    static final int RBOX = 28;
+    /** object-register, int-register */
+    static final int BBOX = 29;
+    /** int-register, object-register */
+    static final int IUNBOX = 30;
+    /** int-register, object-register */
+    static final int BUNBOX = 31;
+
+    // operators, all with the operands: result-register, left-register, right-register
+
+    static final int IADD = 32;
+    static final int ISUB = 33;
+    static final int IMUL = 34;
+    static final int IDIV = 35;
+    static final int IMOD = 36;
+    static final int RADD = 37;
+    static final int RSUB = 38;
+    static final int RMUL = 39;
+    static final int RDIV = 40;
+    static final int RMOD = 41;
+    /** the comparisons store a boolean in an int register */
+    static final int ILT = 42;
+    static final int ILE = 43;
+    static final int IGT = 44;
+    static final int IGE = 45;
+    static final int IEQ = 46;
+    static final int INE = 47;
+    static final int RLT = 48;
+    static final int RLE = 49;
+    static final int RGT = 50;
+    static final int RGE = 51;
+    static final int REQ = 52;
+    static final int RNE = 53;
+    /** int-register, int-register */
+    static final int INEG = 54;
+    /** real-register, real-register */
+    static final int RNEG = 55;
+    /** int-register, int-register */
+    static final int NOT = 56;
+    /** object-register, operator, object-register, object-register: operator on boxed values */
+    static final int OBINOP = 57;
+    /** object-register, operator, object-register */
+    static final int OUNOP = 58;
+
+    // arrays, calls and objects
+
+    /** object-register, var, slot, global (0 or 1), first-index-register, index-count */
+    static final int AGET = 59;
+    /** var, slot, global (0 or 1), first-index-register, index-count, object-register */
+    static final int ASET = 60;
+    /** object-register, call, first-argument-register, argument-count */
+    static final int CALL = 61;
+    /** object-register, call, receiver-register, argument-count: the arguments follow the receiver */
+    static final int MCALL = 62;
+    /** object-register, member-access, receiver-register, first-index-register, index-count */
+    static final int MGET = 63;
+    /** member-access, receiver-register, first-index-register, index-count, object-register */
+    static final int MSET = 64;
+    /** object-register, first-element-register, element-count */
+    static final int TUPLE = 65;
+    /** object-register, tuple-register, tuple-selection */
+    static final int TSEL = 66;
+    /** object-register, object-register, cast */
+    static final int CAST = 67;
+    /** object-register, function */
+    static final int FUNCREF = 68;
+    /** vararg-register, counter, slot of the loop variable, target: leave a vararg loop or assign its next value */
+    static final int VARARG_NEXT = 69;
+    /** object-register, expr, exit-target or -1: evaluate an expression with the normal interpreter */
+    static final int EVAL = 70;
+    /** stmt, exit-target or -1: run a statement with the normal interpreter */
+    static final int EXEC = 71;
+    /** object-register, trace, check: convert the value in the register to an object and check it (see RECEIVER_*) */
+    static final int RECEIVER = 72;
+
+    /** checks of the {@link #RECEIVER} instruction */
+    static final int RECEIVER_ANY = 0;
+    static final int RECEIVER_NOT_NULL = 1;
+    static final int RECEIVER_ALLOCATED = 2;
+}
@@ -0,0 +1,534 @@
+package de.peeeq.wurstscript.intermediatelang.interpreter;
+
+import de.peeeq.wurstio.jassinterpreter.InterpreterException;
+import de.peeeq.wurstio.jassinterpreter.VarargArray;
+import de.peeeq.wurstscript.WLogger;
+import de.peeeq.wurstscript.WurstOperator;
+import de.peeeq.wurstscript.intermediatelang.*;
+import de.peeeq.wurstscript.jassIm.*;
+import de.peeeq.wurstscript.jassinterpreter.ExitwhenException;
+import de.peeeq.wurstscript.jassinterpreter.ReturnException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The body of an {@link ImFunction}, compiled to bytecode by the {@link FunctionCompiler}.
+ */
+public class CompiledFunction {
+    private static final WurstOperator[] OPERATORS = WurstOperator.values();
+
+    private final ImFunction function;
+    private final int[] code;
+    private final Object[] pool;
+    private final int intRegisters;
+    private final int realRegisters;
+    private final int objectRegisters;
+    private final int assignedFlags;
+    /** slot, kind and register of each parameter kept in a register */
+    private final int[] registerParams;
+
+    CompiledFunction(ImFunction function, int[] code, Object[] pool, int intRegisters, int realRegisters,
+                     int objectRegisters, int assignedFlags, int[] registerParams) {
+        this.function = function;
+        this.code = code;
+        this.pool = pool;
+        this.intRegisters = intRegisters;
+        this.realRegisters = realRegisters;
+        this.objectRegisters = objectRegisters;
+        this.assignedFlags = assignedFlags;
+        this.registerParams = registerParams;
+    }
+
+    public ImFunction getFunction() {
+        return function;
+    }
+
+    /**
+     * runs the function body.
+     * The parameters are read from and the return value is stored in the local state.
+     *
+     * @return true, when the function returned with a return statement
+     */
+    public boolean run(ProgramState globalState, LocalState localState) {
+        int[] ints = new int[intRegisters];
+        float[] reals = new float[realRegisters];
+        if (!loadParameters(localState, ints, reals)) {
+            return runInterpreted(globalState, localState);
+        }
+        return execute(globalState, localState, ints, reals, new ILconst[objectRegisters], new boolean[assignedFlags]);
+    }
+
+    /**
+     * moves the parameters kept in registers from the local state to the registers
+     *
+     * @return false, when a parameter does not have the expected type
+     */
+    private boolean loadParameters(LocalState l, int[] ints, float[] reals) {
+        for (int i = 0; i < registerParams.length; i += 3) {
+            ILconst val = l.getSlotVal(registerParams[i]);
+            int reg = registerParams[i + 2];
+            switch (registerParams[i + 1]) {
+                case FunctionCompiler.INT:
+                    if (!(val instanceof ILconstInt)) {
+                        return false;
+                    }
+                    ints[reg] = ((ILconstInt) val).getVal();
+                    break;
+                case FunctionCompiler.BOOL:
+                    if (!(val instanceof ILconstBool)) {
+                        return false;
+                    }
+                    ints[reg] = ((ILconstBool) val).getVal() ? 1 : 0;
+                    break;
+                default:
+                    if (!(val instanceof ILconstReal)) {
+                        return false;
+                    }
+                    reals[reg] = ((ILconstReal) val).getVal();
+                    break;
+            }
+        }
+        return true;
+    }
+
+    private boolean runInterpreted(ProgramState globalState, LocalState localState) {
+        try {
+            function.getBody().runStatements(globalState, localState);
+            return false;
+        } catch (ReturnException e) {
+            localState.setReturnVal(e.getVal());
+            return true;
+        }
+    }
+
+    private boolean execute(ProgramState g, LocalState l, int[] ints, float[] reals, ILconst[] objs, boolean[] assigned) {
+        int[] code = this.code;
+        Object[] pool = this.pool;
+        int pc = 0;
+        while (true) {
+            switch (code[pc]) {
+                case Bytecode.STMT:
+                    g.setLastStatement((ImStmt) pool[code[pc + 1]]);
+                    pc += 2;
+                    break;
+                case Bytecode.JUMP:
+                    pc = code[pc + 1];
+                    break;
+                case Bytecode.JUMP_IF_FALSE:
+                    pc = ints[code[pc + 1]] == 0 ? code[pc + 2] : pc + 3;
+                    break;
+                case Bytecode.JUMP_IF_TRUE:
+                    pc = ints[code[pc + 1]] != 0 ? code[pc + 2] : pc + 3;
+                    break;
+                case Bytecode.LOOP_START:
+                    ints[code[pc + 1]] = 0;
+                    pc += 2;
+                    break;
+                case Bytecode.LOOP_HEAD:
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterpreterException(g, "Execution interrupted");
+                    }
+                    ints[code[pc + 1]]++;
+                    pc += 2;
+                    break;
+                case Bytecode.LOOP_END: {
+                    ExecutionProfile profile = g.getProfile();
+                    if (profile != null) {
+                        profile.recordLoopIterations(function, ints[code[pc + 1]]);
+                    }
+                    pc += 2;
+                    break;
+                }
+                case Bytecode.THROW_EXIT:
+                    throw ExitwhenException.instance();
+                case Bytecode.RETURN:
+                    l.setReturnVal(null);
+                    return true;
+                case Bytecode.RETURN_INT:
+                    l.setReturnVal(ILconstInt.create(ints[code[pc + 1]]));
+                    return true;
+                case Bytecode.RETURN_REAL:
+                    l.setReturnVal(new ILconstReal(reals[code[pc + 1]]));
+                    return true;
+                case Bytecode.RETURN_BOOL:
+                    l.setReturnVal(ILconstBool.instance(ints[code[pc + 1]] != 0));
+                    return true;
+                case Bytecode.RETURN_OBJ:
+                    l.setReturnVal(objs[code[pc + 1]]);
+                    return true;
+                case Bytecode.END:
+                    return false;
+
+                case Bytecode.ICONST:
+                    ints[code[pc + 1]] = code[pc + 2];
+                    pc += 3;
+                    break;
+                case Bytecode.RCONST:
+                    reals[code[pc + 1]] = Float.intBitsToFloat(code[pc + 2]);
+                    pc += 3;
+                    break;
+                case Bytecode.OCONST:
+                    objs[code[pc + 1]] = (ILconst) pool[code[pc + 2]];
+                    pc += 3;
+                    break;
+                case Bytecode.ILOAD:
+                    checkAssigned(assigned, code[pc + 3], pool[code[pc + 4]]);
+                    ints[code[pc + 1]] = ints[code[pc + 2]];
+                    pc += 5;
+                    break;
+                case Bytecode.ISTORE:
+                    ints[code[pc + 1]] = ints[code[pc + 2]];
+                    setAssigned(assigned, code[pc + 3]);
+                    pc += 4;
+                    break;
+                case Bytecode.RLOAD:
+                    checkAssigned(assigned, code[pc + 3], pool[code[pc + 4]]);
+                    reals[code[pc + 1]] = reals[code[pc + 2]];
+                    pc += 5;
+                    break;
+                case Bytecode.RSTORE:
+                    reals[code[pc + 1]] = reals[code[pc + 2]];
+                    setAssigned(assigned, code[pc + 3]);
+                    pc += 4;
+                    break;
+                case Bytecode.OLOAD: {
+                    ILconst val = l.getSlotVal(code[pc + 2]);
+                    if (val == null) {
+                        throw new InterpreterException("Local variable " + pool[code[pc + 3]] + " is null.");
+                    }
+                    objs[code[pc + 1]] = val;
+                    pc += 4;
+                    break;
+                }
+                case Bytecode.OSTORE:
+                    l.setSlotVal(code[pc + 1], objs[code[pc + 2]]);
+                    pc += 3;
+                    break;
+                case Bytecode.GLOAD:
+                    objs[code[pc + 1]] = EvaluateExpr.evalGlobal(code[pc + 2], (ImVar) pool[code[pc + 3]], g, l);
+                    pc += 4;
+                    break;
+                case Bytecode.GSTORE:
+                    g.setSlotVal(code[pc + 1], objs[code[pc + 2]]);
+                    pc += 3;
+                    break;
+                case Bytecode.COMPILETIME:
+                    ints[code[pc + 1]] = g.isCompiletime() ? 1 : 0;
+                    pc += 2;
+                    break;
+
+                case Bytecode.I2R:
+                    reals[code[pc + 1]] = ints[code[pc + 2]];
+                    pc += 3;
+                    break;
+                case Bytecode.IBOX:
+                    objs[code[pc + 1]] = ILconstInt.create(ints[code[pc + 2]]);
+                    pc += 3;
+                    break;
+                case Bytecode.RBOX:
+                    objs[code[pc + 1]] = new ILconstReal(reals[code[pc + 2]]);
+                    pc += 3;
+                    break;
+                case Bytecode.BBOX:
+                    objs[code[pc + 1]] = ILconstBool.instance(ints[code[pc + 2]] != 0);
+                    pc += 3;
+                    break;
+                case Bytecode.IUNBOX:
+                    ints[code[pc + 1]] = ((ILconstInt) objs[code[pc + 2]]).getVal();
+                    pc += 3;
+                    break;
+                case Bytecode.BUNBOX:
+                    ints[code[pc + 1]] = ((ILconstBool) objs[code[pc + 2]]).getVal() ? 1 : 0;
+                    pc += 3;
+                    break;
+
+                case Bytecode.IADD:
+                    ints[code[pc + 1]] = ints[code[pc + 2]] + ints[code[pc + 3]];
+                    pc += 4;
+                    break;
+                case Bytecode.ISUB:
+                    ints[code[pc + 1]] = ints[code[pc + 2]] - ints[code[pc + 3]];
+                    pc += 4;
+                    break;
+                case Bytecode.IMUL:
+                    ints[code[pc + 1]] = ints[code[pc + 2]] * ints[code[pc + 3]];
+                    pc += 4;
+                    break;
+                case Bytecode.IDIV:
+                    ints[code[pc + 1]] = ints[code[pc + 2]] / ints[code[pc + 3]];
+                    pc += 4;
+                    break;
+                case Bytecode.IMOD: {
+                    int right = ints[code[pc + 3]];
+                    int r = ints[code[pc + 2]] % right;
+                    ints[code[pc + 1]] = r < 0 ? r + right : r;
+                    pc += 4;
+                    break;
+                }
+                case Bytecode.RADD:
+                    reals[code[pc + 1]] = reals[code[pc + 2]] + reals[code[pc + 3]];
+                    pc += 4;
+                    break;
+                case Bytecode.RSUB:
+                    reals[code[pc + 1]] = reals[code[pc + 2]] - reals[code[pc + 3]];
+                    pc += 4;
+                    break;
+                case Bytecode.RMUL:
+                    reals[code[pc + 1]] = reals[code[pc + 2]] * reals[code[pc + 3]];
+                    pc += 4;
+                    break;
+                case Bytecode.RDIV:
+                    reals[code[pc + 1]] = reals[code[pc + 2]] / reals[code[pc + 3]];
+                    pc += 4;
+                    break;
+                case Bytecode.RMOD: {
+                    float right = reals[code[pc + 3]];
+                    float r = reals[code[pc + 2]] % right;
+                    reals[code[pc + 1]] = r < 0 ? r + right : r;
+                    pc += 4;
+                    break;
+                }
+                case Bytecode.ILT:
+                    ints[code[pc + 1]] = ints[code[pc + 2]] < ints[code[pc + 3]] ? 1 : 0;
+                    pc += 4;
+                    break;
+                case Bytecode.ILE:
+                    ints[code[pc + 1]] = ints[code[pc + 2]] <= ints[code[pc + 3]] ? 1 : 0;
+                    pc += 4;
+                    break;
+                case Bytecode.IGT:
+                    ints[code[pc + 1]] = ints[code[pc + 2]] > ints[code[pc + 3]] ? 1 : 0;
+                    pc += 4;
+                    break;
+                case Bytecode.IGE:
+                    ints[code[pc + 1]] = ints[code[pc + 2]] >= ints[code[pc + 3]] ? 1 : 0;
+                    pc += 4;
+                    break;
+                case Bytecode.IEQ:
+                    ints[code[pc + 1]] = ints[code[pc + 2]] == ints[code[pc + 3]] ? 1 : 0;
+                    pc += 4;
+                    break;
+                case Bytecode.INE:
+                    ints[code[pc + 1]] = ints[code[pc + 2]] != ints[code[pc + 3]] ? 1 : 0;
+                    pc += 4;
+                    break;
+                case Bytecode.RLT:
+                    ints[code[pc + 1]] = reals[code[pc + 2]] < reals[code[pc + 3]] ? 1 : 0;
+                    pc += 4;
+                    break;
+                case Bytecode.RLE:
+                    ints[code[pc + 1]] = reals[code[pc + 2]] <= reals[code[pc + 3]] ? 1 : 0;
+                    pc += 4;
+                    break;
+                case Bytecode.RGT:
+                    ints[code[pc + 1]] = reals[code[pc + 2]] > reals[code[pc + 3]] ? 1 : 0;
+                    pc += 4;
+                    break;
+                case Bytecode.RGE:
+                    ints[code[pc + 1]] = reals[code[pc + 2]] >= reals[code[pc + 3]] ? 1 : 0;
+                    pc += 4;
+                    break;
+                case Bytecode.REQ:
+                    ints[code[pc + 1]] = reals[code[pc + 2]] == reals[code[pc + 3]] ? 1 : 0;
+                    pc += 4;
+                    break;
+                case Bytecode.RNE:
+                    ints[code[pc + 1]] = reals[code[pc + 2]] != reals[code[pc + 3]] ? 1 : 0;
+                    pc += 4;
+                    break;
+                case Bytecode.INEG:
+                    ints[code[pc + 1]] = -ints[code[pc + 2]];
+                    pc += 3;
+                    break;
+                case Bytecode.RNEG:
+                    reals[code[pc + 1]] = -reals[code[pc + 2]];
+                    pc += 3;
+                    break;
+                case Bytecode.NOT:
+                    ints[code[pc + 1]] = ints[code[pc + 2]] == 0 ? 1 : 0;
+                    pc += 3;
+                    break;
+                case Bytecode.OBINOP:
+                    objs[code[pc + 1]] = OPERATORS[code[pc + 2]].evaluateBinaryOperator(objs[code[pc + 3]], objs[code[pc + 4]]);
+                    pc += 5;
+                    break;
+                case Bytecode.OUNOP:
+                    objs[code[pc + 1]] = OPERATORS[code[pc + 2]].evaluateUnaryOperator(objs[code[pc + 3]]);
+                    pc += 4;
+                    break;
+
+                case Bytecode.AGET: {
+                    ImVar v = (ImVar) pool[code[pc + 2]];
+                    State state = code[pc + 4] != 0 ? g : l;
+                    int count = code[pc + 6];
+                    ILconst val = count == 1
+                        ? state.getArrayVal(code[pc + 3], v, ints[code[pc + 5]])
+                        : state.getArrayVal(code[pc + 3], v, indexList(ints, code[pc + 5], count));
+                    objs[code[pc + 1]] = val != null ? val : nullArrayValue(v);
+                    pc += 7;
+                    break;
+                }
+                case Bytecode.ASET: {
+                    ImVar v = (ImVar) pool[code[pc + 1]];
+                    State state = code[pc + 3] != 0 ? g : l;
+                    int count = code[pc + 5];
+                    ILconst val = objs[code[pc + 6]];
+                    if (count == 1) {
+                        state.setArrayVal(code[pc + 2], v, ints[code[pc + 4]], val);
+                    } else {
+                        state.setArrayVal(code[pc + 2], v, indexList(ints, code[pc + 4], count), val);
+                    }
+                    pc += 7;
+                    break;
+                }
+                case Bytecode.CALL: {
+                    ImFunctionCall call = (ImFunctionCall) pool[code[pc + 2]];
+                    int first = code[pc + 3];
+                    ILconst[] args = Arrays.copyOfRange(objs, first, first + code[pc + 4]);
+                    objs[code[pc + 1]] = ILInterpreter.runFunc(g, call.getFunc(), call, args).getReturnVal();
+                    pc += 5;
+                    break;
+                }
+                case Bytecode.MCALL: {
+                    ImMethodCall mc = (ImMethodCall) pool[code[pc + 2]];
+                    int receiver = code[pc + 3];
+                    ILconst[] args = Arrays.copyOfRange(objs, receiver, receiver + 1 + code[pc + 4]);
+                    ImMethod mostPrecise = EvaluateExpr.findMostPreciseMethod(mc, (ILconstObject) args[0], g);
+                    objs[code[pc + 1]] = ILInterpreter.runFunc(g, mostPrecise.getImplementation(), mc, args).getReturnVal();
+                    pc += 5;
+                    break;
+                }
+                case Bytecode.RECEIVER: {
+                    ILconstObject receiver = g.toObject(objs[code[pc + 1]]);
+                    de.peeeq.wurstscript.ast.Element trace = (de.peeeq.wurstscript.ast.Element) pool[code[pc + 2]];
+                    int check = code[pc + 3];
+                    if (check == Bytecode.RECEIVER_ALLOCATED) {
+                        g.assertAllocated(receiver, trace);
+                    } else if (check == Bytecode.RECEIVER_NOT_NULL && receiver == null) {
+                        throw new InterpreterException(trace, "Null pointer dereference");
+                    }
+                    objs[code[pc + 1]] = receiver;
+                    pc += 4;
+                    break;
+                }
+                case Bytecode.MGET: {
+                    ImMemberAccess ma = (ImMemberAccess) pool[code[pc + 2]];
+                    ILconstObject receiver = (ILconstObject) objs[code[pc + 3]];
+                    objs[code[pc + 1]] = receiver.get(ma.getVar(), indexList(ints, code[pc + 4], code[pc + 5]))
+                        .orElseGet(() -> ma.attrTyp().defaultValue());
+                    pc += 6;
+                    break;
+                }
+                case Bytecode.MSET: {
+                    ImMemberAccess ma = (ImMemberAccess) pool[code[pc + 1]];
+                    ILconstObject receiver = (ILconstObject) objs[code[pc + 2]];
+                    receiver.set(ma.getVar(), indexList(ints, code[pc + 3], code[pc + 4]), objs[code[pc + 5]]);
+                    pc += 6;
+                    break;
+                }
+                case Bytecode.TUPLE: {
+                    int first = code[pc + 2];
+                    objs[code[pc + 1]] = new ILconstTuple(Arrays.copyOfRange(objs, first, first + code[pc + 3]));
+                    pc += 4;
+                    break;
+                }
+                case Bytecode.TSEL: {
+                    ILconst tuple = objs[code[pc + 2]];
+                    ImTupleSelection ts = (ImTupleSelection) pool[code[pc + 3]];
+                    if (!(tuple instanceof ILconstTuple)) {
+                        throw new InterpreterException(g, "Tuple " + ts + " evaluated to " + tuple);
+                    }
+                    ILconstTuple t = (ILconstTuple) tuple;
+                    int index = ts.getTupleIndex();
+                    if (index >= t.values().size()) {
+                        throw new InterpreterException(g, "Trying to get element " + index + " of tuple value " + t);
+                    }
+                    objs[code[pc + 1]] = t.getValue(index);
+                    pc += 4;
+                    break;
+                }
+                case Bytecode.CAST:
+                    objs[code[pc + 1]] = EvaluateExpr.cast(objs[code[pc + 2]], (ImCast) pool[code[pc + 3]], g);
+                    pc += 4;
+                    break;
+                case Bytecode.FUNCREF:
+                    objs[code[pc + 1]] = new ILconstFuncRef((ImFunction) pool[code[pc + 2]]);
+                    pc += 3;
+                    break;
+                case Bytecode.VARARG_NEXT: {
+                    VarargArray array = (VarargArray) objs[code[pc + 1]];
+                    int i = ints[code[pc + 2]];
+                    if (i >= array.size()) {
+                        pc = code[pc + 4];
+                    } else {
+                        l.setSlotVal(code[pc + 3], array.get(i));
+                        ints[code[pc + 2]] = i + 1;
+                        pc += 5;
+                    }
+                    break;
+                }
+                case Bytecode.EVAL: {
+                    int exit = code[pc + 3];
+                    try {
+                        objs[code[pc + 1]] = ((ImExpr) pool[code[pc + 2]]).evaluate(g, l);
+                    } catch (ExitwhenException e) {
+                        if (exit < 0) {
+                            throw e;
+                        }
+                        pc = exit;
+                        break;
+                    }
+                    pc += 4;
+                    break;
+                }
+                case Bytecode.EXEC: {
+                    int exit = code[pc + 2];
+                    try {
+                        ((ImStmt) pool[code[pc + 1]]).runStatement(g, l);
+                    } catch (ExitwhenException e) {
+                        if (exit < 0) {
+                            throw e;
+                        }
+                        pc = exit;
+                        break;
+                    }
+                    pc += 3;
+                    break;
+                }
+                default:
+                    throw new Error("Unknown opcode " + code[pc] + " at " + pc + " in " + function.getName());
+            }
+        }
+    }
+
+    private static void checkAssigned(boolean[] assigned, int flag, Object var) {
+        if (flag >= 0 && !assigned[flag]) {
+            throw new InterpreterException("Local variable " + var + " is null.");
+        }
+    }
+
+    private static void setAssigned(boolean[] assigned, int flag) {
+        if (flag >= 0) {
+            assigned[flag] = true;
+        }
+    }
+
+    private static ILconst nullArrayValue(ImVar var) {
+        WLogger.warning("Variable " + var.getName() + " is null.");
+        return var.getType().defaultValue();
+    }
+
+    private static List<Integer> indexList(int[] ints, int first, int count) {
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        List<Integer> res = new ArrayList<>(count);
+        for (int i = first; i < first + count; i++) {
+            res.add(ints[i]);
+        }
+        return res;
+    }
+}
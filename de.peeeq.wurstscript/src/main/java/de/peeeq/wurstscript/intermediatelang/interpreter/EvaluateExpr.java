@@ -48,7 +48,7 @@ public class EvaluateExpr {
     }
 
     public static ILconst eval(ImIntVal e, ProgramState globalState, LocalState localState) {
-        return new ILconstInt(e.getValI());
+        return e.constantValue();
     }
 
     public static ILconst eval(ImNull e, ProgramState globalState, LocalState localState) {
@@ -65,7 +65,10 @@ public class EvaluateExpr {
         final ImExprs arguments = e.getArguments();
         WurstOperator op = e.getOp();
         if (arguments.size() == 2 && op.isBinaryOp()) {
-            return op.evaluateBinaryOperator(arguments.get(0).evaluate(globalState, localState), () -> arguments.get(1).evaluate(globalState, localState));
+            if (op.isShortCircuit()) {
+                return op.evaluateBinaryOperator(arguments.get(0).evaluate(globalState, localState), () -> arguments.get(1).evaluate(globalState, localState));
+            }
+            return op.evaluateBinaryOperator(arguments.get(0).evaluate(globalState, localState), arguments.get(1).evaluate(globalState, localState));
         } else if (arguments.size() == 1 && op.isUnaryOp()) {
             return op.evaluateUnaryOperator(arguments.get(0).evaluate(globalState, localState));
         } else {
@@ -74,7 +77,7 @@ public class EvaluateExpr {
     }
 
     public static ILconst eval(ImRealVal e, ProgramState globalState, LocalState localState) {
-        return new ILconstReal(e.getValR());
+        return e.constantValue();
     }
 
     public static ILconst eval(ImStatementExpr e, ProgramState globalState, LocalState localState) {
@@ -88,6 +91,21 @@ public class EvaluateExpr {
     }
 
     public static ILconst eval(ImStringVal e, ProgramState globalState, LocalState localState) {
+        return e.constantValue();
+    }
+
+    /**
+     * the value of a literal, which is created only once per literal (constants are immutable)
+     */
+    public static ILconstInt constantValue(ImIntVal e) {
+        return ILconstInt.create(e.getValI());
+    }
+
+    public static ILconstReal constantValue(ImRealVal e) {
+        return new ILconstReal(e.getValR());
+    }
+
+    public static ILconstString constantValue(ImStringVal e) {
         return new ILconstString(e.getValS());
     }
 
@@ -119,24 +137,46 @@ public class EvaluateExpr {
             if (isMagicCompiletimeConstant(var)) {
                 return ILconstBool.instance(globalState.isCompiletime());
             }
+            return evalGlobal(globalState.getSlots().slot(var, e.slotCache()), var, globalState, localState);
+        } else {
+            int slot = localState.getSlots().slot(var, e.slotCache());
+            return notNull(localState.getSlotVal(slot), var.getType(), "Local variable " + var + " is null.", true);
+        }
+    }
 
-            ILconst r = globalState.getVal(var);
-            if (r == null) {
-                List<ImSet> initExpr = globalState.getProg().getGlobalInits().get(var);
-                if (initExpr != null) {
-                    r = initExpr.get(0).getRight().evaluate(globalState, localState);
-                } else {
-                    throw new InterpreterException(globalState, "Variable " + var.getName() + " is not initialized.");
-                }
-                globalState.setVal(var, r);
+    /**
+     * the cache for the slot of the accessed variable, so that the slot is not looked up on every evaluation
+     */
+    public static AtomicReference<VarSlots.Resolved> slotCache(ImVarAccess e) {
+        return new AtomicReference<>();
+    }
+
+    public static AtomicReference<VarSlots.Resolved> slotCache(ImVarArrayAccess e) {
+        return new AtomicReference<>();
+    }
+
+    /**
+     * reads a global variable, evaluating its initializer on first access
+     */
+    static ILconst evalGlobal(ImVar var, ProgramState globalState, LocalState localState) {
+        return evalGlobal(globalState.getSlots().slot(var), var, globalState, localState);
+    }
+
+    static ILconst evalGlobal(int slot, ImVar var, ProgramState globalState, LocalState localState) {
+        ILconst r = globalState.getSlotVal(slot);
+        if (r == null) {
+            List<ImSet> initExpr = globalState.getProg().getGlobalInits().get(var);
+            if (initExpr != null) {
+                r = initExpr.get(0).getRight().evaluate(globalState, localState);
+            } else {
+                throw new InterpreterException(globalState, "Variable " + var.getName() + " is not initialized.");
             }
-            return r;
-        } else {
-            return notNull(localState.getVal(var), var.getType(), "Local variable " + var + " is null.", true);
+            globalState.setSlotVal(slot, r);
         }
+        return r;
     }
 
-    private static boolean isMagicCompiletimeConstant(ImVar var) {
+    static boolean isMagicCompiletimeConstant(ImVar var) {
         if (var.getTrace() instanceof VarDef) {
             VarDef varDef = (VarDef) var.getTrace();
             if (varDef.getName().equals("compiletime")) {
@@ -169,11 +209,10 @@ public class EvaluateExpr {
             .map(ie -> ((ILconstInt) ie.evaluate(globalState, localState)).getVal())
             .collect(Collectors.toList());
 
-        if (e.getVar().isGlobal()) {
-            return notNull(globalState.getArrayVal(e.getVar(), indexes), e.getVar().getType(), "Variable " + e.getVar().getName() + " is null.", false);
-        } else {
-            return notNull(localState.getArrayVal(e.getVar(), indexes), e.getVar().getType(), "Variable " + e.getVar().getName() + " is null.", false);
-        }
+        ImVar v = e.getVar();
+        State state = v.isGlobal() ? globalState : localState;
+        int slot = state.getSlots().slot(v, e.slotCache());
+        return notNull(state.getArrayVal(slot, v, indexes), v.getType(), "Variable " + v.getName() + " is null.", false);
     }
 
     public static @Nullable ILconst eval(ImMethodCall mc,
@@ -186,9 +225,21 @@ public class EvaluateExpr {
         List<ImExpr> args = mc.getArguments();
 
 
-        ImMethod mostPrecise = mc.getMethod();
+        ImMethod mostPrecise = findMostPreciseMethod(mc, receiver, globalState);
+        // execute most precise method
+        ILconst[] eargs = new ILconst[args.size() + 1];
+        eargs[0] = receiver;
+        for (int i = 0; i < args.size(); i++) {
+            eargs[i + 1] = args.get(i).evaluate(globalState, localState);
+        }
+        return evaluateFunc(globalState, mostPrecise.getImplementation(), mc, eargs);
+    }
 
-        // find correct implementation:
+    /**
+     * finds the implementation of the called method for the dynamic type of the receiver
+     */
+    static ImMethod findMostPreciseMethod(ImMethodCall mc, ILconstObject receiver, ProgramState globalState) {
+        ImMethod mostPrecise = mc.getMethod();
         for (ImMethod m : mc.getMethod().getSubMethods()) {
 
             if (m.attrClass().isSubclassOf(mostPrecise.attrClass())) {
@@ -198,13 +249,7 @@ public class EvaluateExpr {
                 }
             }
         }
-        // execute most precise method
-        ILconst[] eargs = new ILconst[args.size() + 1];
-        eargs[0] = receiver;
-        for (int i = 0; i < args.size(); i++) {
-            eargs[i + 1] = args.get(i).evaluate(globalState, localState);
-        }
-        return evaluateFunc(globalState, mostPrecise.getImplementation(), mc, eargs);
+        return mostPrecise;
     }
 
     public static ILconst eval(ImMemberAccess ma, ProgramState globalState, LocalState localState) {
@@ -238,13 +283,13 @@ public class EvaluateExpr {
 
     public static ILconst eval(ImTypeIdOfClass e,
                                ProgramState globalState, LocalState localState) {
-        return new ILconstInt(e.getClazz().getClassDef().attrTypeId());
+        return ILconstInt.create(e.getClazz().getClassDef().attrTypeId());
     }
 
     public static ILconst eval(ImTypeIdOfObj e,
                                ProgramState globalState, LocalState localState) {
         ILconstObject obj = globalState.toObject(e.getObj().evaluate(globalState, localState));
-        return new ILconstInt(globalState.getTypeId(obj, e.attrTrace()));
+        return ILconstInt.create(globalState.getTypeId(obj, e.attrTrace()));
     }
 
 
@@ -273,15 +318,16 @@ public class EvaluateExpr {
         ImVar v = va.getVar();
         State state;
         state = v.isGlobal() ? globalState : localState;
+        int slot = state.getSlots().slot(v, va.slotCache());
         return new ILaddress() {
             @Override
             public void set(ILconst value) {
-                state.setVal(v, value);
+                state.setSlotVal(slot, value);
             }
 
             @Override
             public ILconst get() {
-                return state.getVal(v);
+                return state.getSlotVal(slot);
             }
         };
     }
@@ -294,15 +340,16 @@ public class EvaluateExpr {
         List<Integer> indexes = va.getIndexes().stream()
             .map(ie -> ((ILconstInt) ie.evaluate(globalState, localState)).getVal())
             .collect(Collectors.toList());
+        int slot = state.getSlots().slot(v, va.slotCache());
         return new ILaddress() {
             @Override
             public void set(ILconst value) {
-                state.setArrayVal(v, indexes, value);
+                state.setArrayVal(slot, v, indexes, value);
             }
 
             @Override
             public ILconst get() {
-                return state.getArrayVal(v, indexes);
+                return state.getArrayVal(slot, v, indexes);
             }
         };
     }
@@ -399,6 +446,10 @@ public class EvaluateExpr {
 
     public static ILconst eval(ImCast imCast, ProgramState globalState, LocalState localState) {
         ILconst res = imCast.getExpr().evaluate(globalState, localState);
+        return cast(res, imCast, globalState);
+    }
+
+    static ILconst cast(ILconst res, ImCast imCast, ProgramState globalState) {
         if (TypesHelper.isIntType(imCast.getToType())) {
             if (res instanceof ILconstObject) {
                 return ILconstInt.create(((ILconstObject) res).getObjectId());
@@ -0,0 +1,164 @@
+package de.peeeq.wurstscript.intermediatelang.interpreter;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import de.peeeq.wurstscript.jassIm.ImFunction;
+import de.peeeq.wurstscript.parser.WPos;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Counts how often functions are called and how many loop iterations they execute
+ * while running tests or compiletime functions.
+ *
+ * The profile can be saved to a file and used when compiling the map,
+ * for example by the {@link de.peeeq.wurstscript.translation.imoptimizer.ImInliner}.
+ * Functions are identified by their {@link #key(ImFunction) key}, because names in the intermediate language
+ * are not unique.
+ */
+public class ExecutionProfile {
+    /** functions with fewer calls and loop iterations are never considered hot */
+    public static final long MIN_HOT_COUNT = 100;
+    /** a function is hot, when its count is at least this fraction of the highest count */
+    private static final double HOT_FRACTION = 0.01;
+
+    private final Map<String, Counts> counts = new LinkedHashMap<>();
+    // the counts of each function, so that the key is only computed once per function while recording
+    private final Map<ImFunction, Counts> functionCounts = new IdentityHashMap<>();
+    private long hotLimit = -1;
+
+    private static class Counts {
+        long calls;
+        long loopIterations;
+    }
+
+    private Counts countsFor(String name) {
+        hotLimit = -1;
+        return counts.computeIfAbsent(name, n -> new Counts());
+    }
+
+    private Counts countsFor(ImFunction f) {
+        hotLimit = -1;
+        return functionCounts.computeIfAbsent(f, fn -> countsFor(key(fn)));
+    }
+
+    /**
+     * identifies a function in the profile.
+     * Overloaded functions and functions with the same name in different packages get the same name
+     * in the intermediate language, so the name is combined with the position of the function in the source.
+     * The file is identified by its name only, so that a profile can be used on other machines.
+     */
+    public static String key(ImFunction f) {
+        WPos pos = f.getTrace().attrSource();
+        String file = pos.getFile();
+        int slash = Math.max(file.lastIndexOf('/'), file.lastIndexOf('\\'));
+        return f.getName() + "@" + file.substring(slash + 1) + ":" + pos.getLine() + ":" + pos.getStartColumn();
+    }
+
+    public void recordCall(ImFunction f) {
+        countsFor(f).calls++;
+    }
+
+    public void recordLoopIterations(@Nullable ImFunction f, long iterations) {
+        if (f != null && iterations > 0) {
+            countsFor(f).loopIterations += iterations;
+        }
+    }
+
+    public boolean isEmpty() {
+        return counts.isEmpty();
+    }
+
+    public long getCalls(String key) {
+        Counts c = counts.get(key);
+        return c == null ? 0 : c.calls;
+    }
+
+    public long getCalls(ImFunction f) {
+        return getCalls(key(f));
+    }
+
+    public long getLoopIterations(String key) {
+        Counts c = counts.get(key);
+        return c == null ? 0 : c.loopIterations;
+    }
+
+    /**
+     * a function is hot, when it was called or looped very often compared to the other functions
+     */
+    public boolean isHot(String key) {
+        Counts c = counts.get(key);
+        return c != null && c.calls + c.loopIterations >= getHotLimit();
+    }
+
+    public boolean isHot(ImFunction f) {
+        return isHot(key(f));
+    }
+
+    /**
+     * a function is cold, when it was never called while recording the profile
+     */
+    public boolean isCold(String key) {
+        return !isEmpty() && getCalls(key) == 0;
+    }
+
+    public boolean isCold(ImFunction f) {
+        return isCold(key(f));
+    }
+
+    private long getHotLimit() {
+        if (hotLimit < 0) {
+            long max = 0;
+            for (Counts c : counts.values()) {
+                max = Math.max(max, c.calls + c.loopIterations);
+            }
+            hotLimit = Math.max(MIN_HOT_COUNT, (long) (max * HOT_FRACTION));
+        }
+        return hotLimit;
+    }
+
+    /**
+     * writes the profile as a tab separated text file with one line per function
+     */
+    public void write(File file) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# function@file:line:column\tcalls\tloop iterations\n");
+        for (Map.Entry<String, Counts> e : counts.entrySet()) {
+            sb.append(e.getKey()).append('\t')
+                .append(e.getValue().calls).append('\t')
+                .append(e.getValue().loopIterations).append('\n');
+        }
+        Files.asCharSink(file, Charsets.UTF_8).write(sb);
+    }
+
+    public static ExecutionProfile read(File file) throws IOException {
+        ExecutionProfile profile = new ExecutionProfile();
+        int lineNr = 0;
+        for (String line : Files.asCharSource(file, Charsets.UTF_8).readLines()) {
+            lineNr++;
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\t");
+            if (parts.length != 3) {
+                throw new IOException("Invalid profile entry in line " + lineNr + " of " + file + ": " + line);
+            }
+            try {
+                Counts c = profile.countsFor(parts[0]);
+                c.calls += Long.parseLong(parts[1]);
+                c.loopIterations += Long.parseLong(parts[2]);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid number in line " + lineNr + " of " + file + ": " + line, e);
+            }
+        }
+        return profile;
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutionProfile(" + counts.size() + " functions)";
+    }
+}
@@ -0,0 +1,737 @@
+package de.peeeq.wurstscript.intermediatelang.interpreter;
+
+import de.peeeq.wurstscript.WurstOperator;
+import de.peeeq.wurstscript.intermediatelang.ILconstNull;
+import de.peeeq.wurstscript.jassIm.*;
+import de.peeeq.wurstscript.translation.imtranslation.FunctionFlagEnum;
+import de.peeeq.wurstscript.types.TypesHelper;
+
+import java.util.*;
+
+import static de.peeeq.wurstscript.intermediatelang.interpreter.Bytecode.*;
+
+/**
+ * Compiles the body of an {@link ImFunction} to register based bytecode (see {@link Bytecode}),
+ * which is executed by {@link CompiledFunction}.
+ *
+ * Parameters and local variables of type integer, boolean or real are kept unboxed in int and real registers,
+ * when every assignment to them is known to produce a value of that type.
+ * All other variables stay in the slots of the {@link LocalState}.
+ * Statements and expressions without a special translation are run by the normal interpreter,
+ * the variables used in them are never kept in registers.
+ * This way the behavior is the same for both execution modes.
+ */
+class FunctionCompiler {
+    /** kinds of values, determining the register file */
+    static final int INT = 0;
+    static final int REAL = 1;
+    static final int BOOL = 2;
+    static final int OBJ = 3;
+
+    private final ImFunction function;
+    private final VarSlots localSlots;
+    private final VarSlots globalSlots;
+    /** the kinds of the variables kept in registers */
+    private final Map<ImVar, Integer> registerVarKinds = new HashMap<>();
+    private final Map<ImVar, Integer> registerVars = new HashMap<>();
+    /** local variables kept in registers, which are checked for a value before they are read */
+    private final Map<ImVar, Integer> assignedFlags = new HashMap<>();
+    private final List<Object> pool = new ArrayList<>();
+    private final Map<Object, Integer> poolIndexes = new IdentityHashMap<>();
+    private final Deque<Loop> loops = new ArrayDeque<>();
+    private int[] code = new int[64];
+    private int codeSize;
+    private int nextInt;
+    private int nextReal;
+    private int nextObj;
+    private int maxInt;
+    private int maxReal;
+    private int maxObj;
+
+    private static class Loop {
+        final int counter;
+        /** positions of the jump targets leaving the loop */
+        final List<Integer> exits = new ArrayList<>();
+
+        Loop(int counter) {
+            this.counter = counter;
+        }
+    }
+
+    private FunctionCompiler(ImFunction function, VarSlots localSlots, VarSlots globalSlots) {
+        this.function = function;
+        this.localSlots = localSlots;
+        this.globalSlots = globalSlots;
+    }
+
+    /**
+     * compiles the body of f
+     *
+     * @param localSlots  the slots used for the local state of f
+     * @param globalSlots the slots used for the global state
+     */
+    static CompiledFunction compile(ImFunction f, VarSlots localSlots, VarSlots globalSlots) {
+        return new FunctionCompiler(f, localSlots, globalSlots).compile();
+    }
+
+    private CompiledFunction compile() {
+        selectRegisterVars();
+        int[] registerParams = assignRegisters();
+        block(function.getBody());
+        emit(END);
+        return new CompiledFunction(function, Arrays.copyOf(code, codeSize), pool.toArray(),
+            maxInt, maxReal, maxObj, assignedFlags.size(), registerParams);
+    }
+
+    /**
+     * selects the variables which can be kept in registers
+     */
+    private void selectRegisterVars() {
+        Set<ImVar> interpreted = new HashSet<>();
+        List<ImSet> sets = new ArrayList<>();
+        scan(function.getBody(), interpreted, sets);
+
+        List<ImVar> vars = new ArrayList<>(function.getParameters());
+        if (function.hasFlag(FunctionFlagEnum.IS_VARARG) && !vars.isEmpty()) {
+            // holds the array of vararg values
+            vars.remove(vars.size() - 1);
+        }
+        vars.addAll(function.getLocals());
+        for (ImVar v : vars) {
+            int kind = kindOfType(v.getType());
+            if (kind != OBJ && !interpreted.contains(v)) {
+                registerVarKinds.put(v, kind);
+            }
+        }
+
+        // the kind of an assigned expression can depend on other variables, so repeat until nothing changes
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (ImSet s : sets) {
+                ImVar v = ((ImVarAccess) s.getLeft()).getVar();
+                Integer kind = registerVarKinds.get(v);
+                if (kind != null && kindOf(s.getRight()) != kind) {
+                    registerVarKinds.remove(v);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * collects the variables used in parts run by the normal interpreter and the assignments to variables
+     */
+    private void scan(Element e, Set<ImVar> interpreted, List<ImSet> sets) {
+        if (!isCompiled(e)) {
+            collectVars(e, interpreted);
+            return;
+        }
+        if (e instanceof ImSet && ((ImSet) e).getLeft() instanceof ImVarAccess) {
+            sets.add((ImSet) e);
+        } else if (e instanceof ImVarargLoop) {
+            // assigned from the vararg array
+            interpreted.add(((ImVarargLoop) e).getLoopVar());
+        }
+        for (int i = 0; i < e.size(); i++) {
+            scan(e.get(i), interpreted, sets);
+        }
+    }
+
+    private static void collectVars(Element e, Set<ImVar> vars) {
+        if (e instanceof ImVarAccess) {
+            vars.add(((ImVarAccess) e).getVar());
+        } else if (e instanceof ImVarArrayAccess) {
+            vars.add(((ImVarArrayAccess) e).getVar());
+        } else if (e instanceof ImVarargLoop) {
+            vars.add(((ImVarargLoop) e).getLoopVar());
+        }
+        for (int i = 0; i < e.size(); i++) {
+            collectVars(e.get(i), vars);
+        }
+    }
+
+    /**
+     * returns false for statements and expressions which are run by the normal interpreter
+     */
+    private static boolean isCompiled(Element e) {
+        if (e instanceof ImSet) {
+            ImLExpr left = ((ImSet) e).getLeft();
+            return left instanceof ImVarAccess
+                || left instanceof ImVarArrayAccess
+                || left instanceof ImMemberAccess;
+        } else if (e instanceof ImOperatorCall) {
+            ImOperatorCall oc = (ImOperatorCall) e;
+            int args = oc.getArguments().size();
+            return args == 2 && oc.getOp().isBinaryOp()
+                || args == 1 && oc.getOp().isUnaryOp();
+        } else if (e instanceof ImExpr) {
+            return e instanceof ImConst
+                || e instanceof ImVarAccess
+                || e instanceof ImVarArrayAccess
+                || e instanceof ImFunctionCall
+                || e instanceof ImMethodCall
+                || e instanceof ImMemberAccess
+                || e instanceof ImTupleExpr
+                || e instanceof ImTupleSelection
+                || e instanceof ImStatementExpr
+                || e instanceof ImCast;
+        }
+        return true;
+    }
+
+    private int[] assignRegisters() {
+        List<Integer> registerParams = new ArrayList<>();
+        for (ImVar p : function.getParameters()) {
+            Integer kind = registerVarKinds.get(p);
+            if (kind != null) {
+                int reg = newRegister(kind);
+                registerVars.put(p, reg);
+                registerParams.add(localSlots.slot(p));
+                registerParams.add(kind);
+                registerParams.add(reg);
+            }
+        }
+        for (ImVar l : function.getLocals()) {
+            Integer kind = registerVarKinds.get(l);
+            if (kind != null) {
+                registerVars.put(l, newRegister(kind));
+                assignedFlags.put(l, assignedFlags.size());
+            }
+        }
+        return registerParams.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int kindOfType(ImType t) {
+        if (TypesHelper.isIntType(t)) {
+            return INT;
+        } else if (TypesHelper.isRealType(t)) {
+            return REAL;
+        } else if (TypesHelper.isBoolType(t)) {
+            return BOOL;
+        }
+        return OBJ;
+    }
+
+    /**
+     * returns the kind of values an expression evaluates to.
+     * Only expressions which always evaluate to an integer, real or boolean constant in the normal interpreter
+     * have a kind other than OBJ.
+     */
+    private int kindOf(ImExpr e) {
+        if (e instanceof ImIntVal) {
+            return INT;
+        } else if (e instanceof ImRealVal) {
+            return REAL;
+        } else if (e instanceof ImBoolVal) {
+            return BOOL;
+        } else if (e instanceof ImNull) {
+            return isIntNull((ImNull) e) ? INT : OBJ;
+        } else if (e instanceof ImVarAccess) {
+            ImVar v = ((ImVarAccess) e).getVar();
+            Integer kind = registerVarKinds.get(v);
+            if (kind != null) {
+                return kind;
+            }
+            return v.isGlobal() && EvaluateExpr.isMagicCompiletimeConstant(v) ? BOOL : OBJ;
+        } else if (e instanceof ImStatementExpr) {
+            return kindOf(((ImStatementExpr) e).getExpr());
+        } else if (e instanceof ImOperatorCall && isCompiled(e)) {
+            ImOperatorCall oc = (ImOperatorCall) e;
+            WurstOperator op = oc.getOp();
+            ImExprs args = oc.getArguments();
+            if (args.size() == 1) {
+                if (op == WurstOperator.NOT) {
+                    return BOOL;
+                }
+                int kind = kindOf(args.get(0));
+                return kind == INT || kind == REAL ? kind : OBJ;
+            }
+            switch (op) {
+                case AND:
+                case OR:
+                case EQ:
+                case NOTEQ:
+                case LESS:
+                case LESS_EQ:
+                case GREATER:
+                case GREATER_EQ:
+                    return BOOL;
+                default:
+                    int opcode = typedOpcode(op, kindOf(args.get(0)), kindOf(args.get(1)));
+                    if (opcode < 0) {
+                        return OBJ;
+                    }
+                    return isRealOpcode(opcode) ? REAL : INT;
+            }
+        }
+        return OBJ;
+    }
+
+    private static boolean isIntNull(ImNull e) {
+        ImType t = e.getType();
+        return t instanceof ImAnyType
+            || t instanceof ImClassType
+            || t instanceof ImTypeVarRef
+            || TypesHelper.isIntType(t);
+    }
+
+    /**
+     * returns the opcode for a binary operator on unboxed operands of the given kinds or -1,
+     * if the operator has to be evaluated on boxed values
+     */
+    private static int typedOpcode(WurstOperator op, int left, int right) {
+        boolean ints = left == INT && right == INT;
+        boolean bools = left == BOOL && right == BOOL;
+        boolean numbers = isNumber(left) && isNumber(right);
+        switch (op) {
+            case PLUS:
+                return ints ? IADD : numbers ? RADD : -1;
+            case MINUS:
+                return ints ? ISUB : numbers ? RSUB : -1;
+            case MULT:
+                return ints ? IMUL : numbers ? RMUL : -1;
+            case DIV_INT:
+                return ints ? IDIV : -1;
+            case MOD_INT:
+                return ints ? IMOD : -1;
+            case DIV_REAL:
+                return numbers ? RDIV : -1;
+            case MOD_REAL:
+                return numbers ? RMOD : -1;
+            case LESS:
+                return ints ? ILT : numbers ? RLT : -1;
+            case LESS_EQ:
+                return ints ? ILE : numbers ? RLE : -1;
+            case GREATER:
+                return ints ? IGT : numbers ? RGT : -1;
+            case GREATER_EQ:
+                return ints ? IGE : numbers ? RGE : -1;
+            case EQ:
+                // integers and reals are not equal in the normal interpreter, so mixed operands are compared boxed
+                return ints || bools ? IEQ : left == REAL && right == REAL ? REQ : -1;
+            case NOTEQ:
+                return ints || bools ? INE : left == REAL && right == REAL ? RNE : -1;
+            default:
+                return -1;
+        }
+    }
+
+    private static boolean isNumber(int kind) {
+        return kind == INT || kind == REAL;
+    }
+
+    private static boolean isRealOpcode(int opcode) {
+        return opcode >= RADD && opcode <= RMOD;
+    }
+
+    private static boolean isRealComparison(int opcode) {
+        return opcode >= RLT && opcode <= RNE;
+    }
+
+    private void block(ImStmts stmts) {
+        for (ImStmt s : stmts) {
+            emit(STMT, constant(s));
+            int ints = nextInt;
+            int reals = nextReal;
+            int objs = nextObj;
+            stmt(s);
+            // temporary registers of a statement can be reused by the next one
+            nextInt = ints;
+            nextReal = reals;
+            nextObj = objs;
+        }
+    }
+
+    private void stmt(ImStmt s) {
+        if (!isCompiled(s)) {
+            exitTarget(emit(EXEC, constant(s), -1) + 2);
+        } else if (s instanceof ImIf) {
+            ifStmt((ImIf) s);
+        } else if (s instanceof ImLoop) {
+            loop((ImLoop) s);
+        } else if (s instanceof ImExitwhen) {
+            exitwhen((ImExitwhen) s);
+        } else if (s instanceof ImReturn) {
+            returnStmt((ImReturn) s);
+        } else if (s instanceof ImSet) {
+            set((ImSet) s);
+        } else if (s instanceof ImVarargLoop) {
+            varargLoop((ImVarargLoop) s);
+        } else if (s instanceof ImExpr) {
+            ImExpr e = (ImExpr) s;
+            int kind = kindOf(e);
+            expr(e, kind, newRegister(kind));
+        } else {
+            exitTarget(emit(EXEC, constant(s), -1) + 2);
+        }
+    }
+
+    private void ifStmt(ImIf s) {
+        int cond = newRegister(BOOL);
+        expr(s.getCondition(), BOOL, cond);
+        int toElse = emit(JUMP_IF_FALSE, cond, -1) + 2;
+        block(s.getThenBlock());
+        if (s.getElseBlock().isEmpty()) {
+            code[toElse] = codeSize;
+        } else {
+            int toEnd = emit(JUMP, -1) + 1;
+            code[toElse] = codeSize;
+            block(s.getElseBlock());
+            code[toEnd] = codeSize;
+        }
+    }
+
+    private void loop(ImLoop s) {
+        Loop loop = new Loop(newRegister(INT));
+        emit(LOOP_START, loop.counter);
+        int head = emit(LOOP_HEAD, loop.counter);
+        loops.push(loop);
+        block(s.getBody());
+        loops.pop();
+        emit(JUMP, head);
+        for (int exit : loop.exits) {
+            code[exit] = codeSize;
+        }
+        emit(LOOP_END, loop.counter);
+    }
+
+    private void exitwhen(ImExitwhen s) {
+        int cond = newRegister(BOOL);
+        expr(s.getCondition(), BOOL, cond);
+        if (loops.isEmpty()) {
+            int skip = emit(JUMP_IF_FALSE, cond, -1) + 2;
+            emit(THROW_EXIT);
+            code[skip] = codeSize;
+        } else {
+            loops.peek().exits.add(emit(JUMP_IF_TRUE, cond, -1) + 2);
+        }
+    }
+
+    /**
+     * registers a jump target, which is used when a part run by the normal interpreter leaves the current loop
+     */
+    private void exitTarget(int pos) {
+        if (!loops.isEmpty()) {
+            loops.peek().exits.add(pos);
+        }
+    }
+
+    private void returnStmt(ImReturn s) {
+        if (s.getReturnValue() instanceof ImExpr) {
+            ImExpr e = (ImExpr) s.getReturnValue();
+            int kind = kindOf(e);
+            int r = newRegister(kind);
+            expr(e, kind, r);
+            endLoops();
+            emit(kind == INT ? RETURN_INT : kind == REAL ? RETURN_REAL : kind == BOOL ? RETURN_BOOL : RETURN_OBJ, r);
+        } else {
+            endLoops();
+            emit(RETURN);
+        }
+    }
+
+    /**
+     * records the iterations of all loops left by a return statement
+     */
+    private void endLoops() {
+        for (Loop loop : loops) {
+            emit(LOOP_END, loop.counter);
+        }
+    }
+
+    private void set(ImSet s) {
+        ImLExpr left = s.getLeft();
+        ImExpr right = s.getRight();
+        if (left instanceof ImVarAccess) {
+            ImVar v = ((ImVarAccess) left).getVar();
+            Integer reg = registerVars.get(v);
+            if (reg != null) {
+                int kind = registerVarKinds.get(v);
+                int r = newRegister(kind);
+                expr(right, kind, r);
+                emit(kind == REAL ? RSTORE : ISTORE, reg, r, assignedFlag(v));
+                return;
+            }
+            int r = newRegister(OBJ);
+            expr(right, OBJ, r);
+            emit(v.isGlobal() ? GSTORE : OSTORE, slotOf(v), r);
+        } else if (left instanceof ImVarArrayAccess) {
+            ImVarArrayAccess va = (ImVarArrayAccess) left;
+            ImVar v = va.getVar();
+            int indexes = indexes(va.getIndexes());
+            int r = newRegister(OBJ);
+            expr(right, OBJ, r);
+            emit(ASET, constant(v), slotOf(v), v.isGlobal() ? 1 : 0, indexes, va.getIndexes().size(), r);
+        } else {
+            ImMemberAccess ma = (ImMemberAccess) left;
+            int receiver = newRegister(OBJ);
+            expr(ma.getReceiver(), OBJ, receiver);
+            emit(RECEIVER, receiver, constant(ma.getTrace()), RECEIVER_ANY);
+            int indexes = indexes(ma.getIndexes());
+            int r = newRegister(OBJ);
+            expr(right, OBJ, r);
+            emit(MSET, constant(ma), receiver, indexes, ma.getIndexes().size(), r);
+        }
+    }
+
+    private void varargLoop(ImVarargLoop s) {
+        ImVars params = function.getParameters();
+        ImVar varargParam = params.get(params.size() - 1);
+        int array = newRegister(OBJ);
+        int counter = newRegister(INT);
+        emit(OLOAD, array, localSlots.slot(varargParam), constant(varargParam));
+        emit(ICONST, counter, 0);
+        int head = emit(VARARG_NEXT, array, counter, localSlots.slot(s.getLoopVar()), -1);
+        block(s.getBody());
+        emit(JUMP, head);
+        code[head + 4] = codeSize;
+    }
+
+    /**
+     * compiles e, so that its value is stored in register dest of the given kind
+     */
+    private void expr(ImExpr e, int kind, int dest) {
+        int actual = kindOf(e);
+        if (actual == kind) {
+            exprOfKind(e, kind, dest);
+        } else {
+            int r = newRegister(actual);
+            exprOfKind(e, actual, r);
+            convert(actual, r, kind, dest);
+        }
+    }
+
+    private void convert(int from, int src, int to, int dest) {
+        if (to == OBJ) {
+            emit(from == INT ? IBOX : from == REAL ? RBOX : BBOX, dest, src);
+        } else if (from == INT && to == REAL) {
+            emit(I2R, dest, src);
+        } else if (from == OBJ && to == INT) {
+            emit(IUNBOX, dest, src);
+        } else if (from == OBJ && to == BOOL) {
+            emit(BUNBOX, dest, src);
+        } else if (from != OBJ && to != REAL) {
+            // unboxing fails in the same way as in the normal interpreter
+            int r = newRegister(OBJ);
+            convert(from, src, OBJ, r);
+            convert(OBJ, r, to, dest);
+        } else {
+            throw new Error("Cannot convert values of kind " + from + " to " + to);
+        }
+    }
+
+    /**
+     * compiles e, which has the given kind
+     */
+    private void exprOfKind(ImExpr e, int kind, int dest) {
+        if (e instanceof ImIntVal) {
+            emit(ICONST, dest, ((ImIntVal) e).getValI());
+        } else if (e instanceof ImRealVal) {
+            emit(RCONST, dest, Float.floatToRawIntBits(((ImRealVal) e).constantValue().getVal()));
+        } else if (e instanceof ImBoolVal) {
+            emit(ICONST, dest, ((ImBoolVal) e).getValB() ? 1 : 0);
+        } else if (e instanceof ImNull) {
+            if (kind == INT) {
+                emit(ICONST, dest, 0);
+            } else {
+                emit(OCONST, dest, constant(ILconstNull.instance()));
+            }
+        } else if (e instanceof ImStringVal) {
+            emit(OCONST, dest, constant(((ImStringVal) e).constantValue()));
+        } else if (e instanceof ImFuncRef) {
+            emit(FUNCREF, dest, constant(((ImFuncRef) e).getFunc()));
+        } else if (e instanceof ImVarAccess) {
+            varAccess(((ImVarAccess) e).getVar(), kind, dest);
+        } else if (e instanceof ImVarArrayAccess) {
+            ImVarArrayAccess va = (ImVarArrayAccess) e;
+            ImVar v = va.getVar();
+            int indexes = indexes(va.getIndexes());
+            emit(AGET, dest, constant(v), slotOf(v), v.isGlobal() ? 1 : 0, indexes, va.getIndexes().size());
+        } else if (e instanceof ImFunctionCall) {
+            ImFunctionCall call = (ImFunctionCall) e;
+            ImExprs args = call.getArguments();
+            int first = registers(OBJ, args.size());
+            for (int i = 0; i < args.size(); i++) {
+                expr(args.get(i), OBJ, first + i);
+            }
+            emit(CALL, dest, constant(call), first, args.size());
+        } else if (e instanceof ImMethodCall) {
+            ImMethodCall mc = (ImMethodCall) e;
+            ImExprs args = mc.getArguments();
+            int receiver = registers(OBJ, args.size() + 1);
+            expr(mc.getReceiver(), OBJ, receiver);
+            emit(RECEIVER, receiver, constant(mc.attrTrace()), RECEIVER_ALLOCATED);
+            for (int i = 0; i < args.size(); i++) {
+                expr(args.get(i), OBJ, receiver + 1 + i);
+            }
+            emit(MCALL, dest, constant(mc), receiver, args.size());
+        } else if (e instanceof ImMemberAccess) {
+            ImMemberAccess ma = (ImMemberAccess) e;
+            int receiver = newRegister(OBJ);
+            expr(ma.getReceiver(), OBJ, receiver);
+            emit(RECEIVER, receiver, constant(ma.getTrace()), RECEIVER_NOT_NULL);
+            int indexes = indexes(ma.getIndexes());
+            emit(MGET, dest, constant(ma), receiver, indexes, ma.getIndexes().size());
+        } else if (e instanceof ImTupleExpr) {
+            ImExprs exprs = ((ImTupleExpr) e).getExprs();
+            int first = registers(OBJ, exprs.size());
+            for (int i = 0; i < exprs.size(); i++) {
+                expr(exprs.get(i), OBJ, first + i);
+            }
+            emit(TUPLE, dest, first, exprs.size());
+        } else if (e instanceof ImTupleSelection) {
+            ImTupleSelection ts = (ImTupleSelection) e;
+            int tuple = newRegister(OBJ);
+            expr(ts.getTupleExpr(), OBJ, tuple);
+            emit(TSEL, dest, tuple, constant(ts));
+        } else if (e instanceof ImCast) {
+            ImCast c = (ImCast) e;
+            int r = newRegister(OBJ);
+            expr(c.getExpr(), OBJ, r);
+            emit(CAST, dest, r, constant(c));
+        } else if (e instanceof ImStatementExpr) {
+            ImStatementExpr se = (ImStatementExpr) e;
+            block(se.getStatements());
+            expr(se.getExpr(), kind, dest);
+        } else if (e instanceof ImOperatorCall && isCompiled(e)) {
+            operatorCall((ImOperatorCall) e, kind, dest);
+        } else {
+            exitTarget(emit(EVAL, dest, constant(e), -1) + 3);
+        }
+    }
+
+    private void varAccess(ImVar v, int kind, int dest) {
+        Integer reg = registerVars.get(v);
+        if (reg != null) {
+            emit(kind == REAL ? RLOAD : ILOAD, dest, reg, assignedFlag(v), constant(v));
+        } else if (!v.isGlobal()) {
+            emit(OLOAD, dest, localSlots.slot(v), constant(v));
+        } else if (kind == BOOL) {
+            // see kindOf
+            emit(COMPILETIME, dest);
+        } else {
+            emit(GLOAD, dest, globalSlots.slot(v), constant(v));
+        }
+    }
+
+    private void operatorCall(ImOperatorCall e, int kind, int dest) {
+        WurstOperator op = e.getOp();
+        ImExprs args = e.getArguments();
+        if (args.size() == 1) {
+            ImExpr arg = args.get(0);
+            if (op == WurstOperator.NOT) {
+                expr(arg, BOOL, dest);
+                emit(NOT, dest, dest);
+            } else if (kind == INT) {
+                expr(arg, INT, dest);
+                emit(INEG, dest, dest);
+            } else if (kind == REAL) {
+                expr(arg, REAL, dest);
+                emit(RNEG, dest, dest);
+            } else {
+                int r = newRegister(OBJ);
+                expr(arg, OBJ, r);
+                emit(OUNOP, dest, op.ordinal(), r);
+            }
+            return;
+        }
+        ImExpr left = args.get(0);
+        ImExpr right = args.get(1);
+        if (op == WurstOperator.AND || op == WurstOperator.OR) {
+            expr(left, BOOL, dest);
+            int skip = emit(op == WurstOperator.AND ? JUMP_IF_FALSE : JUMP_IF_TRUE, dest, -1) + 2;
+            expr(right, BOOL, dest);
+            code[skip] = codeSize;
+            return;
+        }
+        int leftKind = kindOf(left);
+        int rightKind = kindOf(right);
+        int opcode = typedOpcode(op, leftKind, rightKind);
+        if (opcode < 0) {
+            int a = newRegister(OBJ);
+            int b = newRegister(OBJ);
+            expr(left, OBJ, a);
+            expr(right, OBJ, b);
+            if (kind == OBJ) {
+                emit(OBINOP, dest, op.ordinal(), a, b);
+            } else {
+                emit(OBINOP, a, op.ordinal(), a, b);
+                convert(OBJ, a, kind, dest);
+            }
+            return;
+        }
+        int operandKind = isRealOpcode(opcode) || isRealComparison(opcode) ? REAL : leftKind;
+        int a = newRegister(operandKind);
+        int b = newRegister(operandKind);
+        expr(left, operandKind, a);
+        expr(right, operandKind, b);
+        emit(opcode, dest, a, b);
+    }
+
+    /**
+     * compiles the indexes of an array or member access to consecutive int registers and returns the first register
+     */
+    private int indexes(ImExprs indexes) {
+        int first = registers(INT, indexes.size());
+        for (int i = 0; i < indexes.size(); i++) {
+            expr(indexes.get(i), INT, first + i);
+        }
+        return first;
+    }
+
+    private int slotOf(ImVar v) {
+        return v.isGlobal() ? globalSlots.slot(v) : localSlots.slot(v);
+    }
+
+    private int assignedFlag(ImVar v) {
+        Integer flag = assignedFlags.get(v);
+        return flag == null ? -1 : flag;
+    }
+
+    private int newRegister(int kind) {
+        if (kind == REAL) {
+            maxReal = Math.max(maxReal, nextReal + 1);
+            return nextReal++;
+        } else if (kind == OBJ) {
+            maxObj = Math.max(maxObj, nextObj + 1);
+            return nextObj++;
+        }
+        maxInt = Math.max(maxInt, nextInt + 1);
+        return nextInt++;
+    }
+
+    /**
+     * allocates count consecutive registers and returns the first one
+     */
+    private int registers(int kind, int count) {
+        int first = kind == REAL ? nextReal : kind == OBJ ? nextObj : nextInt;
+        for (int i = 0; i < count; i++) {
+            newRegister(kind);
+        }
+        return first;
+    }
+
+    private int constant(Object o) {
+        Integer index = poolIndexes.get(o);
+        if (index == null) {
+            index = pool.size();
+            pool.add(o);
+            poolIndexes.put(o, index);
+        }
+        return index;
+    }
+
+    /**
+     * appends an instruction and returns its position
+     */
+    private int emit(int... instruction) {
+        if (codeSize + instruction.length > code.length) {
+            code = Arrays.copyOf(code, Math.max(code.length * 2, codeSize + instruction.length));
+        }
+        int pos = codeSize;
+        System.arraycopy(instruction, 0, code, pos, instruction.length);
+        codeSize += instruction.length;
+        return pos;
+    }
+}
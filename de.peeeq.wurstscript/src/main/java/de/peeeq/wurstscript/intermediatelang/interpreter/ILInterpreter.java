@@ -21,8 +21,6 @@ import org.eclipse.jdt.annotation.Nullable;
 
 import java.io.File;
 import java.util.Arrays;
-import java.util.LinkedHashMap;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -31,14 +29,17 @@ import static de.peeeq.wurstscript.translation.imoptimizer.UselessFunctionCallsR
 
 public class ILInterpreter implements AbstractInterpreter {
     private ImProg prog;
-    private static boolean cache = false;
     private final ProgramState globalState;
     private final TimerMockHandler timerMockHandler = new TimerMockHandler();
 
     public ILInterpreter(ImProg prog, WurstGui gui, Optional<File> mapFile, ProgramState globalState, boolean cache) {
         this.prog = prog;
         this.globalState = globalState;
-        ILInterpreter.cache = cache;
+        if (!cache) {
+            globalState.setNativeCallCache(null);
+        } else if (globalState.getNativeCallCache() == null) {
+            globalState.setNativeCallCache(new NativeCallCache(NativeCallCache.DEFAULT_CAPACITY));
+        }
         globalState.addNativeProvider(new BuiltinFuncs(globalState));
 //        globalState.addNativeProvider(new NativeFunctions());
     }
@@ -84,11 +85,16 @@ public class ILInterpreter implements AbstractInterpreter {
                 return runBuiltinFunction(globalState, f, args);
             }
 
-            LocalState localState = new LocalState();
-            int i = 0;
-            for (ImVar p : f.getParameters()) {
-                localState.setVal(p, args[i]);
-                i++;
+            ExecutionProfile profile = globalState.getProfile();
+            if (profile != null) {
+                profile.recordCall(f);
+            }
+
+            LocalState localState = new LocalState(globalState.getVarSlots(f));
+            // parameters use the first slots
+            int paramCount = f.getParameters().size();
+            for (int i = 0; i < paramCount; i++) {
+                localState.setSlotVal(i, args[i]);
             }
 
             if (f.getBody().isEmpty()) {
@@ -99,14 +105,21 @@ public class ILInterpreter implements AbstractInterpreter {
 
             globalState.pushStackframe(f, args, (caller == null ? f : caller).attrTrace().attrErrorPos());
 
-            try {
-                f.getBody().runStatements(globalState, localState);
-                globalState.popStackframe();
-            } catch (ReturnException e) {
-                globalState.popStackframe();
-                ILconst retVal = e.getVal();
-                retVal = adjustTypeOfConstant(retVal, f.getReturnType());
-                return localState.setReturnVal(retVal);
+            if (globalState.isCompiledExecution()) {
+                if (runCompiled(globalState, f, localState)) {
+                    ILconst retVal = adjustTypeOfConstant(localState.getReturnVal(), f.getReturnType());
+                    return localState.setReturnVal(retVal);
+                }
+            } else {
+                try {
+                    f.getBody().runStatements(globalState, localState);
+                    globalState.popStackframe();
+                } catch (ReturnException e) {
+                    globalState.popStackframe();
+                    ILconst retVal = e.getVal();
+                    retVal = adjustTypeOfConstant(retVal, f.getReturnType());
+                    return localState.setReturnVal(retVal);
+                }
             }
             if (f.getReturnType() instanceof ImVoid) {
                 return localState;
@@ -126,6 +139,24 @@ public class ILInterpreter implements AbstractInterpreter {
         }
     }
 
+    /**
+     * runs the compiled body of f and pops its stack frame
+     *
+     * @return true, when the function returned with a return statement
+     */
+    private static boolean runCompiled(ProgramState globalState, ImFunction f, LocalState localState) {
+        boolean returned;
+        try {
+            returned = globalState.getCompiledFunction(f).run(globalState, localState);
+        } catch (ReturnException e) {
+            // thrown by a statement executed without compilation
+            localState.setReturnVal(e.getVal());
+            returned = true;
+        }
+        globalState.popStackframe();
+        return returned;
+    }
+
     public static de.peeeq.wurstscript.ast.Element getTrace(ProgramState globalState, ImFunction f) {
         Element lastStatement = globalState.getLastStatement();
         return lastStatement == null ? f.attrTrace() : lastStatement.attrTrace();
@@ -160,32 +191,32 @@ public class ILInterpreter implements AbstractInterpreter {
         return false;
     }
 
-    public static LinkedHashMap<ImFunction, LinkedHashMap<Integer, LocalState>> localStateCache = new LinkedHashMap<>();
-
     private static LocalState runBuiltinFunction(ProgramState globalState, ImFunction f, ILconst... args) {
-        if (cache && isFunctionPure(f.getName())) {
-            int combinedHash = Objects.hash((Object[]) args);
-            if (localStateCache.containsKey(f) && localStateCache.get(f).containsKey(combinedHash)) {
-                return localStateCache.get(f).get(combinedHash);
+        NativeCallCache nativeCallCache = globalState.getNativeCallCache();
+        NativeCallCache.Key cacheKey = null;
+        if (nativeCallCache != null && isFunctionPure(f.getName())) {
+            cacheKey = NativeCallCache.key(f, args);
+            if (cacheKey != null) {
+                ILconst cached = nativeCallCache.get(cacheKey);
+                if (cached != null) {
+                    return new LocalState(cached);
+                }
             }
         }
-        StringBuilder errors = new StringBuilder();
-        for (NativesProvider natives : globalState.getNativeProviders()) {
+        LinkedNative linked = globalState.getLinkedNative(f);
+        String errors = "";
+        if (!linked.isMissing()) {
             try {
-                LocalState localState = new LocalState(natives.invoke(f.getName(), args));
-                if (cache && isFunctionPure(f.getName())) {
-                    int combinedHash = Objects.hash((Object[]) args);
-                    LinkedHashMap<Integer, LocalState> cached = localStateCache.getOrDefault(f, new LinkedHashMap<>());
-                    cached.put(combinedHash, localState);
-                    localStateCache.put(f, cached);
+                ILconst result = linked.invoke(args);
+                if (nativeCallCache != null && cacheKey != null && result != null) {
+                    nativeCallCache.put(cacheKey, result);
                 }
-                return localState;
+                return new LocalState(result);
             } catch (NoSuchNativeException e) {
-                errors.append("\n").append(e.getMessage());
-                // ignore
+                errors = "\n" + e.getMessage();
             }
         }
-        globalState.compilationError("function " + f.getName() + " cannot be used from the Wurst interpreter.\n" + errors);
+        globalState.compilationError("function " + f.getName() + " cannot be used from the Wurst interpreter." + errors);
         if (f.getReturnType() instanceof ImVoid) {
             return new LocalState();
         }
@@ -193,7 +224,7 @@ public class ILInterpreter implements AbstractInterpreter {
         return new LocalState(returnValue);
     }
 
-    private static boolean isCompiletimeNative(ImFunction f) {
+    static boolean isCompiletimeNative(ImFunction f) {
         if (f.getTrace() instanceof HasModifier) {
             HasModifier f2 = (HasModifier) f.getTrace();
             for (Modifier m : f2.getModifiers()) {
@@ -242,6 +273,13 @@ public class ILInterpreter implements AbstractInterpreter {
         return globalState;
     }
 
+    /**
+     * selects the execution engine, see {@link ProgramState#setCompiledExecution(boolean)}
+     */
+    public void setCompiledExecution(boolean compiledExecution) {
+        globalState.setCompiledExecution(compiledExecution);
+    }
+
     public void addNativeProvider(NativesProvider np) {
         globalState.addNativeProvider(np);
     }
@@ -0,0 +1,48 @@
+package de.peeeq.wurstscript.intermediatelang.interpreter;
+
+import de.peeeq.wurstscript.intermediatelang.ILconst;
+import de.peeeq.wurstscript.jassIm.ImFunction;
+
+import java.util.List;
+
+/**
+ * A native function bound to its implementations, see {@link ProgramState#getLinkedNative(ImFunction)}.
+ *
+ * Usually there is exactly one implementation. When several providers implement a native,
+ * they are tried in the order in which the providers were added.
+ */
+public class LinkedNative {
+    private final ImFunction function;
+    private final NativeFunction[] implementations;
+
+    LinkedNative(ImFunction function, List<NativeFunction> implementations) {
+        this.function = function;
+        this.implementations = implementations.toArray(new NativeFunction[0]);
+    }
+
+    public ImFunction getFunction() {
+        return function;
+    }
+
+    /**
+     * true, when no provider implements this native
+     */
+    public boolean isMissing() {
+        return implementations.length == 0;
+    }
+
+    public ILconst invoke(ILconst[] args) throws NoSuchNativeException {
+        if (implementations.length == 1) {
+            return implementations[0].invoke(args);
+        }
+        StringBuilder errors = new StringBuilder();
+        for (NativeFunction impl : implementations) {
+            try {
+                return impl.invoke(args);
+            } catch (NoSuchNativeException e) {
+                errors.append("\n").append(e.getMessage());
+            }
+        }
+        throw new NoSuchNativeException(errors.toString());
+    }
+}
@@ -9,10 +9,19 @@ public class LocalState extends State {
     private @Nullable ILconst returnVal = null;
 
     public LocalState(ILconst returnVal) {
+        this();
         this.setReturnVal(returnVal);
     }
 
     public LocalState() {
+        super(new VarSlots());
+    }
+
+    /**
+     * creates the local state for a call of a function, see {@link VarSlots#forFunction(de.peeeq.wurstscript.jassIm.ImFunction)}
+     */
+    public LocalState(VarSlots slots) {
+        super(slots);
     }
 
     public @Nullable ILconst getReturnVal() {
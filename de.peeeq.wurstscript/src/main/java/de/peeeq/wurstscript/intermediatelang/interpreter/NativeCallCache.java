@@ -0,0 +1,144 @@
+package de.peeeq.wurstscript.intermediatelang.interpreter;
+
+import de.peeeq.wurstscript.intermediatelang.*;
+import de.peeeq.wurstscript.jassIm.ImFunction;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the results of calls to pure natives (see
+ * {@link de.peeeq.wurstscript.translation.imoptimizer.UselessFunctionCallsRemover#isFunctionPure(String)}).
+ *
+ * Only calls with integer, real, string, boolean and null arguments are cached. The arguments are compared
+ * by value and type, so for example 1 and 1.0 are different keys.
+ * When the cache is full, the least recently used entry is removed.
+ *
+ * A cache belongs to a single {@link ProgramState} and is not thread safe.
+ */
+public class NativeCallCache {
+    public static final int DEFAULT_CAPACITY = 10_000;
+
+    private final Map<Key, ILconst> entries;
+    private int hits;
+    private int misses;
+    private int evictions;
+
+    public NativeCallCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive, but was " + capacity);
+        }
+        this.entries = new LinkedHashMap<Key, ILconst>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, ILconst> eldest) {
+                if (size() > capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * creates the key for a call or returns null, if the call cannot be cached
+     */
+    public static @Nullable Key key(ImFunction f, ILconst[] args) {
+        Object[] values = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            ILconst arg = args[i];
+            if (arg instanceof ILconstInt) {
+                values[i] = ((ILconstInt) arg).getVal();
+            } else if (arg instanceof ILconstReal) {
+                values[i] = ((ILconstReal) arg).getVal();
+            } else if (arg instanceof ILconstString) {
+                values[i] = ((ILconstString) arg).getVal();
+            } else if (arg instanceof ILconstBool) {
+                values[i] = ((ILconstBool) arg).getVal();
+            } else if (arg instanceof ILconstNull) {
+                values[i] = Key.NULL;
+            } else {
+                // handles and objects have an identity and might be changed
+                return null;
+            }
+        }
+        return new Key(f, values);
+    }
+
+    /**
+     * returns the cached result or null, if the call is not in the cache
+     */
+    public @Nullable ILconst get(Key key) {
+        ILconst res = entries.get(key);
+        if (res == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return res;
+    }
+
+    public void put(Key key, ILconst result) {
+        entries.put(key, result);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getHits() {
+        return hits;
+    }
+
+    public int getMisses() {
+        return misses;
+    }
+
+    public int getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public String toString() {
+        return "NativeCallCache(size = " + size() + ", hits = " + hits + ", misses = " + misses
+            + ", evictions = " + evictions + ")";
+    }
+
+    /**
+     * the function and argument values of a call
+     */
+    public static final class Key {
+        private static final Object NULL = new Object();
+
+        private final ImFunction function;
+        private final Object[] values;
+        private final int hash;
+
+        private Key(ImFunction function, Object[] values) {
+            this.function = function;
+            this.values = values;
+            this.hash = 31 * System.identityHashCode(function) + Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(@Nullable Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return hash == key.hash
+                && function == key.function
+                && Arrays.equals(values, key.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
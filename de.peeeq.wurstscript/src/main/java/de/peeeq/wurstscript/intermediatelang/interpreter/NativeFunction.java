@@ -0,0 +1,16 @@
+package de.peeeq.wurstscript.intermediatelang.interpreter;
+
+import de.peeeq.wurstscript.intermediatelang.ILconst;
+
+/**
+ * The implementation of a native, as resolved by {@link NativesProvider#link(String)}.
+ */
+@FunctionalInterface
+public interface NativeFunction {
+
+    /**
+     * @throws NoSuchNativeException when the implementation cannot handle the given arguments
+     */
+    ILconst invoke(ILconst[] args) throws NoSuchNativeException;
+
+}
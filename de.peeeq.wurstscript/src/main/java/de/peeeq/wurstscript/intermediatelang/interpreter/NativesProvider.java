@@ -1,6 +1,7 @@
 package de.peeeq.wurstscript.intermediatelang.interpreter;
 
 import de.peeeq.wurstscript.intermediatelang.ILconst;
+import org.eclipse.jdt.annotation.Nullable;
 
 import java.io.PrintStream;
 
@@ -8,6 +9,15 @@ public interface NativesProvider {
 
     ILconst invoke(String funcname, ILconst[] args) throws NoSuchNativeException;
 
+    /**
+     * resolves the implementation of a native once, so that calls do not need to look it up by name
+     *
+     * @return the implementation or null, if this provider does not implement the native
+     */
+    default @Nullable NativeFunction link(String funcname) {
+        return args -> invoke(funcname, args);
+    }
+
     void setOutStream(PrintStream outStream);
 
 }
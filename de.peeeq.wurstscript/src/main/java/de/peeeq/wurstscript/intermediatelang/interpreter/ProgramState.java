@@ -3,6 +3,7 @@ package de.peeeq.wurstscript.intermediatelang.interpreter;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import de.peeeq.wurstio.jassinterpreter.InterpreterException;
+import de.peeeq.wurstscript.WLogger;
 import de.peeeq.wurstscript.ast.Element;
 import de.peeeq.wurstscript.attributes.CompileError;
 import de.peeeq.wurstscript.gui.WurstGui;
@@ -11,6 +12,7 @@ import de.peeeq.wurstscript.jassIm.*;
 import de.peeeq.wurstscript.parser.WPos;
 import de.peeeq.wurstscript.utils.LineOffsets;
 import de.peeeq.wurstscript.utils.Utils;
+import org.eclipse.jdt.annotation.Nullable;
 
 import java.io.PrintStream;
 import java.util.*;
@@ -29,9 +31,16 @@ public class ProgramState extends State {
     private Deque<de.peeeq.wurstscript.jassIm.Element> lastStatements = new ArrayDeque<>();
     private boolean isCompiletime;
     private HashMap<Integer, IlConstHandle> handleMap = new HashMap<>();
+    private boolean compiledExecution = false;
+    private final Map<ImFunction, CompiledFunction> compiledFunctions = new HashMap<>();
+    private final Map<ImFunction, VarSlots> functionSlots = new HashMap<>();
+    private @Nullable Map<ImFunction, LinkedNative> linkedNatives;
+    private @Nullable NativeCallCache nativeCallCache;
+    private @Nullable ExecutionProfile profile;
 
 
     public ProgramState(WurstGui gui, ImProg prog, boolean isCompiletime) {
+        super(new VarSlots());
         this.gui = gui;
         this.prog = prog;
         this.isCompiletime = isCompiletime;
@@ -68,17 +77,142 @@ public class ProgramState extends State {
     public void addNativeProvider(NativesProvider np) {
         np.setOutStream(outStream);
         nativeProviders.add(np);
+        linkedNatives = null;
     }
 
     public Iterable<NativesProvider> getNativeProviders() {
         return nativeProviders;
     }
 
+    /**
+     * the cache for results of pure natives, or null when results should not be cached
+     */
+    public @Nullable NativeCallCache getNativeCallCache() {
+        return nativeCallCache;
+    }
+
+    public void setNativeCallCache(@Nullable NativeCallCache nativeCallCache) {
+        this.nativeCallCache = nativeCallCache;
+    }
+
+    /**
+     * the profile which records function calls and loop iterations, or null when not profiling
+     */
+    public @Nullable ExecutionProfile getProfile() {
+        return profile;
+    }
+
+    public void setProfile(@Nullable ExecutionProfile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * returns the native function f bound to its implementations.
+     * On first use, all natives of the program are linked at once.
+     */
+    public LinkedNative getLinkedNative(ImFunction f) {
+        Map<ImFunction, LinkedNative> natives = linkedNatives;
+        if (natives == null) {
+            natives = linkNatives();
+        }
+        LinkedNative res = natives.get(f);
+        if (res == null) {
+            // a native which is not part of the program
+            res = linkNative(f);
+            natives.put(f, res);
+        }
+        return res;
+    }
+
+    /**
+     * binds all natives of the program to their implementations
+     */
+    private Map<ImFunction, LinkedNative> linkNatives() {
+        Map<ImFunction, LinkedNative> natives = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (ImFunction f : prog.getFunctions()) {
+            if (f.isNative() || ILInterpreter.isCompiletimeNative(f)) {
+                LinkedNative n = linkNative(f);
+                natives.put(f, n);
+                if (n.isMissing()) {
+                    missing.add(f.getName());
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            Collections.sort(missing);
+            WLogger.info("Natives not available in the interpreter: " + String.join(", ", missing));
+        }
+        linkedNatives = natives;
+        return natives;
+    }
+
+    private LinkedNative linkNative(ImFunction f) {
+        List<NativeFunction> implementations = new ArrayList<>();
+        for (NativesProvider np : nativeProviders) {
+            NativeFunction impl = np.link(f.getName());
+            if (impl != null) {
+                implementations.add(impl);
+            }
+        }
+        return new LinkedNative(f, implementations);
+    }
+
     public ProgramState setProg(ImProg p) {
         prog = p;
+        linkedNatives = null;
+        if (nativeCallCache != null) {
+            nativeCallCache.clear();
+        }
+        clearCompiledFunctions();
         return this;
     }
 
+    /**
+     * when enabled, function bodies are compiled once (see {@link FunctionCompiler})
+     * instead of interpreting the intermediate language directly
+     */
+    public void setCompiledExecution(boolean compiledExecution) {
+        this.compiledExecution = compiledExecution;
+    }
+
+    public boolean isCompiledExecution() {
+        return compiledExecution;
+    }
+
+    /**
+     * returns the compiled body of a function, compiling it on first use
+     */
+    public CompiledFunction getCompiledFunction(ImFunction f) {
+        CompiledFunction res = compiledFunctions.get(f);
+        if (res == null) {
+            res = FunctionCompiler.compile(f, getVarSlots(f), getSlots());
+            compiledFunctions.put(f, res);
+        }
+        return res;
+    }
+
+    /**
+     * returns the slots for the local variables of a function
+     */
+    public VarSlots getVarSlots(ImFunction f) {
+        VarSlots res = functionSlots.get(f);
+        if (res == null) {
+            res = VarSlots.forFunction(f);
+            functionSlots.put(f, res);
+        }
+        return res;
+    }
+
+    /**
+     * drops all compiled functions and slot assignments of local variables,
+     * needed when the program was changed in place
+     */
+    public void clearCompiledFunctions() {
+        compiledFunctions.clear();
+        functionSlots.clear();
+    }
+
     public ImProg getProg() {
         return prog;
     }
@@ -254,12 +388,13 @@ public class ProgramState extends State {
         return isCompiletime;
     }
 
-    protected ILconstArray getArray(ImVar v) {
-        ILconstArray r = arrayValues.get(v);
+    @Override
+    protected ILconstArray getArray(int slot, ImVar v) {
+        ILconstArray r = getSlotArray(slot);
         if (r == null) {
             ImType vType = v.getType();
             r = createArrayConstantFromType(vType);
-            arrayValues.put(v, r);
+            setSlotArray(slot, r);
             List<ImSet> e = prog.getGlobalInits().get(v);
             if (e != null) {
                 LocalState ls = new LocalState();
@@ -31,15 +31,22 @@ public class RunStatement {
     }
 
     public static void run(ImLoop s, ProgramState globalState, LocalState localState) {
+        long iterations = 0;
         try {
             while (true) {
                 if (Thread.currentThread().isInterrupted()) {
                     throw new InterpreterException(globalState, "Execution interrupted");
                 }
+                iterations++;
                 s.getBody().runStatements(globalState, localState);
             }
         } catch (ExitwhenException e) {
             // end of loop
+        } finally {
+            ExecutionProfile profile = globalState.getProfile();
+            if (profile != null) {
+                profile.recordLoopIterations(s.getNearestFunc(), iterations);
+            }
         }
 
     }
@@ -71,9 +78,11 @@ public class RunStatement {
     public static void run(ImVarargLoop loop, ProgramState globalState, LocalState localState) {
         ImFunction func = loop.getNearestFunc();
         ImVar varargParam = func.getParameters().get(func.getParameters().size() - 1);
-        VarargArray val = (VarargArray) localState.getVal(varargParam);
+        VarSlots slots = localState.getSlots();
+        VarargArray val = (VarargArray) localState.getSlotVal(slots.slot(varargParam));
+        int loopVarSlot = slots.slot(loop.getLoopVar());
         for (int i = 0; i < val.size(); i++) {
-            localState.setVal(loop.getLoopVar(), val.get(i));
+            localState.setSlotVal(loopVarSlot, val.get(i));
             loop.getBody().runStatements(globalState, localState);
         }
     }
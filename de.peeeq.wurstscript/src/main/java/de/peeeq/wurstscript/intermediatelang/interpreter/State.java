@@ -1,6 +1,5 @@
 package de.peeeq.wurstscript.intermediatelang.interpreter;
 
-import com.google.common.collect.Maps;
 import de.peeeq.wurstio.jassinterpreter.InterpreterException;
 import de.peeeq.wurstscript.intermediatelang.ILconst;
 import de.peeeq.wurstscript.intermediatelang.ILconstArray;
@@ -10,26 +9,82 @@ import de.peeeq.wurstscript.jassIm.ImType;
 import de.peeeq.wurstscript.jassIm.ImVar;
 import org.eclipse.jdt.annotation.Nullable;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 
+/**
+ * Values of variables, stored in flat arrays indexed by the slots of the variables (see {@link VarSlots}).
+ *
+ * The methods taking an {@link ImVar} look up the slot of the variable on every access.
+ * The methods taking a slot are used by the interpreter, which caches the slot at each variable access
+ * (see {@link VarSlots#slot(ImVar, java.util.concurrent.atomic.AtomicReference)}),
+ * and by the {@link CompiledFunction}, whose bytecode contains the slots resolved by the {@link FunctionCompiler}.
+ */
 public abstract class State {
 
-    private Map<ImVar, ILconst> values = Maps.newLinkedHashMap();
-    protected Map<ImVar, ILconstArray> arrayValues = Maps.newLinkedHashMap();
+    private static final ILconst[] NO_VALUES = new ILconst[0];
+    private static final ILconstArray[] NO_ARRAYS = new ILconstArray[0];
 
+    private final VarSlots slots;
+    private @Nullable ILconst[] values;
+    private @Nullable ILconstArray[] arrayValues = NO_ARRAYS;
+
+    protected State(VarSlots slots) {
+        this.slots = slots;
+        this.values = slots.size() == 0 ? NO_VALUES : new ILconst[slots.size()];
+    }
+
+    public VarSlots getSlots() {
+        return slots;
+    }
 
     public void setVal(ImVar v, ILconst val) {
-        values.put(v, val);
+        setSlotVal(slots.slot(v), val);
     }
 
     public @Nullable ILconst getVal(ImVar v) {
-        return values.get(v);
+        int slot = slots.find(v);
+        return slot < 0 ? null : getSlotVal(slot);
+    }
+
+    public void setSlotVal(int slot, @Nullable ILconst val) {
+        if (slot >= values.length) {
+            values = Arrays.copyOf(values, Math.max(slot + 1, slots.size()));
+        }
+        values[slot] = val;
+    }
+
+    public @Nullable ILconst getSlotVal(int slot) {
+        return slot < values.length ? values[slot] : null;
     }
 
     protected ILconstArray getArray(ImVar v) {
-        return arrayValues.computeIfAbsent(v, k -> createArrayConstantFromType(v.getType()));
+        return getArray(slots.slot(v), v);
+    }
+
+    /**
+     * returns the array stored in the given slot, creating it on first access
+     */
+    protected ILconstArray getArray(int slot, ImVar v) {
+        ILconstArray r = getSlotArray(slot);
+        if (r == null) {
+            r = createArrayConstantFromType(v.getType());
+            setSlotArray(slot, r);
+        }
+        return r;
+    }
+
+    protected final @Nullable ILconstArray getSlotArray(int slot) {
+        return slot < arrayValues.length ? arrayValues[slot] : null;
+    }
+
+    protected final void setSlotArray(int slot, ILconstArray ar) {
+        if (slot >= arrayValues.length) {
+            arrayValues = Arrays.copyOf(arrayValues, Math.max(slot + 1, slots.size()));
+        }
+        arrayValues[slot] = ar;
     }
 
     static ILconstArray createArrayConstantFromType(ImType vType) {
@@ -52,15 +107,31 @@ public abstract class State {
     }
 
     public void setArrayVal(ImVar v, List<Integer> indexes, ILconst val) {
-        ILconstArray ar = getArray(v);
+        setArrayVal(slots.slot(v), v, indexes, val);
+    }
+
+    public @Nullable ILconst getArrayVal(ImVar v, List<Integer> indexes) {
+        return getArrayVal(slots.slot(v), v, indexes);
+    }
+
+    public void setArrayVal(int slot, ImVar v, int index, @Nullable ILconst val) {
+        getArray(slot, v).set(index, val);
+    }
+
+    public @Nullable ILconst getArrayVal(int slot, ImVar v, int index) {
+        return getArray(slot, v).get(index);
+    }
+
+    public void setArrayVal(int slot, ImVar v, List<Integer> indexes, @Nullable ILconst val) {
+        ILconstArray ar = getArray(slot, v);
         for (int i = 0; i < indexes.size() - 1; i++) {
             ar = (ILconstArray) ar.get(indexes.get(i));
         }
         ar.set(indexes.get(indexes.size() - 1), val);
     }
 
-    public @Nullable ILconst getArrayVal(ImVar v, List<Integer> indexes) {
-        ILconstArray ar = getArray(v);
+    public @Nullable ILconst getArrayVal(int slot, ImVar v, List<Integer> indexes) {
+        ILconstArray ar = getArray(slot, v);
         for (int i = 0; i < indexes.size() - 1; i++) {
             ar = (ILconstArray) ar.get(indexes.get(i));
         }
@@ -68,13 +139,27 @@ public abstract class State {
     }
 
     public @Nullable ILconst getVarValue(String varName) {
-        for (Entry<ImVar, ILconst> e : values.entrySet()) {
-            if (e.getKey().getName().equals(varName)) {
-                return e.getValue();
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null && slots.getVar(i).getName().equals(varName)) {
+                return values[i];
             }
         }
         return null;
     }
 
+    /**
+     * returns the values of all variables which have a value, for debugging
+     */
+    public Map<ImVar, ILconst> getValues() {
+        Map<ImVar, ILconst> res = new LinkedHashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            ILconst val = values[i];
+            if (val != null) {
+                res.put(slots.getVar(i), val);
+            }
+        }
+        return res;
+    }
+
 
 }
@@ -0,0 +1,90 @@
+package de.peeeq.wurstscript.intermediatelang.interpreter;
+
+import de.peeeq.wurstscript.jassIm.ImFunction;
+import de.peeeq.wurstscript.jassIm.ImVar;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Assigns dense indexes (slots) to variables, so that a {@link State} can store
+ * its values in flat arrays.
+ *
+ * The slots of a function are assigned in advance (parameters first, then locals).
+ * Variables which are not known in advance get the next free slot on first use.
+ */
+public class VarSlots {
+    private final Map<ImVar, Integer> slots = new HashMap<>();
+    private final List<ImVar> vars = new ArrayList<>();
+
+    /**
+     * the slot of a variable, cached at a variable access (see {@link #slot(ImVar, AtomicReference)})
+     */
+    public static final class Resolved {
+        private final VarSlots slots;
+        private final ImVar var;
+        private final int slot;
+
+        private Resolved(VarSlots slots, ImVar var, int slot) {
+            this.slots = slots;
+            this.var = var;
+            this.slot = slot;
+        }
+    }
+
+    public static VarSlots forFunction(ImFunction f) {
+        VarSlots res = new VarSlots();
+        for (ImVar p : f.getParameters()) {
+            res.slot(p);
+        }
+        for (ImVar l : f.getLocals()) {
+            res.slot(l);
+        }
+        return res;
+    }
+
+    /**
+     * returns the slot of v, assigning a new slot if v does not have one yet
+     */
+    public int slot(ImVar v) {
+        Integer s = slots.get(v);
+        if (s == null) {
+            s = vars.size();
+            slots.put(v, s);
+            vars.add(v);
+        }
+        return s;
+    }
+
+    /**
+     * returns the slot of v like {@link #slot(ImVar)}, but only looks it up when the cache
+     * was not yet used with these slots and this variable
+     */
+    public int slot(ImVar v, AtomicReference<Resolved> cache) {
+        Resolved r = cache.get();
+        if (r == null || r.slots != this || r.var != v) {
+            r = new Resolved(this, v, slot(v));
+            cache.set(r);
+        }
+        return r.slot;
+    }
+
+    /**
+     * returns the slot of v or -1, if v does not have a slot
+     */
+    public int find(ImVar v) {
+        Integer s = slots.get(v);
+        return s == null ? -1 : s;
+    }
+
+    public ImVar getVar(int slot) {
+        return vars.get(slot);
+    }
+
+    public int size() {
+        return vars.size();
+    }
+}
@@ -1,7 +1,7 @@
 package de.peeeq.wurstscript.intermediatelang.optimizer;
 
 import de.peeeq.wurstscript.jassIm.*;
-import de.peeeq.wurstscript.translation.imoptimizer.OptimizerPass;
+import de.peeeq.wurstscript.translation.imoptimizer.FunctionLocalPass;
 import de.peeeq.wurstscript.translation.imtranslation.ImTranslator;
 
 import java.util.ListIterator;
@@ -11,24 +11,31 @@ import java.util.ListIterator;
  * <p>
  * the input must be a flattened program
  */
-public class BranchMerger  implements OptimizerPass {
+public class BranchMerger  implements FunctionLocalPass {
     private SideEffectAnalyzer sideEffectAnalyzer;
     public int branchesMerged = 0;
 
     @Override
-    public int optimize(ImTranslator trans) {
-        branchesMerged = 0;
-        ImProg prog = trans.getImProg();
-        this.sideEffectAnalyzer = new SideEffectAnalyzer(prog);
+    public boolean appliesTo(ImFunction func) {
+        return true;
+    }
 
-        for (ImFunction func : prog.getFunctions()) {
-            optimizeFunc(func);
-        }
-        return branchesMerged;
+    @Override
+    public void prepare(ImTranslator trans) {
+        this.sideEffectAnalyzer = new SideEffectAnalyzer(trans.getImProg());
     }
 
-    private void optimizeFunc(ImFunction func) {
+    @Override
+    public int optimizeFunc(ImFunction func) {
+        int before = branchesMerged;
         mergeBranches(func);
+        return branchesMerged - before;
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        // the side effect analysis is shared
+        return false;
     }
 
 
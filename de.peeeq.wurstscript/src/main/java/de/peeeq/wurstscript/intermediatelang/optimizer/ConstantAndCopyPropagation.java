@@ -3,9 +3,7 @@ package de.peeeq.wurstscript.intermediatelang.optimizer;
 import de.peeeq.datastructures.Worklist;
 import de.peeeq.wurstscript.intermediatelang.optimizer.ControlFlowGraph.Node;
 import de.peeeq.wurstscript.jassIm.*;
-import de.peeeq.wurstscript.translation.imoptimizer.OptimizerPass;
-import de.peeeq.wurstscript.translation.imtranslation.ImHelper;
-import de.peeeq.wurstscript.translation.imtranslation.ImTranslator;
+import de.peeeq.wurstscript.translation.imoptimizer.FunctionLocalPass;
 import de.peeeq.wurstscript.types.TypesHelper;
 import io.vavr.Tuple2;
 import io.vavr.collection.HashMap;
@@ -13,20 +11,7 @@ import org.eclipse.jdt.annotation.Nullable;
 
 import java.util.Map;
 
-public class ConstantAndCopyPropagation implements OptimizerPass {
-    private int totalPropagated = 0;
-
-    public int optimize(ImTranslator trans) {
-        ImProg prog = trans.getImProg();
-
-        totalPropagated = 0;
-        for (ImFunction func : ImHelper.calculateFunctionsOfProg(prog)) {
-            if (!func.isNative() && !func.isBj()) {
-                optimizeFunc(func);
-            }
-        }
-        return totalPropagated;
-    }
+public class ConstantAndCopyPropagation implements FunctionLocalPass {
 
     @Override
     public String getName() {
@@ -140,13 +125,15 @@ public class ConstantAndCopyPropagation implements OptimizerPass {
 
     }
 
-    void optimizeFunc(ImFunction func) {
+    @Override
+    public int optimizeFunc(ImFunction func) {
         ControlFlowGraph cfg = new ControlFlowGraph(func.getBody());
         Map<Node, Knowledge> knowledge = calculateKnowledge(cfg);
-        rewriteCode(cfg, knowledge);
+        return rewriteCode(cfg, knowledge);
     }
 
-    private void rewriteCode(ControlFlowGraph cfg, Map<Node, Knowledge> knowledge) {
+    private int rewriteCode(ControlFlowGraph cfg, Map<Node, Knowledge> knowledge) {
+        int[] propagated = new int[]{0};
         for (Node node : cfg.getNodes()) {
             ImStmt stmt = node.getStmt();
             if (stmt == null) {
@@ -181,7 +168,7 @@ public class ConstantAndCopyPropagation implements OptimizerPass {
                     }
                     if (val.constantValue != null) {
                         va.replaceBy(val.constantValue.copy());
-                        totalPropagated++;
+                        propagated[0]++;
                     } else if (val.copyVar != null) {
                         va.setVar(val.copyVar);
                         // recursive call, because maybe it is possible to also replace the new var
@@ -219,13 +206,13 @@ public class ConstantAndCopyPropagation implements OptimizerPass {
                                 va.replaceBy(val.constantTuple.copy());
                             }
                         }
-                        totalPropagated++;
+                        propagated[0]++;
                     }
                 }
             });
 
         }
-
+        return propagated[0];
     }
 
     private Map<Node, Knowledge> calculateKnowledge(ControlFlowGraph cfg) {
@@ -0,0 +1,286 @@
+package de.peeeq.wurstscript.intermediatelang.optimizer;
+
+import de.peeeq.wurstscript.intermediatelang.optimizer.ControlFlowGraph.Node;
+import de.peeeq.wurstscript.jassIm.*;
+
+import java.util.*;
+
+/**
+ * Liveness analysis for the local variables of a function.
+ *
+ * Local variables and control flow nodes are numbered, so that the sets of live variables
+ * can be stored as bitsets. The data flow equations are solved with a worklist, which starts
+ * with the nodes in postorder, so that most nodes are visited after their successors.
+ */
+public class Liveness {
+    private final Map<ImVar, Integer> varIndex = new HashMap<>();
+    private final List<ImVar> vars = new ArrayList<>();
+    private final Map<Node, Integer> nodeIndex = new HashMap<>();
+    private final List<Node> nodes;
+    /** variables live after each node */
+    private final BitSet[] liveOut;
+    private final Map<ImStmt, Integer> stmtIndex = new LinkedHashMap<>();
+
+    public Liveness(ImFunction func) {
+        this.nodes = new ControlFlowGraph(func.getBody()).getNodes();
+        for (ImVar p : func.getParameters()) {
+            index(p);
+        }
+        for (ImVar l : func.getLocals()) {
+            index(l);
+        }
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            nodeIndex.put(node, i);
+            ImStmt stmt = node.getStmt();
+            if (stmt != null) {
+                stmtIndex.put(stmt, i);
+            }
+        }
+        this.liveOut = calculate();
+    }
+
+    private int index(ImVar v) {
+        Integer i = varIndex.get(v);
+        if (i == null) {
+            i = vars.size();
+            varIndex.put(v, i);
+            vars.add(v);
+        }
+        return i;
+    }
+
+    private BitSet[] calculate() {
+        int n = nodes.size();
+        BitSet[] use = new BitSet[n];
+        BitSet[] def = new BitSet[n];
+        BitSet[] in = new BitSet[n];
+        BitSet[] out = new BitSet[n];
+        int[][] succ = new int[n][];
+        int[][] pred = new int[n][];
+        for (int i = 0; i < n; i++) {
+            Node node = nodes.get(i);
+            use[i] = calculateUses(node);
+            def[i] = calculateDefs(node);
+            in[i] = new BitSet();
+            out[i] = new BitSet();
+            succ[i] = indexes(node.getSuccessors());
+            pred[i] = indexes(node.getPredecessors());
+        }
+
+        // worklist of node indexes, each node is in the queue at most once
+        int[] queue = new int[n];
+        boolean[] queued = new boolean[n];
+        int head = 0;
+        int size = 0;
+        for (int i : postorder(succ)) {
+            queue[size++] = i;
+            queued[i] = true;
+        }
+        BitSet newIn = new BitSet();
+        while (size > 0) {
+            int i = queue[head];
+            head = (head + 1) % n;
+            size--;
+            queued[i] = false;
+
+            // out[n] = union s in succ[n]: in[s]
+            BitSet o = out[i];
+            for (int s : succ[i]) {
+                o.or(in[s]);
+            }
+            // in[n] = use[n] + (out[n] - def[n])
+            newIn.clear();
+            newIn.or(o);
+            newIn.andNot(def[i]);
+            newIn.or(use[i]);
+            if (!newIn.equals(in[i])) {
+                in[i].or(newIn);
+                // if in changes, then all predecessors have to be recalculated
+                for (int p : pred[i]) {
+                    if (!queued[p]) {
+                        queue[(head + size) % n] = p;
+                        size++;
+                        queued[p] = true;
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    private int[] indexes(List<Node> ns) {
+        int[] res = new int[ns.size()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = nodeIndex.get(ns.get(i));
+        }
+        return res;
+    }
+
+    /**
+     * the nodes in postorder of a depth first search from the entry node,
+     * followed by the nodes which are not reachable from the entry
+     */
+    private int[] postorder(int[][] succ) {
+        int n = succ.length;
+        int[] result = new int[n];
+        int count = 0;
+        boolean[] visited = new boolean[n];
+        int[] stack = new int[n];
+        int[] nextSucc = new int[n];
+        for (int start = 0; start < n; start++) {
+            if (visited[start]) {
+                continue;
+            }
+            int sp = 0;
+            stack[sp++] = start;
+            visited[start] = true;
+            while (sp > 0) {
+                int i = stack[sp - 1];
+                if (nextSucc[i] < succ[i].length) {
+                    int s = succ[i][nextSucc[i]++];
+                    if (!visited[s]) {
+                        visited[s] = true;
+                        stack[sp++] = s;
+                    }
+                } else {
+                    sp--;
+                    result[count++] = i;
+                }
+            }
+        }
+        return result;
+    }
+
+    private BitSet calculateUses(Node node) {
+        BitSet uses = new BitSet();
+        ImStmt stmt = node.getStmt();
+        if (stmt == null) {
+            return uses;
+        }
+        stmt.accept(new ImStmt.DefaultVisitor() {
+            @Override
+            public void visit(ImVarAccess va) {
+                super.visit(va);
+                if (!va.getVar().isGlobal()) {
+                    uses.set(index(va.getVar()));
+                }
+            }
+
+            @Override
+            public void visit(ImSet set) {
+                set.getRight().accept(this);
+                Element.DefaultVisitor outerThis = this;
+                set.getLeft().match(new ImLExpr.MatcherVoid() {
+                    @Override
+                    public void case_ImTupleSelection(ImTupleSelection e) {
+                        ((ImLExpr) (e.getTupleExpr())).match(this);
+                    }
+
+                    @Override
+                    public void case_ImVarAccess(ImVarAccess e) {
+                    }
+
+                    @Override
+                    public void case_ImVarArrayAccess(ImVarArrayAccess e) {
+                        e.getIndexes().accept(outerThis);
+                    }
+
+                    @Override
+                    public void case_ImMemberAccess(ImMemberAccess e) {
+                        e.getReceiver().accept(outerThis);
+                        e.getIndexes().accept(outerThis);
+                    }
+
+                    @Override
+                    public void case_ImStatementExpr(ImStatementExpr e) {
+                        e.getStatements().accept(outerThis);
+                        ((ImLExpr) e.getExpr()).match(this);
+                    }
+
+                    @Override
+                    public void case_ImTupleExpr(ImTupleExpr e) {
+                        for (ImExpr expr : e.getExprs()) {
+                            ((ImLExpr) expr).match(this);
+                        }
+                    }
+                });
+            }
+        });
+        return uses;
+    }
+
+    private BitSet calculateDefs(Node node) {
+        BitSet defs = new BitSet();
+        ImStmt stmt = node.getStmt();
+        if (stmt instanceof ImSet) {
+            ImSet imSet = (ImSet) stmt;
+            if (imSet.getLeft() instanceof ImVarAccess) {
+                ImVar v = ((ImVarAccess) imSet.getLeft()).getVar();
+                if (!v.isGlobal()) {
+                    defs.set(index(v));
+                }
+            }
+            // no special case for tuple selection, as they do not override all previous values
+        }
+        return defs;
+    }
+
+    /**
+     * the statements of the function in control flow graph order
+     */
+    public Set<ImStmt> getStatements() {
+        return stmtIndex.keySet();
+    }
+
+    /**
+     * the number of variables, variables are numbered from 0 to getVarCount() - 1
+     */
+    public int getVarCount() {
+        return vars.size();
+    }
+
+    public ImVar getVar(int index) {
+        return vars.get(index);
+    }
+
+    /**
+     * the index of v or -1, if v is not a local variable of the function
+     */
+    public int getVarIndex(ImVar v) {
+        Integer i = varIndex.get(v);
+        return i == null ? -1 : i;
+    }
+
+    /**
+     * the variables which are live after the given statement (must not be changed)
+     */
+    public BitSet getLiveOut(ImStmt stmt) {
+        Integer i = stmtIndex.get(stmt);
+        return i == null ? new BitSet() : liveOut[i];
+    }
+
+    public boolean isLiveAfter(ImStmt stmt, ImVar v) {
+        int vi = getVarIndex(v);
+        return vi >= 0 && getLiveOut(stmt).get(vi);
+    }
+
+    /**
+     * calculates the interference graph as an adjacency bit matrix:
+     * two variables interfere, if they are both live after some statement.
+     * A variable which is live somewhere interferes with itself.
+     */
+    public BitSet[] calculateInterference() {
+        BitSet[] result = new BitSet[vars.size()];
+        for (int v = 0; v < result.length; v++) {
+            result[v] = new BitSet();
+        }
+        for (int i : stmtIndex.values()) {
+            BitSet live = liveOut[i];
+            for (int v = live.nextSetBit(0); v >= 0; v = live.nextSetBit(v + 1)) {
+                result[v].or(live);
+            }
+        }
+        return result;
+    }
+}
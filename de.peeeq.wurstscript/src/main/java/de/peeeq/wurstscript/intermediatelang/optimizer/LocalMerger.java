@@ -1,13 +1,8 @@
 package de.peeeq.wurstscript.intermediatelang.optimizer;
 
-import de.peeeq.datastructures.Worklist;
-import de.peeeq.wurstscript.intermediatelang.optimizer.ControlFlowGraph.Node;
 import de.peeeq.wurstscript.jassIm.*;
-import de.peeeq.wurstscript.translation.imoptimizer.OptimizerPass;
-import de.peeeq.wurstscript.translation.imtranslation.ImHelper;
-import de.peeeq.wurstscript.translation.imtranslation.ImTranslator;
+import de.peeeq.wurstscript.translation.imoptimizer.FunctionLocalPass;
 import de.peeeq.wurstscript.types.TypesHelper;
-import de.peeeq.wurstscript.utils.Utils;
 import io.vavr.collection.HashSet;
 import io.vavr.collection.Set;
 
@@ -20,20 +15,7 @@ import static de.peeeq.wurstscript.translation.imtranslation.FunctionFlagEnum.IS
  * <p>
  * the input must be a flattened program
  */
-public class LocalMerger implements OptimizerPass {
-    private int totalLocalsMerged = 0;
-
-    @Override
-    public int optimize(ImTranslator trans) {
-        ImProg prog = trans.getImProg();
-        totalLocalsMerged = 0;
-        for (ImFunction func : ImHelper.calculateFunctionsOfProg(prog)) {
-            if (!func.isNative() && !func.isBj()) {
-                optimizeFunc(func);
-            }
-        }
-        return totalLocalsMerged;
-    }
+public class LocalMerger implements FunctionLocalPass {
 
 
     @Override
@@ -41,25 +23,37 @@ public class LocalMerger implements OptimizerPass {
         return "Local variables merged";
     }
 
-    void optimizeFunc(ImFunction func) {
-        Map<ImStmt, Set<ImVar>> livenessInfo = calculateLiveness(func);
-        eliminateDeadCode(livenessInfo);
-        mergeLocals(livenessInfo, func);
+    @Override
+    public int optimizeFunc(ImFunction func) {
+        Liveness liveness = new Liveness(func);
+        int removedStores = eliminateDeadCode(liveness);
+        return removedStores + mergeLocals(liveness, func);
     }
 
     private boolean canMerge(ImType a, ImType b) {
         return a.equalsType(b);
     }
 
-    private void mergeLocals(Map<ImStmt, Set<ImVar>> livenessInfo, ImFunction func) {
-        Map<ImVar, Set<ImVar>> inferenceGraph = calculateInferenceGraph(livenessInfo);
+    private int mergeLocals(Liveness liveness, ImFunction func) {
+        BitSet[] inferenceGraph = calculateInferenceGraph(liveness);
+        int[] inferenceCount = new int[inferenceGraph.length];
+        for (int v = 0; v < inferenceGraph.length; v++) {
+            inferenceCount[v] = inferenceGraph[v].cardinality();
+        }
 
         // priority queue, sorted by number of inferring vars
-        PriorityQueue<ImVar> vars = new PriorityQueue<>((ImVar a, ImVar b) ->
-                inferenceGraph.get(b).size() - inferenceGraph.get(a).size());
-        vars.addAll(inferenceGraph.keySet());
+        PriorityQueue<Integer> vars = new PriorityQueue<>((Integer a, Integer b) ->
+                inferenceCount[b] - inferenceCount[a]);
+        for (int v = 0; v < inferenceGraph.length; v++) {
+            // only variables which are live somewhere infer with themselves
+            if (inferenceCount[v] > 0) {
+                vars.add(v);
+            }
+        }
         // do not merge parameters (this would not work)
-        vars.removeAll(func.getParameters());
+        for (ImVar p : func.getParameters()) {
+            vars.remove(liveness.getVarIndex(p));
+        }
 
         // variables which represent their own 'color', initially these are the parameters
         List<ImVar> assigned = new ArrayList<>(func.getParameters());
@@ -70,13 +64,16 @@ public class LocalMerger implements OptimizerPass {
 
         nextVar:
         while (!vars.isEmpty()) {
-            ImVar v = vars.poll();
+            int vi = vars.poll();
+            ImVar v = liveness.getVar(vi);
+            BitSet infering = inferenceGraph[vi];
 
             // check if there is some other variable which is already assigned, has the same type and does not interfere
             nextAssigned:
             for (ImVar other : assigned) {
                 if (canMerge(other.getType(), v.getType()) ) {
-                    for (ImVar inferingVar : inferenceGraph.get(v)) {
+                    for (int i = infering.nextSetBit(0); i >= 0; i = infering.nextSetBit(i + 1)) {
+                        ImVar inferingVar = liveness.getVar(i);
                         if (merges.getOrDefault(inferingVar, inferingVar) == other) {
                             // variable already used by infering var, try next color
                             continue nextAssigned;
@@ -90,8 +87,6 @@ public class LocalMerger implements OptimizerPass {
             assigned.add(v);
         }
 
-        totalLocalsMerged += merges.size();
-
         func.accept(new ImFunction.DefaultVisitor() {
             @Override
             public void visit(ImVarAccess va) {
@@ -122,29 +117,48 @@ public class LocalMerger implements OptimizerPass {
                 }
             }
         });
+        return merges.size();
     }
 
     /**
-     * for each variable: the set of variables which share some lifetime-range
+     * for each variable: the set of variables with the same type which share some lifetime-range
      */
-    private Map<ImVar, Set<ImVar>> calculateInferenceGraph(Map<ImStmt, Set<ImVar>> livenessInfo) {
-        Map<ImVar, Set<ImVar>> inferenceGraph = new LinkedHashMap<>();
-        java.util.Set<ImStmt> keys = livenessInfo.keySet();
-        int i  = 0;
-        for (ImStmt s : keys) {
-            i++;
-            Set<ImVar> live = livenessInfo.get(s);
-            for (ImVar v1 : live) {
-                Set<ImVar> inferenceSet = inferenceGraph.getOrDefault(v1, HashSet.empty());
-                inferenceSet = inferenceSet.addAll(live.filter(v2 -> canMerge(v1.getType(), v2.getType()) ));
-                inferenceGraph.put(v1, inferenceSet);
+    private BitSet[] calculateInferenceGraph(Liveness liveness) {
+        BitSet[] inferenceGraph = liveness.calculateInterference();
+        // group the variables by type, so that types are only compared once per pair of groups
+        List<BitSet> typeGroups = new ArrayList<>();
+        List<ImType> groupTypes = new ArrayList<>();
+        BitSet[] sameType = new BitSet[inferenceGraph.length];
+        nextVar:
+        for (int v = 0; v < inferenceGraph.length; v++) {
+            ImType t = liveness.getVar(v).getType();
+            for (int g = 0; g < groupTypes.size(); g++) {
+                if (canMerge(t, groupTypes.get(g))) {
+                    typeGroups.get(g).set(v);
+                    sameType[v] = typeGroups.get(g);
+                    continue nextVar;
+                }
             }
+            BitSet group = new BitSet();
+            group.set(v);
+            typeGroups.add(group);
+            groupTypes.add(t);
+            sameType[v] = group;
+        }
+        for (int v = 0; v < inferenceGraph.length; v++) {
+            inferenceGraph[v].and(sameType[v]);
         }
         return inferenceGraph;
     }
 
-    private void eliminateDeadCode(Map<ImStmt, Set<ImVar>> livenessInfo) {
-        for (ImStmt s : livenessInfo.keySet()) {
+    /**
+     * removes writes to local variables which are not live afterwards
+     *
+     * @return the number of removed writes
+     */
+    private int eliminateDeadCode(Liveness liveness) {
+        int removed = 0;
+        for (ImStmt s : liveness.getStatements()) {
             if (s instanceof ImSet) {
                 ImSet imSet = (ImSet) s;
                 ImVar v = null;
@@ -158,154 +172,35 @@ public class LocalMerger implements OptimizerPass {
                     continue;
                 }
 
-                if (!livenessInfo.get(s).contains(v)) {
+                if (!liveness.isLiveAfter(s, v)) {
                     // write to a variable which is not live
                     // --> only keep side effects
                     ImExpr right = imSet.getRight();
                     right.setParent(null);
                     s.replaceBy(right);
+                    removed++;
                 }
             }
         }
+        return removed;
     }
 
 
+    /**
+     * for each statement: the set of variables which are live after the statement
+     */
     public Map<ImStmt, Set<ImVar>> calculateLiveness(ImFunction func) {
-        ControlFlowGraph cfg = new ControlFlowGraph(func.getBody());
-        Map<Node, Set<ImVar>> in = new LinkedHashMap<>();
-        Map<Node, Set<ImVar>> out = new LinkedHashMap<>();
-
-        Worklist<Node> todo = new Worklist<>();
-
-        Map<Node, Integer> index = new LinkedHashMap<>();
-
-        // init in and out with empty sets
-        for (Node node : cfg.getNodes()) {
-            in.put(node, HashSet.empty());
-            out.put(node, HashSet.empty());
-            todo.addFirst(node);
-            index.put(node, 1+ index.size());
-        }
-
-        // calculate def- and use- sets for each node
-        Map<Node, Set<ImVar>> def = calculateDefs(cfg.getNodes());
-        Map<Node, Set<ImVar>> use = calculateUses(cfg.getNodes());
-        while (!todo.isEmpty()) {
-            Node node = todo.poll();
-
-            // out[n] = union s in succ[n]: in[s]
-            Set<ImVar> newOut = node.getSuccessors()
-                .stream()
-                .map(in::get)
-                .reduce(HashSet.empty(), Set::union);
-
-            // in[n] = use[n] + (out[n] - def[n])
-            Set<ImVar> newIn = newOut;
-            newIn = newIn.diff(def.get(node));
-            newIn = newIn.union(use.get(node));
-
-
-            if (!newIn.equals(in.get(node))) {
-                in.put(node, newIn);
-                // if in changes, then all predecessors have to be recalculated
-                for (Node pred : node.getPredecessors()) {
-                    todo.addLast(pred);
-                }
-            }
-            if (!newOut.equals(out.get(node))) {
-                out.put(node, newOut);
-            }
-        }
-
+        Liveness liveness = new Liveness(func);
         Map<ImStmt, Set<ImVar>> result = new LinkedHashMap<>();
-        for (Node node : cfg.getNodes()) {
-            ImStmt stmt = node.getStmt();
-            if (stmt != null) {
-                result.put(stmt, out.get(node));
+        for (ImStmt stmt : liveness.getStatements()) {
+            BitSet live = liveness.getLiveOut(stmt);
+            Set<ImVar> vars = HashSet.empty();
+            for (int i = live.nextSetBit(0); i >= 0; i = live.nextSetBit(i + 1)) {
+                vars = vars.add(liveness.getVar(i));
             }
+            result.put(stmt, vars);
         }
         return result;
     }
 
-    private Map<Node, Set<ImVar>> calculateUses(List<Node> nodes) {
-        Map<Node, Set<ImVar>> result = new LinkedHashMap<>();
-        for (Node node : nodes) {
-            List<ImVar> uses = new ArrayList<>();
-            ImStmt stmt = node.getStmt();
-            if (stmt != null) {
-                stmt.accept(new ImStmt.DefaultVisitor() {
-                    @Override
-                    public void visit(ImVarAccess va) {
-                        super.visit(va);
-                        if (!va.getVar().isGlobal()) {
-                            uses.add(va.getVar());
-                        }
-                    }
-
-                    @Override
-                    public void visit(ImSet set) {
-                        set.getRight().accept(this);
-                        Element.DefaultVisitor outerThis = this;
-                        set.getLeft().match(new ImLExpr.MatcherVoid() {
-                            @Override
-                            public void case_ImTupleSelection(ImTupleSelection e) {
-                                ((ImLExpr) (e.getTupleExpr())).match(this);
-                            }
-
-                            @Override
-                            public void case_ImVarAccess(ImVarAccess e) {
-                            }
-
-                            @Override
-                            public void case_ImVarArrayAccess(ImVarArrayAccess e) {
-                                e.getIndexes().accept(outerThis);
-                            }
-
-                            @Override
-                            public void case_ImMemberAccess(ImMemberAccess e) {
-                                e.getReceiver().accept(outerThis);
-                                e.getIndexes().accept(outerThis);
-                            }
-
-                            @Override
-                            public void case_ImStatementExpr(ImStatementExpr e) {
-                                e.getStatements().accept(outerThis);
-                                ((ImLExpr) e.getExpr()).match(this);
-                            }
-
-                            @Override
-                            public void case_ImTupleExpr(ImTupleExpr e) {
-                                for (ImExpr expr : e.getExprs()) {
-                                    ((ImLExpr) expr).match(this);
-                                }
-                            }
-                        });
-                    }
-                });
-            }
-            result.put(node, HashSet.ofAll(uses));
-        }
-        return result;
-    }
-
-    private Map<Node, Set<ImVar>> calculateDefs(List<Node> nodes) {
-        Map<Node, Set<ImVar>>result = new LinkedHashMap<>();
-        for (Node node : nodes) {
-            result.put(node, HashSet.empty());
-            ImStmt stmt = node.getStmt();
-            if (stmt instanceof ImSet) {
-                ImSet imSet = (ImSet) stmt;
-                if (imSet.getLeft() instanceof ImVarAccess) {
-                    ImVar v = ((ImVarAccess) imSet.getLeft()).getVar();
-                    if (!v.isGlobal()) {
-                        result.put(node, HashSet.of(v));
-                    }
-                }
-                // no special case for tuple selection, as they do not override all previous values
-            }
-        }
-        return result;
-    }
-
-
 }
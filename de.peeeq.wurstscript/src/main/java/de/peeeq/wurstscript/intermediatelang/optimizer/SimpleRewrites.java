@@ -3,7 +3,7 @@ package de.peeeq.wurstscript.intermediatelang.optimizer;
 import de.peeeq.wurstscript.WLogger;
 import de.peeeq.wurstscript.WurstOperator;
 import de.peeeq.wurstscript.jassIm.*;
-import de.peeeq.wurstscript.translation.imoptimizer.OptimizerPass;
+import de.peeeq.wurstscript.translation.imoptimizer.FunctionLocalPass;
 import de.peeeq.wurstscript.translation.imtranslation.ImHelper;
 import de.peeeq.wurstscript.translation.imtranslation.ImTranslator;
 import de.peeeq.wurstscript.types.TypesHelper;
@@ -14,22 +14,38 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 
-public class SimpleRewrites implements OptimizerPass {
+public class SimpleRewrites implements FunctionLocalPass {
+    private ImTranslator trans;
     private SideEffectAnalyzer sideEffectAnalysis;
     private int totalRewrites = 0;
     private boolean showRewrites = false;
 
     @Override
-    public int optimize(ImTranslator trans) {
-        ImProg prog = trans.getImProg();
-        this.sideEffectAnalysis = new SideEffectAnalyzer(prog);
-        totalRewrites = 0;
-        optimizeElement(prog);
-        // we need to flatten the program, because we introduced new
+    public boolean appliesTo(ImFunction func) {
+        return true;
+    }
+
+    @Override
+    public void prepare(ImTranslator trans) {
+        this.trans = trans;
+        this.sideEffectAnalysis = new SideEffectAnalyzer(trans.getImProg());
+    }
+
+    @Override
+    public int optimizeFunc(ImFunction func) {
+        int before = totalRewrites;
+        optimizeElement(func);
+        // we need to flatten the function, because we introduced new
         // StatementExprs
-        prog.flatten(trans);
-        removeUnreachableCode(prog);
-        return totalRewrites;
+        func.flatten(trans);
+        removeUnreachableCode(func);
+        return totalRewrites - before;
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        // the side effect analysis is shared
+        return false;
     }
 
     @Override
@@ -37,8 +53,8 @@ public class SimpleRewrites implements OptimizerPass {
         return "Simple Rewrites";
     }
 
-    private void removeUnreachableCode(ImProg prog) {
-        prog.accept(new ImProg.DefaultVisitor() {
+    private void removeUnreachableCode(ImFunction func) {
+        func.accept(new ImFunction.DefaultVisitor() {
             @Override
             public void visit(ImStmts stmts) {
                 super.visit(stmts);
@@ -3,7 +3,7 @@ package de.peeeq.wurstscript.intermediatelang.optimizer;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.*;
 import de.peeeq.wurstscript.jassIm.*;
-import de.peeeq.wurstscript.translation.imoptimizer.OptimizerPass;
+import de.peeeq.wurstscript.translation.imoptimizer.FunctionLocalPass;
 import de.peeeq.wurstscript.translation.imtranslation.AssertProperty;
 import de.peeeq.wurstscript.translation.imtranslation.ImHelper;
 import de.peeeq.wurstscript.translation.imtranslation.ImTranslator;
@@ -17,8 +17,10 @@ import org.eclipse.jdt.annotation.Nullable;
 import java.util.*;
 import java.util.Map.Entry;
 
-public class TempMerger implements OptimizerPass {
+public class TempMerger implements FunctionLocalPass {
     private int totalMerged = 0;
+    /** functions which must be flattened, because null-statements were introduced */
+    private final List<ImFunction> changedFunctions = new ArrayList<>();
 
 
     @Override
@@ -26,25 +28,45 @@ public class TempMerger implements OptimizerPass {
         return "Temp variables merged";
     }
 
+    @Override
+    public boolean appliesTo(ImFunction func) {
+        return true;
+    }
+
+    @Override
+    public void prepare(ImTranslator trans) {
+        trans.assertProperties(AssertProperty.FLAT, AssertProperty.NOTUPLES);
+        trans.getImProg().clearAttributes();
+        changedFunctions.clear();
+    }
+
     /**
      * @return The amount of merged temp variables
      */
     @Override
-    public int optimize(ImTranslator trans) {
-        ImProg prog = trans.getImProg();
-        totalMerged = 0;
-        trans.assertProperties(AssertProperty.FLAT, AssertProperty.NOTUPLES);
-        prog.clearAttributes();
-        for (ImFunction f : ImHelper.calculateFunctionsOfProg(prog)) {
-            optimizeFunc(f);
+    public int optimizeFunc(ImFunction f) {
+        int before = totalMerged;
+        optimizeStatements(f.getBody());
+        int merged = totalMerged - before;
+        if (merged > 0) {
+            changedFunctions.add(f);
         }
-        // flatten the program because we introduced null-statements
-        prog.flatten(trans);
-        return totalMerged;
+        return merged;
     }
 
-    void optimizeFunc(ImFunction f) {
-        optimizeStatements(f.getBody());
+    @Override
+    public void finish(ImTranslator trans) {
+        // flatten the changed functions because we introduced null-statements
+        for (ImFunction f : changedFunctions) {
+            f.flatten(trans);
+        }
+        changedFunctions.clear();
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        // the read attributes of variables are shared by all functions
+        return false;
     }
 
     private void optimizeStatements(ImStmts stmts) {
@@ -6,7 +6,10 @@ import com.google.common.collect.Sets;
 import de.peeeq.wurstio.gui.AboutDialog;
 import de.peeeq.wurstscript.jassAst.*;
 import de.peeeq.wurstscript.utils.Utils;
+import org.eclipse.jdt.annotation.Nullable;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -15,6 +18,8 @@ public class JassPrinter {
 
     public static final String WURST_COMMENT_RAW = "// this script was compiled with wurst ";
     public static final String WURST_COMMENT = WURST_COMMENT_RAW + AboutDialog.version;
+    /** when printing to a writer, the buffer is written whenever it gets larger than this */
+    private static final int FLUSH_SIZE = 1 << 16;
     private boolean withSpace;
     private JassProg prog;
 
@@ -26,13 +31,43 @@ public class JassPrinter {
 
     public void printProg(StringBuilder sb) {
         Preconditions.checkNotNull(sb);
+        try {
+            printProg(sb, null);
+        } catch (IOException e) {
+            // cannot happen, the buffer is only flushed when there is a writer
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * prints the program to the given writer,
+     * only a few functions are kept in memory at a time instead of the whole script
+     */
+    public void printProg(Writer out) throws IOException {
+        Preconditions.checkNotNull(out);
+        StringBuilder sb = new StringBuilder();
+        printProg(sb, out);
+        out.append(sb);
+    }
+
+    /**
+     * prints the program into sb. If out is not null, the contents of sb are moved to out
+     * whenever sb gets larger than FLUSH_SIZE.
+     */
+    private void printProg(StringBuilder sb, @Nullable Writer out) throws IOException {
         Preconditions.checkNotNull(prog);
 
         sb.append(WURST_COMMENT + "\n");
         printTypes(sb, prog.getDefs());
         printGlobals(sb, prog.getGlobals());
         printNatives(sb, prog.getNatives());
-        printFunctions(sb, prog.getFunctions());
+        for (JassFunction f : prog.getFunctions()) {
+            printFunction(sb, f);
+            if (out != null && sb.length() >= FLUSH_SIZE) {
+                out.append(sb);
+                sb.setLength(0);
+            }
+        }
     }
 
     private String additionalNewline() {
@@ -108,13 +143,6 @@ public class JassPrinter {
     }
 
 
-    private void printFunctions(StringBuilder sb, JassFunctions functions) {
-        for (JassFunction f : functions) {
-            printFunction(sb, f);
-        }
-    }
-
-
     private void printFunction(StringBuilder sb, JassFunction f) {
         if (prog.attrIgnoredFunctions().contains(f)) {
             return;
@@ -0,0 +1,122 @@
+package de.peeeq.wurstscript.parser;
+
+import de.peeeq.wurstscript.WurstParser;
+import de.peeeq.wurstscript.ast.*;
+import de.peeeq.wurstscript.utils.LineOffsets;
+import de.peeeq.wurstscript.utils.Rope;
+
+import java.util.List;
+
+/**
+ * Updates a parsed Wurst compilation unit after an edit, by parsing only the top level entity containing the edit.
+ * <p>
+ * Each entity is parsed together with the text up to the next entity (comments and empty lines).
+ * Entities start at the beginning of a line without indentation, so the lexer can start there
+ * in the same state as when lexing the whole file.
+ * The new entities replace the old one in the package and the positions of all elements
+ * after the edit are moved.
+ * When the edit is not inside of a single entity or the new text has syntax errors,
+ * the compilation unit is not changed and the whole file must be parsed again,
+ * so that the errors are reported in the same way as before.
+ */
+public class IncrementalParser {
+    private final WurstParser parser;
+
+    public IncrementalParser(WurstParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * changes the compilation unit, which was parsed from oldText without errors, so that it matches newText
+     *
+     * @return true, if the compilation unit was updated, false if the whole file has to be parsed
+     */
+    public boolean reparse(CompilationUnit cu, Rope oldText, Rope newText) {
+        String file = cu.getCuInfo().getFile();
+        if (file.endsWith(".j") || file.endsWith(".jurst")) {
+            return false;
+        }
+        int prefix = Rope.commonPrefixLength(oldText, newText);
+        int suffix = Rope.commonSuffixLength(oldText, newText, Math.min(oldText.length(), newText.length()) - prefix);
+        int oldEnd = oldText.length() - suffix;
+        int delta = newText.length() - oldText.length();
+
+        WPackages packages = cu.getPackages();
+        for (int p = 0; p < packages.size(); p++) {
+            WPackage pack = packages.get(p);
+            WEntities elements = pack.getElements();
+            for (int i = 0; i < elements.size(); i++) {
+                int start = elements.get(i).getSource().getLeftPos();
+                int end;
+                if (i + 1 < elements.size()) {
+                    end = elements.get(i + 1).getSource().getLeftPos();
+                } else if (p + 1 == packages.size() && cu.getJassDecls().isEmpty()) {
+                    // the last entity of the file
+                    end = oldText.length();
+                } else {
+                    break;
+                }
+                if (start <= prefix && oldEnd <= end) {
+                    return reparseEntity(cu, pack, i, start, end, oldText, newText, oldEnd, delta);
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean reparseEntity(CompilationUnit cu, WPackage pack, int index, int start, int end,
+                                  Rope oldText, Rope newText, int oldEnd, int delta) {
+        int newEnd = end + delta;
+        if (start > newEnd
+                || !isLineStart(oldText, start)
+                || !isLineStart(oldText, end)
+                || !isLineStart(newText, newEnd)) {
+            return false;
+        }
+        LineOffsets lineOffsets = newText.getLineOffsets();
+        String file = cu.getCuInfo().getFile();
+        List<WEntity> entities = parser.parseEntities(newText, start, newEnd, file, lineOffsets,
+                cu.getCuInfo().getIndentationMode());
+        if (entities == null) {
+            return false;
+        }
+        WEntities elements = pack.getElements();
+        elements.remove(index);
+        movePositions(cu, start, oldEnd, delta, lineOffsets);
+        elements.addAll(index, entities);
+        return true;
+    }
+
+    /**
+     * true, if the offset is at the start or end of the text or directly after a line break
+     */
+    private static boolean isLineStart(Rope text, int offset) {
+        return offset == 0 || offset == text.length() || text.charAt(offset - 1) == '\n';
+    }
+
+    /**
+     * moves all positions at or after the given offset by delta.
+     * Elements ending before the limit are not changed, including their children.
+     */
+    private static void movePositions(Element e, int limit, int from, int delta, LineOffsets lineOffsets) {
+        if (e instanceof AstElementWithSource) {
+            AstElementWithSource s = (AstElementWithSource) e;
+            WPos pos = s.getSource();
+            if (!pos.isArtificial() && pos.getRightPos() <= limit) {
+                return;
+            }
+            int left = move(pos.getLeftPos(), from, delta);
+            int right = pos.isArtificial()
+                    ? left - (pos.getLeftPos() - pos.getRightPos())
+                    : move(pos.getRightPos(), from, delta);
+            s.setSource(new WPos(pos.getFile(), lineOffsets, left, right));
+        }
+        for (int i = 0; i < e.size(); i++) {
+            movePositions(e.get(i), limit, from, delta, lineOffsets);
+        }
+    }
+
+    private static int move(int offset, int from, int delta) {
+        return offset >= from ? offset + delta : offset;
+    }
+}
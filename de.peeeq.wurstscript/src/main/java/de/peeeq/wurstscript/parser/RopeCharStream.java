@@ -0,0 +1,139 @@
+package de.peeeq.wurstscript.parser;
+
+import de.peeeq.wurstscript.utils.Rope;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.util.List;
+
+/**
+ * An ANTLR input stream, which reads directly from the chunks of a {@link Rope} without copying the text.
+ *
+ * Unlike the streams created by {@link org.antlr.v4.runtime.CharStreams}, the stream consists of UTF-16 chars
+ * instead of code points, so indexes are the same as offsets in the rope.
+ * The stream can also be restricted to a range of the rope, so that a part of a file can be lexed
+ * while the tokens still have the offsets of the whole file.
+ */
+public class RopeCharStream implements CharStream {
+    private final Rope rope;
+    private final String sourceName;
+    private final int start;
+    private final int end;
+    private final List<String> chunks;
+    /** the offset of each chunk in the rope */
+    private final int[] chunkStarts;
+    private int index;
+    // the chunk containing index, so that sequential reads do not have to search
+    private int chunk = 0;
+
+    public RopeCharStream(Rope rope, String sourceName) {
+        this(rope, sourceName, 0, rope.length());
+    }
+
+    /**
+     * a stream, which starts at offset start and reaches EOF at offset end of the rope
+     */
+    public RopeCharStream(Rope rope, String sourceName, int start, int end) {
+        if (start < 0 || end > rope.length() || start > end) {
+            throw new IndexOutOfBoundsException("range " + start + " - " + end + ", length " + rope.length());
+        }
+        this.rope = rope;
+        this.sourceName = sourceName;
+        this.start = start;
+        this.end = end;
+        this.index = start;
+        this.chunks = rope.getChunks();
+        this.chunkStarts = new int[chunks.size()];
+        int offset = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            chunkStarts[i] = offset;
+            offset += chunks.get(i).length();
+        }
+    }
+
+    private char charAt(int i) {
+        if (i < chunkStarts[chunk] || i >= chunkStarts[chunk] + chunks.get(chunk).length()) {
+            chunk = findChunk(i);
+        }
+        return chunks.get(chunk).charAt(i - chunkStarts[chunk]);
+    }
+
+    private int findChunk(int i) {
+        int lo = 0;
+        int hi = chunkStarts.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (chunkStarts[mid] <= i) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    @Override
+    public String getText(Interval interval) {
+        int a = Math.max(interval.a, start);
+        int b = Math.min(interval.b, end - 1);
+        if (b < a) {
+            return "";
+        }
+        return rope.subSequence(a, b + 1).toString();
+    }
+
+    @Override
+    public void consume() {
+        if (index >= end) {
+            throw new IllegalStateException("cannot consume EOF");
+        }
+        index++;
+    }
+
+    @Override
+    public int LA(int i) {
+        if (i == 0) {
+            return 0;
+        }
+        int pos = i < 0 ? index + i : index + i - 1;
+        if (pos < start || pos >= end) {
+            return IntStream.EOF;
+        }
+        return charAt(pos);
+    }
+
+    @Override
+    public int mark() {
+        return -1;
+    }
+
+    @Override
+    public void release(int marker) {
+    }
+
+    @Override
+    public int index() {
+        return index;
+    }
+
+    @Override
+    public void seek(int index) {
+        this.index = Math.max(start, Math.min(index, end));
+    }
+
+    @Override
+    public int size() {
+        return end;
+    }
+
+    @Override
+    public String getSourceName() {
+        return sourceName;
+    }
+
+    @Override
+    public String toString() {
+        return rope.subSequence(start, end).toString();
+    }
+}
@@ -19,6 +19,7 @@ import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.TerminalNode;
 import org.eclipse.jdt.annotation.Nullable;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class AntlrWurstParseTreeTransformer {
@@ -59,6 +60,23 @@ public class AntlrWurstParseTreeTransformer {
                 .CompilationUnit(new CompilationUnitInfo(this.cuErrorHandler), jassDecls, packages);
     }
 
+    /**
+     * transforms entities, which were parsed without the surrounding package
+     *
+     * @return the transformed entities or null, if one of them could not be transformed
+     */
+    public @Nullable List<WEntity> transformEntities(List<EntityContext> entities) {
+        List<WEntity> result = new ArrayList<>();
+        for (EntityContext e : entities) {
+            WEntity en = transformEntity(e);
+            if (en == null) {
+                return null;
+            }
+            result.add(en);
+        }
+        return result;
+    }
+
     private JassToplevelDeclaration transformJassToplevelDecl(
             JassTopLevelDeclarationContext d) {
         if (d.jassFuncDef() != null) {
@@ -36,6 +36,8 @@ public class ExtendedWurstLexer implements TokenSource {
     private CompileError tabWarning = null;
     // counts the number of open parentheses
     private int parenthesesLevel = 0;
+    // the input ends before a line without indentation, which is not part of the input
+    private boolean endsBeforeLine = false;
 
     enum State {
         INIT, NEWLINES, BEGIN_LINE
@@ -154,6 +156,13 @@ public class ExtendedWurstLexer implements TokenSource {
             } else if (token.getType() == WurstParser.PAREN_RIGHT) {
                 parenthesesLevel--;
             } else if (token.getType() == WurstParser.EOF) {
+                if (endsBeforeLine && state == State.NEWLINES) {
+                    // close the blocks in the same way as for the first token of the following line
+                    handleIndent(0, token, token.getStartIndex(), token.getStopIndex(), firstNewline);
+                    nextTokens.add(token);
+                    state(State.INIT);
+                    return firstNewline;
+                }
                 // at EOF close all blocks and return an extra newline
                 handleIndent(0, token, token.getStartIndex(), token.getStopIndex(), token);
                 eof = token;
@@ -423,6 +432,29 @@ public class ExtendedWurstLexer implements TokenSource {
     }
 
 
+    /**
+     * continues lexing inside of a package, as if the input started at the beginning of a top level line.
+     * This is used to lex single entities of a package.
+     */
+    public void startInPackage() {
+        isWurst = true;
+    }
+
+    /**
+     * sets that the input ends directly before a line without indentation, which is not part of the input.
+     * The blocks at the end of the input are then closed like they are closed in the whole file.
+     */
+    public void setEndsBeforeLine(boolean endsBeforeLine) {
+        this.endsBeforeLine = endsBeforeLine;
+    }
+
+    /**
+     * true, when the input contained an indented line, which determined the indentation mode
+     */
+    public boolean hasIndentation() {
+        return tabChoice != TabChoice.Unknown;
+    }
+
     public LineOffsets getLineOffsets() {
         return lineOffsets;
     }
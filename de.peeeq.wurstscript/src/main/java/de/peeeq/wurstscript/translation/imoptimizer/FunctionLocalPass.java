@@ -0,0 +1,59 @@
+package de.peeeq.wurstscript.translation.imoptimizer;
+
+import de.peeeq.wurstscript.jassIm.ImFunction;
+import de.peeeq.wurstscript.translation.imtranslation.ImHelper;
+import de.peeeq.wurstscript.translation.imtranslation.ImTranslator;
+
+/**
+ * An optimization pass which works on one function at a time.
+ *
+ * Optimizing a function must only change the body and locals of that function.
+ * This allows {@link ImOptimizer} to only revisit functions which might have new optimization
+ * opportunities and, for thread safe passes, to optimize several functions in parallel.
+ */
+public interface FunctionLocalPass extends OptimizerPass {
+
+    /**
+     * @return true, if this pass should optimize the given function
+     */
+    default boolean appliesTo(ImFunction func) {
+        return !func.isNative() && !func.isBj();
+    }
+
+    /**
+     * called before a group of functions is optimized
+     */
+    default void prepare(ImTranslator trans) {
+    }
+
+    /**
+     * @return the number of optimizations done in the function
+     */
+    int optimizeFunc(ImFunction func);
+
+    /**
+     * called after a group of functions was optimized
+     */
+    default void finish(ImTranslator trans) {
+    }
+
+    /**
+     * @return true, if {@link #optimizeFunc(ImFunction)} can be called for different functions at the same time
+     */
+    default boolean isThreadSafe() {
+        return true;
+    }
+
+    @Override
+    default int optimize(ImTranslator trans) {
+        prepare(trans);
+        int count = 0;
+        for (ImFunction func : ImHelper.calculateFunctionsOfProg(trans.getImProg())) {
+            if (appliesTo(func)) {
+                count += optimizeFunc(func);
+            }
+        }
+        finish(trans);
+        return count;
+    }
+}
@@ -6,7 +6,6 @@ import de.peeeq.wurstscript.jassIm.*;
 import de.peeeq.wurstscript.translation.imtranslation.ImHelper;
 import de.peeeq.wurstscript.translation.imtranslation.ImTranslator;
 import de.peeeq.wurstscript.utils.Utils;
-import de.peeeq.wurstscript.validation.TRVEHelper;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
@@ -33,7 +32,7 @@ public class GlobalsInliner implements OptimizerPass {
                 // cannot optimize arrays yet
                 continue;
             }
-            if (TRVEHelper.protectedVariables.contains(v.getName())) {
+            if (trans.getProtectedVariables().contains(v.getName())) {
                 // keep TRVE vars
                 continue;
             }
@@ -5,7 +5,6 @@ import de.peeeq.wurstscript.jassIm.ImProg;
 import de.peeeq.wurstscript.jassIm.ImVar;
 import de.peeeq.wurstscript.translation.imtranslation.ImHelper;
 import de.peeeq.wurstscript.translation.imtranslation.ImTranslator;
-import de.peeeq.wurstscript.validation.TRVEHelper;
 
 public class ImCompressor {
 
@@ -27,7 +26,7 @@ public class ImCompressor {
 
     public void compressGlobals() {
         for (final ImVar global : prog.getGlobals()) {
-            if (global.getIsBJ() || TRVEHelper.protectedVariables.contains(global.getName())) {
+            if (global.getIsBJ() || trans.getProtectedVariables().contains(global.getName())) {
                 // do not rename bj constants
                 // do not rename TRVE vars
                 continue;
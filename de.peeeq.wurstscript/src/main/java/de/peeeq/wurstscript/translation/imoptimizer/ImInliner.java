@@ -3,8 +3,10 @@ package de.peeeq.wurstscript.translation.imoptimizer;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import de.peeeq.wurstscript.intermediatelang.interpreter.ExecutionProfile;
 import de.peeeq.wurstscript.jassIm.*;
 import de.peeeq.wurstscript.translation.imtranslation.*;
+import org.eclipse.jdt.annotation.Nullable;
 
 import java.util.*;
 
@@ -17,6 +19,10 @@ public class ImInliner {
     private static final String NOINLINE = "@noinline";
 
     private static final double THRESHOLD_MODIFIER_CONSTANT_ARG = 2;
+    /** calls in or to functions which are hot according to the profile */
+    private static final double THRESHOLD_MODIFIER_HOT = 4;
+    /** calls to functions which were never called while recording the profile */
+    private static final double THRESHOLD_MODIFIER_COLD = 0.5;
 
     private static final Set<String> dontInline = Sets.newLinkedHashSet();
     private ImTranslator translator;
@@ -26,6 +32,7 @@ public class ImInliner {
     private Map<ImFunction, Integer> funcSizes = Maps.newLinkedHashMap();
     private Set<ImFunction> done = Sets.newLinkedHashSet();
     private double inlineTreshold = 50;
+    private @Nullable ExecutionProfile profile;
 
     static {
         dontInline.add("SetPlayerAllianceStateAllyBJ");
@@ -38,6 +45,13 @@ public class ImInliner {
         this.prog = translator.getImProg();
     }
 
+    /**
+     * uses the given profile to inline calls in hot code more aggressively and to keep cold code small
+     */
+    public void setProfile(@Nullable ExecutionProfile profile) {
+        this.profile = profile;
+    }
+
     public void doInlining() {
         prog.flatten(translator);
         collectInlinableFunctions();
@@ -70,7 +84,7 @@ public class ImInliner {
         if (e instanceof ImFunctionCall) {
             ImFunctionCall call = (ImFunctionCall) e;
             ImFunction called = call.getFunc();
-            if (f != called && shouldInline(call, called)) {
+            if (f != called && shouldInline(f, call, called)) {
                 if (alreadyInlined.getOrDefault(called, 0) < 5) { // check maximum to ensure termination
                     inlineCall(f, parent, parentI, call);
 //					translator.removeCallRelation(f, called); // XXX is it safe to remove this call relation?
@@ -207,7 +221,7 @@ public class ImInliner {
         }
     }
 
-    private boolean shouldInline(ImFunctionCall call, ImFunction f) {
+    private boolean shouldInline(ImFunction caller, ImFunctionCall call, ImFunction f) {
         if (f.isNative() || call.getCallType() == CallType.EXECUTE) {
             return false;
         }
@@ -219,6 +233,14 @@ public class ImInliner {
                 break;
             }
         }
+        ExecutionProfile profile = this.profile;
+        if (profile != null) {
+            if (profile.isHot(caller) || profile.isHot(f)) {
+                threshold *= THRESHOLD_MODIFIER_HOT;
+            } else if (profile.isCold(f)) {
+                threshold *= THRESHOLD_MODIFIER_COLD;
+            }
+        }
 //		WLogger.info("Should I inline function " + f.getName() + "?");
 //		WLogger.info("	ininable: " + inlinableFunctions.contains(f));
 //		WLogger.info("	rating: " + getRating(f));
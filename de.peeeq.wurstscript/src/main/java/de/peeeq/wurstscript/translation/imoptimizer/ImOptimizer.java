@@ -1,36 +1,41 @@
 package de.peeeq.wurstscript.translation.imoptimizer;
 
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
+import de.peeeq.datastructures.Worklist;
 import de.peeeq.wurstio.TimeTaker;
 import de.peeeq.wurstscript.WLogger;
+import de.peeeq.wurstscript.intermediatelang.interpreter.ExecutionProfile;
 import de.peeeq.wurstscript.intermediatelang.optimizer.*;
 import de.peeeq.wurstscript.jassIm.*;
 import de.peeeq.wurstscript.translation.imtranslation.ImHelper;
 import de.peeeq.wurstscript.translation.imtranslation.ImTranslator;
 import de.peeeq.wurstscript.types.TypesHelper;
 import de.peeeq.wurstscript.utils.Pair;
-import de.peeeq.wurstscript.validation.TRVEHelper;
+import org.eclipse.jdt.annotation.Nullable;
 
 import java.util.*;
+import java.util.stream.IntStream;
 
 public class ImOptimizer {
     private int totalFunctionsRemoved = 0;
     private int totalGlobalsRemoved = 0;
 
-    private static final ArrayList<OptimizerPass> localPasses = new ArrayList<>();
-    private static final HashMap<String, Integer> totalCount = new HashMap<>();
-
-    static {
-        localPasses.add(new SimpleRewrites());
-        localPasses.add(new ConstantAndCopyPropagation());
-        localPasses.add(new UselessFunctionCallsRemover());
-        localPasses.add(new GlobalsInliner());
-        localPasses.add(new BranchMerger());
-        localPasses.add(new SimpleRewrites());
-        localPasses.add(new TempMerger());
-        localPasses.add(new LocalMerger());
-    }
-
+    private final List<OptimizerPass> localPasses = Arrays.asList(
+        new SimpleRewrites(),
+        new ConstantAndCopyPropagation(),
+        new UselessFunctionCallsRemover(),
+        new GlobalsInliner(),
+        new BranchMerger(),
+        new SimpleRewrites(),
+        new TempMerger(),
+        new LocalMerger()
+    );
+    private final Map<String, Integer> totalCount = new LinkedHashMap<>();
+    private boolean parallel = true;
+    private @Nullable ExecutionProfile profile;
 
     private final TimeTaker timeTaker;
     ImTranslator trans;
@@ -52,47 +57,245 @@ public class ImOptimizer {
         GlobalsInliner globalsInliner = new GlobalsInliner();
         globalsInliner.optimize(trans);
         ImInliner inliner = new ImInliner(trans);
+        inliner.setProfile(profile);
         inliner.doInlining();
         trans.assertProperties();
         // remove garbage, because inlined functions can be removed
         removeGarbage();
     }
 
-    private int optCount = 1;
+    /**
+     * sets the profile used to find hot and cold functions when inlining
+     */
+    public void setProfile(@Nullable ExecutionProfile profile) {
+        this.profile = profile;
+    }
 
+    /**
+     * when enabled, passes which only work on single functions (see {@link FunctionLocalPass})
+     * optimize several functions in parallel
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Runs the local optimization passes until no more optimizations are found (at most 10 rounds).
+     *
+     * The first round optimizes all functions. Later rounds only revisit functions which were
+     * changed in the previous round and the functions calling them, because changes to a function
+     * (e.g. removed side effects) can enable optimizations in its callers.
+     * Since side effects are transitive, callers further up are revisited as long as their side effects changed.
+     * When a pass which is not a {@link FunctionLocalPass} changes something, all functions are revisited.
+     */
     public void localOptimizations() {
         totalCount.clear();
         removeGarbage();
 
+        Map<ImFunction, SideEffects> sideEffects = calculateSideEffects(functionsInOrder());
+        Worklist<ImFunction> worklist = new Worklist<>(functionsInOrder());
         int finalItr = 0;
-        for (int i = 1; i <= 10 && optCount > 0; i++) {
-            optCount = 0;
-            localPasses.forEach(pass -> {
-                int count = timeTaker.measure(pass.getName(), () -> pass.optimize(trans));
+        for (int i = 1; i <= 10 && !worklist.isEmpty(); i++) {
+            // optimize the functions in program order, so that the result is deterministic
+            List<ImFunction> functions = new ArrayList<>();
+            for (ImFunction f : functionsInOrder()) {
+                if (worklist.contains(f)) {
+                    functions.add(f);
+                }
+            }
+            while (!worklist.isEmpty()) {
+                worklist.poll();
+            }
+
+            Set<ImFunction> changed = new LinkedHashSet<>();
+            boolean changedAll = false;
+            int optCount = 0;
+            for (OptimizerPass pass : localPasses) {
+                int count = timeTaker.measure(pass.getName(), () -> runPass(pass, functions, changed));
                 optCount += count;
                 totalCount.put(pass.getName(), totalCount.getOrDefault(pass.getName(), 0) + count);
-            });
-            trans.getImProg().flatten(trans);
-            removeGarbage();
+                timeTaker.recordCount(pass.getName(), count);
+                if (count > 0 && !(pass instanceof FunctionLocalPass)) {
+                    changedAll = true;
+                }
+            }
+            for (ImFunction f : changed) {
+                f.flatten(trans);
+            }
+            changed.addAll(removeGarbage(changedAll ? null : changed));
             finalItr = i;
-            WLogger.info("=== Optimization pass: " + i + " opts: " + optCount + " ===");
+            WLogger.info("=== Optimization pass: " + i + " functions: " + functions.size() + " opts: " + optCount + " ===");
+
+            if (optCount == 0) {
+                break;
+            } else if (changedAll) {
+                worklist.addAll(functionsInOrder());
+                sideEffects = calculateSideEffects(functionsInOrder());
+            } else {
+                Multimap<ImFunction, ImFunction> callers = Multimaps.invertFrom(trans.getCalledFunctions(), ArrayListMultimap.create());
+                for (ImFunction f : changed) {
+                    worklist.addLast(f);
+                    worklist.addAll(callers.get(f));
+                }
+                addCallersWithChangedSideEffects(changed, callers, sideEffects, worklist);
+            }
         }
         WLogger.info("=== Local optimizations done! Ran " + finalItr + " passes. ===");
         totalCount.forEach((k, v) -> WLogger.info("== " + k + ":   " + v));
     }
 
+    /**
+     * the side effects of a function, including the side effects of the functions it calls
+     */
+    private static class SideEffects {
+        private final Set<ImFunction> natives;
+        // global variables and class fields
+        private final Set<ImVar> variables;
+
+        SideEffects(SideEffectAnalyzer analyzer, ImFunction f) {
+            this.natives = analyzer.calledNatives(f);
+            this.variables = analyzer.usedVariables(f);
+            this.variables.removeAll(f.getParameters());
+            this.variables.removeAll(f.getLocals());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof SideEffects)) {
+                return false;
+            }
+            SideEffects other = (SideEffects) o;
+            return natives.equals(other.natives) && variables.equals(other.variables);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(natives, variables);
+        }
+    }
+
+    private Map<ImFunction, SideEffects> calculateSideEffects(List<ImFunction> functions) {
+        SideEffectAnalyzer analyzer = new SideEffectAnalyzer(trans.getImProg());
+        Map<ImFunction, SideEffects> result = new HashMap<>();
+        for (ImFunction f : functions) {
+            result.put(f, new SideEffects(analyzer, f));
+        }
+        return result;
+    }
+
+    /**
+     * Adds the transitive callers of the changed functions, whose side effects changed, to the worklist.
+     * The side effects of a function include those of all functions it calls, so when the side effects of a function
+     * change, the side effects of its callers can change as well and the optimizations in the callers,
+     * which depend on them, have to be done again. The search stops at callers whose side effects stayed the same.
+     */
+    private void addCallersWithChangedSideEffects(Set<ImFunction> changed, Multimap<ImFunction, ImFunction> callers,
+                                                  Map<ImFunction, SideEffects> sideEffects, Worklist<ImFunction> worklist) {
+        SideEffectAnalyzer analyzer = new SideEffectAnalyzer(trans.getImProg());
+        Deque<ImFunction> todo = new ArrayDeque<>(changed);
+        Set<ImFunction> visited = new HashSet<>();
+        while (!todo.isEmpty()) {
+            ImFunction f = todo.poll();
+            if (!visited.add(f)) {
+                continue;
+            }
+            SideEffects current = new SideEffects(analyzer, f);
+            if (!current.equals(sideEffects.put(f, current))) {
+                for (ImFunction caller : callers.get(f)) {
+                    worklist.addLast(caller);
+                    todo.add(caller);
+                }
+            }
+        }
+    }
+
+    /**
+     * all functions of the program, including class functions
+     */
+    private List<ImFunction> functionsInOrder() {
+        ImProg prog = trans.getImProg();
+        List<ImFunction> result = new ArrayList<>(prog.getFunctions());
+        for (ImClass c : prog.getClasses()) {
+            result.addAll(c.getFunctions());
+        }
+        return result;
+    }
+
+    /**
+     * runs a pass and adds the functions changed by it to the changed set.
+     * Function local passes only optimize the given functions.
+     *
+     * @return the number of optimizations
+     */
+    private int runPass(OptimizerPass pass, List<ImFunction> functions, Set<ImFunction> changed) {
+        if (!(pass instanceof FunctionLocalPass)) {
+            return pass.optimize(trans);
+        }
+        FunctionLocalPass localPass = (FunctionLocalPass) pass;
+        List<ImFunction> todo = new ArrayList<>();
+        for (ImFunction f : functions) {
+            if (localPass.appliesTo(f)) {
+                todo.add(f);
+            }
+        }
+        localPass.prepare(trans);
+        int[] counts = new int[todo.size()];
+        if (parallel && localPass.isThreadSafe()) {
+            // functions are optimized independently, so the result does not depend on the order of execution
+            IntStream.range(0, todo.size()).parallel()
+                .forEach(j -> counts[j] = localPass.optimizeFunc(todo.get(j)));
+        } else {
+            for (int j = 0; j < todo.size(); j++) {
+                counts[j] = localPass.optimizeFunc(todo.get(j));
+            }
+        }
+        localPass.finish(trans);
+        int sum = 0;
+        for (int j = 0; j < todo.size(); j++) {
+            if (counts[j] > 0) {
+                sum += counts[j];
+                changed.add(todo.get(j));
+            }
+        }
+        return sum;
+    }
+
     public void doNullsetting() {
         NullSetter ns = new NullSetter(trans);
         ns.optimize();
         trans.assertProperties();
     }
 
-    public void removeGarbage() {
+    /**
+     * removes unused functions and variables
+     *
+     * @return the remaining functions which were changed
+     */
+    public Set<ImFunction> removeGarbage() {
+        return removeGarbage(null);
+    }
+
+    /**
+     * removes unused functions and variables
+     *
+     * @param changedSinceLastRun the functions changed since the last garbage removal or null, if unknown.
+     *                            Only these functions have to be analyzed again.
+     * @return the remaining functions which were changed
+     */
+    private Set<ImFunction> removeGarbage(@Nullable Collection<ImFunction> changedSinceLastRun) {
+        Set<ImFunction> changedFunctions = new LinkedHashSet<>();
+        @Nullable Collection<ImFunction> changedInIteration = changedSinceLastRun;
         boolean changes = true;
         int iterations = 0;
         while (changes && iterations++ < 10) {
             ImProg prog = trans.imProg();
-            trans.calculateCallRelationsAndUsedVariables();
+            if (changedInIteration == null) {
+                trans.calculateCallRelationsAndUsedVariables();
+            } else {
+                trans.updateCallRelationsAndUsedVariables(changedInIteration);
+            }
+            // only the function bodies changed below have to be analyzed again
+            changedInIteration = new ArrayList<>();
 
             // keep only used variables
             int globalsBefore = prog.getGlobals().size();
@@ -129,12 +332,12 @@ public class ImOptimizer {
                         super.visit(e);
                         if (e.getLeft() instanceof ImVarAccess) {
                             ImVarAccess va = (ImVarAccess) e.getLeft();
-                            if (!trans.getReadVariables().contains(va.getVar()) && !TRVEHelper.protectedVariables.contains(va.getVar().getName())) {
+                            if (!trans.getReadVariables().contains(va.getVar()) && !trans.getProtectedVariables().contains(va.getVar().getName())) {
                                 replacements.add(Pair.create(e, Collections.singletonList(e.getRight())));
                             }
                         } else if (e.getLeft() instanceof ImVarArrayAccess) {
                             ImVarArrayAccess va = (ImVarArrayAccess) e.getLeft();
-                            if (!trans.getReadVariables().contains(va.getVar()) && !TRVEHelper.protectedVariables.contains(va.getVar().getName())) {
+                            if (!trans.getReadVariables().contains(va.getVar()) && !trans.getProtectedVariables().contains(va.getVar().getName())) {
                                 // TODO indexes might have side effects that we need to keep
                                 List<ImExpr> exprs = va.getIndexes().removeAll();
                                 exprs.add(e.getRight());
@@ -142,12 +345,12 @@ public class ImOptimizer {
                             }
                         } else if (e.getLeft() instanceof ImTupleSelection) {
                             ImVar var = TypesHelper.getTupleVar((ImTupleSelection) e.getLeft());
-                            if(!trans.getReadVariables().contains(var) && !TRVEHelper.protectedVariables.contains(var.getName())) {
+                            if(!trans.getReadVariables().contains(var) && !trans.getProtectedVariables().contains(var.getName())) {
                                 replacements.add(Pair.create(e, Collections.singletonList(e.getRight())));
                             }
                         } else if(e.getLeft() instanceof ImMemberAccess) {
                             ImMemberAccess va = ((ImMemberAccess) e.getLeft());
-                            if (!trans.getReadVariables().contains(va.getVar()) && !TRVEHelper.protectedVariables.contains(va.getVar().getName())) {
+                            if (!trans.getReadVariables().contains(va.getVar()) && !trans.getProtectedVariables().contains(va.getVar().getName())) {
                                 replacements.add(Pair.create(e, Collections.singletonList(e.getRight())));
                             }
                         }
@@ -155,6 +358,10 @@ public class ImOptimizer {
 
                 });
                 Replacer replacer = new Replacer();
+                if (!replacements.isEmpty()) {
+                    changedFunctions.add(f);
+                    changedInIteration.add(f);
+                }
                 for (Pair<ImStmt, List<ImExpr>> pair : replacements) {
                     changes = true;
                     ImExpr r;
@@ -172,9 +379,15 @@ public class ImOptimizer {
                 }
 
                 // keep only read local variables
-                changes |= f.getLocals().retainAll(trans.getReadVariables());
+                if (f.getLocals().retainAll(trans.getReadVariables())) {
+                    changes = true;
+                    changedFunctions.add(f);
+                    changedInIteration.add(f);
+                }
             }
         }
+        changedFunctions.retainAll(trans.getUsedFunctions());
+        return changedFunctions;
     }
 
 
@@ -16,26 +16,36 @@ import java.util.ListIterator;
  * <p>
  * when the result is not used
  */
-public class UselessFunctionCallsRemover implements OptimizerPass {
+public class UselessFunctionCallsRemover implements FunctionLocalPass {
     public int totalCallsRemoved = 0;
+    private ImTranslator trans;
 
-    public int optimize(ImTranslator trans) {
-        totalCallsRemoved = 0;
-        ImProg prog = trans.getImProg();
-        for (ImFunction func : prog.getFunctions()) {
-            optimizeFunc(func, trans);
-        }
-        return totalCallsRemoved;
+    @Override
+    public boolean appliesTo(ImFunction func) {
+        return true;
     }
 
     @Override
-    public String getName() {
-        return "Useless function calls removed";
+    public void prepare(ImTranslator trans) {
+        this.trans = trans;
     }
 
-    private void optimizeFunc(ImFunction func, ImTranslator trans) {
+    @Override
+    public int optimizeFunc(ImFunction func) {
+        int before = totalCallsRemoved;
         optimizeStmts(func.getBody());
         func.flatten(trans);
+        return totalCallsRemoved - before;
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return false;
+    }
+
+    @Override
+    public String getName() {
+        return "Useless function calls removed";
     }
 
     private void optimizeStmts(ImStmts stmts) {
@@ -17,7 +17,7 @@ public class DefaultValue {
     public static ILconst get(ImSimpleType t) {
         String typename = t.getTypename();
         if (typename.equals("string")) return ILconstNull.instance();
-        if (typename.equals("integer")) return new ILconstInt(0);
+        if (typename.equals("integer")) return ILconstInt.create(0);
         if (typename.equals("real")) return new ILconstReal(0);
         if (typename.equals("boolean")) return ILconstBool.FALSE;
         WLogger.info("could not get default value for " + typename);
@@ -53,7 +53,7 @@ public class DefaultValue {
     }
 
     public static ILconst get(ImClassType ct) {
-        return new ILconstInt(0);
+        return ILconstInt.create(0);
     }
 
     public static ILconst get(ImAnyType imAnyType) {
@@ -19,4 +19,8 @@ public abstract class GetAForB<B, A> {
         return b;
     }
 
+    Map<B, A> getMap() {
+        return thing;
+    }
+
 }
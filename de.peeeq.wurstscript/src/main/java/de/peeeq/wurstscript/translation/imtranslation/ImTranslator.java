@@ -67,6 +67,7 @@ public class ImTranslator {
     private @Nullable Set<ImVar> usedVariables = null;
     private @Nullable Set<ImVar> readVariables = null;
     private @Nullable Set<ImFunction> usedFunctions = null;
+    private final Map<ImFunction, FunctionUses> functionUses = new HashMap<>();
 
     private @Nullable ImFunction debugPrintFunction;
 
@@ -110,6 +111,9 @@ public class ImTranslator {
     de.peeeq.wurstscript.ast.Element lasttranslatedThing;
     private boolean debug = false;
     private final RunArgs runArgs;
+    private @Nullable TranslationCache translationCache;
+    // variables used by TriggerRegisterVariableEvent, which must not be removed or renamed
+    private Set<String> protectedVariables = Collections.emptySet();
 
     public ImTranslator(WurstModel wurstProg, boolean isUnitTestMode, RunArgs runArgs) {
         this.wurstProg = wurstProg;
@@ -125,6 +129,7 @@ public class ImTranslator {
      */
     public ImProg translateProg() {
         try {
+            protectedVariables = TRVEHelper.collectProtectedVariables(wurstProg);
             globalInitFunc = ImFunction(emptyTrace, "initGlobals", ImTypeVars(), ImVars(), ImVoid(), ImVars(), ImStmts(), flags());
             addFunction(getGlobalInitFunc());
             debugPrintFunction = ImFunction(emptyTrace, $DEBUG_PRINT, ImTypeVars(), ImVars(JassIm.ImVar(wurstProg, WurstTypeString.instance().imTranslateType(this), "msg",
@@ -145,10 +150,19 @@ public class ImTranslator {
 
             calculateCompiletimeOrder();
 
+            if (translationCache != null) {
+                translationCache.restore(this);
+            }
+
             for (CompilationUnit cu : wurstProg) {
                 translateCompilationUnit(cu);
             }
 
+            if (translationCache != null) {
+                // store the packages before the init functions are changed by finishInitFunctions
+                translationCache.store(this);
+            }
+
             if (mainFunc == null) {
                 mainFunc = ImFunction(emptyTrace, "main", ImTypeVars(), ImVars(), ImVoid(), ImVars(), ImStmts(), flags());
                 addFunction(mainFunc);
@@ -219,22 +233,43 @@ public class ImTranslator {
 
 
     /**
-     * sorting everything is supposed to make the translation deterministic
+     * sorting everything is supposed to make the translation deterministic.
+     * Elements with the same name are ordered by the position of their package in the model,
+     * so that packages restored by the {@link TranslationCache} end up at the same place
+     * as in a fresh translation.
      */
     private void sortEverything() {
-        sortList(imProg.getClasses());
-        sortList(imProg.getGlobals());
-        sortList(imProg.getFunctions());
+        Map<PackageOrGlobal, Integer> modelOrder = new HashMap<>();
+        for (CompilationUnit cu : wurstProg) {
+            modelOrder.put(cu, modelOrder.size());
+            for (WPackage p : cu.getPackages()) {
+                modelOrder.put(p, modelOrder.size());
+            }
+        }
+        Comparator<Element> comparator = Comparator.<Element, String>comparing(this::getQualifiedClassName)
+                .thenComparingInt(e -> modelOrder.getOrDefault(TranslationCache.ownerOf(e.attrTrace()), -1));
+        sortList(imProg.getClasses(), comparator);
+        sortList(imProg.getGlobals(), comparator);
+        sortList(imProg.getFunctions(), comparator);
         for (ImClass c : imProg.getClasses()) {
-            sortList(c.getFields());
-            sortList(c.getMethods());
+            sortList(c.getFields(), comparator);
+            sortList(c.getMethods(), comparator);
+        }
+        // initializers in the order of the globals
+        Map<ImVar, List<ImSet>> globalInits = new LinkedHashMap<>(imProg.getGlobalInits());
+        imProg.getGlobalInits().clear();
+        for (ImVar g : imProg.getGlobals()) {
+            List<ImSet> sets = globalInits.remove(g);
+            if (sets != null) {
+                imProg.getGlobalInits().put(g, sets);
+            }
         }
+        imProg.getGlobalInits().putAll(globalInits);
     }
 
 
-    private <T extends Element> void sortList(List<T> list) {
+    private <T extends Element> void sortList(List<T> list, Comparator<? super T> comparator) {
         List<T> classes = removeAll(list);
-        Comparator<T> comparator = Comparator.comparing(this::getQualifiedClassName);
         classes.sort(comparator);
         list.addAll(classes);
     }
@@ -342,6 +377,10 @@ public class ImTranslator {
             lasttranslatedThing = p;
             p.imTranslateTLD(this);
         }
+        if (translationCache != null && translationCache.isRestored(cu)) {
+            // the jass code of this unit was restored from the cache
+            return;
+        }
         for (JassToplevelDeclaration tld : cu.getJassDecls()) {
             lasttranslatedThing = tld;
             tld.imTranslateTLD(this);
@@ -1041,42 +1080,89 @@ public class ImTranslator {
         return callRelations;
     }
 
+    /**
+     * calculates the call graph and the used variables of all functions reachable from main and config
+     */
     public void calculateCallRelationsAndUsedVariables() {
+        functionUses.clear();
+        updateCallRelationsAndUsedVariables(Collections.emptyList());
+    }
+
+    /**
+     * like {@link #calculateCallRelationsAndUsedVariables()}, but only the given functions
+     * and functions which were not reachable before are analyzed again.
+     * The variables and functions used by all other functions are taken from the previous calculation,
+     * so the caller must make sure that all functions changed since then are included in changedFunctions.
+     */
+    public void updateCallRelationsAndUsedVariables(Collection<ImFunction> changedFunctions) {
+        for (ImFunction f : changedFunctions) {
+            functionUses.remove(f);
+        }
         callRelations = HashMultimap.create();
         usedVariables = Sets.newLinkedHashSet();
         readVariables = Sets.newLinkedHashSet();
         usedFunctions = Sets.newLinkedHashSet();
         calculateCallRelations(getMainFunc());
         calculateCallRelations(getConfFunc());
+        // forget functions which are no longer used
+        functionUses.keySet().retainAll(usedFunctions);
 
 //		WLogger.info("USED FUNCS:");
 //		for (ImFunction f : usedFunctions) {
 //			WLogger.info("	" + f.getName());
 //		}
         imProg.getGlobals().forEach(global -> {
-            if (TRVEHelper.protectedVariables.contains(global.getName())) {
+            if (protectedVariables.contains(global.getName())) {
                 getReadVariables().add(global);
             }
         });
     }
 
-    private void calculateCallRelations(ImFunction f) {
-        if (getUsedFunctions().contains(f)) {
-            return;
+    /**
+     * visits all functions reachable from start in depth first order.
+     * Uses an explicit stack, because call chains can be very deep.
+     */
+    private void calculateCallRelations(ImFunction start) {
+        Deque<Iterator<ImFunction>> stack = new ArrayDeque<>();
+        visitUsedFunction(start, stack);
+        while (!stack.isEmpty()) {
+            Iterator<ImFunction> it = stack.peek();
+            if (it.hasNext()) {
+                visitUsedFunction(it.next(), stack);
+            } else {
+                stack.pop();
+            }
         }
-        getUsedFunctions().add(f);
-
-        getUsedVariables().addAll(f.calcUsedVariables());
-        getReadVariables().addAll(f.calcReadVariables());
+    }
 
-        Set<ImFunction> calledFuncs = f.calcUsedFunctions();
-        for (ImFunction called : calledFuncs) {
+    private void visitUsedFunction(ImFunction f, Deque<Iterator<ImFunction>> stack) {
+        if (!getUsedFunctions().add(f)) {
+            return;
+        }
+        FunctionUses uses = functionUses.computeIfAbsent(f, FunctionUses::new);
+        getUsedVariables().addAll(uses.usedVariables);
+        getReadVariables().addAll(uses.readVariables);
+        for (ImFunction called : uses.calledFunctions) {
             if (f != called) { // ignore reflexive call relations
                 getCallRelations().put(f, called);
             }
-            calculateCallRelations(called);
         }
+        stack.push(uses.calledFunctions.iterator());
+    }
+
+    /**
+     * the variables and functions used in the body of a single function
+     */
+    private static class FunctionUses {
+        final Set<ImVar> usedVariables;
+        final Set<ImVar> readVariables;
+        final Set<ImFunction> calledFunctions;
 
+        FunctionUses(ImFunction f) {
+            usedVariables = f.calcUsedVariables();
+            readVariables = f.calcReadVariables();
+            calledFunctions = f.calcUsedFunctions();
+        }
     }
 
     private Multimap<ImFunction, ImFunction> getCallRelations() {
@@ -1588,6 +1674,14 @@ public class ImTranslator {
         return isUnitTestMode;
     }
 
+    /**
+     * the names of the variables used by TriggerRegisterVariableEvent in the translated program,
+     * which must not be removed or renamed
+     */
+    public Set<String> getProtectedVariables() {
+        return protectedVariables;
+    }
+
     private Map<ExprClosure, ImClass> classForClosure = Maps.newLinkedHashMap();
 
     public ImClass getClassForClosure(ExprClosure s) {
@@ -1667,13 +1761,17 @@ public class ImTranslator {
 
 
     public ImFunctionCall imError(de.peeeq.wurstscript.ast.Element trace, ImExpr message) {
+        ImExprs arguments = JassIm.ImExprs(message);
+        return ImFunctionCall(trace, getErrorFunc(), ImTypeArguments(), arguments, false, CallType.NORMAL);
+    }
+
+    private ImFunction getErrorFunc() {
         ImFunction ef = errorFunc;
         if (ef == null) {
             Optional<ImFunction> f = findErrorFunc().map(this::getFuncFor);
             ef = errorFunc = f.orElseGet(this::makeDefaultErrorFunc);
         }
-        ImExprs arguments = JassIm.ImExprs(message);
-        return ImFunctionCall(trace, ef, ImTypeArguments(), arguments, false, CallType.NORMAL);
+        return ef;
     }
 
     private ImFunction makeDefaultErrorFunc() {
@@ -1734,4 +1832,60 @@ public class ImTranslator {
     public RunArgs getRunArgs() {
         return runArgs;
     }
+
+    /**
+     * packages which are still valid in the given cache are restored from it instead of being translated again
+     */
+    public void setTranslationCache(TranslationCache translationCache) {
+        this.translationCache = translationCache;
+    }
+
+    /**
+     * the maps from AST elements to the IM elements translated from them,
+     * which are restored by the {@link TranslationCache} together with the elements
+     */
+    List<Map<? extends de.peeeq.wurstscript.ast.Element, ? extends Element>> getAstToImMaps() {
+        return Arrays.asList(functionMap, thisVarMap, varMap, initFuncMap, classForStructureDef, classForClosure,
+                constructorFuncs, constrNewFuncs, methodForFuncDef, destroyFunc.getMap(), destroyMethod.getMap());
+    }
+
+    Map<TypeParamDef, ImTypeVar> getTypeVars() {
+        return typeVariable.getMap();
+    }
+
+    void addTypeVar(TypeParamDef typeParamDef, ImTypeVar tv) {
+        typeVariable.getMap().put(typeParamDef, tv);
+        typeVariableReverse.put(tv, typeParamDef);
+    }
+
+    Set<ClassDef> getTranslatedClasses() {
+        return translatedClasses;
+    }
+
+    @Nullable FunctionFlagCompiletime getCompiletimeFlag(TranslatedToImFunction funcDef) {
+        return compiletimeFlags.get(funcDef);
+    }
+
+    /**
+     * the functions created by the translator itself, which do not belong to a package, by name
+     */
+    Map<String, ImFunction> getTranslatorFunctions() {
+        Map<String, ImFunction> result = new LinkedHashMap<>();
+        for (ImFunction f : Arrays.asList(globalInitFunc, errorFunc, ensureIntFunc, ensureBoolFunc, ensureRealFunc, ensureStrFunc, stringConcatFunc)) {
+            if (f != null && f.getTrace() == emptyTrace) {
+                result.put(f.getName(), f);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * returns the translator function with the given name, the error function is created when it does not exist yet
+     */
+    @Nullable ImFunction getTranslatorFunction(String name) {
+        if (name.equals("error")) {
+            return getErrorFunc();
+        }
+        return getTranslatorFunctions().get(name);
+    }
 }
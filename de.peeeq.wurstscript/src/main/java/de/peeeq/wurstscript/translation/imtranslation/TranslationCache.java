@@ -0,0 +1,756 @@
+package de.peeeq.wurstscript.translation.imtranslation;
+
+import com.google.common.base.Preconditions;
+import de.peeeq.wurstscript.ast.Ast;
+import de.peeeq.wurstscript.ast.ClassDef;
+import de.peeeq.wurstscript.ast.CompilationUnit;
+import de.peeeq.wurstscript.ast.FunctionCall;
+import de.peeeq.wurstscript.ast.PackageOrGlobal;
+import de.peeeq.wurstscript.ast.TranslatedToImFunction;
+import de.peeeq.wurstscript.ast.TypeParamDef;
+import de.peeeq.wurstscript.ast.WPackage;
+import de.peeeq.wurstscript.ast.WurstModel;
+import de.peeeq.wurstscript.jassIm.*;
+import de.peeeq.wurstscript.translation.imtojass.TypeRewriteMatcher;
+import de.peeeq.wurstscript.translation.imtojass.TypeRewriter;
+import de.peeeq.wurstscript.types.WurstTypeClassOrInterface;
+import de.peeeq.wurstscript.utils.Pair;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the IM translation of every package and of the jass part of every compilation unit
+ * between two builds, so that only the changed parts of the program have to be translated again.
+ * <p>
+ * The translation of each owner is stored as a fragment of detached copies. When the translator
+ * starts, every fragment which is still valid is copied into the new program, together with the
+ * translator maps pointing to it, and the owner is not translated again.
+ * A fragment is valid when its owner was not invalidated and all fragments it references
+ * are valid as well. Classes and their supertypes are always translated together, because the
+ * translation of a supertype links the methods of its subtypes.
+ * <p>
+ * Fragments are restored in the order of the model and keep the order of their elements,
+ * so after the translator has sorted the program, it is the same as a fresh translation.
+ */
+public class TranslationCache {
+
+    private final Map<PackageOrGlobal, Fragment> fragments = new HashMap<>();
+    private final Map<String, ImFunction> translatorFunctionPlaceholders = new HashMap<>();
+    private final Map<ImFunction, String> placeholderNames = new IdentityHashMap<>();
+    private @Nullable List<Boolean> options;
+
+    // state of the current translation:
+    private final Set<PackageOrGlobal> restored = new HashSet<>();
+    private final Map<Element, Element> restoredToCached = new IdentityHashMap<>();
+    private final Map<Element, PackageOrGlobal> restoredOwners = new IdentityHashMap<>();
+    private final Map<Element, PackageOrGlobal> restoredRoots = new IdentityHashMap<>();
+
+    /**
+     * the stored translation of a single package or compilation unit
+     */
+    private static class Fragment {
+        final List<ImFunction> functions = new ArrayList<>();
+        final List<ImVar> globals = new ArrayList<>();
+        final List<ImClass> classes = new ArrayList<>();
+        final List<ImStmt> globalInitStatements = new ArrayList<>();
+        /** init functions and initializers of bj variables, which are not part of the program yet */
+        final List<Element> otherRoots = new ArrayList<>();
+        final Map<ImVar, List<ImSet>> globalInits = new LinkedHashMap<>();
+        final List<Map<de.peeeq.wurstscript.ast.Element, Element>> astToIm = new ArrayList<>();
+        final Map<TypeParamDef, ImTypeVar> typeVariables = new LinkedHashMap<>();
+        final Set<ClassDef> translatedClasses = new LinkedHashSet<>();
+        final Set<PackageOrGlobal> dependencies = new HashSet<>();
+        @Nullable ImFunction mainFunc;
+        @Nullable ImFunction configFunc;
+
+        List<Element> roots() {
+            List<Element> result = new ArrayList<>();
+            result.addAll(functions);
+            result.addAll(globals);
+            result.addAll(classes);
+            result.addAll(globalInitStatements);
+            result.addAll(otherRoots);
+            return result;
+        }
+
+        Map<de.peeeq.wurstscript.ast.Element, Element> astToIm(int index) {
+            while (astToIm.size() <= index) {
+                astToIm.add(new LinkedHashMap<>());
+            }
+            return astToIm.get(index);
+        }
+    }
+
+    public void clear() {
+        fragments.clear();
+    }
+
+    /**
+     * removes the translation of the given compilation units and their packages
+     */
+    public void invalidate(Collection<CompilationUnit> cus) {
+        for (CompilationUnit cu : cus) {
+            fragments.remove(cu);
+            for (WPackage p : cu.getPackages()) {
+                fragments.remove(p);
+            }
+        }
+    }
+
+    /**
+     * true, when the given package or the jass part of the given compilation unit
+     * was restored in the current translation
+     */
+    boolean isRestored(PackageOrGlobal owner) {
+        return restored.contains(owner);
+    }
+
+    /**
+     * adds the valid fragments to the program of the given translator
+     */
+    void restore(ImTranslator tr) {
+        restored.clear();
+        restoredToCached.clear();
+        restoredOwners.clear();
+        restoredRoots.clear();
+        List<Boolean> currentOptions = Arrays.asList(tr.isUnitTestMode(), tr.isLuaTarget(), tr.isEclipseMode());
+        if (!currentOptions.equals(options)) {
+            clear();
+            options = currentOptions;
+            return;
+        }
+        List<PackageOrGlobal> owners = owners(tr.getWurstProg());
+        fragments.keySet().retainAll(new HashSet<>(owners));
+        Map<PackageOrGlobal, List<ClassDef>> classes = classesByOwner(tr.getWurstProg());
+
+        Set<PackageOrGlobal> failed = new HashSet<>();
+        while (true) {
+            List<PackageOrGlobal> valid = validOwners(owners, classes, failed);
+            Map<Element, Element> cachedToRestored = new IdentityHashMap<>();
+            Map<Element, PackageOrGlobal> copyOwners = new IdentityHashMap<>();
+            for (PackageOrGlobal owner : valid) {
+                for (Element root : fragments.get(owner).roots()) {
+                    Element copy = root.copy();
+                    walk(root, copy, cachedToRestored);
+                    forEachNode(copy, n -> copyOwners.put(n, owner));
+                }
+            }
+
+            Set<PackageOrGlobal> newlyFailed = new HashSet<>();
+            for (PackageOrGlobal owner : valid) {
+                for (Element root : fragments.get(owner).roots()) {
+                    Element copy = cachedToRestored.get(root);
+                    new ReferenceRewriter() {
+                        @Override
+                        @Nullable Element resolve(Element e) {
+                            Element r = cachedToRestored.get(e);
+                            if (r == null && e instanceof ImFunction) {
+                                String name = placeholderNames.get(e);
+                                if (name != null) {
+                                    r = tr.getTranslatorFunction(name);
+                                }
+                            }
+                            return r;
+                        }
+
+                        @Override
+                        void unresolved(Element e) {
+                            newlyFailed.add(owner);
+                        }
+                    }.rewrite(copy);
+                    refreshCompiletimeOrder(copy, tr);
+                }
+            }
+            if (newlyFailed.isEmpty()) {
+                addToProgram(tr, valid, cachedToRestored);
+                restoredOwners.putAll(copyOwners);
+                return;
+            }
+            failed.addAll(newlyFailed);
+        }
+    }
+
+    /**
+     * adds the restored fragments in the order of the given owners, which is the order of the model
+     */
+    private void addToProgram(ImTranslator tr, List<PackageOrGlobal> valid, Map<Element, Element> cachedToRestored) {
+        ImProg prog = tr.getImProg();
+        List<Map<? extends de.peeeq.wurstscript.ast.Element, ? extends Element>> maps = tr.getAstToImMaps();
+        for (PackageOrGlobal owner : valid) {
+            Fragment f = fragments.get(owner);
+            for (ImFunction func : f.functions) {
+                prog.getFunctions().add(restored(cachedToRestored, func));
+            }
+            for (ImVar v : f.globals) {
+                prog.getGlobals().add(restored(cachedToRestored, v));
+            }
+            for (ImClass c : f.classes) {
+                prog.getClasses().add(restored(cachedToRestored, c));
+            }
+            for (ImStmt s : f.globalInitStatements) {
+                tr.getGlobalInitFunc().getBody().add(restored(cachedToRestored, s));
+            }
+            f.globalInits.forEach((v, sets) ->
+                    prog.getGlobalInits().put(restored(cachedToRestored, v), sets.stream()
+                            .map(s -> restored(cachedToRestored, s))
+                            .collect(Collectors.toList())));
+            for (int i = 0; i < f.astToIm.size(); i++) {
+                @SuppressWarnings("unchecked")
+                Map<de.peeeq.wurstscript.ast.Element, Element> map = (Map<de.peeeq.wurstscript.ast.Element, Element>) maps.get(i);
+                f.astToIm.get(i).forEach((k, v) -> map.put(k, restored(cachedToRestored, v)));
+            }
+            f.typeVariables.forEach((k, v) -> tr.addTypeVar(k, restored(cachedToRestored, v)));
+            for (ClassDef c : f.translatedClasses) {
+                tr.setTranslated(c);
+            }
+            if (owner instanceof WPackage) {
+                tr.setTranslated((WPackage) owner);
+            }
+            if (f.mainFunc != null) {
+                tr.setMainFunc(restored(cachedToRestored, f.mainFunc));
+            }
+            if (f.configFunc != null) {
+                tr.setConfigFunc(restored(cachedToRestored, f.configFunc));
+            }
+            for (Element root : f.roots()) {
+                restoredRoots.put(cachedToRestored.get(root), owner);
+            }
+            restored.add(owner);
+        }
+        cachedToRestored.forEach((cached, r) -> restoredToCached.put(r, cached));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Element> T restored(Map<Element, Element> cachedToRestored, T cached) {
+        return (T) Preconditions.checkNotNull(cachedToRestored.get(cached));
+    }
+
+    /**
+     * calculates the owners which can be restored, in the order of the model
+     */
+    private List<PackageOrGlobal> validOwners(List<PackageOrGlobal> owners, Map<PackageOrGlobal, List<ClassDef>> classes, Set<PackageOrGlobal> failed) {
+        Set<PackageOrGlobal> invalid = new HashSet<>(failed);
+        for (PackageOrGlobal owner : owners) {
+            if (!fragments.containsKey(owner)) {
+                invalid.add(owner);
+            }
+        }
+        Set<PackageOrGlobal> expanded = new HashSet<>();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (PackageOrGlobal owner : owners) {
+                if (invalid.contains(owner)) {
+                    if (!expanded.add(owner)) {
+                        continue;
+                    }
+                    // the translation of a supertype links the methods of its subtypes,
+                    // so it has to be repeated when a subtype is translated again
+                    for (ClassDef c : classes.getOrDefault(owner, Collections.emptyList())) {
+                        for (WurstTypeClassOrInterface t : c.attrTypC().transitiveSupertypes()) {
+                            PackageOrGlobal superOwner = ownerOf(t.getDef());
+                            if (superOwner != null && invalid.add(superOwner)) {
+                                changed = true;
+                            }
+                        }
+                    }
+                } else if (fragments.get(owner).dependencies.stream()
+                        .anyMatch(d -> invalid.contains(d) || !fragments.containsKey(d))) {
+                    invalid.add(owner);
+                    changed = true;
+                }
+            }
+        }
+        return owners.stream()
+                .filter(o -> !invalid.contains(o))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * stores the translation of all owners, which were not restored.
+     * Must be called after all compilation units are translated and before
+     * the init functions are finished.
+     */
+    void store(ImTranslator tr) {
+        new Store(tr).run();
+    }
+
+    private class Store {
+        private final ImTranslator tr;
+        private final Map<PackageOrGlobal, Fragment> stored = new LinkedHashMap<>();
+        private final Set<PackageOrGlobal> failed = new HashSet<>();
+        private final Map<Element, Element> newToCached = new IdentityHashMap<>();
+        private final Map<Element, PackageOrGlobal> newOwners = new IdentityHashMap<>();
+        private final List<Pair<Element, PackageOrGlobal>> copies = new ArrayList<>();
+        private final Map<ImFunction, String> translatorFunctions = new IdentityHashMap<>();
+
+        Store(ImTranslator tr) {
+            this.tr = tr;
+        }
+
+        void run() {
+            tr.getTranslatorFunctions().forEach((name, f) -> translatorFunctions.put(f, name));
+            List<PackageOrGlobal> owners = owners(tr.getWurstProg());
+            for (PackageOrGlobal owner : owners) {
+                stored.put(owner, restored.contains(owner) ? fragments.get(owner) : new Fragment());
+            }
+            sortGlobalInitStatements(owners);
+
+            // copy the new elements, elements created for a restored owner are added to its fragment
+            ImProg prog = tr.getImProg();
+            for (ImFunction f : prog.getFunctions()) {
+                addRoot(f, ownerOf(f.getTrace()), fr -> fr.functions);
+            }
+            for (ImVar v : prog.getGlobals()) {
+                addRoot(v, ownerOf(v.getTrace()), fr -> fr.globals);
+            }
+            for (ImClass c : prog.getClasses()) {
+                addRoot(c, ownerOf(c.getTrace()), fr -> fr.classes);
+            }
+            tr.initFuncMap.forEach((p, f) -> addRoot(f, p, fr -> fr.otherRoots));
+            for (ImStmt s : tr.getGlobalInitFunc().getBody()) {
+                addRoot(s, statementOwner(s), fr -> fr.globalInitStatements);
+            }
+            prog.getGlobalInits().forEach((v, sets) -> {
+                for (ImSet s : sets) {
+                    if (s.getParent() == null) {
+                        addRoot(s, ownerOf(v.getTrace()), fr -> fr.otherRoots);
+                    }
+                }
+            });
+
+            // restored elements must not be changed by the translation of other owners
+            restoredRoots.forEach((root, owner) -> forEachNode(root, n -> {
+                if (!restoredToCached.containsKey(n)) {
+                    failed.add(owner);
+                }
+            }));
+
+            for (Pair<Element, PackageOrGlobal> copy : copies) {
+                PackageOrGlobal owner = copy.getB();
+                new ReferenceRewriter() {
+                    @Override
+                    @Nullable Element resolve(Element e) {
+                        return toCached(e, owner);
+                    }
+
+                    @Override
+                    @Nullable Element resolveSubMethod(ImMethod m) {
+                        return toCachedSubMethod(m, owner);
+                    }
+
+                    @Override
+                    void unresolved(Element e) {
+                        failed.add(owner);
+                    }
+                }.rewrite(copy.getA());
+            }
+            // sub methods are added to restored methods by the translation of other owners
+            for (ImClass c : prog.getClasses()) {
+                for (ImMethod m : c.getMethods()) {
+                    Element cached = restoredToCached.get(m);
+                    if (cached == null) {
+                        continue;
+                    }
+                    PackageOrGlobal owner = restoredOwners.get(m);
+                    List<ImMethod> subMethods = new ArrayList<>();
+                    for (ImMethod sub : m.getSubMethods()) {
+                        Element s = toCachedSubMethod(sub, owner);
+                        if (s == null) {
+                            failed.add(owner);
+                        } else {
+                            subMethods.add((ImMethod) s);
+                        }
+                    }
+                    ((ImMethod) cached).setSubMethods(subMethods);
+                }
+            }
+
+            prog.getGlobalInits().forEach(this::storeGlobalInit);
+            List<Map<? extends de.peeeq.wurstscript.ast.Element, ? extends Element>> maps = tr.getAstToImMaps();
+            for (int i = 0; i < maps.size(); i++) {
+                int index = i;
+                maps.get(i).forEach((k, v) -> storeEntry(k, v, fr -> fr.astToIm(index)));
+            }
+            tr.getTypeVars().forEach((k, v) -> storeEntry(k, v, fr -> fr.typeVariables));
+            for (ClassDef c : tr.getTranslatedClasses()) {
+                Fragment fragment = stored.get(ownerOf(c));
+                if (fragment != null) {
+                    fragment.translatedClasses.add(c);
+                }
+            }
+            ImFunction mainFunc = tr.getMainFunc();
+            Fragment mainFragment = mainFunc == null ? null : stored.get(liveOwner(mainFunc));
+            if (mainFragment != null) {
+                mainFragment.mainFunc = (ImFunction) toCached(mainFunc, liveOwner(mainFunc));
+            }
+            ImFunction configFunc = tr.getConfFunc();
+            Fragment configFragment = configFunc == null ? null : stored.get(liveOwner(configFunc));
+            if (configFragment != null) {
+                configFragment.configFunc = (ImFunction) toCached(configFunc, liveOwner(configFunc));
+            }
+
+            stored.forEach((owner, fragment) -> {
+                if (failed.contains(owner)) {
+                    fragments.remove(owner);
+                } else {
+                    fragments.put(owner, fragment);
+                }
+            });
+        }
+
+        /**
+         * restored statements are added before the translated ones,
+         * so the statements are brought back into the order of the compilation units
+         */
+        private void sortGlobalInitStatements(List<PackageOrGlobal> owners) {
+            Map<PackageOrGlobal, Integer> index = new HashMap<>();
+            for (int i = 0; i < owners.size(); i++) {
+                index.put(owners.get(i), i);
+            }
+            ImStmts body = tr.getGlobalInitFunc().getBody();
+            List<ImStmt> stmts = body.removeAll();
+            stmts.sort(Comparator.comparingInt(s -> index.getOrDefault(statementOwner(s), Integer.MAX_VALUE)));
+            body.addAll(stmts);
+        }
+
+        private <T extends Element> void addRoot(T root, @Nullable PackageOrGlobal owner, Function<Fragment, List<? super T>> list) {
+            if (owner == null
+                    || restoredToCached.containsKey(root)
+                    || newToCached.containsKey(root)
+                    || translatorFunctions.containsKey(root)) {
+                return;
+            }
+            Fragment fragment = stored.get(owner);
+            if (fragment == null) {
+                return;
+            }
+            @SuppressWarnings("unchecked")
+            T copy = (T) root.copy();
+            walk(root, copy, newToCached);
+            forEachNode(root, n -> newOwners.put(n, owner));
+            list.apply(fragment).add(copy);
+            copies.add(Pair.create(copy, owner));
+        }
+
+        private @Nullable PackageOrGlobal liveOwner(Element e) {
+            PackageOrGlobal owner = newOwners.get(e);
+            return owner != null ? owner : restoredOwners.get(e);
+        }
+
+        /**
+         * returns the stored copy of the given element and records
+         * that the given owner depends on the owner of the element
+         */
+        private @Nullable Element toCached(Element e, @Nullable PackageOrGlobal owner) {
+            Element cached = newToCached.get(e);
+            if (cached == null) {
+                cached = restoredToCached.get(e);
+            }
+            if (cached == null) {
+                String name = translatorFunctions.get(e);
+                return name == null ? null : placeholder(name);
+            }
+            PackageOrGlobal target = liveOwner(e);
+            Fragment fragment = stored.get(owner);
+            if (fragment != null && target != null && target != owner) {
+                fragment.dependencies.add(target);
+            }
+            return cached;
+        }
+
+        /**
+         * sub methods link both owners, so each one is translated again when the other one is
+         */
+        private @Nullable Element toCachedSubMethod(ImMethod m, @Nullable PackageOrGlobal owner) {
+            Element cached = toCached(m, owner);
+            Fragment subFragment = stored.get(liveOwner(m));
+            if (subFragment != null && owner != null && liveOwner(m) != owner) {
+                subFragment.dependencies.add(owner);
+            }
+            return cached;
+        }
+
+        private void storeGlobalInit(ImVar v, List<ImSet> sets) {
+            PackageOrGlobal owner = liveOwner(v);
+            Fragment fragment = stored.get(owner);
+            if (fragment == null) {
+                return;
+            }
+            Element cachedVar = toCached(v, owner);
+            List<ImSet> cachedSets = new ArrayList<>();
+            for (ImSet s : sets) {
+                Element cached = toCached(s, owner);
+                if (cached == null) {
+                    failed.add(owner);
+                    return;
+                }
+                cachedSets.add((ImSet) cached);
+            }
+            fragment.globalInits.put((ImVar) cachedVar, cachedSets);
+        }
+
+        /**
+         * stores an entry of a translator map in the fragment of the translated element
+         */
+        private <K extends de.peeeq.wurstscript.ast.Element, V extends Element> void storeEntry(K key, @Nullable V value, Function<Fragment, Map<? super K, ? super V>> map) {
+            if (value == null) {
+                return;
+            }
+            PackageOrGlobal owner = liveOwner(value);
+            Fragment fragment = stored.get(owner);
+            PackageOrGlobal keyOwner = ownerOf(key);
+            if (fragment == null) {
+                if (value.getParent() != null && keyOwner != null) {
+                    // the element is used, but cannot be restored
+                    failed.add(keyOwner);
+                }
+                return;
+            }
+            @SuppressWarnings("unchecked")
+            V cached = (V) toCached(value, owner);
+            map.apply(fragment).put(key, cached);
+            if (keyOwner != null && keyOwner != owner) {
+                fragment.dependencies.add(keyOwner);
+            }
+        }
+    }
+
+    private ImFunction placeholder(String name) {
+        return translatorFunctionPlaceholders.computeIfAbsent(name, n -> {
+            ImFunction f = JassIm.ImFunction(Ast.NoExpr(), n, JassIm.ImTypeVars(), JassIm.ImVars(), JassIm.ImVoid(),
+                    JassIm.ImVars(), JassIm.ImStmts(), new ArrayList<>());
+            placeholderNames.put(f, n);
+            return f;
+        });
+    }
+
+    /**
+     * Replaces the references of a copied element, which still point to the elements of the original.
+     * Lists which are shared between an element and its copy are replaced by new lists.
+     */
+    private static abstract class ReferenceRewriter extends Element.DefaultVisitor {
+
+        abstract @Nullable Element resolve(Element e);
+
+        abstract void unresolved(Element e);
+
+        @Nullable Element resolveSubMethod(ImMethod m) {
+            return resolve(m);
+        }
+
+        private final TypeRewriteMatcher typeRewriter = new TypeRewriteMatcher() {
+            @Override
+            public ImType case_ImClassType(ImClassType t) {
+                ImTypeArguments args = t.getTypeArguments()
+                        .stream()
+                        .map(ta -> {
+                            if (!ta.getTypeClassBinding().isEmpty()) {
+                                unresolved(ta);
+                            }
+                            return JassIm.ImTypeArgument(ta.getType().match(this), ta.getTypeClassBinding());
+                        })
+                        .collect(Collectors.toCollection(JassIm::ImTypeArguments));
+                return JassIm.ImClassType(ref(t.getClassDef()), args);
+            }
+
+            @Override
+            public ImType case_ImTypeVarRef(ImTypeVarRef t) {
+                return JassIm.ImTypeVarRef(ref(t.getTypeVariable()));
+            }
+        };
+
+        void rewrite(Element root) {
+            root.accept(this);
+            TypeRewriter.rewriteTypes(root, t -> t.match(typeRewriter));
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T extends Element> T ref(T e) {
+            Element r = resolve(e);
+            if (r == null) {
+                unresolved(e);
+                return e;
+            }
+            return (T) r;
+        }
+
+        @Override
+        public void visit(ImFunction e) {
+            super.visit(e);
+            e.setFlags(new ArrayList<>(e.getFlags()));
+        }
+
+        @Override
+        public void visit(ImMethod e) {
+            super.visit(e);
+            e.setImplementation(ref(e.getImplementation()));
+            List<ImMethod> subMethods = new ArrayList<>();
+            for (ImMethod m : e.getSubMethods()) {
+                Element r = resolveSubMethod(m);
+                if (r == null) {
+                    unresolved(m);
+                } else {
+                    subMethods.add((ImMethod) r);
+                }
+            }
+            e.setSubMethods(subMethods);
+        }
+
+        @Override
+        public void visit(ImVarargLoop e) {
+            super.visit(e);
+            e.setLoopVar(ref(e.getLoopVar()));
+        }
+
+        @Override
+        public void visit(ImVarAccess e) {
+            super.visit(e);
+            e.setVar(ref(e.getVar()));
+        }
+
+        @Override
+        public void visit(ImVarArrayAccess e) {
+            super.visit(e);
+            e.setVar(ref(e.getVar()));
+        }
+
+        @Override
+        public void visit(ImMemberAccess e) {
+            super.visit(e);
+            e.setVar(ref(e.getVar()));
+        }
+
+        @Override
+        public void visit(ImMethodCall e) {
+            super.visit(e);
+            e.setMethod(ref(e.getMethod()));
+        }
+
+        @Override
+        public void visit(ImFunctionCall e) {
+            super.visit(e);
+            e.setFunc(ref(e.getFunc()));
+        }
+
+        @Override
+        public void visit(ImFuncRef e) {
+            super.visit(e);
+            e.setFunc(ref(e.getFunc()));
+        }
+
+        @Override
+        public void visit(ImTypeVarDispatch e) {
+            super.visit(e);
+            e.setTypeClassFunc(ref(e.getTypeClassFunc()));
+            e.setTypeVariable(ref(e.getTypeVariable()));
+        }
+
+        @Override
+        public void visit(ImTypeArgument e) {
+            super.visit(e);
+            if (!e.getTypeClassBinding().isEmpty()) {
+                unresolved(e);
+            }
+        }
+    }
+
+    /**
+     * the order of compiletime functions and expressions is calculated again for every translation
+     */
+    private static void refreshCompiletimeOrder(Element root, ImTranslator tr) {
+        root.accept(new Element.DefaultVisitor() {
+            @Override
+            public void visit(ImFunction e) {
+                super.visit(e);
+                if (e.getTrace() instanceof TranslatedToImFunction) {
+                    FunctionFlagCompiletime flag = tr.getCompiletimeFlag((TranslatedToImFunction) e.getTrace());
+                    if (flag != null) {
+                        e.setFlags(e.getFlags().stream()
+                                .map(f -> f instanceof FunctionFlagCompiletime ? flag : f)
+                                .collect(Collectors.toList()));
+                    }
+                }
+            }
+
+            @Override
+            public void visit(ImCompiletimeExpr e) {
+                super.visit(e);
+                if (e.getTrace() instanceof FunctionCall) {
+                    e.setExecutionOrderIndex(tr.getCompiletimeExpressionsOrder((FunctionCall) e.getTrace()));
+                }
+            }
+        });
+    }
+
+    private static void walk(Element original, Element copy, Map<Element, Element> result) {
+        Preconditions.checkArgument(original.size() == copy.size());
+        result.put(original, copy);
+        for (int i = 0; i < original.size(); i++) {
+            walk(original.get(i), copy.get(i), result);
+        }
+    }
+
+    private static void forEachNode(Element e, Consumer<Element> action) {
+        action.accept(e);
+        for (int i = 0; i < e.size(); i++) {
+            forEachNode(e.get(i), action);
+        }
+    }
+
+    private static List<PackageOrGlobal> owners(WurstModel model) {
+        List<PackageOrGlobal> result = new ArrayList<>();
+        for (CompilationUnit cu : model) {
+            result.add(cu);
+            result.addAll(cu.getPackages());
+        }
+        return result;
+    }
+
+    private static Map<PackageOrGlobal, List<ClassDef>> classesByOwner(WurstModel model) {
+        Map<PackageOrGlobal, List<ClassDef>> result = new HashMap<>();
+        for (CompilationUnit cu : model) {
+            for (ClassDef c : cu.attrGetByType().classes) {
+                PackageOrGlobal owner = ownerOf(c);
+                if (owner != null) {
+                    result.computeIfAbsent(owner, o -> new ArrayList<>()).add(c);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * the package or compilation unit containing the given element,
+     * elements from modules belong to the package where they are used
+     */
+    static @Nullable PackageOrGlobal ownerOf(de.peeeq.wurstscript.ast.@Nullable Element e) {
+        while (e != null) {
+            if (e instanceof PackageOrGlobal) {
+                return (PackageOrGlobal) e;
+            }
+            e = e.getParent();
+        }
+        return null;
+    }
+
+    /**
+     * statements of the global init function belong to the initialized variable
+     */
+    private static @Nullable PackageOrGlobal statementOwner(ImStmt s) {
+        PackageOrGlobal owner = s instanceof ElementWithTrace ? ownerOf(((ElementWithTrace) s).getTrace()) : null;
+        if (owner == null && s instanceof ImSet) {
+            ImLExpr left = ((ImSet) s).getLeft();
+            if (left instanceof ImVarAccess) {
+                owner = ownerOf(((ImVarAccess) left).getVar().getTrace());
+            } else if (left instanceof ImVarArrayAccess) {
+                owner = ownerOf(((ImVarArrayAccess) left).getVar().getTrace());
+            }
+        }
+        return owner;
+    }
+}
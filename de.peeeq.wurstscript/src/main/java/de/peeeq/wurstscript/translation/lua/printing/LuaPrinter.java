@@ -3,6 +3,9 @@ package de.peeeq.wurstscript.translation.lua.printing;
 import de.peeeq.wurstscript.luaAst.*;
 import de.peeeq.wurstscript.utils.Utils;
 
+import java.io.IOException;
+import java.io.Writer;
+
 public class LuaPrinter {
 
     public static void print(LuaAssignment s, StringBuilder sb, int indent) {
@@ -15,28 +18,57 @@ public class LuaPrinter {
         sb.append("break");
     }
 
+    /** when printing to a writer, the buffer is written whenever it gets larger than this */
+    private static final int FLUSH_SIZE = 1 << 16;
+
     public static void print(LuaCompilationUnit cu, StringBuilder sb, int indent) {
         boolean statementBlock = false;
         for (LuaStatement d : cu) {
-            if (d instanceof LuaVariable) {
-                // don't translate global variables as locals:
-                printVariable((LuaVariable) d, sb, indent);
-                sb.append("\n");
-                statementBlock = true;
-            } else if(d instanceof LuaAssignment) {
-                // these are top level assignments that are not inside functions
-                d.print(sb, indent);
+            statementBlock = printTopLevel(d, sb, indent, statementBlock);
+        }
+    }
+
+    /**
+     * prints the compilation unit to the given writer,
+     * only a few top level statements are kept in memory at a time
+     */
+    public static void print(LuaCompilationUnit cu, Writer out) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        boolean statementBlock = false;
+        for (LuaStatement d : cu) {
+            statementBlock = printTopLevel(d, sb, 0, statementBlock);
+            if (sb.length() >= FLUSH_SIZE) {
+                out.append(sb);
+                sb.setLength(0);
+            }
+        }
+        out.append(sb);
+    }
+
+    /**
+     * prints a top level statement
+     *
+     * @return true, if the statement is part of a block of variables and assignments
+     */
+    private static boolean printTopLevel(LuaStatement d, StringBuilder sb, int indent, boolean statementBlock) {
+        if (d instanceof LuaVariable) {
+            // don't translate global variables as locals:
+            printVariable((LuaVariable) d, sb, indent);
+            sb.append("\n");
+            return true;
+        } else if(d instanceof LuaAssignment) {
+            // these are top level assignments that are not inside functions
+            d.print(sb, indent);
+            sb.append("\n");
+            return true;
+        } else {
+            // every other statement is considered a block and has an empty line after it
+            if(statementBlock) {
                 sb.append("\n");
-                statementBlock = true;
-            } else {
-                // every other statement is considered a block and has an empty line after it
-                if(statementBlock) {
-                    sb.append("\n");
-                }
-                d.print(sb, indent);
-                sb.append("\n\n");
-                statementBlock = false;
             }
+            d.print(sb, indent);
+            sb.append("\n\n");
+            return false;
         }
     }
 
@@ -171,7 +171,7 @@ public class LuaTranslator {
     public LuaCompilationUnit translate() {
         collectPredefinedNames();
 
-        RemoveGarbage.removeGarbage(prog);
+        RemoveGarbage.removeGarbage(prog, imTr.getProtectedVariables());
         prog.flatten(imTr);
 
 
@@ -3,7 +3,6 @@ package de.peeeq.wurstscript.translation.lua.translation;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 import de.peeeq.wurstscript.jassIm.*;
-import de.peeeq.wurstscript.validation.TRVEHelper;
 import de.peeeq.wurstscript.translation.imtranslation.ImHelper;
 
 
@@ -75,7 +74,7 @@ public class RemoveGarbage {
         }
     }
 
-    public static void removeGarbage(ImProg prog) {
+    public static void removeGarbage(ImProg prog, Set<String> protectedVariables) {
         Used used = new Used();
         for (ImFunction f : ImHelper.calculateFunctionsOfProg(prog)) {
             if (f.getName().equals("main")
@@ -85,7 +84,7 @@ public class RemoveGarbage {
         }
 
         prog.getClasses().removeIf(c -> !used.getClasses().contains(c));
-        prog.getGlobals().removeIf(g -> !used.getVars().contains(g) && !TRVEHelper.protectedVariables.contains(g.getName()));
+        prog.getGlobals().removeIf(g -> !used.getVars().contains(g) && !protectedVariables.contains(g.getName()));
         prog.getFunctions().removeIf(f -> !used.getFunctions().contains(f));
         for (ImClass c : prog.getClasses()) {
             c.getFields().removeIf(g -> !used.getVars().contains(g));
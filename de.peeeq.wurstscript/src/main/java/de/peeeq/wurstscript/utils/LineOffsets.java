@@ -1,5 +1,7 @@
 package de.peeeq.wurstscript.utils;
 
+import java.util.Arrays;
+
 public class LineOffsets {
     int[] offsets = new int[128];
     int maxLine = 0;
@@ -60,4 +62,19 @@ public class LineOffsets {
         int line = getLine(offset);
         return offset - get(line - 1);
     }
+
+    /**
+     * returns the raw offsets of all lines, can be restored with {@link #fromArray(int[])}
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(offsets, maxLine + 1);
+    }
+
+    public static LineOffsets fromArray(int[] lineOffsets) {
+        LineOffsets result = new LineOffsets();
+        for (int line = 0; line < lineOffsets.length; line++) {
+            result.set(line, lineOffsets[line]);
+        }
+        return result;
+    }
 }
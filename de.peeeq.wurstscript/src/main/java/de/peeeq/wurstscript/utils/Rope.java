@@ -0,0 +1,427 @@
+package de.peeeq.wurstscript.utils;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable text, stored as a balanced tree of small strings.
+ *
+ * Replacing a range returns a new rope in O(log n) and shares all unchanged parts with the old one,
+ * so every version of a document can be used as a cheap snapshot.
+ * Each node also counts the line breaks below it, so that line and column positions
+ * can be mapped to offsets in O(log n).
+ */
+public final class Rope implements CharSequence {
+    /** maximum length of the strings in the leaves */
+    static final int MAX_LEAF = 512;
+
+    public static final Rope EMPTY = new Rope("");
+
+    private final @Nullable String leaf;
+    private final @Nullable Rope left;
+    private final @Nullable Rope right;
+    private final int length;
+    private final int newlines;
+    private final int height;
+    // caches, the rope is immutable:
+    private int hash;
+    private @Nullable String string;
+
+    private Rope(String leaf) {
+        this.leaf = leaf;
+        this.left = null;
+        this.right = null;
+        this.length = leaf.length();
+        int n = 0;
+        for (int i = 0; i < leaf.length(); i++) {
+            if (leaf.charAt(i) == '\n') {
+                n++;
+            }
+        }
+        this.newlines = n;
+        this.height = 0;
+    }
+
+    private Rope(Rope left, Rope right) {
+        this.leaf = null;
+        this.left = left;
+        this.right = right;
+        this.length = left.length + right.length;
+        this.newlines = left.newlines + right.newlines;
+        this.height = 1 + Math.max(left.height, right.height);
+    }
+
+    public static Rope of(CharSequence s) {
+        if (s instanceof Rope) {
+            return (Rope) s;
+        }
+        if (s.length() == 0) {
+            return EMPTY;
+        }
+        return build(s, 0, s.length());
+    }
+
+    private static Rope build(CharSequence s, int start, int end) {
+        if (end - start <= MAX_LEAF) {
+            return new Rope(s.subSequence(start, end).toString());
+        }
+        int mid = start + (end - start) / 2;
+        return new Rope(build(s, start, mid), build(s, mid, end));
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+        Rope r = this;
+        while (r.leaf == null) {
+            Rope l = left(r);
+            if (index < l.length) {
+                r = l;
+            } else {
+                index -= l.length;
+                r = right(r);
+            }
+        }
+        return r.leaf.charAt(index);
+    }
+
+    @Override
+    public Rope subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("range " + start + " - " + end + ", length " + length);
+        }
+        return prefix(end).suffix(start);
+    }
+
+    /**
+     * returns a new rope, where the characters from start (inclusive) to end (exclusive) are replaced by the given text
+     */
+    public Rope replace(int start, int end, CharSequence text) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("range " + start + " - " + end + ", length " + length);
+        }
+        return concat(concat(prefix(start), of(text)), suffix(end));
+    }
+
+    /**
+     * the first n characters
+     */
+    private Rope prefix(int n) {
+        if (n <= 0) {
+            return EMPTY;
+        } else if (n >= length) {
+            return this;
+        } else if (leaf != null) {
+            return new Rope(leaf.substring(0, n));
+        }
+        Rope l = left(this);
+        if (n <= l.length) {
+            return l.prefix(n);
+        }
+        return concat(l, right(this).prefix(n - l.length));
+    }
+
+    /**
+     * the characters starting at index n
+     */
+    private Rope suffix(int n) {
+        if (n <= 0) {
+            return this;
+        } else if (n >= length) {
+            return EMPTY;
+        } else if (leaf != null) {
+            return new Rope(leaf.substring(n));
+        }
+        Rope l = left(this);
+        if (n >= l.length) {
+            return right(this).suffix(n - l.length);
+        }
+        return concat(l.suffix(n), right(this));
+    }
+
+    /**
+     * concatenates two ropes, keeping the tree balanced like an AVL tree
+     */
+    public static Rope concat(Rope a, Rope b) {
+        if (a.length == 0) {
+            return b;
+        } else if (b.length == 0) {
+            return a;
+        } else if (a.leaf != null && b.leaf != null && a.length + b.length <= MAX_LEAF) {
+            return new Rope(a.leaf + b.leaf);
+        } else if (a.height > b.height + 1) {
+            return balance(left(a), concat(right(a), b));
+        } else if (b.height > a.height + 1) {
+            return balance(concat(a, left(b)), right(b));
+        }
+        return new Rope(a, b);
+    }
+
+    /**
+     * creates a node for left and right, whose heights differ by at most 2
+     */
+    private static Rope balance(Rope l, Rope r) {
+        if (l.height > r.height + 1) {
+            Rope ll = left(l);
+            Rope lr = right(l);
+            if (ll.height >= lr.height) {
+                return new Rope(ll, new Rope(lr, r));
+            }
+            return new Rope(new Rope(ll, left(lr)), new Rope(right(lr), r));
+        } else if (r.height > l.height + 1) {
+            Rope rl = left(r);
+            Rope rr = right(r);
+            if (rr.height >= rl.height) {
+                return new Rope(new Rope(l, rl), rr);
+            }
+            return new Rope(new Rope(l, left(rl)), new Rope(right(rl), rr));
+        }
+        return new Rope(l, r);
+    }
+
+    private static Rope left(Rope r) {
+        Rope l = r.left;
+        if (l == null) {
+            throw new IllegalStateException("leaf has no children");
+        }
+        return l;
+    }
+
+    private static Rope right(Rope r) {
+        Rope l = r.right;
+        if (l == null) {
+            throw new IllegalStateException("leaf has no children");
+        }
+        return l;
+    }
+
+    /**
+     * the number of lines, which is the number of line breaks plus one
+     */
+    public int getLineCount() {
+        return newlines + 1;
+    }
+
+    /**
+     * the offset of the first character in the given line (lines start at 0)
+     */
+    public int getLineStart(int line) {
+        if (line <= 0) {
+            return 0;
+        } else if (line > newlines) {
+            return length;
+        }
+        return offsetAfterNewline(line);
+    }
+
+    /**
+     * the offset after the n-th line break (n >= 1 and n <= newlines)
+     */
+    private int offsetAfterNewline(int n) {
+        Rope r = this;
+        int offset = 0;
+        while (r.leaf == null) {
+            Rope l = left(r);
+            if (n <= l.newlines) {
+                r = l;
+            } else {
+                n -= l.newlines;
+                offset += l.length;
+                r = right(r);
+            }
+        }
+        String s = r.leaf;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '\n') {
+                n--;
+                if (n == 0) {
+                    return offset + i + 1;
+                }
+            }
+        }
+        throw new IllegalStateException("line break not found");
+    }
+
+    /**
+     * the offset of a position given as line and character (both starting at 0).
+     * Characters after the end of the line are mapped to the end of the line,
+     * lines after the end of the text are mapped to the end of the text.
+     */
+    public int getOffset(int line, int character) {
+        if (line > newlines) {
+            return length;
+        }
+        int start = getLineStart(line);
+        int end = line < newlines ? offsetAfterNewline(line + 1) - 1 : length;
+        return Math.min(start + Math.max(character, 0), end);
+    }
+
+    /**
+     * the strings stored in the leaves, in order. Concatenated they give the whole text.
+     */
+    public List<String> getChunks() {
+        List<String> result = new ArrayList<>();
+        addChunks(result);
+        return result;
+    }
+
+    private void addChunks(List<String> result) {
+        if (leaf != null) {
+            if (!leaf.isEmpty()) {
+                result.add(leaf);
+            }
+        } else {
+            left(this).addChunks(result);
+            right(this).addChunks(result);
+        }
+    }
+
+    /**
+     * the offsets of the line breaks in the format created by the lexer,
+     * where lines start at 1 and the end of the text is stored for the last line
+     */
+    public LineOffsets getLineOffsets() {
+        LineOffsets result = new LineOffsets();
+        int line = 1;
+        int offset = 0;
+        for (String chunk : getChunks()) {
+            for (int i = 0; i < chunk.length(); i++) {
+                if (chunk.charAt(i) == '\n') {
+                    result.set(line, offset + i);
+                    line++;
+                }
+            }
+            offset += chunk.length();
+        }
+        result.set(line, length);
+        return result;
+    }
+
+    /**
+     * the length of the longest common prefix of two ropes.
+     * Parts, which are shared between the ropes, are skipped without comparing the characters.
+     */
+    public static int commonPrefixLength(Rope a, Rope b) {
+        List<String> as = a.getChunks();
+        List<String> bs = b.getChunks();
+        int ai = 0, bi = 0, ao = 0, bo = 0;
+        int result = 0;
+        while (ai < as.size() && bi < bs.size()) {
+            String ac = as.get(ai);
+            String bc = bs.get(bi);
+            if (ao == 0 && bo == 0 && ac == bc) {
+                result += ac.length();
+                ai++;
+                bi++;
+                continue;
+            }
+            if (ac.charAt(ao) != bc.charAt(bo)) {
+                break;
+            }
+            result++;
+            if (++ao == ac.length()) {
+                ai++;
+                ao = 0;
+            }
+            if (++bo == bc.length()) {
+                bi++;
+                bo = 0;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * the length of the longest common suffix of two ropes, which is not longer than max
+     */
+    public static int commonSuffixLength(Rope a, Rope b, int max) {
+        List<String> as = a.getChunks();
+        List<String> bs = b.getChunks();
+        int ai = as.size() - 1, bi = bs.size() - 1;
+        // number of characters already compared in the current chunks
+        int ao = 0, bo = 0;
+        int result = 0;
+        while (ai >= 0 && bi >= 0 && result < max) {
+            String ac = as.get(ai);
+            String bc = bs.get(bi);
+            if (ao == 0 && bo == 0 && ac == bc && result + ac.length() <= max) {
+                result += ac.length();
+                ai--;
+                bi--;
+                continue;
+            }
+            if (ac.charAt(ac.length() - 1 - ao) != bc.charAt(bc.length() - 1 - bo)) {
+                break;
+            }
+            result++;
+            if (++ao == ac.length()) {
+                ai--;
+                ao = 0;
+            }
+            if (++bo == bc.length()) {
+                bi--;
+                bo = 0;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * the height of the tree, where leaves have height 0
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public String toString() {
+        String s = string;
+        if (s == null) {
+            StringBuilder sb = new StringBuilder(length);
+            for (String chunk : getChunks()) {
+                sb.append(chunk);
+            }
+            s = sb.toString();
+            string = s;
+        }
+        return s;
+    }
+
+    /**
+     * the same hash code as the hash code of {@link #toString()}
+     */
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0 && length > 0) {
+            for (String chunk : getChunks()) {
+                for (int i = 0; i < chunk.length(); i++) {
+                    h = 31 * h + chunk.charAt(i);
+                }
+            }
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Rope)) {
+            return false;
+        }
+        Rope other = (Rope) obj;
+        return length == other.length && hashCode() == other.hashCode() && toString().equals(other.toString());
+    }
+}
@@ -25,6 +25,7 @@ import java.io.*;
 import java.time.Duration;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.TimeUnit;
 import java.util.function.*;
 import java.util.stream.Collector;
@@ -1102,7 +1103,15 @@ public class Utils {
 
     }
 
-
-
-
+    /**
+     * Throws a CancellationException when the current thread was interrupted.
+     * Long running requests call this, so that cancelled requests stop early.
+     * It must only be called where no attribute is being computed,
+     * because stopping in the middle of an attribute computation would leave the attribute caches inconsistent.
+     */
+    public static void checkInterrupted() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("interrupted");
+        }
+    }
 }
@@ -1,7 +1,69 @@
 package de.peeeq.wurstscript.validation;
 
+import de.peeeq.wurstscript.ast.*;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 public class TRVEHelper {
-    public static final HashSet<String> protectedVariables = new HashSet<>();
+
+    /**
+     * Returns the function containing the given call of TriggerRegisterVariableEvent,
+     * if it is a two line hook which just passes its parameters to TriggerRegisterVariableEvent.
+     */
+    public static @Nullable FunctionImplementation getHookWrapper(ExprFunctionCall e) {
+        if (e.getArgs().size() <= 1 || !(e.getArgs().get(1) instanceof ExprVarAccess)) {
+            return null;
+        }
+        // Check if this is a two line hook... thanks Bribe
+        @Nullable FunctionImplementation nearestFunc = e.attrNearestFuncDef();
+        if (nearestFunc == null) {
+            return null;
+        }
+        WStatements fbody = nearestFunc.getBody();
+        if (e.getParent() instanceof StmtReturn && fbody.size() <= 4 && fbody.get(fbody.size() - 2).structuralEquals(e.getParent())) {
+            WParameters params = nearestFunc.getParameters();
+            if (params.size() == 4 && ((TypeExprSimple) params.get(0).getTyp()).getTypeName().equals("trigger")
+                && ((TypeExprSimple) params.get(1).getTyp()).getTypeName().equals("string")
+                && ((TypeExprSimple) params.get(2).getTyp()).getTypeName().equals("limitop")
+                && ((TypeExprSimple) params.get(3).getTyp()).getTypeName().equals("real")) {
+                return nearestFunc;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Collects the names of the variables used in calls of TriggerRegisterVariableEvent (or of a hook wrapper),
+     * which must not be removed or renamed by the optimizer.
+     * Errors for non-constant arguments are reported by the validator.
+     */
+    public static Set<String> collectProtectedVariables(WurstModel model) {
+        Set<String> wrappers = new HashSet<>();
+        List<ExprFunctionCall> calls = new ArrayList<>();
+        model.accept(new WurstModel.DefaultVisitor() {
+            @Override
+            public void visit(ExprFunctionCall e) {
+                super.visit(e);
+                calls.add(e);
+                if (e.getFuncName().equals("TriggerRegisterVariableEvent")) {
+                    FunctionImplementation wrapper = getHookWrapper(e);
+                    if (wrapper != null) {
+                        wrappers.add(wrapper.getName());
+                    }
+                }
+            }
+        });
+        Set<String> protectedVariables = new HashSet<>();
+        for (ExprFunctionCall call : calls) {
+            if ((call.getFuncName().equals("TriggerRegisterVariableEvent") || wrappers.contains(call.getFuncName()))
+                && call.getArgs().size() > 1 && call.getArgs().get(1) instanceof ExprStringVal) {
+                protectedVariables.add(((ExprStringVal) call.getArgs().get(1)).getValS());
+            }
+        }
+        return protectedVariables;
+    }
 }
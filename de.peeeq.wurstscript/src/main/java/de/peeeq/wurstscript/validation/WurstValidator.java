@@ -91,7 +91,6 @@ public class WurstValidator {
                 wrapperCalls.get(wrapper).forEach(call -> {
                     if (call.getArgs().size() > 1 && call.getArgs().get(1) instanceof ExprStringVal) {
                         ExprStringVal varName = (ExprStringVal) call.getArgs().get(1);
-                        TRVEHelper.protectedVariables.add(varName.getValS());
                         WLogger.info("keep: " + varName.getValS());
                     } else {
                         call.addError("Map contains TriggerRegisterVariableEvent with non-constant arguments. Can't be optimized.");
@@ -2058,24 +2057,14 @@ public class WurstValidator {
             if (e.getArgs().size() > 1) {
                 if (e.getArgs().get(1) instanceof ExprStringVal) {
                     ExprStringVal varName = (ExprStringVal) e.getArgs().get(1);
-                    TRVEHelper.protectedVariables.add(varName.getValS());
                     WLogger.info("keep: " + varName.getValS());
                     return;
                 } else if (e.getArgs().get(1) instanceof ExprVarAccess) {
-                    // Check if this is a two line hook... thanks Bribe
-                    ExprVarAccess varAccess = (ExprVarAccess) e.getArgs().get(1);
-                    @Nullable FunctionImplementation nearestFunc = e.attrNearestFuncDef();
-                    WStatements fbody = nearestFunc.getBody();
-                    if (e.getParent() instanceof StmtReturn && fbody.size() <= 4 && fbody.get(fbody.size() - 2).structuralEquals(e.getParent())) {
-                        WParameters params = nearestFunc.getParameters();
-                        if (params.size() == 4 && ((TypeExprSimple) params.get(0).getTyp()).getTypeName().equals("trigger")
-                            && ((TypeExprSimple) params.get(1).getTyp()).getTypeName().equals("string")
-                            && ((TypeExprSimple) params.get(2).getTyp()).getTypeName().equals("limitop")
-                            && ((TypeExprSimple) params.get(3).getTyp()).getTypeName().equals("real")) {
-                            trveWrapperFuncs.add(nearestFunc.getName());
-                            WLogger.info("found wrapper: " + nearestFunc.getName());
-                            return;
-                        }
+                    @Nullable FunctionImplementation wrapper = TRVEHelper.getHookWrapper(e);
+                    if (wrapper != null) {
+                        trveWrapperFuncs.add(wrapper.getName());
+                        WLogger.info("found wrapper: " + wrapper.getName());
+                        return;
                     }
                 }
             } else {
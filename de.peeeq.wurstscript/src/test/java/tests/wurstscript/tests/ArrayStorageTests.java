@@ -0,0 +1,54 @@
+package tests.wurstscript.tests;
+
+import de.peeeq.wurstscript.intermediatelang.*;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ArrayStorageTests {
+
+    @Test
+    public void intDefaults() {
+        ILconstArray ar = new ILconstArray(Integer.MAX_VALUE, () -> ILconstInt.create(0));
+        ar.set(3, ILconstInt.create(42));
+        Assert.assertEquals(((ILconstInt) ar.get(3)).getVal(), 42);
+        Assert.assertEquals(((ILconstInt) ar.get(2)).getVal(), 0);
+        Assert.assertEquals(((ILconstInt) ar.get(1000)).getVal(), 0);
+    }
+
+    @Test
+    public void fillJassLimit() {
+        ILconstArray ar = new ILconstArray(Integer.MAX_VALUE, () -> new ILconstReal(0));
+        for (int i = 0; i < ArrayStorage.DENSE_LIMIT; i++) {
+            ar.set(i, new ILconstReal(i));
+        }
+        Assert.assertEquals(((ILconstReal) ar.get(12345)).getVal(), 12345f);
+        Assert.assertEquals(((ILconstReal) ar.get(ArrayStorage.DENSE_LIMIT - 1)).getVal(), (float) ArrayStorage.DENSE_LIMIT - 1);
+    }
+
+    @Test
+    public void sparseIndexes() {
+        ILconstArray ar = new ILconstArray(Integer.MAX_VALUE, () -> ILconstBool.FALSE);
+        ar.set(1_000_000_000, ILconstBool.TRUE);
+        Assert.assertTrue(((ILconstBool) ar.get(1_000_000_000)).getVal());
+        Assert.assertFalse(((ILconstBool) ar.get(999_999_999)).getVal());
+        Assert.assertEquals(ar.print(), "[999999999: false, 1000000000: true]");
+    }
+
+    @Test
+    public void otherValuesInIntArray() {
+        // e.g. objects stored in an array of integers
+        ILconstArray ar = new ILconstArray(Integer.MAX_VALUE, () -> ILconstInt.create(0));
+        ar.set(0, ILconstInt.create(7));
+        ar.set(1, new ILconstString("x"));
+        Assert.assertEquals(((ILconstInt) ar.get(0)).getVal(), 7);
+        Assert.assertEquals(((ILconstString) ar.get(1)).getVal(), "x");
+        Assert.assertEquals(((ILconstInt) ar.get(2)).getVal(), 0);
+    }
+
+    @Test
+    public void nestedArraysAreStored() {
+        ILconstArray ar = new ILconstArray(10, () -> new ILconstArray(Integer.MAX_VALUE, () -> ILconstInt.create(0)));
+        ((ILconstArray) ar.get(4)).set(2, ILconstInt.create(5));
+        Assert.assertEquals(((ILconstInt) ((ILconstArray) ar.get(4)).get(2)).getVal(), 5);
+    }
+}
@@ -0,0 +1,96 @@
+package tests.wurstscript.tests;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import de.peeeq.wurstio.compilationserver.WurstServer;
+import de.peeeq.wurstio.utils.FileUtils;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertTrue;
+
+public class CompilationServerTests {
+
+    @Test
+    public void concurrentSessionsKeepTheirProtectedVariables() throws Exception {
+        File projectA = createProject("serverProjectA", "varA");
+        File projectB = createProject("serverProjectB", "varB");
+        WurstServer server = new WurstServer();
+        server.setPrinter(s -> {
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < 3; round++) {
+                Future<String> a = executor.submit(() -> cleanAndCompile(server, projectA));
+                Future<String> b = executor.submit(() -> cleanAndCompile(server, projectB));
+                assertSuccess(a.get());
+                assertSuccess(b.get());
+                // with -opt all globals are renamed, except for the ones used by TriggerRegisterVariableEvent
+                assertTrue(output(projectA).contains("real varA"));
+                assertTrue(output(projectB).contains("real varB"));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private File createProject(String name, String varName) throws IOException {
+        File projectFolder = new File("./temp/" + name + "/");
+        File wurstFolder = new File(projectFolder, "wurst");
+        FileUtils.deleteRecursively(projectFolder);
+        Files.createDirectories(wurstFolder.toPath());
+
+        FileUtils.write("-opt\n-noPJass\n", new File(projectFolder, "wurst_run.args"));
+        FileUtils.write("package Wurst\n", new File(wurstFolder, "Wurst.wurst"));
+        FileUtils.write(String.join("\n",
+                "globals",
+                "real " + varName + " = 0.",
+                "endglobals",
+                "function register takes nothing returns nothing",
+                "    call TriggerRegisterVariableEvent(CreateTrigger(), \"" + varName + "\", EQUAL, 1.)",
+                "endfunction",
+                ""), new File(wurstFolder, "vars.j"));
+        FileUtils.write(String.join("\n",
+                "package Test",
+                "init",
+                "    register()",
+                ""), new File(wurstFolder, "Test.wurst"));
+        return projectFolder;
+    }
+
+    private String cleanAndCompile(WurstServer server, File projectFolder) throws IOException {
+        StringWriter out = new StringWriter();
+        PrintWriter writer = new PrintWriter(out, true);
+        server.handleRequest(request("clean", projectFolder), writer);
+        server.handleRequest(request("compile", projectFolder), writer);
+        return out.toString();
+    }
+
+    private String request(String command, File projectFolder) throws IOException {
+        JsonObject request = new JsonObject();
+        request.addProperty("command", command);
+        request.addProperty("workspaceRoot", projectFolder.getCanonicalPath());
+        request.add("args", new JsonArray());
+        return request.toString();
+    }
+
+    private void assertSuccess(String answers) {
+        String[] lines = answers.trim().split("\n");
+        String done = lines[lines.length - 1];
+        assertTrue(done.contains("\"success\":true"), answers);
+    }
+
+    private String output(File projectFolder) throws IOException {
+        return new String(Files.readAllBytes(new File(projectFolder, "_build/compiled.j.txt").toPath()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,12 @@
+package tests.wurstscript.tests;
+
+/**
+ * runs the {@link CompiletimeTests} with the compiled execution engine of the interpreter
+ */
+public class CompiledCompiletimeTests extends CompiletimeTests {
+
+    @Override
+    protected boolean useCompiledInterpreter() {
+        return true;
+    }
+}
@@ -0,0 +1,206 @@
+package tests.wurstscript.tests;
+
+import org.testng.annotations.Test;
+
+/**
+ * runs programs with the compiled execution engine of the interpreter
+ */
+public class CompiledInterpreterTests extends WurstScriptTest {
+
+    @Override
+    protected boolean useCompiledInterpreter() {
+        return true;
+    }
+
+    @Test
+    public void loops() {
+        testAssertOkLines(true,
+            "package test",
+            "native testSuccess()",
+            "init",
+            "    var sum = 0",
+            "    for i = 1 to 10",
+            "        if i mod 2 == 0",
+            "            sum += i",
+            "    var j = 0",
+            "    while true",
+            "        j++",
+            "        if j > 5",
+            "            break",
+            "    if sum == 30 and j == 6",
+            "        testSuccess()"
+        );
+    }
+
+    @Test
+    public void returnInNestedLoop() {
+        testAssertOkLines(true,
+            "package test",
+            "native testSuccess()",
+            "function find(int x) returns int",
+            "    for i = 0 to 10",
+            "        for j = 0 to 10",
+            "            if i * j == x",
+            "                return i * 100 + j",
+            "    return -1",
+            "init",
+            "    if find(12) == 206 and find(1000) == -1",
+            "        testSuccess()"
+        );
+    }
+
+    @Test
+    public void recursion() {
+        testAssertOkLines(true,
+            "package test",
+            "native testSuccess()",
+            "function fib(int n) returns int",
+            "    if n <= 1",
+            "        return n",
+            "    return fib(n - 1) + fib(n - 2)",
+            "init",
+            "    if fib(15) == 610",
+            "        testSuccess()"
+        );
+    }
+
+    @Test
+    public void integerOperators() {
+        testAssertOkLines(true,
+            "package test",
+            "native testSuccess()",
+            "init",
+            "    int a = -7",
+            "    int b = 3",
+            "    if a mod b == 2 and a div b == -2 and a * b == -21 and a != b and a < b",
+            "        testSuccess()"
+        );
+    }
+
+    @Test
+    public void arrays() {
+        testAssertOkLines(true,
+            "package test",
+            "native testSuccess()",
+            "int array xs",
+            "init",
+            "    int array ys",
+            "    for i = 0 to 9",
+            "        xs[i] = i * i",
+            "        ys[i] = xs[i] + 1",
+            "    if xs[9] == 81 and ys[3] == 10 and xs[10] == 0",
+            "        testSuccess()"
+        );
+    }
+
+    @Test
+    public void tuples() {
+        testAssertOkLines(true,
+            "package test",
+            "native testSuccess()",
+            "tuple vec(real x, real y)",
+            "function swap(vec v) returns vec",
+            "    return vec(v.y, v.x)",
+            "init",
+            "    vec v = vec(1, 2)",
+            "    v.x = 3",
+            "    v = swap(v)",
+            "    if v.x == 2 and v.y == 3",
+            "        testSuccess()"
+        );
+    }
+
+    @Test
+    public void dynamicDispatch() {
+        testAssertOkLines(true,
+            "package test",
+            "native testSuccess()",
+            "class A",
+            "    int x = 1",
+            "    function get() returns int",
+            "        return x",
+            "class B extends A",
+            "    override function get() returns int",
+            "        return x + 10",
+            "init",
+            "    A a = new B",
+            "    a.x = 5",
+            "    if a.get() == 15 and (new A).get() == 1",
+            "        testSuccess()"
+        );
+    }
+
+    @Test
+    public void varargs() {
+        testAssertOkLines(true,
+            "package test",
+            "native testSuccess()",
+            "function sum(vararg int ints) returns int",
+            "    var s = 0",
+            "    for i in ints",
+            "        if i < 0",
+            "            return -1",
+            "        s += i",
+            "    return s",
+            "init",
+            "    if sum(1, 2, 3, 4) == 10 and sum(1, -2, 3) == -1",
+            "        testSuccess()"
+        );
+    }
+
+    @Test
+    public void compiletimeFunctions() {
+        testAssertOkLines(true,
+            "package test",
+            "native testSuccess()",
+            "function square(int x) returns int",
+            "    return x * x",
+            "constant y = compiletime(square(7))",
+            "init",
+            "    if y == 49 and square(3) == 9",
+            "        testSuccess()"
+        );
+    }
+
+    @Test
+    public void realAndBooleanLocals() {
+        testAssertOkLines(true,
+            "package test",
+            "native testSuccess()",
+            "function average(real a, int b) returns real",
+            "    return (a + b) / 2",
+            "init",
+            "    real r = 0.5",
+            "    bool even = true",
+            "    for i = 1 to 4",
+            "        r = r * 2 + i",
+            "        even = not even",
+            "    real m = -7.5",
+            "    if r == 34. and even and average(r, 2) == 18. and m % 2. == 0.5 and 3 < r",
+            "        testSuccess()"
+        );
+    }
+
+    @Test
+    public void interpretedExpressionsInLoop() {
+        testAssertOkLines(true,
+            "package test",
+            "native testSuccess()",
+            "class A",
+            "class B extends A",
+            "init",
+            "    var count = 0",
+            "    var i = 0",
+            "    while true",
+            "        A a = i mod 2 == 0 ? new B : new A",
+            "        if a instanceof B",
+            "            count++",
+            "        destroy a",
+            "        i++",
+            "        if i >= 10",
+            "            break",
+            "    if count == 5",
+            "        testSuccess()"
+        );
+    }
+}
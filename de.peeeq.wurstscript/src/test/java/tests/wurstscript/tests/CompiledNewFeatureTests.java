@@ -0,0 +1,12 @@
+package tests.wurstscript.tests;
+
+/**
+ * runs the {@link NewFeatureTests} with the compiled execution engine of the interpreter
+ */
+public class CompiledNewFeatureTests extends NewFeatureTests {
+
+    @Override
+    protected boolean useCompiledInterpreter() {
+        return true;
+    }
+}
@@ -0,0 +1,197 @@
+package tests.wurstscript.tests;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import de.peeeq.wurstio.WurstCompilerJassImpl;
+import de.peeeq.wurstscript.RunArgs;
+import de.peeeq.wurstscript.ast.WurstModel;
+import de.peeeq.wurstscript.gui.WurstGui;
+import de.peeeq.wurstscript.gui.WurstGuiLogger;
+import de.peeeq.wurstscript.intermediatelang.interpreter.ExecutionProfile;
+import de.peeeq.wurstscript.intermediatelang.interpreter.ILInterpreter;
+import de.peeeq.wurstscript.jassIm.*;
+import de.peeeq.wurstscript.translation.imoptimizer.ImInliner;
+import de.peeeq.wurstscript.types.TypesHelper;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+public class ExecutionProfileTests {
+
+    /**
+     * big is too large to be inlined normally. It is only called from hot, when hot runs while recording.
+     */
+    private static final String PROG = String.join("\n",
+        "package Test",
+        "native n1(int x) returns int",
+        "native n2(int x) returns int",
+        "native n3(int x) returns int",
+        "function big(int x) returns int",
+        "    var r = n1(x) + x * 2",
+        "    r = n2(r) + r * 3",
+        "    r = n3(r) + r * 4",
+        "    return r",
+        "function hot(int x) returns int",
+        "    if x < 0",
+        "        return big(x)",
+        "    return x",
+        "function cold(int x) returns int",
+        "    if x < 0",
+        "        return big(x)",
+        "    return x",
+        "function twice(int x) returns int",
+        "    return 2 * x",
+        "function twice(real x) returns real",
+        "    return 2. * x",
+        "function run()",
+        "    for i = 1 to 1000",
+        "        hot(twice(i))",
+        "init",
+        "    run()",
+        "    cold(0)",
+        "    twice(1.)",
+        ""
+    );
+
+    private WurstCompilerJassImpl compile() {
+        WurstGui gui = new WurstGuiLogger();
+        WurstCompilerJassImpl compiler = new WurstCompilerJassImpl(null, gui, null, new RunArgs());
+        compiler.loadReader("Test.wurst", new StringReader(PROG));
+        WurstModel model = compiler.parseFiles();
+        Assert.assertNotNull(model);
+        compiler.checkProg(model);
+        Assert.assertEquals(gui.getErrorCount(), 0, gui.getErrors());
+        compiler.translateProgToIm(model);
+        return compiler;
+    }
+
+    private ExecutionProfile recordProfile() {
+        WurstCompilerJassImpl compiler = compile();
+        ImProg prog = compiler.getImProg();
+        ExecutionProfile profile = new ExecutionProfile();
+        ILInterpreter interpreter = new ILInterpreter(prog, new WurstGuiLogger(), Optional.empty(), false, false);
+        interpreter.getGlobalState().setProfile(profile);
+        interpreter.runVoidFunc(function(prog, "run"), null);
+        return profile;
+    }
+
+    private static List<ImFunction> functions(ImProg prog, String name) {
+        return prog.getFunctions().stream()
+            .filter(f -> f.getName().equals(name))
+            .collect(Collectors.toList());
+    }
+
+    private static ImFunction function(ImProg prog, String name) {
+        List<ImFunction> fs = functions(prog, name);
+        Assert.assertEquals(fs.size(), 1, name);
+        return fs.get(0);
+    }
+
+    private static int countCalls(ImFunction f, String calledName) {
+        int[] count = {0};
+        f.accept(new ImFunction.DefaultVisitor() {
+            @Override
+            public void visit(ImFunctionCall c) {
+                super.visit(c);
+                if (c.getFunc().getName().equals(calledName)) {
+                    count[0]++;
+                }
+            }
+        });
+        return count[0];
+    }
+
+    @Test
+    public void overloadsAreRecordedSeparately() {
+        ExecutionProfile profile = recordProfile();
+        ImProg prog = compile().getImProg();
+        List<ImFunction> overloads = functions(prog, "twice");
+        // both overloads have the same name in the intermediate language
+        Assert.assertEquals(overloads.size(), 2);
+        ImFunction intVersion = overloads.stream()
+            .filter(f -> f.getParameters().get(0).getType().equalsType(TypesHelper.imInt()))
+            .findFirst().get();
+        ImFunction realVersion = overloads.stream()
+            .filter(f -> f != intVersion)
+            .findFirst().get();
+        Assert.assertEquals(profile.getCalls(intVersion), 1000);
+        Assert.assertTrue(profile.isHot(intVersion));
+        Assert.assertEquals(profile.getCalls(realVersion), 0);
+        Assert.assertTrue(profile.isCold(realVersion));
+    }
+
+    @Test
+    public void profileChangesInlining() {
+        // without profile, big is not inlined:
+        WurstCompilerJassImpl compiler = compile();
+        new ImInliner(compiler.getImTranslator()).doInlining();
+        ImProg prog = compiler.getImProg();
+        Assert.assertEquals(countCalls(function(prog, "hot"), "big"), 1);
+        Assert.assertEquals(countCalls(function(prog, "cold"), "big"), 1);
+
+        // with a profile recorded by the interpreter, big is inlined into hot:
+        ExecutionProfile profile = recordProfile();
+        compiler = compile();
+        prog = compiler.getImProg();
+        Assert.assertTrue(profile.isHot(function(prog, "hot")));
+        Assert.assertTrue(profile.isCold(function(prog, "big")));
+        ImInliner inliner = new ImInliner(compiler.getImTranslator());
+        inliner.setProfile(profile);
+        inliner.doInlining();
+        Assert.assertEquals(countCalls(function(prog, "hot"), "big"), 0);
+        Assert.assertEquals(countCalls(function(prog, "cold"), "big"), 1);
+    }
+
+    private File profileFile(String content) throws IOException {
+        File f = File.createTempFile("profile", ".txt");
+        f.deleteOnExit();
+        Files.asCharSink(f, Charsets.UTF_8).write(content);
+        return f;
+    }
+
+    @Test
+    public void hotAndCold() throws IOException {
+        ExecutionProfile p = ExecutionProfile.read(profileFile(
+            "# function\tcalls\tloop iterations\n"
+                + "onTimer\t50000\t0\n"
+                + "loopy\t1\t20000\n"
+                + "init\t1\t3\n"
+                + "neverCalled\t0\t0\n"));
+        Assert.assertTrue(p.isHot("onTimer"));
+        Assert.assertTrue(p.isHot("loopy"));
+        Assert.assertFalse(p.isHot("init"));
+        Assert.assertFalse(p.isCold("init"));
+        Assert.assertTrue(p.isCold("neverCalled"));
+        Assert.assertTrue(p.isCold("unknown"));
+    }
+
+    @Test
+    public void emptyProfileHasNoColdFunctions() {
+        ExecutionProfile p = new ExecutionProfile();
+        Assert.assertFalse(p.isCold("foo"));
+        Assert.assertFalse(p.isHot("foo"));
+    }
+
+    @Test
+    public void writeAndRead() throws IOException {
+        ExecutionProfile p = ExecutionProfile.read(profileFile("foo\t7\t3\nbar\t2\t0\n"));
+        File out = File.createTempFile("profile", ".txt");
+        out.deleteOnExit();
+        p.write(out);
+        ExecutionProfile p2 = ExecutionProfile.read(out);
+        Assert.assertEquals(p2.getCalls("foo"), 7);
+        Assert.assertEquals(p2.getLoopIterations("foo"), 3);
+        Assert.assertEquals(p2.getCalls("bar"), 2);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void invalidLine() throws IOException {
+        ExecutionProfile.read(profileFile("foo\tbar\n"));
+    }
+}
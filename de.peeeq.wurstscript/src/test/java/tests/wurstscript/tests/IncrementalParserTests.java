@@ -0,0 +1,176 @@
+package tests.wurstscript.tests;
+
+import de.peeeq.wurstscript.WurstParser;
+import de.peeeq.wurstscript.ast.AstElementWithSource;
+import de.peeeq.wurstscript.ast.CompilationUnit;
+import de.peeeq.wurstscript.ast.Element;
+import de.peeeq.wurstscript.attributes.ErrorHandler;
+import de.peeeq.wurstscript.gui.WurstGui;
+import de.peeeq.wurstscript.gui.WurstGuiLogger;
+import de.peeeq.wurstscript.parser.IncrementalParser;
+import de.peeeq.wurstscript.parser.RopeCharStream;
+import de.peeeq.wurstscript.parser.WPos;
+import de.peeeq.wurstscript.utils.Rope;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class IncrementalParserTests {
+
+    private static final String FILE = "Test.wurst";
+    private static final String CODE = String.join("\n",
+            "package Test",
+            "import Other",
+            "",
+            "/** some documentation */",
+            "public class A",
+            "    private static int x = -5",
+            "    function foo(int y) returns int",
+            "        x += y",
+            "        return x",
+            "",
+            "// a comment between functions",
+            "function bar(int a) returns int",
+            "    if a > 3",
+            "        return a * 2",
+            "    return a",
+            "",
+            "init",
+            "    bar(A.x)",
+            ""
+    );
+
+    @Test
+    public void editInsideFunction() {
+        check(replace(CODE, "return a * 2", "return a * 2 + 1"));
+    }
+
+    @Test
+    public void editInsideClass() {
+        check(replace(CODE, "x += y", "x += y\n        x -= 1"));
+    }
+
+    @Test
+    public void editLastEntity() {
+        check(CODE + "    bar(2)\n");
+    }
+
+    @Test
+    public void addFunction() {
+        check(replace(CODE, "init\n", "function baz()\n    skip\n\ninit\n"));
+    }
+
+    @Test
+    public void removeFunction() {
+        check(replace(CODE, "function bar(int a) returns int\n    if a > 3\n        return a * 2\n    return a\n", ""));
+    }
+
+    @Test
+    public void multipleEdits() {
+        String code = CODE;
+        Rope text = Rope.of(code);
+        CompilationUnit cu = parse(text);
+        for (int i = 0; i < 6; i++) {
+            String newCode = i % 2 == 0
+                    ? replace(code, "\n    return a\n", "\n    a += " + i + "\n    return a\n")
+                    : replace(code, "\n        return x\n", "\n        x += " + i + "\n        return x\n");
+            Rope newText = Rope.of(newCode);
+            assertTrue(incrementalParser().reparse(cu, text, newText));
+            assertSameAsFullParse(cu, newText);
+            code = newCode;
+            text = newText;
+        }
+    }
+
+    @Test
+    public void syntaxErrorNeedsFullParse() {
+        Rope text = Rope.of(CODE);
+        CompilationUnit cu = parse(text);
+        Rope newText = Rope.of(replace(CODE, "return a * 2", "return a * "));
+        assertFalse(incrementalParser().reparse(cu, text, newText));
+        // the compilation unit is not changed
+        assertSameAsFullParse(cu, text);
+    }
+
+    @Test
+    public void editOutsideOfEntitiesNeedsFullParse() {
+        Rope text = Rope.of(CODE);
+        CompilationUnit cu = parse(text);
+        assertFalse(incrementalParser().reparse(cu, text, Rope.of(replace(CODE, "import Other", "import Other2"))));
+        assertFalse(incrementalParser().reparse(cu, text, Rope.of(replace(CODE, "package Test", "package Test2"))));
+        assertSameAsFullParse(cu, text);
+    }
+
+    @Test
+    public void editAcrossEntitiesNeedsFullParse() {
+        Rope text = Rope.of(CODE);
+        CompilationUnit cu = parse(text);
+        Rope newText = Rope.of(replace(CODE, "return x\n\n// a comment between functions\nfunction bar", "return 1\nfunction bar"));
+        assertFalse(incrementalParser().reparse(cu, text, newText));
+        assertSameAsFullParse(cu, text);
+    }
+
+    @Test
+    public void joinedLinesNeedFullParse() {
+        Rope text = Rope.of(CODE);
+        CompilationUnit cu = parse(text);
+        // init is no longer at the start of a line
+        Rope newText = Rope.of(replace(CODE, "\ninit", "\n init"));
+        assertFalse(incrementalParser().reparse(cu, text, newText));
+    }
+
+    private void check(String newCode) {
+        Rope text = Rope.of(CODE);
+        CompilationUnit cu = parse(text);
+        Rope newText = Rope.of(newCode);
+        assertTrue(incrementalParser().reparse(cu, text, newText));
+        assertSameAsFullParse(cu, newText);
+    }
+
+    private void assertSameAsFullParse(CompilationUnit cu, Rope text) {
+        CompilationUnit expected = parse(text);
+        assertTrue(cu.getPackages().structuralEquals(expected.getPackages()), "structure differs for\n" + text);
+        assertEquals(positions(cu), positions(expected));
+    }
+
+    private List<String> positions(Element e) {
+        List<String> result = new ArrayList<>();
+        collectPositions(e, result);
+        return result;
+    }
+
+    private void collectPositions(Element e, List<String> result) {
+        if (e instanceof AstElementWithSource) {
+            WPos pos = ((AstElementWithSource) e).getSource();
+            result.add(e.getClass().getSimpleName() + " " + pos.getLeftPos() + "-" + pos.getRightPos()
+                    + " line " + pos.getLine() + ":" + pos.getStartColumn());
+        }
+        for (int i = 0; i < e.size(); i++) {
+            collectPositions(e.get(i), result);
+        }
+    }
+
+    private static String replace(String code, String search, String replacement) {
+        assertTrue(code.contains(search), search);
+        return code.replace(search, replacement);
+    }
+
+    private WurstParser wurstParser(WurstGui gui) {
+        return new WurstParser(new ErrorHandler(gui), gui);
+    }
+
+    private IncrementalParser incrementalParser() {
+        return new IncrementalParser(wurstParser(new WurstGuiLogger()));
+    }
+
+    private CompilationUnit parse(Rope text) {
+        WurstGui gui = new WurstGuiLogger();
+        CompilationUnit cu = wurstParser(gui).parse(new RopeCharStream(text, FILE), FILE, false);
+        assertEquals(gui.getErrorsAndWarnings().size(), 0, "errors in\n" + text);
+        cu.getCuInfo().setFile(FILE);
+        return cu;
+    }
+}
@@ -51,4 +51,34 @@ public class InterpreterTests extends WurstScriptTest {
         );
     }
 
+    @Test
+    public void variableAccessesInDifferentStates() {
+        // the same accesses are evaluated by the compiletime run and by the normal run,
+        // in recursive calls and in vararg loops
+        test().executeProg(true).runCompiletimeFunctions(true).testLua(false).lines(
+            "package Test",
+            "native testSuccess()",
+            "native testFail(string msg)",
+            "int array squares",
+            "function sumOfSquares(int n) returns int",
+            "    int array tmp",
+            "    tmp[n] = n * n",
+            "    squares[n] = tmp[n]",
+            "    if n <= 0",
+            "        return 0",
+            "    return squares[n] + sumOfSquares(n - 1)",
+            "function sum(vararg int xs) returns int",
+            "    var s = 0",
+            "    for x in xs",
+            "        s += x",
+            "    return s",
+            "constant atCompiletime = compiletime(sumOfSquares(3) + sum(1, 2, 3))",
+            "init",
+            "    if atCompiletime == 20 and sumOfSquares(4) == 30 and sum(4, 5) == 9 and squares[4] == 16",
+            "        testSuccess()",
+            "    else",
+            "        testFail(\"wrong result\")"
+        );
+    }
+
 }
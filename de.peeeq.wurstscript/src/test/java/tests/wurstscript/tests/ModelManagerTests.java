@@ -5,6 +5,7 @@ import de.peeeq.wurstio.languageserver.BufferManager;
 import de.peeeq.wurstio.languageserver.ModelManager;
 import de.peeeq.wurstio.languageserver.ModelManagerImpl;
 import de.peeeq.wurstio.languageserver.WFile;
+import de.peeeq.wurstio.languageserver.requests.GetUsages;
 import de.peeeq.wurstio.utils.FileUtils;
 import de.peeeq.wurstscript.ast.*;
 import de.peeeq.wurstscript.attributes.prettyPrint.DefaultSpacer;
@@ -12,7 +13,10 @@ import de.peeeq.wurstscript.attributes.prettyPrint.PrettyPrinter;
 import de.peeeq.wurstscript.attributes.prettyPrint.Spacer;
 import de.peeeq.wurstscript.utils.Utils;
 import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.TextDocumentPositionParams;
 import org.hamcrest.CoreMatchers;
 import org.hamcrest.core.IsNot;
 import org.jetbrains.annotations.NotNull;
@@ -24,6 +28,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
@@ -118,6 +123,158 @@ public class ModelManagerTests {
 
     }
 
+    @Test
+    public void syncSeveralFiles() throws IOException {
+        File projectFolder = new File("./temp/testProjectSync/");
+        File wurstFolder = new File(projectFolder, "wurst");
+        newCleanFolder(wurstFolder);
+
+        String packageA = string(
+            "package A",
+            "import B",
+            "import C",
+            "public function a()",
+            "	b()",
+            "	c()"
+        );
+
+        String packageB_v1 = string(
+            "package B",
+            "public function b_old()"
+        );
+
+        String packageC_v1 = string(
+            "package C",
+            "public function c_old()"
+        );
+
+        WFile fileA = WFile.create(new File(wurstFolder, "A.wurst"));
+        WFile fileB = WFile.create(new File(wurstFolder, "B.wurst"));
+        WFile fileC = WFile.create(new File(wurstFolder, "C.wurst"));
+        WFile fileD = WFile.create(new File(wurstFolder, "D.wurst"));
+        WFile fileWurst = WFile.create(new File(wurstFolder, "Wurst.wurst"));
+
+        writeFile(fileA, packageA);
+        writeFile(fileB, packageB_v1);
+        writeFile(fileC, packageC_v1);
+        writeFile(fileD, "package D\n");
+        writeFile(fileWurst, "package Wurst\n");
+
+        ModelManagerImpl manager = new ModelManagerImpl(projectFolder, new BufferManager());
+        Map<WFile, String> results = keepErrorsInMap(manager);
+        manager.buildProject();
+
+        assertThat(results.get(fileA), containsString("Reference to function b could not be resolved"));
+        assertThat(results.get(fileA), containsString("Reference to function c could not be resolved"));
+
+        // fix B on disk and C in the editor and delete D, all in one batch:
+        writeFile(fileB, packageB_v1.replace("b_old", "b"));
+        Files.delete(fileD.getFile().toPath());
+        results.clear();
+        ModelManager.Changes changes = manager.syncCompilationUnits(
+            Collections.singletonList(fileD),
+            Collections.singletonList(fileB),
+            Collections.singletonMap(fileC, packageC_v1.replace("c_old", "c")));
+        assertEquals(ImmutableSet.of(fileB, fileC, fileD), ImmutableSet.copyOf(changes.getAffectedFiles()));
+        assertTrue(changes.getAffectedPackageNames().containsAll(ImmutableSet.of("B", "C")));
+
+        manager.reconcile(changes);
+        assertEquals("", results.get(fileA));
+        assertEquals("", results.get(fileB));
+        assertEquals("", results.get(fileC));
+        assertNull(manager.getCompilationUnit(fileD));
+    }
+
+    @Test
+    public void usagesInOtherFiles() throws IOException {
+        File projectFolder = new File("./temp/testProjectUsages/");
+        File wurstFolder = new File(projectFolder, "wurst");
+        newCleanFolder(wurstFolder);
+
+        String packageA = string(
+            "package A",
+            "public function foo()",
+            "public function bar()"
+        );
+
+        String packageB = string(
+            "package B",
+            "import A",
+            "init",
+            "	foo()",
+            "	bar()",
+            "	foo()"
+        );
+
+        String packageC = string(
+            "package C",
+            "import A",
+            "module M",
+            "	function m()",
+            "		foo()",
+            "class X",
+            "	use M",
+            "	function x() returns thistype",
+            "		return this"
+        );
+
+        WFile fileA = WFile.create(new File(wurstFolder, "A.wurst"));
+        WFile fileB = WFile.create(new File(wurstFolder, "B.wurst"));
+        WFile fileC = WFile.create(new File(wurstFolder, "C.wurst"));
+        WFile fileWurst = WFile.create(new File(wurstFolder, "Wurst.wurst"));
+
+        writeFile(fileA, packageA);
+        writeFile(fileB, packageB);
+        writeFile(fileC, packageC);
+        writeFile(fileWurst, "package Wurst\n");
+
+        BufferManager bufferManager = new BufferManager();
+        ModelManagerImpl manager = new ModelManagerImpl(projectFolder, bufferManager);
+        Map<WFile, String> results = keepErrorsInMap(manager);
+        manager.buildProject();
+        assertEquals("", results.get(fileB));
+        assertEquals("", results.get(fileC));
+
+        // usages of foo, starting from the first call in B:
+        TextDocumentPositionParams position = new TextDocumentPositionParams(
+            new TextDocumentIdentifier(fileB.getUriString()), new Position(3, 2));
+        List<GetUsages.UsagesData> usages = new GetUsages(position, bufferManager, true).execute(manager);
+        assertEquals(countIn("A.wurst", usages), 2); // the definition
+        assertEquals(countIn("B.wurst", usages), 2);
+        // the module and its instantiation in X:
+        assertEquals(countIn("C.wurst", usages), 2);
+
+        // usages of class X include thistype:
+        TextDocumentPositionParams classX = new TextDocumentPositionParams(
+            new TextDocumentIdentifier(fileC.getUriString()), new Position(5, 6));
+        List<GetUsages.UsagesData> classUsages = new GetUsages(classX, bufferManager, true).execute(manager);
+        assertEquals(classUsages.size(), 3); // the definition and thistype
+        assertTrue(classUsages.stream().anyMatch(u -> u.getRange().getStart().getLine() == 7));
+
+        // add another call in the editor:
+        String packageB_v2 = packageB + "\n	foo()";
+        bufferManager.updateFile(fileB, packageB_v2);
+        ModelManager.Changes changes = manager.syncCompilationUnits(
+            Collections.emptyList(),
+            Collections.emptyList(),
+            Collections.singletonMap(fileB, packageB_v2));
+        manager.reconcile(changes);
+        usages = new GetUsages(position, bufferManager, true).execute(manager);
+        assertEquals(countIn("B.wurst", usages), 3);
+        assertEquals(countIn("C.wurst", usages), 2);
+
+        // only the current file:
+        usages = new GetUsages(position, bufferManager, false).execute(manager);
+        assertEquals(countIn("B.wurst", usages), 3);
+        assertEquals(usages.size(), 3);
+    }
+
+    private long countIn(String fileName, List<GetUsages.UsagesData> usages) {
+        return usages.stream()
+            .filter(u -> u.getFilename().endsWith(fileName))
+            .count();
+    }
+
     @Test
     public void movingFiles() throws IOException { // #712
         File projectFolder = new File("./temp/testProject2/");
@@ -0,0 +1,64 @@
+package tests.wurstscript.tests;
+
+import de.peeeq.wurstscript.ast.Ast;
+import de.peeeq.wurstscript.intermediatelang.*;
+import de.peeeq.wurstscript.intermediatelang.interpreter.NativeCallCache;
+import de.peeeq.wurstscript.jassIm.ImFunction;
+import de.peeeq.wurstscript.jassIm.JassIm;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+
+public class NativeCallCacheTests {
+
+    private ImFunction func(String name) {
+        return JassIm.ImFunction(Ast.NoExpr(), name, JassIm.ImTypeVars(), JassIm.ImVars(), JassIm.ImVoid(), JassIm.ImVars(), JassIm.ImStmts(), Collections.emptyList());
+    }
+
+    @Test
+    public void structuralKeys() {
+        ImFunction sin = func("Sin");
+        NativeCallCache cache = new NativeCallCache(10);
+        cache.put(NativeCallCache.key(sin, new ILconst[]{new ILconstReal(1)}), new ILconstReal(0.84f));
+        Assert.assertNotNull(cache.get(NativeCallCache.key(sin, new ILconst[]{new ILconstReal(1)})));
+        // same value, but different type
+        Assert.assertNull(cache.get(NativeCallCache.key(sin, new ILconst[]{ILconstInt.create(1)})));
+        // same arguments, but different function
+        Assert.assertNull(cache.get(NativeCallCache.key(func("Sin"), new ILconst[]{new ILconstReal(1)})));
+        Assert.assertEquals(cache.getHits(), 1);
+        Assert.assertEquals(cache.getMisses(), 2);
+    }
+
+    @Test
+    public void collidingHashes() {
+        ImFunction f = func("StringHash");
+        NativeCallCache cache = new NativeCallCache(10);
+        // "Aa" and "BB" have the same hash code
+        cache.put(NativeCallCache.key(f, new ILconst[]{new ILconstString("Aa")}), ILconstInt.create(1));
+        Assert.assertNull(cache.get(NativeCallCache.key(f, new ILconst[]{new ILconstString("BB")})));
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvicted() {
+        ImFunction f = func("R2I");
+        NativeCallCache cache = new NativeCallCache(2);
+        NativeCallCache.Key k1 = NativeCallCache.key(f, new ILconst[]{new ILconstReal(1)});
+        NativeCallCache.Key k2 = NativeCallCache.key(f, new ILconst[]{new ILconstReal(2)});
+        NativeCallCache.Key k3 = NativeCallCache.key(f, new ILconst[]{new ILconstReal(3)});
+        cache.put(k1, ILconstInt.create(1));
+        cache.put(k2, ILconstInt.create(2));
+        cache.get(k1);
+        cache.put(k3, ILconstInt.create(3));
+        Assert.assertEquals(cache.size(), 2);
+        Assert.assertEquals(cache.getEvictions(), 1);
+        Assert.assertNotNull(cache.get(k1));
+        Assert.assertNull(cache.get(k2));
+    }
+
+    @Test
+    public void objectArgumentsAreNotCached() {
+        ILconst[] args = {new ILconstArray(10, () -> ILconstInt.create(0))};
+        Assert.assertNull(NativeCallCache.key(func("Foo"), args));
+    }
+}
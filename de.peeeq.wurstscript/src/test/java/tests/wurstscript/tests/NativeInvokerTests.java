@@ -0,0 +1,77 @@
+package tests.wurstscript.tests;
+
+import de.peeeq.wurstio.jassinterpreter.InterpreterException;
+import de.peeeq.wurstio.jassinterpreter.NativeInvoker;
+import de.peeeq.wurstscript.intermediatelang.*;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Method;
+
+public class NativeInvokerTests {
+
+    public static class Natives {
+        public ILconstInt add(ILconstInt a, ILconstInt b) {
+            return ILconstInt.create(a.getVal() + b.getVal());
+        }
+
+        public ILconstBool isNull(ILconstString s) {
+            return ILconstBool.instance(s == null);
+        }
+
+        public static ILconstString hello() {
+            return new ILconstString("hello");
+        }
+
+        public ILconst fail() {
+            throw new InterpreterException("failed");
+        }
+    }
+
+    private NativeInvoker invoker(String name) {
+        for (Method m : Natives.class.getMethods()) {
+            if (m.getName().equals(name)) {
+                return new NativeInvoker(new Natives(), m);
+            }
+        }
+        throw new Error("no method " + name);
+    }
+
+    @Test
+    public void instanceMethod() {
+        NativeInvoker add = invoker("add");
+        ILconst[] args = {ILconstInt.create(3), ILconstInt.create(4)};
+        Assert.assertTrue(add.accepts(args));
+        Assert.assertEquals(((ILconstInt) add.invoke(add.adaptArguments("add", args))).getVal(), 7);
+    }
+
+    @Test
+    public void staticMethod() {
+        NativeInvoker hello = invoker("hello");
+        Assert.assertEquals(((ILconstString) hello.invoke(new ILconst[0])).getVal(), "hello");
+    }
+
+    @Test
+    public void nullArgument() {
+        NativeInvoker isNull = invoker("isNull");
+        ILconst[] args = {ILconstNull.instance()};
+        Assert.assertFalse(isNull.accepts(args));
+        Assert.assertTrue(((ILconstBool) isNull.invoke(isNull.adaptArguments("isNull", args))).getVal());
+        // the arguments of the caller are not changed
+        Assert.assertSame(args[0], ILconstNull.instance());
+    }
+
+    @Test(expectedExceptions = Error.class)
+    public void wrongArgument() {
+        NativeInvoker add = invoker("add");
+        ILconst[] args = {ILconstInt.create(3), new ILconstString("x")};
+        Assert.assertFalse(add.accepts(args));
+        add.adaptArguments("add", args);
+    }
+
+    @Test(expectedExceptions = InterpreterException.class)
+    public void exceptionsArePassedThrough() {
+        NativeInvoker fail = invoker("fail");
+        fail.invoke(new ILconst[0]);
+    }
+}
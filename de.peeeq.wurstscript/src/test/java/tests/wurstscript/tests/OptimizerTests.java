@@ -1057,6 +1057,25 @@ public class OptimizerTests extends WurstScriptTest {
         }
     }
 
+    @Test
+    public void localMergerCountsRemovedStores() {
+        LocalMerger localMerger = new LocalMerger();
+
+        Element trace = Ast.NoExpr();
+        ImVar a = JassIm.ImVar(trace, TypesHelper.imInt(), "a", false);
+        ImVar b = JassIm.ImVar(trace, TypesHelper.imInt(), "b", false);
+
+        ImStmts body = JassIm.ImStmts(
+            JassIm.ImSet(trace, JassIm.ImVarAccess(a), JassIm.ImIntVal(0)),
+            JassIm.ImSet(trace, JassIm.ImVarAccess(b), JassIm.ImIntVal(0))
+        );
+        ImFunction func = JassIm.ImFunction(trace, "blub", JassIm.ImTypeVars(), JassIm.ImVars(), JassIm.ImVoid(), JassIm.ImVars(a, b), body, Collections.emptyList());
+
+        // both stores are dead, so the function has to be optimized again
+        assertEquals(2, localMerger.optimizeFunc(func));
+        assertFalse(body.stream().anyMatch(s -> s instanceof ImSet));
+    }
+
     @Test
     public void testFunctionSplitter() {
         WurstModel model = Ast.WurstModel();
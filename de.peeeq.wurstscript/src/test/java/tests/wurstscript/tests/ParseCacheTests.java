@@ -0,0 +1,94 @@
+package tests.wurstscript.tests;
+
+import de.peeeq.wurstio.WurstCompilerJassImpl;
+import de.peeeq.wurstio.parsecache.ParseCache;
+import de.peeeq.wurstio.utils.FileUtils;
+import de.peeeq.wurstscript.RunArgs;
+import de.peeeq.wurstscript.ast.CompilationUnit;
+import de.peeeq.wurstscript.ast.WPackage;
+import de.peeeq.wurstscript.attributes.ErrorHandler;
+import de.peeeq.wurstscript.gui.WurstGuiCliImpl;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.testng.Assert.*;
+
+public class ParseCacheTests {
+
+    private static final String FILE = "Test.wurst";
+    private static final String CODE = String.join("\n",
+            "package Test",
+            "import Wurst",
+            "/** some documentation */",
+            "public class A<T> extends B implements I",
+            "    use M",
+            "    private static int x = -5",
+            "    real r = 1.5",
+            "    construct(T t)",
+            "        super(t)",
+            "    function foo(int y) returns bool",
+            "        for i = 0 to 10 step 2",
+            "            x += i * y",
+            "        switch y",
+            "            case 1 | 2",
+            "                skip",
+            "            default",
+            "                x = x mod 3",
+            "        let f = (int a) -> a + 1",
+            "        return y > 1 and not true or x.typeId == 3",
+            "init",
+            "    string s = \"Hello \" + 'Aloc'.toString()",
+            ""
+    );
+
+    @Test
+    public void storeAndLoad() throws IOException {
+        File projectFolder = newCleanProject();
+        ParseCache cache = ParseCache.forProject(projectFolder);
+        assertNotNull(cache);
+
+        CompilationUnit parsed = parse(projectFolder);
+        cache.store(FILE, CODE, true, parsed);
+
+        CompilationUnit loaded = cache.load(FILE, CODE, true, new ErrorHandler(new WurstGuiCliImpl()));
+        assertNotNull(loaded);
+        assertTrue(parsed.getPackages().structuralEquals(loaded.getPackages()));
+        assertTrue(parsed.getJassDecls().structuralEquals(loaded.getJassDecls()));
+        WPackage p1 = parsed.getPackages().get(0);
+        WPackage p2 = loaded.getPackages().get(0);
+        assertEquals(p2.getSource().getFile(), p1.getSource().getFile());
+        assertEquals(p2.getSource().getLeftPos(), p1.getSource().getLeftPos());
+        assertEquals(p2.getSource().getRightPos(), p1.getSource().getRightPos());
+        assertEquals(p2.getSource().getLine(), p1.getSource().getLine());
+        assertEquals(p2.getElements().get(0).getSource().getEndLine(), p1.getElements().get(0).getSource().getEndLine());
+    }
+
+    @Test
+    public void changedContentIsNotLoaded() throws IOException {
+        File projectFolder = newCleanProject();
+        ParseCache cache = ParseCache.forProject(projectFolder);
+        assertNotNull(cache);
+
+        cache.store(FILE, CODE, true, parse(projectFolder));
+
+        ErrorHandler errorHandler = new ErrorHandler(new WurstGuiCliImpl());
+        assertNull(cache.load(FILE, CODE + "\n", true, errorHandler));
+        assertNull(cache.load(FILE, CODE, false, errorHandler));
+        assertNull(cache.load("Other.wurst", CODE, true, errorHandler));
+    }
+
+    private CompilationUnit parse(File projectFolder) {
+        WurstCompilerJassImpl compiler = new WurstCompilerJassImpl(projectFolder, new WurstGuiCliImpl(), null, new RunArgs());
+        compiler.setHasCommonJ(true);
+        return compiler.parse(FILE, new java.io.StringReader(CODE));
+    }
+
+    private File newCleanProject() throws IOException {
+        File projectFolder = new File("./temp/parseCacheProject/");
+        FileUtils.deleteRecursively(projectFolder);
+        assertTrue(projectFolder.mkdirs());
+        return projectFolder;
+    }
+}
@@ -0,0 +1,133 @@
+package tests.wurstscript.tests;
+
+import de.peeeq.wurstscript.antlr.WurstLexer;
+import de.peeeq.wurstscript.parser.RopeCharStream;
+import de.peeeq.wurstscript.utils.Rope;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+public class RopeTests {
+
+    private String largeText() {
+        StringBuilder sb = new StringBuilder("package Test\n");
+        for (int i = 0; i < 500; i++) {
+            sb.append("function f").append(i).append("(int x) returns int\n");
+            sb.append("\treturn x + ").append(i).append(" // comment\n");
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void randomEdits() {
+        Random r = new Random(42);
+        StringBuilder expected = new StringBuilder(largeText());
+        Rope rope = Rope.of(expected);
+        for (int i = 0; i < 2000; i++) {
+            int start = r.nextInt(expected.length() + 1);
+            int end = Math.min(expected.length(), start + r.nextInt(50));
+            String text = r.nextBoolean() ? "" : "abc\nde".substring(r.nextInt(6));
+            expected.replace(start, end, text);
+            rope = rope.replace(start, end, text);
+        }
+        Assert.assertEquals(rope.length(), expected.length());
+        Assert.assertEquals(rope.toString(), expected.toString());
+        Assert.assertEquals(rope.hashCode(), expected.toString().hashCode());
+        Assert.assertEquals(rope.subSequence(100, 2000).toString(), expected.substring(100, 2000));
+        Assert.assertEquals(rope.charAt(777), expected.charAt(777));
+    }
+
+    @Test
+    public void snapshotsAreImmutable() {
+        Rope a = Rope.of(largeText());
+        Rope b = a.replace(0, 7, "library");
+        Assert.assertTrue(a.toString().startsWith("package Test"));
+        Assert.assertTrue(b.toString().startsWith("library Test"));
+        Assert.assertEquals(a, Rope.of(largeText()));
+        Assert.assertNotEquals(a, b);
+    }
+
+    @Test
+    public void lines() {
+        Rope r = Rope.of("ab\ncde\n\nf");
+        Assert.assertEquals(r.getLineCount(), 4);
+        Assert.assertEquals(r.getLineStart(0), 0);
+        Assert.assertEquals(r.getLineStart(1), 3);
+        Assert.assertEquals(r.getLineStart(2), 7);
+        Assert.assertEquals(r.getLineStart(3), 8);
+        Assert.assertEquals(r.getOffset(1, 2), 5);
+        // positions after the end of a line are clamped to the end of the line
+        Assert.assertEquals(r.getOffset(0, 10), 2);
+        Assert.assertEquals(r.getOffset(2, 3), 7);
+        // positions after the end of the text are clamped to the end of the text
+        Assert.assertEquals(r.getOffset(3, 5), 9);
+        Assert.assertEquals(r.getOffset(8, 0), 9);
+    }
+
+    @Test
+    public void linesInLargeText() {
+        String text = largeText();
+        Rope r = Rope.of(text).replace(10, 10, "x\ny");
+        String s = r.toString();
+        String[] lines = s.split("\n", -1);
+        Assert.assertEquals(r.getLineCount(), lines.length);
+        int offset = 0;
+        for (int i = 0; i < lines.length; i++) {
+            Assert.assertEquals(r.getLineStart(i), offset);
+            offset += lines[i].length() + 1;
+        }
+    }
+
+    @Test
+    public void balanced() {
+        Rope r = Rope.EMPTY;
+        // appending repeatedly would create a degenerate tree without balancing
+        for (int i = 0; i < 5000; i++) {
+            r = r.replace(r.length(), r.length(), "line " + i + "\n");
+        }
+        Assert.assertEquals(r.getLineCount(), 5001);
+        int leaves = r.getChunks().size();
+        // an AVL tree has a height of at most 1.45 * log2(n + 2)
+        int maxHeight = (int) Math.ceil(1.45 * Math.log(leaves + 2) / Math.log(2));
+        Assert.assertTrue(r.getHeight() <= maxHeight, "height " + r.getHeight() + " with " + leaves + " leaves");
+    }
+
+    @Test
+    public void charStreamLexesLikeStringStream() {
+        Rope r = Rope.of(largeText()).replace(20, 20, "// edited\n");
+        List<String> expected = tokens(CharStreams.fromString(r.toString(), "test"));
+        List<String> actual = tokens(new RopeCharStream(r, "test"));
+        Assert.assertEquals(actual, expected);
+    }
+
+    private List<String> tokens(CharStream input) {
+        WurstLexer lexer = new WurstLexer(input);
+        return lexer.getAllTokens().stream()
+            .map(t -> t.getType() + ":" + t.getText() + "@" + t.getLine() + ":" + t.getCharPositionInLine())
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    public void charStream() {
+        Rope r = Rope.of(largeText());
+        RopeCharStream s = new RopeCharStream(r, "test");
+        Assert.assertEquals(s.size(), r.length());
+        Assert.assertEquals(s.LA(1), 'p');
+        s.seek(1000);
+        Assert.assertEquals(s.LA(1), r.charAt(1000));
+        Assert.assertEquals(s.LA(-1), r.charAt(999));
+        s.consume();
+        Assert.assertEquals(s.index(), 1001);
+        Assert.assertEquals(s.getText(Interval.of(600, 1400)), r.toString().substring(600, 1401));
+        s.seek(r.length());
+        Assert.assertEquals(s.LA(1), IntStream.EOF);
+        Assert.assertEquals(s.getSourceName(), "test");
+    }
+}
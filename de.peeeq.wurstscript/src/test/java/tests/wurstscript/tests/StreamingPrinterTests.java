@@ -0,0 +1,58 @@
+package tests.wurstscript.tests;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import de.peeeq.wurstio.utils.FileUtils;
+import de.peeeq.wurstscript.jassAst.JassFunctions;
+import de.peeeq.wurstscript.jassAst.JassProg;
+import de.peeeq.wurstscript.jassprinter.JassPrinter;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Optional;
+
+import static de.peeeq.wurstscript.jassAst.JassAst.*;
+
+public class StreamingPrinterTests {
+
+    /**
+     * a program which is large enough to be written in several chunks
+     */
+    private JassProg largeProg() {
+        JassFunctions functions = JassFunctions();
+        for (int i = 0; i < 5000; i++) {
+            functions.add(JassFunction("f" + i, JassSimpleVars(JassSimpleVar("integer", "x")), "integer",
+                JassVars(JassSimpleVar("integer", "y")),
+                JassStatements(
+                    JassStmtSet("y", JassExprBinary(JassExprVarAccess("x"), JassOpPlus(), JassExprIntVal("" + i))),
+                    JassStmtReturn(JassExprVarAccess("y"))),
+                false));
+        }
+        return JassProg(JassTypeDefs(), JassVars(JassSimpleVar("integer", "g")), JassNatives(), functions);
+    }
+
+    @Test
+    public void writerOutputEqualsString() throws IOException {
+        JassPrinter printer = new JassPrinter(true, largeProg());
+        StringWriter out = new StringWriter();
+        printer.printProg(out);
+        Assert.assertEquals(out.toString(), printer.printProg());
+    }
+
+    @Test
+    public void writeStreamingWithHash() throws IOException {
+        JassPrinter printer = new JassPrinter(false, largeProg());
+        File f = File.createTempFile("streaming", ".j");
+        f.deleteOnExit();
+        Optional<HashCode> hash = FileUtils.writeStreaming(f, true, printer::printProg);
+        String expected = printer.printProg();
+        Assert.assertEquals(Files.asCharSource(f, Charsets.UTF_8).read(), expected);
+        Assert.assertEquals(hash.get(), Hashing.sha256().hashString(expected, Charsets.UTF_8));
+        Assert.assertFalse(FileUtils.writeStreaming(f, false, printer::printProg).isPresent());
+    }
+}
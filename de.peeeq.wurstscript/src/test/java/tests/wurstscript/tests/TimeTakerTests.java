@@ -0,0 +1,91 @@
+package tests.wurstscript.tests;
+
+import de.peeeq.wurstio.PhaseMetrics;
+import de.peeeq.wurstio.TimeTaker;
+import de.peeeq.wurstscript.ast.Ast;
+import de.peeeq.wurstscript.jassIm.ImProg;
+import de.peeeq.wurstscript.jassIm.JassIm;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+
+public class TimeTakerTests {
+
+    @Test
+    public void nestedPhasesAndCounts() {
+        TimeTaker.Recording t = new TimeTaker.Recording(false, null);
+        t.measure("outer", () -> {
+            t.beginPhase("phase 1");
+            t.recordCount("pass", 2);
+            t.beginPhase("phase 2");
+            t.recordCount("pass", 3);
+            t.recordCount("pass", 4);
+            // phase 2 is not ended explicitly
+        });
+        t.measure("outer", () -> {
+        });
+
+        List<PhaseMetrics> metrics = t.getMetrics();
+        Assert.assertEquals(metrics.size(), 3);
+        PhaseMetrics outer = metrics.get(0);
+        Assert.assertEquals(outer.getName(), "outer");
+        Assert.assertEquals(outer.getNesting(), 0);
+        Assert.assertEquals(outer.getRuns(), 2);
+        PhaseMetrics phase1 = metrics.get(1);
+        Assert.assertEquals(phase1.getName(), "phase 1");
+        Assert.assertEquals(phase1.getNesting(), 1);
+        Assert.assertEquals((long) phase1.getCounters().get("pass"), 2L);
+        PhaseMetrics phase2 = metrics.get(2);
+        Assert.assertEquals(phase2.getNesting(), 1);
+        Assert.assertEquals(phase2.getRuns(), 1);
+        Assert.assertEquals((long) phase2.getCounters().get("pass"), 7L);
+        Assert.assertTrue(outer.getWallTimeNanos() >= phase1.getWallTimeNanos() + phase2.getWallTimeNanos());
+        Assert.assertNull(outer.getImBefore());
+    }
+
+    @Test
+    public void imSizeOnlyForPhasesAndTopLevelSteps() throws IOException {
+        ImProg prog = JassIm.ImProg(Ast.NoExpr(), JassIm.ImVars(), JassIm.ImFunctions(), JassIm.ImMethods(),
+            JassIm.ImClasses(), JassIm.ImTypeClassFuncs(), new HashMap<>());
+        File metricsFile = File.createTempFile("metrics", ".json");
+        metricsFile.deleteOnExit();
+
+        TimeTaker.Recording t = new TimeTaker.Recording(false, metricsFile);
+        t.setImProg(() -> prog);
+        t.measure("outer", () -> {
+            t.beginPhase("phase");
+            t.measure("inner", () -> {
+            });
+            t.endPhase();
+        });
+
+        List<PhaseMetrics> metrics = t.getMetrics();
+        Assert.assertEquals(metrics.size(), 3);
+        Assert.assertNotNull(metrics.get(0).getImBefore());
+        Assert.assertNotNull(metrics.get(1).getImAfter());
+        Assert.assertNull(metrics.get(2).getImBefore());
+        Assert.assertNull(metrics.get(2).getImAfter());
+
+        // without a metrics file the size is not measured at all:
+        TimeTaker.Recording t2 = new TimeTaker.Recording(true, null);
+        t2.setImProg(() -> prog);
+        t2.measure("outer", () -> {
+        });
+        Assert.assertNull(t2.getMetrics().get(0).getImBefore());
+    }
+
+    @Test
+    public void csv() {
+        TimeTaker.Recording t = new TimeTaker.Recording(false, null);
+        t.measure("a \"quoted\" step", () -> t.recordCount("x", 1));
+        String[] lines = PhaseMetrics.toCsv(t.getMetrics()).split("\n");
+        Assert.assertEquals(lines.length, 2);
+        Assert.assertTrue(lines[0].startsWith("name,nesting,runs,wallTimeNanos"));
+        Assert.assertTrue(lines[1].startsWith("\"a \"\"quoted\"\" step\",0,1,"));
+        Assert.assertTrue(lines[1].endsWith(",,,,,,,\"x=1\""));
+    }
+}
@@ -0,0 +1,183 @@
+package tests.wurstscript.tests;
+
+import de.peeeq.wurstio.WurstCompilerJassImpl;
+import de.peeeq.wurstio.jassinterpreter.ReflectionNativeProvider;
+import de.peeeq.wurstio.languageserver.BufferManager;
+import de.peeeq.wurstio.languageserver.ModelManager;
+import de.peeeq.wurstio.languageserver.ModelManagerImpl;
+import de.peeeq.wurstio.languageserver.WFile;
+import de.peeeq.wurstio.utils.FileUtils;
+import de.peeeq.wurstscript.RunArgs;
+import de.peeeq.wurstscript.ast.CompilationUnit;
+import de.peeeq.wurstscript.ast.WurstModel;
+import de.peeeq.wurstscript.gui.WurstGui;
+import de.peeeq.wurstscript.gui.WurstGuiCliImpl;
+import de.peeeq.wurstscript.intermediatelang.interpreter.ILInterpreter;
+import de.peeeq.wurstscript.jassAst.JassProg;
+import de.peeeq.wurstscript.jassIm.ImProg;
+import de.peeeq.wurstscript.jassinterpreter.TestSuccessException;
+import de.peeeq.wurstscript.jassprinter.JassPrinter;
+import de.peeeq.wurstscript.translation.imtranslation.TranslationCache;
+import org.eclipse.jdt.annotation.Nullable;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Optional;
+
+import static org.testng.Assert.*;
+
+public class TranslationCacheTests {
+
+    private static final String PACKAGE_B = String.join("\n",
+            "package B",
+            "import A",
+            "public class Square extends Shape",
+            "    override function area() returns int",
+            "        return 4",
+            "public function expectedArea() returns int",
+            "    return 4",
+            ""
+    );
+
+    @Test
+    public void restoredTranslationBehavesLikeFreshOne() throws IOException {
+        File projectFolder = new File("./temp/translationCacheProject/");
+        ModelManagerImpl manager = buildProject(projectFolder);
+        TranslationCache cache = new TranslationCache();
+
+        // the first translation fills the cache, the second one restores everything
+        assertRuns(manager.getModel(), cache);
+        assertRuns(manager.getModel(), cache);
+
+        changePackageB(projectFolder, manager, cache);
+
+        // only D is restored now
+        assertRuns(manager.getModel(), cache);
+        assertRuns(manager.getModel(), null);
+    }
+
+    @Test
+    public void restoredTranslationIsPrintedLikeFreshOne() throws IOException {
+        File projectFolder = new File("./temp/translationCacheOrderProject/");
+        ModelManagerImpl manager = buildProject(projectFolder);
+        TranslationCache cache = new TranslationCache();
+
+        String fresh = print(manager.getModel(), null);
+        assertEquals(print(manager.getModel(), cache), fresh);
+        assertEquals(print(manager.getModel(), cache), fresh);
+
+        changePackageB(projectFolder, manager, cache);
+
+        String freshAfterChange = print(manager.getModel(), null);
+        assertNotEquals(freshAfterChange, fresh);
+        assertEquals(print(manager.getModel(), cache), freshAfterChange);
+        assertEquals(print(manager.getModel(), cache), freshAfterChange);
+    }
+
+    private ModelManagerImpl buildProject(File projectFolder) throws IOException {
+        File wurstFolder = new File(projectFolder, "wurst");
+        FileUtils.deleteRecursively(projectFolder);
+        Files.createDirectories(wurstFolder.toPath());
+
+        writeFile(wurstFolder, "Wurst.wurst", "package Wurst\n");
+        writeFile(wurstFolder, "A.wurst", String.join("\n",
+                "package A",
+                "public abstract class Shape",
+                "    abstract function area() returns int",
+                "public function totalArea(Shape s) returns int",
+                "    return s.area()",
+                ""));
+        writeFile(wurstFolder, "B.wurst", PACKAGE_B);
+        writeFile(wurstFolder, "C.wurst", String.join("\n",
+                "package C",
+                "public interface Op",
+                "    function apply(int x) returns int",
+                "public function applyTwice(Op op, int x) returns int",
+                "    return op.apply(op.apply(x))",
+                ""));
+        writeFile(wurstFolder, "D.wurst", String.join("\n",
+                "package D",
+                "int base = 3",
+                "public function base() returns int",
+                "    return base",
+                ""));
+        writeFile(wurstFolder, "Test.wurst", String.join("\n",
+                "package Test",
+                "import A",
+                "import B",
+                "import C",
+                "import D",
+                "native testSuccess()",
+                "native testFail(string msg)",
+                "init",
+                "    Op double = (int x) -> x * 2",
+                "    if totalArea(new Square()) == expectedArea() and applyTwice(double, base()) == 12",
+                "        testSuccess()",
+                "    else",
+                "        testFail(\"wrong result\")",
+                ""));
+
+        ModelManagerImpl manager = new ModelManagerImpl(projectFolder, new BufferManager());
+        manager.buildProject();
+        assertFalse(manager.hasErrors());
+        return manager;
+    }
+
+    private void changePackageB(File projectFolder, ModelManagerImpl manager, TranslationCache cache) {
+        WFile fileB = WFile.create(new File(projectFolder, "wurst/B.wurst"));
+        ModelManager.Changes changes = manager.syncCompilationUnitContent(fileB, PACKAGE_B.replace("4", "5"));
+        cache.invalidate(manager.reconcileAndGetUpdated(changes));
+        assertFalse(manager.hasErrors());
+    }
+
+    private void assertRuns(WurstModel model, @Nullable TranslationCache cache) {
+        WurstGui gui = new WurstGuiCliImpl();
+        WurstCompilerJassImpl compiler = new WurstCompilerJassImpl(null, gui, null, new RunArgs());
+        ImProg prog = translate(model, cache, compiler, gui);
+
+        ILInterpreter interpreter = new ILInterpreter(prog, gui, Optional.empty(), false, false);
+        interpreter.addNativeProvider(new ReflectionNativeProvider(interpreter));
+        try {
+            interpreter.executeFunction("main", null);
+        } catch (TestSuccessException e) {
+            return;
+        }
+        fail("testSuccess was not called");
+    }
+
+    /**
+     * the printed IM followed by the printed jass code
+     */
+    private String print(WurstModel model, @Nullable TranslationCache cache) {
+        WurstGui gui = new WurstGuiCliImpl();
+        WurstCompilerJassImpl compiler = new WurstCompilerJassImpl(null, gui, null, new RunArgs());
+        ImProg prog = translate(model, cache, compiler, gui);
+        StringBuilder sb = new StringBuilder();
+        prog.print(sb, 0);
+        // the IM printer adds the hash codes of variables and classes to their names
+        String im = sb.toString().replaceAll("-?\\d+", "#");
+
+        JassProg jassProg = compiler.transformProgToJass();
+        assertEquals(gui.getErrorCount(), 0);
+        sb = new StringBuilder();
+        new JassPrinter(true, jassProg).printProg(sb);
+        return im + "\n\n" + sb;
+    }
+
+    private ImProg translate(WurstModel model, @Nullable TranslationCache cache, WurstCompilerJassImpl compiler, WurstGui gui) {
+        compiler.setTranslationCache(cache);
+        for (CompilationUnit cu : model) {
+            cu.getCuInfo().setCuErrorHandler(compiler.getErrorHandler());
+        }
+        ImProg prog = compiler.translateProgToIm(model);
+        assertNotNull(prog);
+        assertEquals(gui.getErrorCount(), 0);
+        return prog;
+    }
+
+    private void writeFile(File folder, String name, String content) throws IOException {
+        FileUtils.write(content, new File(folder, name));
+    }
+}
@@ -0,0 +1,96 @@
+package tests.wurstscript.tests;
+
+import de.peeeq.wurstio.languageserver.ModelManager;
+import de.peeeq.wurstio.languageserver.requests.UserRequest;
+import de.peeeq.wurstscript.utils.Utils;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class UserRequestTests {
+
+    /**
+     * a request, which runs until it is cancelled
+     */
+    private static class EndlessRequest extends UserRequest<String> {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile boolean stopped = false;
+
+        @Override
+        public String execute(ModelManager modelManager) {
+            started.countDown();
+            try {
+                while (true) {
+                    Utils.checkInterrupted();
+                }
+            } finally {
+                stopped = true;
+            }
+        }
+    }
+
+    @Test
+    public void cancelStopsRunningRequest() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            EndlessRequest request = new EndlessRequest();
+            Future<?> done = executor.submit(() -> {
+                request.runInterruptible(null);
+                // the thread can be reused after the request was cancelled:
+                return Thread.currentThread().isInterrupted();
+            });
+            assertTrue(request.started.await(10, TimeUnit.SECONDS));
+            request.cancel();
+            assertEquals(done.get(10, TimeUnit.SECONDS), false);
+            assertTrue(request.stopped);
+            assertTrue(request.isCancelled());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void preemptedRequestIsRunAgain() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            EndlessRequest request = new EndlessRequest();
+            Future<Boolean> done = executor.submit(() -> request.runInterruptible(null));
+            assertTrue(request.started.await(10, TimeUnit.SECONDS));
+            request.preempt();
+            // the request stopped, but is neither completed nor cancelled:
+            assertEquals(done.get(10, TimeUnit.SECONDS), Boolean.FALSE);
+            assertTrue(request.stopped);
+            assertFalse(request.getFuture().isDone());
+
+            EndlessRequest second = new EndlessRequest();
+            second.preempt();
+            // a request preempted before it was started is not started:
+            assertFalse(second.runInterruptible(null));
+            assertEquals(second.started.getCount(), 1);
+            assertFalse(second.getFuture().isDone());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void cancelledRequestIsNotStarted() {
+        EndlessRequest request = new EndlessRequest();
+        request.cancel();
+        request.runInterruptible(null);
+        assertEquals(request.started.getCount(), 1);
+        try {
+            request.getFuture().join();
+            fail("request should be cancelled");
+        } catch (CancellationException e) {
+            // expected
+        }
+    }
+}
@@ -48,6 +48,13 @@ public class WurstScriptTest {
         return false;
     }
 
+    /**
+     * when true, programs, tests and compiletime functions are executed with the compiled execution engine of the interpreter
+     */
+    protected boolean useCompiledInterpreter() {
+        return false;
+    }
+
     class TestConfig {
         private String name;
         private boolean withStdLib;
@@ -161,6 +168,9 @@ public class WurstScriptTest {
             if (runCompiletimeFunctions) {
                 runArgs = runArgs.with("-runcompiletimefunctions");
             }
+            if (useCompiledInterpreter()) {
+                runArgs = runArgs.with("-compiledInterpreter");
+            }
 
             WurstGui gui = new WurstGuiCliImpl();
             WurstCompilerJassImpl compiler = new WurstCompilerJassImpl(null, gui, null, runArgs);
@@ -556,6 +566,7 @@ public class WurstScriptTest {
             // run the interpreter on the intermediate language
             ILInterpreter interpreter = new ILInterpreter(imProg, gui, Optional.empty(), false, false);
             interpreter.addNativeProvider(new ReflectionNativeProvider(interpreter));
+            interpreter.setCompiledExecution(useCompiledInterpreter());
             interpreter.executeFunction("main", null);
         } catch (TestSuccessException e) {
             return;
@@ -579,6 +590,7 @@ public class WurstScriptTest {
 
     private void executeTests(WurstGui gui, ImTranslator translator, ImProg imProg) {
         RunTests runTests = new RunTests(Optional.empty(), 0, 0, Optional.empty());
+        runTests.setCompiledExecution(useCompiledInterpreter());
         RunTests.TestResult res = runTests.runTests(translator, imProg, Optional.empty(), Optional.empty());
         if (res.getPassedTests() < res.getTotalTests()) {
             throw new Error("tests failed: " + res.getPassedTests() + " / " + res.getTotalTests() + "\n" +